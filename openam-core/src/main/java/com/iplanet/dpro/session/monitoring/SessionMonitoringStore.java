@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 package com.iplanet.dpro.session.monitoring;
 
@@ -37,6 +37,8 @@ public class SessionMonitoringStore {
     private final ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> propertyStore;
     private final ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> destroyStore;
     private final ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> logoutStore;
+    private final ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> verifyStore;
+    private final ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> decryptStore;
 
     private final SessionMonitoringTimingStoreFactory sessionMonitoringTimingStoreFactory;
 
@@ -61,6 +63,8 @@ public class SessionMonitoringStore {
         this.propertyStore= new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
         this.destroyStore= new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
         this.logoutStore= new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
+        this.verifyStore = new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
+        this.decryptStore = new ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore>();
     }
 
     /**
@@ -72,13 +76,17 @@ public class SessionMonitoringStore {
      * @param propertyStore Property store
      * @param destroyStore Destroy store
      * @param logoutStore Logout store
+     * @param verifyStore Token signature verification store
+     * @param decryptStore Token decryption store
      */
     SessionMonitoringStore(ExecutorService executorService,
                                   SessionMonitoringTimingStoreFactory sessionMonitoringTimingStoreFactory,
                                   ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> refreshStore,
                                   ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> propertyStore,
                                   ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> destroyStore,
-                                  ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> logoutStore) {
+                                  ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> logoutStore,
+                                  ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> verifyStore,
+                                  ConcurrentHashMap<SessionMonitorType, SessionMonitoringTimingStore> decryptStore) {
         this.executorService = executorService;
         this.sessionMonitoringTimingStoreFactory = sessionMonitoringTimingStoreFactory;
 
@@ -86,6 +94,8 @@ public class SessionMonitoringStore {
         this.propertyStore = propertyStore;
         this.destroyStore = destroyStore;
         this.logoutStore = logoutStore;
+        this.verifyStore = verifyStore;
+        this.decryptStore = decryptStore;
     }
 
     /**
@@ -225,4 +235,71 @@ public class SessionMonitoringStore {
         return logoutStore.get(type).getDurationAverage();
     }
 
+    /**
+     * Stores an entry in the verifyStore, offloading the work to another thread.
+     *
+     * @param duration the length of time taken to verify the signature of a session token
+     * @param type the type of session to which this entry pertains
+     */
+    public void storeVerifyTime(final long duration, final SessionMonitorType type) {
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!verifyStore.containsKey(type)) {
+                    verifyStore.putIfAbsent(type,
+                            sessionMonitoringTimingStoreFactory.createSessionMonitoringTimingStore());
+                }
+
+                verifyStore.get(type).addTimingEntry(duration);
+            }
+        });
+    }
+
+    /**
+     * Gets the average value of entries in the verifyStore.
+     *
+     * @param type the type of session whose averages we are interested in
+     * @return the average duration (in nanoseconds)
+     */
+    public long getAverageVerifyTime(SessionMonitorType type) {
+        if (verifyStore.get(type) == null) {
+            return 0L;
+        }
+
+        return verifyStore.get(type).getDurationAverage();
+    }
+
+    /**
+     * Stores an entry in the decryptStore, offloading the work to another thread.
+     *
+     * @param duration the length of time taken to decrypt a session token
+     * @param type the type of session to which this entry pertains
+     */
+    public void storeDecryptTime(final long duration, final SessionMonitorType type) {
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!decryptStore.containsKey(type)) {
+                    decryptStore.putIfAbsent(type,
+                            sessionMonitoringTimingStoreFactory.createSessionMonitoringTimingStore());
+                }
+
+                decryptStore.get(type).addTimingEntry(duration);
+            }
+        });
+    }
+
+    /**
+     * Gets the average value of entries in the decryptStore.
+     *
+     * @param type the type of session whose averages we are interested in
+     * @return the average duration (in nanoseconds)
+     */
+    public long getAverageDecryptTime(SessionMonitorType type) {
+        if (decryptStore.get(type) == null) {
+            return 0L;
+        }
+
+        return decryptStore.get(type).getDurationAverage();
+    }
 }
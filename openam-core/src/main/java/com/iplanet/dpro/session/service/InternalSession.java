@@ -871,6 +871,10 @@ public class InternalSession implements Serializable {
         }
         setLatestAccessTime();
         setState(VALID);
+        if (!stateless) {
+            // The user is known now, so make this session visible to per-user lookups.
+            sessionService.reindexInternalSession(this);
+        }
         if (reschedulePossible && !stateless) {
             reschedule();
         }
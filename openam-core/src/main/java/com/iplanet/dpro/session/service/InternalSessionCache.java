@@ -11,19 +11,23 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 package com.iplanet.dpro.session.service;
 
+import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.SessionID;
+import com.sun.identity.shared.Constants;
 
-import org.forgerock.openam.utils.SingleValueMapper;
 import org.forgerock.util.Reject;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -37,15 +41,27 @@ import java.util.concurrent.ConcurrentHashMap;
  * - SessionID of the InternalSession
  * - Session handle of the InternalSession
  * - Any of the restricted SessionIDs of the InternalSession
+ * - Universal ID of the user the InternalSession belongs to
  *
- * This cache has been designed to remove previous references to Session handles and restricted tokens
- * when they are no longer referenced by the InternalSession.
+ * This cache has been designed to remove previous references to Session handles, restricted tokens
+ * and users when they are no longer referenced by the InternalSession. To do so it records the keys
+ * each session was indexed under when it was stored.
+ *
+ * Thread Safety: updates for a given SessionID are serialised on one of a fixed number of lock stripes,
+ * so concurrent updates to different sessions do not contend on a single monitor. Lookups take no locks.
  */
 @Singleton
 public class InternalSessionCache {
+    private static final int LOCK_STRIPES = 64;
+
     private final ConcurrentHashMap<SessionID, InternalSession> cache;
-    private final SingleValueMapper<String, InternalSession> handle = new SingleValueMapper<String, InternalSession>();
-    private final SingleValueMapper<SessionID, InternalSession> restricted = new SingleValueMapper<SessionID, InternalSession>();
+    private final ConcurrentHashMap<SessionID, IndexedSession> indexed;
+    private final ConcurrentHashMap<String, InternalSession> handle = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SessionID, InternalSession> restricted = new ConcurrentHashMap<>();
+    // Each user's sessions are replaced with an updated copy on change, so that they can be updated atomically
+    private final ConcurrentHashMap<String, Map<SessionID, InternalSession>> uuid = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final boolean caseSensitiveUUID;
 
     /**
      * Construct an InternalSessionCache intended to provide Session caching for provided SessionService configuration.
@@ -54,6 +70,11 @@ public class InternalSessionCache {
     @Inject
     public InternalSessionCache(SessionServiceConfig config) {
         cache = new ConcurrentHashMap<SessionID, InternalSession>(config.getMaxSessions());
+        indexed = new ConcurrentHashMap<SessionID, IndexedSession>(config.getMaxSessions());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        caseSensitiveUUID = SystemProperties.getAsBoolean(Constants.CASE_SENSITIVE_UUID);
     }
 
     public InternalSession getBySessionID(SessionID sessionID) {
@@ -61,66 +82,85 @@ public class InternalSessionCache {
     }
 
     public InternalSession getByHandle(String sessionHandle) {
+        Reject.ifNull(sessionHandle);
         return handle.get(sessionHandle);
     }
 
     public InternalSession getByRestrictedID(SessionID sessionID) {
+        Reject.ifNull(sessionID);
         return restricted.get(sessionID);
     }
 
+    /**
+     * Returns the sessions which belong to the given user, in time proportional to the number of sessions
+     * the user has rather than the number of sessions in the cache.
+     *
+     * @param universalID Non null universal ID of the user. Matched case insensitively unless
+     *                    {@link Constants#CASE_SENSITIVE_UUID} is set.
+     * @return Non null, unmodifiable and possibly empty collection of the user's sessions.
+     */
+    public Collection<InternalSession> getByUUID(String universalID) {
+        Reject.ifNull(universalID);
+        Map<SessionID, InternalSession> sessions = uuid.get(normalise(universalID));
+        if (sessions == null) {
+            return Collections.emptySet();
+        }
+        return sessions.values();
+    }
+
     /**
      * Stores the InternalSession in the cache. This will also store any associated references
      * which have been stored on the Session:
      *
      * - Session Handle
      * - Restricted Tokens
+     * - Universal ID
      *
-     * Synchronized: makes updates to multiple data structures atomic.
+     * References recorded when the session was previously stored which it no longer holds are removed.
      *
      * @param session Non null InternalSession to store.
      */
-    public synchronized void put(InternalSession session) {
+    public void put(InternalSession session) {
         Reject.ifNull(session);
-        cache.put(session.getID(), session);
-
-        // Session Handle
-        if (session.getSessionHandle() != null) {
-            handle.put(session.getSessionHandle(), session);
+        SessionID sessionID = session.getID();
+        synchronized (lockFor(sessionID)) {
+            cache.put(sessionID, session);
+            index(sessionID, session);
         }
+    }
 
-        // Restricted Sessions
-        for (SessionID restrictedID : session.getRestrictedTokens()) {
-            restricted.put(restrictedID, session);
+    /**
+     * Refreshes the references of an InternalSession which is already stored in the cache, for example once
+     * the session has been assigned to a user. Does nothing if the session has since been removed or replaced.
+     *
+     * @param session Non null InternalSession to refresh.
+     */
+    public void reindex(InternalSession session) {
+        Reject.ifNull(session);
+        SessionID sessionID = session.getID();
+        synchronized (lockFor(sessionID)) {
+            if (cache.get(sessionID) == session) {
+                index(sessionID, session);
+            }
         }
     }
 
     /**
      * Remove the Session from the cache.
      *
-     * Synchronized: makes updates to multiple data structures atomic.
-     *
      * @param sessionID Non null SessionID.
      *
      * @return The InternalSession that was removed from the cache.
      */
-    public synchronized InternalSession remove(SessionID sessionID) {
-        InternalSession remove = cache.remove(sessionID);
-
-        if (remove == null) {
-            return null;
+    public InternalSession remove(SessionID sessionID) {
+        synchronized (lockFor(sessionID)) {
+            InternalSession remove = cache.remove(sessionID);
+            IndexedSession previous = indexed.remove(sessionID);
+            if (previous != null) {
+                unindex(sessionID, previous, null);
+            }
+            return remove;
         }
-
-        // Clear Session Handle
-        if (remove.getSessionHandle() != null) {
-            handle.remove(remove.getSessionHandle());
-        }
-
-        // Clear Restricted Tokens
-        for (SessionID restrictedID : remove.getRestrictedTokens()) {
-            restricted.remove(restrictedID);
-        }
-
-        return remove;
     }
 
     /**
@@ -151,4 +191,124 @@ public class InternalSessionCache {
     public Collection<InternalSession> getAllSessions() {
         return Collections.unmodifiableCollection(cache.values());
     }
+
+    /**
+     * Adds the current references of the session to the indexes, then removes any previously indexed
+     * references which are no longer current. Must be called whilst holding the lock for the SessionID.
+     */
+    private void index(SessionID sessionID, InternalSession session) {
+        String universalID = session.getUUID();
+        IndexedSession current = new IndexedSession(session, session.getSessionHandle(),
+                session.getRestrictedTokens(), universalID == null ? null : normalise(universalID));
+
+        // Session Handle
+        if (current.handle != null) {
+            handle.put(current.handle, session);
+        }
+
+        // Restricted Sessions
+        for (SessionID restrictedID : current.restrictedIDs) {
+            restricted.put(restrictedID, session);
+        }
+
+        // Universal ID
+        if (current.universalID != null) {
+            indexUniversalID(current.universalID, sessionID, session);
+        }
+
+        IndexedSession previous = indexed.put(sessionID, current);
+        if (previous != null) {
+            unindex(sessionID, previous, current);
+        }
+    }
+
+    /**
+     * Removes references recorded for a session which are not present in the current references. Only
+     * references which still point at the previously indexed session object are removed.
+     */
+    private void unindex(SessionID sessionID, IndexedSession previous, IndexedSession current) {
+        if (previous.handle != null && (current == null || !previous.handle.equals(current.handle))) {
+            handle.remove(previous.handle, previous.session);
+        }
+
+        for (SessionID restrictedID : previous.restrictedIDs) {
+            if (current == null || !current.restrictedIDs.contains(restrictedID)) {
+                restricted.remove(restrictedID, previous.session);
+            }
+        }
+
+        if (previous.universalID != null && (current == null || !previous.universalID.equals(current.universalID))) {
+            unindexUniversalID(previous.universalID, sessionID, previous.session);
+        }
+    }
+
+    /**
+     * Adds the session to the sessions indexed under the universal ID, retrying if they are concurrently changed.
+     */
+    private void indexUniversalID(String universalID, SessionID sessionID, InternalSession session) {
+        while (true) {
+            Map<SessionID, InternalSession> sessions = uuid.get(universalID);
+            if (sessions == null) {
+                if (uuid.putIfAbsent(universalID, Collections.singletonMap(sessionID, session)) == null) {
+                    return;
+                }
+            } else {
+                Map<SessionID, InternalSession> updated = new HashMap<>(sessions);
+                updated.put(sessionID, session);
+                if (uuid.replace(universalID, sessions, Collections.unmodifiableMap(updated))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the session from the sessions indexed under the universal ID if it is still indexed there, removing
+     * the universal ID once it has no sessions, and retrying if they are concurrently changed.
+     */
+    private void unindexUniversalID(String universalID, SessionID sessionID, InternalSession session) {
+        while (true) {
+            Map<SessionID, InternalSession> sessions = uuid.get(universalID);
+            if (sessions == null || sessions.get(sessionID) != session) {
+                return;
+            }
+            if (sessions.size() == 1) {
+                if (uuid.remove(universalID, sessions)) {
+                    return;
+                }
+            } else {
+                Map<SessionID, InternalSession> updated = new HashMap<>(sessions);
+                updated.remove(sessionID);
+                if (uuid.replace(universalID, sessions, Collections.unmodifiableMap(updated))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Object lockFor(SessionID sessionID) {
+        return locks[(sessionID.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    private String normalise(String universalID) {
+        return caseSensitiveUUID ? universalID : universalID.toLowerCase();
+    }
+
+    /**
+     * The references under which a session was indexed when it was stored.
+     */
+    private static final class IndexedSession {
+        private final InternalSession session;
+        private final String handle;
+        private final Set<SessionID> restrictedIDs;
+        private final String universalID;
+
+        private IndexedSession(InternalSession session, String handle, Set<SessionID> restrictedIDs,
+                String universalID) {
+            this.session = session;
+            this.handle = handle;
+            this.restrictedIDs = restrictedIDs;
+            this.universalID = universalID;
+        }
+    }
 }
@@ -41,7 +41,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.cts.CTSPersistentStore;
@@ -57,7 +56,6 @@ import org.forgerock.openam.utils.TimeUtils;
 import com.google.inject.Key;
 import com.google.inject.name.Names;
 import com.iplanet.am.util.SystemProperties;
-import com.iplanet.dpro.session.SessionID;
 import com.iplanet.sso.SSOToken;
 import com.iplanet.sso.SSOTokenManager;
 import com.sun.identity.security.AdminTokenAction;
@@ -84,10 +82,6 @@ import com.sun.identity.shared.debug.Debug;
   */
 public class SessionCount {
 
-    // SessionInfoMap: uuid -> Set (list of sids)
-    private static Map uuidSessionMap = Collections
-            .synchronizedMap(new HashMap());
-
     private static Debug debug = InjectorHolder.getInstance(Key.get(Debug.class, Names.named(SESSION_DEBUG)));
 
     private static SSOToken adminToken = null;
@@ -101,6 +95,8 @@ public class SessionCount {
         SystemProperties.getAsBoolean(Constants.CASE_SENSITIVE_UUID);
 
     private static final SessionService sessionService = InjectorHolder.getInstance(SessionService.class);
+    private static final InternalSessionCache internalSessionCache =
+            InjectorHolder.getInstance(InternalSessionCache.class);
     private static final SessionServerConfig serverConfig = InjectorHolder.getInstance(SessionServerConfig.class);
     private static final SessionServiceConfig serviceConfig = InjectorHolder.getInstance(SessionServiceConfig.class);
 
@@ -137,7 +133,12 @@ public class SessionCount {
             uuid = uuid.toLowerCase();
         }
 
-        Map<String, Long> sessions = getSessionsFromRepository(uuid);
+        Map<String, Long> sessions;
+        if (useLocalSessionsInMultiServerMode) {
+            sessions = getSessionsFromLocalServer(uuid);
+        } else {
+            sessions = getSessionsFromRepository(uuid);
+        }
 
         if (sessions == null) {
             sessions = Collections.EMPTY_MAP;
@@ -160,21 +161,13 @@ public class SessionCount {
      * Get user sessions from local server
      */
     static Map<String, Long> getSessionsFromLocalServer(String uuid) {
-        Set<SessionID> sessions = (Set<SessionID>) uuidSessionMap.get(uuid);
         Map<String, Long> retSessions = new HashMap<String, Long>();
-
-        if (sessions != null) {
-            synchronized (sessions) {
-                for (SessionID sid : sessions) {
-                    InternalSession is = sessionService.getInternalSession(sid);
-                    
-                    if (is != null) {
-                        retSessions.put(sid.toString(), new Long(is.getExpirationTime()));
-                    }
-                }
+        for (InternalSession is : internalSessionCache.getByUUID(uuid)) {
+            if (is.getState() == VALID) {
+                retSessions.put(is.getID().toString(), is.getExpirationTime());
             }
         }
-        
+
         return retSessions;
     }
 
@@ -442,6 +442,15 @@ public class SessionService {
         return internalSessionFactory.newInternalSession(domain, stateless);
     }
 
+    /**
+     * Refreshes the Internal Session table indexes for a session, such as once it has been assigned to a user.
+     *
+     * @param session Non null Internal Session.
+     */
+    void reindexInternalSession(InternalSession session) {
+        cache.reindex(session);
+    }
+
     /**
      * Removes the Internal Session from the Internal Session table.
      *
@@ -79,6 +79,8 @@ import java.util.Hashtable;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * <code>AMLoginContext</code> class is the core layer in the authentication
@@ -128,7 +130,7 @@ public class AMLoginContext {
     private boolean internalAuthError = false;
     private boolean processDone = false;
     private int jaasCheck;
-    private Thread jaasThread = null;
+    private Future<?> jaasLogin = null;
     private AppConfigurationEntry[] entries = null;
     private Callback[] recdCallback;
     private final AuthenticationProcessEventAuditor auditor;
@@ -394,8 +396,7 @@ public class AMLoginContext {
             if (isPureJAAS()) {
                 debug.message("Using pure jaas mode.");
                 if (authThread == null) {
-                    authThread = new AuthThreadManager();
-                    authThread.start();
+                    authThread = AuthThreadManager.getInstance();
                 }
             }
 
@@ -512,18 +513,24 @@ public class AMLoginContext {
          */
         try {
             if (isPureJAAS()) {
-                if (jaasThread != null) {
-                    jaasThread.interrupt();
-                    jaasThread = null;
+                if (jaasLogin != null) {
+                    jaasLogin.cancel(true);
+                    jaasLogin = null;
                     errorState = true;
                 } else {
-                    jaasThread = new JAASLoginThread(this);
-                    jaasThread.start();
+                    jaasLogin = authThread.submitLogin(orgDN, indexName == null ? configName : indexName,
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    runLogin();
+                                }
+                            });
                 }
             } else {
                 runLogin();
             }
-        } catch (IllegalThreadStateException ite) {
+        } catch (RejectedExecutionException ree) {
+            debug.error("AMLoginContext.executeLogin: too many JAAS logins waiting for a login thread");
             errorState = true;
         } catch (Exception e) {
             errorState = true;
@@ -222,7 +222,6 @@ public class AuthD implements ConfigurationListener {
      */
     public String defaultAuthLevel;
     private final ConcurrentMap<String, String> authMethods = new ConcurrentHashMap<String, String>();
-    private long defaultSleepTime = 300; /* 5 minutes */
     private static final RedirectUrlValidator<String> REDIRECT_URL_VALIDATOR =
             new RedirectUrlValidator<String>(ValidGotoUrlExtractor.getInstance());
     
@@ -331,10 +330,6 @@ public class AuthD implements ConfigurationListener {
             debug.message("Default Failure URL Set = " + defaultFailureURLSet);
         }
         
-        Integer sleepTime = new Integer(CollectionHelper.getMapAttr(
-            attrs, ISAuthConstants.SLEEP_INTERVAL));
-        defaultSleepTime = sleepTime.longValue();
-        
     }
     
     /**
@@ -962,14 +957,6 @@ public class AuthD implements ConfigurationListener {
         return rb;
     }
 
-    /**
-     * Return default sleep time
-     * @return default sleep time
-     */
-    public long getDefaultSleepTime() {
-        return defaultSleepTime * 1000;
-    }
-    
     /**
      * Returns the organization DN.
      * <p>
@@ -27,84 +27,136 @@
  * Portions Copyrighted 2016 ForgeRock AS.
  */
 
-
-
 package com.sun.identity.authentication.service;
 
 import static org.forgerock.openam.utils.Time.*;
 
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.thread.ExecutorServiceFactory;
 
+import com.iplanet.am.util.SystemProperties;
 import com.sun.identity.shared.debug.Debug;
 
 /**
- * AuthThreadManager sleeps for n milliseconds as set in 
- * iplanet-am-auth-sleep-interval wakes up and checks for each thread 
- * in the timeout Hash for timeout.
- * If thread has timed out adds thread to timedOutHash and removed from
- * timeoutHash. 
+ * AuthThreadManager runs the logins of authentication chains containing pure JAAS modules, and enforces the page
+ * timeout of the threads waiting for callbacks to be sent or submitted.
+ * <p/>
+ * Logins run on a bounded pool of threads rather than a new thread each. Once every core thread is busy, logins wait
+ * on a bounded queue; once the queue is full, more threads are started up to the maximum, and once those are busy too
+ * new logins are rejected. A login holds its thread while it waits for the user, for up to the page timeout, so the
+ * depth of the queue and the time taken by the logins of each module are published through the monitoring agent.
+ * When a thread starts waiting, a timeout is scheduled for the moment its page timeout expires; if the thread is
+ * still waiting then, it is interrupted and remembered as timed out.
  */
-public class AuthThreadManager extends Thread   {
+public class AuthThreadManager {
 
-    long timeout = 60;
-    static Debug debug = null;
-    static int i=0;
-    Hashtable timeoutHash = new Hashtable();
-    Hashtable timedOutHash = new Hashtable();
-    long lastCallbackSent;
-    long defaultSleepTime = 300000;
+    /**
+     * Property for the number of threads kept running pure JAAS logins.
+     */
+    public static final String LOGIN_CORE_THREADS_PROPERTY =
+            "org.forgerock.openam.authentication.jaas.loginCoreThreads";
+    /**
+     * Property for the maximum number of threads running pure JAAS logins.
+     */
+    public static final String LOGIN_THREADS_PROPERTY = "org.forgerock.openam.authentication.jaas.loginThreads";
+    /**
+     * Property for the number of pure JAAS logins that may wait for a thread.
+     */
+    public static final String LOGIN_QUEUE_SIZE_PROPERTY = "org.forgerock.openam.authentication.jaas.loginQueueSize";
+    private static final int DEFAULT_LOGIN_CORE_THREADS = 50;
+    private static final int DEFAULT_LOGIN_THREADS = 200;
+    private static final int DEFAULT_LOGIN_QUEUE_SIZE = 100;
+    private static final long LOGIN_THREAD_IDLE_SECONDS = 60;
+
+    static Debug debug = Debug.getInstance("amThreadManager");
+
+    private final ExecutorService loginExecutor;
+    private final BlockingQueue<Runnable> loginQueue;
+    private final ScheduledExecutorService timeoutScheduler;
+    private final ConcurrentMap<Thread, Timeout> timeouts = new ConcurrentHashMap<>();
+    private final Set<Thread> timedOutThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private final ConcurrentMap<String, LoginTimes> loginTimes = new ConcurrentHashMap<>();
+    private final AtomicInteger activeLogins = new AtomicInteger();
 
     /**
-     * Creates <code>AuthThreadManager</code> object.
+     * Returns the <code>AuthThreadManager</code> of this server, creating it on first use.
+     *
+     * @return the <code>AuthThreadManager</code>.
      */
-    public AuthThreadManager () {
-        debug = Debug.getInstance("amThreadManager");
-        defaultSleepTime = AuthD.getAuth().getDefaultSleepTime();
+    public static AuthThreadManager getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private AuthThreadManager() {
+        this(InjectorHolder.getInstance(ExecutorServiceFactory.class),
+                SystemProperties.getAsInt(LOGIN_CORE_THREADS_PROPERTY, DEFAULT_LOGIN_CORE_THREADS),
+                SystemProperties.getAsInt(LOGIN_THREADS_PROPERTY, DEFAULT_LOGIN_THREADS),
+                new LinkedBlockingQueue<Runnable>(Math.max(1,
+                        SystemProperties.getAsInt(LOGIN_QUEUE_SIZE_PROPERTY, DEFAULT_LOGIN_QUEUE_SIZE))));
+    }
+
+    private AuthThreadManager(ExecutorServiceFactory executorServiceFactory, int coreThreads, int loginThreads,
+            BlockingQueue<Runnable> loginQueue) {
+        this(executorServiceFactory.createThreadPool(coreThreads, Math.max(coreThreads, loginThreads),
+                        LOGIN_THREAD_IDLE_SECONDS, TimeUnit.SECONDS, loginQueue),
+                loginQueue, executorServiceFactory.createScheduledService(1));
+    }
+
+    @VisibleForTesting
+    AuthThreadManager(ExecutorService loginExecutor, BlockingQueue<Runnable> loginQueue,
+            ScheduledExecutorService timeoutScheduler) {
+        this.loginExecutor = loginExecutor;
+        this.loginQueue = loginQueue;
+        this.timeoutScheduler = timeoutScheduler;
         if (debug.messageEnabled()) {
-            debug.message("Default sleep time : " + defaultSleepTime);
+            debug.message("Login queue capacity : " + loginQueue.remainingCapacity());
         }
     }
 
     /**
-     * thread sleeps for n milliseconds as set in iplanet-am-auth-sleep-interval
-     * wakes up and checks for each thread in the timeout Hash for timeout.
-     * if thread has timed out adds thread to timedOutHash and removed from
-     * timeoutHash 
+     * Runs a login on the login thread pool.
+     *
+     * @param orgDN The DN of the realm the login is for.
+     * @param name The name the duration of the login is recorded under, usually the module or chain name.
+     * @param login The login to run.
+     * @return a future which can be cancelled to interrupt the login.
+     * @throws RejectedExecutionException If every login thread is busy and the queue of waiting logins is full.
      */
-    public void run() {
-        while (true) {
-            try {
-                sleep(defaultSleepTime);
-                if (debug.messageEnabled()) {
-                    debug.message("Thread Waking up");
-                    debug.message("timeoutHash :" + timeoutHash);
+    public Future<?> submitLogin(String orgDN, String name, final Runnable login) {
+        final String loginKey = getLoginKey(orgDN, name);
+        return loginExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                activeLogins.incrementAndGet();
+                long start = System.nanoTime();
+                try {
+                    login.run();
+                } finally {
+                    recordLoginTime(loginKey, System.nanoTime() - start);
+                    activeLogins.decrementAndGet();
+                    // the thread is reused, so do not let this login's time out affect the next one
+                    removeFromHash(Thread.currentThread(), "timeoutHash");
+                    removeFromHash(Thread.currentThread(), "timedOutHash");
+                    Thread.interrupted();
                 }
-
-                if ((timeoutHash != null) && (!timeoutHash.isEmpty())) {
-                    Enumeration timeoutElem = timeoutHash.keys();
-                    while (timeoutElem.hasMoreElements()) {
-                        Object key = timeoutElem.nextElement();
-                        Thread thread = (Thread) key;
-                        Hashtable s = (Hashtable) timeoutHash.get(key);
-                        long timeout = ((Long)s.get("PageTimeout")).longValue();
-                        long lastCallbackSent = 
-                            ((Long) s.get("LastCallbackSent")).longValue();
-
-                        if (isLoginTimeout(lastCallbackSent , timeout)) {
-                            if (debug.messageEnabled()) {
-                                debug.message("Interrupting thread" + thread);
-                            }
-                            thread.interrupt();
-                            timeoutHash.remove(key);
-                            timedOutHash.put(thread, Boolean.TRUE);
-                        }
-                    }
-                }
-            } catch (Exception e) {
-                debug.message("Error run : " , e);
             }
-        }
+        });
     }
 
     /**
@@ -120,8 +172,8 @@ public class AuthThreadManager extends Thread   {
     }
 
     /**
-     * Stores the thread as key and the time out value &
-     * last callback sent in a Hashtable 
+     * Schedules the time out of a thread which is about to wait for callbacks, replacing any time out already
+     * scheduled for the thread.
      * @param currentThread will be stored
      * @param pageTimeOut configured timeout value
      * @param lastCallbackSent time for last callback was sent
@@ -133,17 +185,16 @@ public class AuthThreadManager extends Thread   {
         if (debug.messageEnabled()) {
             debug.message("Setting hash... : "  + currentThread);
         }
-        if (timeoutHash.contains(currentThread)) {
-            return;
+        long delay = Math.max(lastCallbackSent + (pageTimeOut - 3) * 1000 - currentTimeMillis(), 0);
+        Timeout timeout = new Timeout(currentThread);
+        Timeout previous = timeouts.put(currentThread, timeout);
+        if (previous != null) {
+            previous.cancel();
         }
-        Hashtable param = new Hashtable();
-        param.put("PageTimeout" , new Long(pageTimeOut));
-        param.put("LastCallbackSent",new Long(lastCallbackSent));
-
-        timeoutHash.put(currentThread,param);    
+        timeout.schedule(delay);
 
         if (debug.messageEnabled()){
-            debug.message("timeOutHash is : " + timeoutHash);
+            debug.message("Scheduled time out in " + delay + "ms for " + currentThread);
         }
     }
 
@@ -153,22 +204,12 @@ public class AuthThreadManager extends Thread   {
      * @return <code>true</code> if the is timed out
      */
     public boolean isTimedOut(Thread thread) {
-        if (debug.messageEnabled()) {
-            debug.message("Timed ut hash has : " + timedOutHash);
-        }
-        if  ((timedOutHash ==  null) || (timedOutHash.isEmpty())) {
-            return false;
-        }
-        try {
-            Boolean timedOut = (Boolean) timedOutHash.get(thread);
-            return timedOut.booleanValue();
-        } catch (Exception e ) {
-            return false;
-        }
+        return timedOutThreads.contains(thread);
     }
     
     /**
-     * Removes thread from <code>Hashtable</code> specified by hashName
+     * Removes thread from the scheduled time outs (<code>timeoutHash</code>) or from the threads which have timed
+     * out (<code>timedOutHash</code>).
      * @param thread will be removed from the hash
      * @param hashName has associated thread
      */
@@ -178,27 +219,119 @@ public class AuthThreadManager extends Thread   {
                 thread + "from hash : " + hashName);
         }
         if (hashName.equals("timeoutHash")) {
-            removeHash(timeoutHash,thread);
-            if (debug.messageEnabled()){
-                debug.message("timeOutHash is : " + timeoutHash);
+            Timeout timeout = timeouts.remove(thread);
+            if (timeout != null) {
+                timeout.cancel();
             }
         }
 
         if (hashName.equals("timedOutHash")) {
-            removeHash(timedOutHash,thread);
-            if (debug.messageEnabled()){
-                debug.message("timedOutHash is : " + timedOutHash);
-            }
+            timedOutThreads.remove(thread);
         } 
     }
 
-    void removeHash(Hashtable hash,Thread thread) {
-        if ((hash == null) || hash.isEmpty()) {
-            return;
+    /**
+     * @return the number of pure JAAS logins waiting for a login thread.
+     */
+    public int getLoginQueueDepth() {
+        return loginQueue.size();
+    }
+
+    /**
+     * @return the number of pure JAAS logins running.
+     */
+    public int getActiveLoginCount() {
+        return activeLogins.get();
+    }
+
+    /**
+     * @param orgDN The DN of the realm.
+     * @param name The module or chain name.
+     * @return the number of pure JAAS logins completed for the name in the realm.
+     */
+    public long getLoginCount(String orgDN, String name) {
+        LoginTimes times = loginTimes.get(getLoginKey(orgDN, name));
+        return times == null ? 0 : times.count.get();
+    }
+
+    /**
+     * @param orgDN The DN of the realm.
+     * @param name The module or chain name.
+     * @return the mean time in milliseconds taken by the pure JAAS logins completed for the name in the realm,
+     * including the time spent waiting for the user.
+     */
+    public double getAverageLoginTimeMs(String orgDN, String name) {
+        LoginTimes times = loginTimes.get(getLoginKey(orgDN, name));
+        if (times == null) {
+            return 0.0d;
+        }
+        long count = times.count.get();
+        return count == 0 ? 0.0d : (double) times.nanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static String getLoginKey(String orgDN, String name) {
+        return (orgDN == null ? "" : orgDN.toLowerCase()) + "|" + name;
+    }
+
+    private void recordLoginTime(String loginKey, long elapsedNanos) {
+        LoginTimes times = loginTimes.get(loginKey);
+        if (times == null) {
+            LoginTimes newTimes = new LoginTimes();
+            times = loginTimes.putIfAbsent(loginKey, newTimes);
+            if (times == null) {
+                times = newTimes;
+            }
+        }
+        times.count.incrementAndGet();
+        times.nanos.addAndGet(elapsedNanos);
+    }
+
+    private static final class LoginTimes {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+    }
+
+    /**
+     * The time out of a thread waiting for callbacks. Cancelling and firing are serialised, so a thread which has
+     * removed its time out can no longer be interrupted by it.
+     */
+    private final class Timeout implements Runnable {
+        private final Thread thread;
+        private ScheduledFuture<?> future;
+        private boolean done;
+
+        private Timeout(Thread thread) {
+            this.thread = thread;
+        }
+
+        private synchronized void schedule(long delayMs) {
+            if (!done) {
+                future = timeoutScheduler.schedule(this, delayMs, TimeUnit.MILLISECONDS);
+            }
         }
-        try {
-            hash.remove(thread);
-        } catch (Exception e) {
+
+        private synchronized void cancel() {
+            done = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            if (done || !timeouts.remove(thread, this)) {
+                return;
+            }
+            done = true;
+            if (debug.messageEnabled()) {
+                debug.message("Interrupting thread" + thread);
+            }
+            timedOutThreads.add(thread);
+            thread.interrupt();
         }
     }
+
+    private static final class InstanceHolder {
+        private static final AuthThreadManager INSTANCE = new AuthThreadManager();
+    }
 }
@@ -1,57 +0,0 @@
-/**
- * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
- *
- * Copyright (c) 2005 Sun Microsystems Inc. All Rights Reserved
- *
- * The contents of this file are subject to the terms
- * of the Common Development and Distribution License
- * (the License). You may not use this file except in
- * compliance with the License.
- *
- * You can obtain a copy of the License at
- * https://opensso.dev.java.net/public/CDDLv1.0.html or
- * opensso/legal/CDDLv1.0.txt
- * See the License for the specific language governing
- * permission and limitations under the License.
- *
- * When distributing Covered Code, include this CDDL
- * Header Notice in each file and include the License file
- * at opensso/legal/CDDLv1.0.txt.
- * If applicable, add the following below the CDDL Header,
- * with the fields enclosed by brackets [] replaced by
- * your own identifying information:
- * "Portions Copyrighted [year] [name of copyright owner]"
- *
- * $Id: JAASLoginThread.java,v 1.2 2008/06/25 05:42:04 qcheng Exp $
- *
- */
-
-
-package com.sun.identity.authentication.service;
-
-/**
- * This thread is created when a pure JAAS module is found in the
- * authentication chain,  which used to be created in
- * <code>AMLoginContext</code>.
- */
-public class JAASLoginThread  extends Thread {
-
-    private AMLoginContext amlc;
-
-    /**
-     * Creates <code>JAASLoginThread</code> object.
-     *
-     * @param amlc <code>AMLoginContext</code> in which the running method is
-     *        defined.
-     */
-    JAASLoginThread(AMLoginContext amlc) {
-        this.amlc = amlc;
-    }
-
-    /**
-     * Run the thread task which is defined in <code>AMLoginContext</code>.
-     */
-    public void run() {
-        amlc.runLogin();
-    }
-}
@@ -394,6 +394,11 @@ public interface ISAuthConstants {
     public static final String AUTHENTICATORS = AUTH_ATTR_PREFIX
             + "authenticators";
 
+    /**
+     * Obsolete. Page timeouts are scheduled when a login starts waiting, so the interval at which waiting logins
+     * were checked for timeouts is no longer used.
+     */
+    @Deprecated
     public static final String SLEEP_INTERVAL = AUTH_ATTR_PREFIX
             + "sleep-interval";
 
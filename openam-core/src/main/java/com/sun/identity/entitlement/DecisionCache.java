@@ -0,0 +1,378 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Subject;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.openam.entitlement.PolicyConstants;
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.time.TimeService;
+
+import com.iplanet.sso.SSOToken;
+import com.sun.identity.entitlement.opensso.SubjectUtils;
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
+
+/**
+ * Opt-in cache of policy decisions made by {@link Evaluator}, so that repeated evaluations of the same resource for
+ * the same subject and environment do not evaluate every subject and environment condition again.
+ * <p/>
+ * Decisions are keyed by realm, application, resource, the subject's principals and session, the subject search
+ * indexes from {@link SubjectAttributesManager} and the environment. A decision is kept until the earliest time to
+ * live of its entitlements, and for no longer than the configured maximum age.
+ * <p/>
+ * Only decisions for subjects with a session are cached. The name of a principal does not always identify it, for
+ * example two JWT principals with the same subject claim may carry different claims, so a subject without a
+ * session has no reliable identity to key its decisions on.
+ * <p/>
+ * Any change to a privilege or application empties the cache. Evaluations that were already under way when the cache
+ * was emptied do not store their decisions.
+ * <p/>
+ * The cache is disabled unless {@value #SIZE_PROPERTY} is set to a positive number of decisions.
+ */
+public final class DecisionCache {
+
+    /**
+     * System property for the maximum number of cached decisions. Zero, the default, disables the cache.
+     */
+    public static final String SIZE_PROPERTY = "org.forgerock.openam.entitlement.decision.cache.size";
+    /**
+     * System property for the longest time in milliseconds a decision is cached for.
+     */
+    public static final String MAX_AGE_PROPERTY = "org.forgerock.openam.entitlement.decision.cache.maxage";
+
+    private static final long DEFAULT_MAX_AGE_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    private static final DecisionCache INSTANCE = new DecisionCache(
+            getConfiguration(SIZE_PROPERTY, 0), getConfiguration(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_MS),
+            TimeService.SYSTEM);
+
+    private final Cache<Key, CachedDecision> decisions;
+    private final boolean enabled;
+    private final long maxAgeMs;
+    private final TimeService clock;
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @VisibleForTesting
+    DecisionCache(long size, long maxAgeMs, TimeService clock) {
+        this.enabled = size > 0 && maxAgeMs > 0;
+        this.maxAgeMs = maxAgeMs;
+        this.clock = clock;
+        this.decisions = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(size, 0))
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .build();
+    }
+
+    /**
+     * @return the decision cache.
+     */
+    public static DecisionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return true if decisions are cached.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the generation of the cache, to be passed to {@link #put(Key, long, List)} once a decision is made.
+     *
+     * @return the number of times the cache has been emptied.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @param key The decision key.
+     * @return a copy of the cached decision, or null if there is no current decision for the key or the subject has
+     * no session.
+     */
+    List<Entitlement> get(Key key) {
+        if (!key.isCacheable()) {
+            return null;
+        }
+        CachedDecision cached = decisions.getIfPresent(key);
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (cached.expiryTime <= clock.now()) {
+            decisions.asMap().remove(key, cached);
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copyOf(cached.entitlements);
+    }
+
+    /**
+     * Caches a copy of the decision, unless the subject has no session, the cache has been emptied since the
+     * decision was started or the decision has already expired.
+     *
+     * @param key The decision key.
+     * @param startGeneration The generation of the cache when evaluation started.
+     * @param entitlements The decision.
+     */
+    void put(Key key, long startGeneration, List<Entitlement> entitlements) {
+        if (!key.isCacheable()) {
+            return;
+        }
+        long now = clock.now();
+        long expiryTime = now + maxAgeMs;
+        for (Entitlement entitlement : entitlements) {
+            expiryTime = Math.min(expiryTime, entitlement.getTTL());
+        }
+        if (expiryTime <= now) {
+            return;
+        }
+        CachedDecision cached = new CachedDecision(copyOf(entitlements), expiryTime);
+        decisions.put(key, cached);
+        if (generation.get() != startGeneration) {
+            // A privilege changed while the decision was being made, so it may already be out of date.
+            decisions.asMap().remove(key, cached);
+        }
+    }
+
+    /**
+     * Discards all cached decisions, for example because a privilege has changed.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        decisions.invalidateAll();
+        if (PolicyConstants.DEBUG.messageEnabled()) {
+            PolicyConstants.DEBUG.message("DecisionCache.invalidateAll: cleared cached decisions");
+        }
+    }
+
+    /**
+     * @return the number of cached decisions, including any that have expired but not yet been discarded.
+     */
+    public long size() {
+        return decisions.size();
+    }
+
+    /**
+     * @return the number of evaluations answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of evaluations the cache could not answer.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of evaluations answered from the cache.
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0.0d : (double) hitCount / total;
+    }
+
+    private static List<Entitlement> copyOf(List<Entitlement> entitlements) {
+        List<Entitlement> copies = new ArrayList<Entitlement>(entitlements.size());
+        for (Entitlement entitlement : entitlements) {
+            Entitlement copy = new Entitlement();
+            copy.setName(entitlement.getName());
+            copy.setApplicationName(entitlement.getApplicationName());
+            copy.setApplication(entitlement.getApplication());
+            copy.setResourceNames(copyOf(entitlement.getResourceNames()));
+            copy.setRequestedResourceNames(copyOf(entitlement.getRequestedResourceNames()));
+            if (entitlement.getActionValues() != null) {
+                copy.setActionValues(entitlement.getActionValues());
+            }
+            copy.setAdvices(copyOfMap(entitlement.getAdvices()));
+            copy.setAttributes(copyOfMap(entitlement.getAttributes()));
+            copy.setTTL(entitlement.getTTL());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    private static Set<String> copyOf(Set<String> values) {
+        return values == null ? null : new HashSet<String>(values);
+    }
+
+    private static Map<String, Set<String>> copyOfMap(Map<String, Set<String>> map) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, Set<String>> copy = new HashMap<String, Set<String>>(map.size());
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copyOf(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static long getConfiguration(String name, long defaultValue) {
+        String value = SystemPropertiesManager.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            PolicyConstants.DEBUG.error("DecisionCache.getConfiguration: property name=" + name, e);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Identifies a decision.
+     */
+    static final class Key {
+        private final String realm;
+        private final String applicationName;
+        private final String normalisedResourceName;
+        private final String requestedResourceName;
+        private final boolean recursive;
+        private final String subjectFingerprint;
+        private final Map<String, Set<String>> environment;
+        private final int hashCode;
+
+        /**
+         * @param realm The realm.
+         * @param applicationName The application name.
+         * @param normalisedResourceName The normalised resource name.
+         * @param requestedResourceName The resource name as requested.
+         * @param recursive Whether sub resources are evaluated.
+         * @param subject The subject being evaluated. May be null, in which case the decision is not cached.
+         * @param subjectIndexes The subject search indexes of the subject.
+         * @param environment The environment parameters. May be null.
+         */
+        Key(String realm, String applicationName, String normalisedResourceName, String requestedResourceName,
+                boolean recursive, Subject subject, Set<String> subjectIndexes,
+                Map<String, Set<String>> environment) {
+            this.realm = realm;
+            this.applicationName = applicationName;
+            this.normalisedResourceName = normalisedResourceName;
+            this.requestedResourceName = requestedResourceName;
+            this.recursive = recursive;
+            this.subjectFingerprint = fingerprint(subject, subjectIndexes);
+            this.environment = environment == null
+                    ? Collections.<String, Set<String>>emptyMap() : copyOfMap(environment);
+
+            int hash = realm.hashCode();
+            hash = 31 * hash + applicationName.hashCode();
+            hash = 31 * hash + normalisedResourceName.hashCode();
+            hash = 31 * hash + requestedResourceName.hashCode();
+            hash = 31 * hash + (recursive ? 1 : 0);
+            hash = 31 * hash + (subjectFingerprint == null ? 0 : subjectFingerprint.hashCode());
+            hash = 31 * hash + this.environment.hashCode();
+            this.hashCode = hash;
+        }
+
+        /**
+         * @return true if the subject has a session, so that decisions for it may be cached.
+         */
+        boolean isCacheable() {
+            return subjectFingerprint != null;
+        }
+
+        /**
+         * Conditions may depend on the principal and on the session as well as the indexed subject attributes, so
+         * all three identify the subject. The principals of a session are those it was authenticated with, so the
+         * session together with the principal names identifies them, but a subject without a session has no
+         * fingerprint.
+         */
+        private static String fingerprint(Subject subject, Set<String> subjectIndexes) {
+            SSOToken token = subject == null ? null : SubjectUtils.getSSOToken(subject);
+            if (token == null) {
+                return null;
+            }
+            StringBuilder fingerprint = new StringBuilder();
+            fingerprint.append(token.getTokenID()).append('\n');
+            for (String name : principalNames(subject)) {
+                fingerprint.append(name).append('\n');
+            }
+            if (subjectIndexes != null) {
+                for (String index : new TreeSet<String>(subjectIndexes)) {
+                    fingerprint.append(index).append('\n');
+                }
+            }
+            return fingerprint.toString();
+        }
+
+        private static Set<String> principalNames(Subject subject) {
+            Set<String> names = new TreeSet<String>();
+            for (Principal principal : subject.getPrincipals()) {
+                names.add(principal.getName());
+            }
+            return names;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && recursive == other.recursive
+                    && realm.equals(other.realm)
+                    && applicationName.equals(other.applicationName)
+                    && normalisedResourceName.equals(other.normalisedResourceName)
+                    && requestedResourceName.equals(other.requestedResourceName)
+                    && subjectFingerprint != null
+                    && subjectFingerprint.equals(other.subjectFingerprint)
+                    && environment.equals(other.environment);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final class CachedDecision {
+        private final List<Entitlement> entitlements;
+        private final long expiryTime;
+
+        private CachedDecision(List<Entitlement> entitlements, long expiryTime) {
+            this.entitlements = entitlements;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -798,6 +798,24 @@ public class Entitlement {
         this.application = null;
     }
 
+    /**
+     * Returns the application already read for this entitlement, without reading it from its store.
+     *
+     * @return the application, or null if it has not been read.
+     */
+    Application getApplication() {
+        return application;
+    }
+
+    /**
+     * Sets the application already read for this entitlement, saving it from being read from its store again.
+     *
+     * @param application application for this entitlement.
+     */
+    void setApplication(Application application) {
+        this.application = application;
+    }
+
     /**
      * Returns application for this entitlement.
      *
@@ -38,6 +38,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.security.auth.Subject;
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.entitlement.monitoring.EntitlementConfigurationWrapper;
@@ -162,11 +166,14 @@ public class Evaluator {
             throw new EntitlementException(424);
         }
 
+        // The application and the subject's search indexes are the same for every resource.
+        Application application = getApplication(realm);
+        Set<String> subjectIndexes = getSubjectIndexes(realm, subject);
         List<Entitlement> results = new ArrayList<Entitlement>();
 
         for (String res : resourceNames) {
-            List<Entitlement> r = evaluate(realm, subject, res, environment,
-                false);
+            List<Entitlement> r = evaluate(realm, subject, application, res, environment,
+                false, subjectIndexes);
             if ((r != null) && !r.isEmpty()) {
                 results.addAll(r);
             }
@@ -174,6 +181,73 @@ public class Evaluator {
         return results;
     }
 
+    /**
+     * Returns a list of entitlements for a given subject, resource names and environment, evaluating the resource
+     * names in parallel. The entitlements are returned in the order of the resource names.
+     *
+     * @param realm Realm Name.
+     * @param subject Subject who is under evaluation.
+     * @param resourceNames Resource names.
+     * @param environment Environment parameters.
+     * @param executor Executor to evaluate the resources in.
+     * @return a list of entitlements for a given subject, resource names
+     *         and environment.
+     * @throws EntitlementException if the result cannot be determined for any of the resources.
+     */
+    public List<Entitlement> evaluate(
+        final String realm,
+        final Subject subject,
+        Set<String> resourceNames,
+        final Map<String, Set<String>> environment,
+        ExecutorService executor
+    ) throws EntitlementException {
+        if ((resourceNames == null) || resourceNames.isEmpty()) {
+            throw new EntitlementException(424);
+        }
+
+        final Application application = getApplication(realm);
+        final Set<String> subjectIndexes = getSubjectIndexes(realm, subject);
+
+        List<Future<List<Entitlement>>> decisions = new ArrayList<Future<List<Entitlement>>>(resourceNames.size());
+        try {
+            for (final String resourceName : resourceNames) {
+                decisions.add(executor.submit(new Callable<List<Entitlement>>() {
+                    @Override
+                    public List<Entitlement> call() throws EntitlementException {
+                        return evaluate(realm, subject, application, resourceName, environment, false,
+                                subjectIndexes);
+                    }
+                }));
+            }
+
+            List<Entitlement> results = new ArrayList<Entitlement>();
+            for (Future<List<Entitlement>> decision : decisions) {
+                List<Entitlement> r = decision.get();
+                if ((r != null) && !r.isEmpty()) {
+                    results.addAll(r);
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EntitlementException(EntitlementException.INTERNAL_ERROR, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EntitlementException) {
+                throw (EntitlementException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new EntitlementException(EntitlementException.INTERNAL_ERROR, cause);
+        } finally {
+            // Stop evaluating the remaining resources if the evaluation has been abandoned.
+            for (Future<?> decision : decisions) {
+                decision.cancel(false);
+            }
+        }
+    }
+
     /**
      * Returns a list of entitlements for a given subject, resource name
      * and environment.
@@ -202,22 +276,44 @@ public class Evaluator {
             boolean recursive
     ) throws EntitlementException {
 
-        long startTime = currentTimeMillis();
+        return evaluate(realm, subject, getApplication(realm), resourceName, environment, recursive, null);
+    }
 
-        // Delegation to applications is currently not configurable, passing super admin (see AME-4959)
-        Application application = getApplicationService(SUPER_ADMIN_SUBJECT, realm).getApplication(applicationName);
+    private List<Entitlement> evaluate(
+            String realm,
+            Subject subject,
+            Application application,
+            String resourceName,
+            Map<String, Set<String>> environment,
+            boolean recursive,
+            Set<String> subjectIndexes
+    ) throws EntitlementException {
 
-        if (application == null) {
-            // App retrieval error.
-            throw new EntitlementException(EntitlementException.APP_RETRIEVAL_ERROR, new String[] {realm});
-        }
+        long startTime = currentTimeMillis();
 
         // Normalise the incoming resource URL.
         String normalisedResourceName = application.getResourceComparator().canonicalize(resourceName);
 
-        PrivilegeEvaluator evaluator = new PrivilegeEvaluator();
-        List<Entitlement> results = evaluator.evaluate(realm, adminSubject, subject,
-                applicationName, normalisedResourceName, resourceName, environment, recursive);
+        List<Entitlement> results;
+        DecisionCache decisionCache = DecisionCache.getInstance();
+        if (decisionCache.isEnabled()) {
+            if (subjectIndexes == null) {
+                subjectIndexes = getSubjectIndexes(realm, subject);
+            }
+            DecisionCache.Key key = new DecisionCache.Key(realm, applicationName, normalisedResourceName,
+                    resourceName, recursive, subject, subjectIndexes, environment);
+            results = decisionCache.get(key);
+            if (results == null) {
+                long generation = decisionCache.getGeneration();
+                results = new PrivilegeEvaluator().evaluate(realm, adminSubject, subject, applicationName,
+                        normalisedResourceName, resourceName, environment, recursive, subjectIndexes);
+                decisionCache.put(key, generation, results);
+            }
+        } else {
+            PrivilegeEvaluator evaluator = new PrivilegeEvaluator();
+            results = evaluator.evaluate(realm, adminSubject, subject, applicationName, normalisedResourceName,
+                    resourceName, environment, recursive, subjectIndexes);
+        }
 
         if (configWrapper.isMonitoringRunning()) {
             policyMonitor.addEvaluation(currentTimeMillis() - startTime, realm, applicationName, resourceName,
@@ -227,6 +323,22 @@ public class Evaluator {
         return results;
     }
 
+    private Application getApplication(String realm) throws EntitlementException {
+        // Delegation to applications is currently not configurable, passing super admin (see AME-4959)
+        Application application = getApplicationService(SUPER_ADMIN_SUBJECT, realm).getApplication(applicationName);
+
+        if (application == null) {
+            // App retrieval error.
+            throw new EntitlementException(EntitlementException.APP_RETRIEVAL_ERROR, new String[] {realm});
+        }
+        return application;
+    }
+
+    private Set<String> getSubjectIndexes(String realm, Subject subject) throws EntitlementException {
+        return SubjectAttributesManager.getInstance(adminSubject, realm).getSubjectSearchFilter(subject,
+                applicationName);
+    }
+
     /**
      * Returns application name.
      * 
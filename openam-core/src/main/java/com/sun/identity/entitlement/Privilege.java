@@ -24,7 +24,7 @@
  *
  * $Id: Privilege.java,v 1.14 2010/01/08 22:20:47 veiming Exp $
  *
- * Portions Copyrighted 2010-2015 ForgeRock AS.
+ * Portions Copyrighted 2010-2016 ForgeRock AS.
  */
 
 package com.sun.identity.entitlement;
@@ -35,6 +35,7 @@ import com.sun.identity.shared.configuration.SystemPropertiesManager;
 import com.sun.identity.sm.SMSEntry;
 
 import org.forgerock.openam.entitlement.CachingEntitlementCondition;
+import org.forgerock.openam.entitlement.CachingEntitlementSubject;
 import org.forgerock.openam.entitlement.PolicyConstants;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -666,7 +667,8 @@ public abstract class Privilege implements IPrivilege {
 
         if (getSubject() != null) {
             SubjectAttributesManager mgr = SubjectAttributesManager.getInstance(adminSubject, realm);
-            decision = getSubject().evaluate(realm, mgr, subject, resourceName, environment);
+            EntitlementSubject cachedSubject = new CachingEntitlementSubject(getSubject());
+            decision = cachedSubject.evaluate(realm, mgr, subject, resourceName, environment);
         } else {
             decision = new SubjectDecision(true, Collections.<String, Set<String>>emptyMap());
         }
@@ -111,6 +111,9 @@ public class PrivilegeChangeNotifier {
         String applicationName,
         String privilegeName,
         Set<String> resources) {
+        // Cached decisions may depend on the privilege that changed.
+        DecisionCache.getInstance().invalidateAll();
+
         try {
             Set<EntitlementListener> listeners =
                 ListenerManager.getInstance().getListeners(adminSubject);
@@ -0,0 +1,207 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Evaluates a batch of policies in a single worker.
+ * <p/>
+ * Policies are read from the search results in the calling thread and divided into batches of a fixed size, which
+ * are not split any further. A task is submitted to the evaluation pool for every batch as soon as it has been read,
+ * so evaluation starts while the search is still returning policies. Each batch combines the
+ * entitlements of its policies with its own {@link EntitlementCombiner}, and the results of the batches are merged,
+ * in the order the policies were found, once the search is complete. As soon as any combiner reports that the
+ * decision is made (for example a deny for every requested action under deny overrides), no more policies are read
+ * and policies not yet evaluated are skipped in every batch. A batch which the pool rejects, because it has been
+ * shut down, is evaluated in the calling thread.
+ */
+final class PrivilegeEvaluationTask implements Callable<EntitlementCombiner> {
+
+    /**
+     * The per request operations the task needs from the evaluator.
+     */
+    interface PolicyEvaluation {
+
+        /**
+         * @return a new combiner, initialised for the request being evaluated.
+         * @throws EntitlementException if the combiner cannot be created.
+         */
+        EntitlementCombiner newCombiner() throws EntitlementException;
+
+        /**
+         * Evaluates a single policy. May be called from any worker thread.
+         *
+         * @param policy The policy.
+         * @return the entitlements granted by the policy, or null if it does not apply.
+         * @throws EntitlementException if evaluation fails.
+         */
+        List<Entitlement> evaluate(IPrivilege policy) throws EntitlementException;
+    }
+
+    private final PolicyEvaluation evaluation;
+    private final List<IPrivilege> policies;
+    private final EntitlementCombiner combiner;
+    private final Outcome outcome;
+
+    private PrivilegeEvaluationTask(PolicyEvaluation evaluation, List<IPrivilege> policies,
+            EntitlementCombiner combiner, Outcome outcome) {
+        this.evaluation = evaluation;
+        this.policies = policies;
+        this.combiner = combiner;
+        this.outcome = outcome;
+    }
+
+    /**
+     * Evaluates the policies as they are read, combining their entitlements into the given combiner.
+     *
+     * @param pool The pool to evaluate in, or null to evaluate all policies in the calling thread.
+     * @param evaluation The evaluation of the request.
+     * @param policies The policies to evaluate, which are only read by the calling thread.
+     * @param batchSize The largest number of policies evaluated by a single task.
+     * @param combiner The initialised combiner for the request.
+     * @return the combiner.
+     * @throws EntitlementException the first failure to evaluate a policy.
+     */
+    static EntitlementCombiner evaluate(ExecutorService pool, PolicyEvaluation evaluation, Iterator<IPrivilege> policies,
+            int batchSize, EntitlementCombiner combiner) throws EntitlementException {
+        Outcome outcome = new Outcome();
+        if (pool == null) {
+            new PrivilegeEvaluationTask(evaluation, null, combiner, outcome).evaluatePolicies(policies);
+        } else {
+            evaluateInBatches(pool, evaluation, policies, Math.max(1, batchSize), combiner, outcome);
+        }
+        if (outcome.failure != null) {
+            throw outcome.failure;
+        }
+        return combiner;
+    }
+
+    private static void evaluateInBatches(ExecutorService pool, PolicyEvaluation evaluation,
+            Iterator<IPrivilege> policies, int batchSize, EntitlementCombiner combiner, Outcome outcome) {
+        List<IPrivilege> batch = nextBatch(policies, batchSize);
+        if (!policies.hasNext()) {
+            // Not worth handing over to another thread.
+            new PrivilegeEvaluationTask(evaluation, batch, combiner, outcome).evaluatePolicies(batch.iterator());
+            return;
+        }
+
+        List<Future<EntitlementCombiner>> tasks = new ArrayList<Future<EntitlementCombiner>>();
+        try {
+            while (!batch.isEmpty() && !outcome.isFinished()) {
+                PrivilegeEvaluationTask task =
+                        new PrivilegeEvaluationTask(evaluation, batch, evaluation.newCombiner(), outcome);
+                tasks.add(submit(pool, task));
+                batch = nextBatch(policies, batchSize);
+            }
+
+            for (Future<EntitlementCombiner> task : tasks) {
+                EntitlementCombiner batchCombiner = task.get();
+                // Once decided, further entitlements would not be added to the combiner either.
+                if (!combiner.isDone() && outcome.failure == null) {
+                    combiner.add(batchCombiner.getResults());
+                }
+            }
+        } catch (EntitlementException e) {
+            outcome.fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome.fail(new EntitlementException(EntitlementException.INTERNAL_ERROR, e));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            outcome.fail(new EntitlementException(EntitlementException.INTERNAL_ERROR, cause));
+        } finally {
+            // Batches still queued once the evaluation is finished have nothing left to do.
+            for (Future<EntitlementCombiner> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private static Future<EntitlementCombiner> submit(ExecutorService pool, PrivilegeEvaluationTask task) {
+        try {
+            return pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<EntitlementCombiner> inCallingThread = new FutureTask<EntitlementCombiner>(task);
+            inCallingThread.run();
+            return inCallingThread;
+        }
+    }
+
+    private static List<IPrivilege> nextBatch(Iterator<IPrivilege> policies, int batchSize) {
+        List<IPrivilege> batch = new ArrayList<IPrivilege>(batchSize);
+        while (batch.size() < batchSize && policies.hasNext()) {
+            batch.add(policies.next());
+        }
+        return batch;
+    }
+
+    @Override
+    public EntitlementCombiner call() {
+        evaluatePolicies(policies.iterator());
+        return combiner;
+    }
+
+    private void evaluatePolicies(Iterator<IPrivilege> iterator) {
+        while (iterator.hasNext() && !outcome.isFinished()) {
+            List<Entitlement> entitlements;
+            try {
+                entitlements = evaluation.evaluate(iterator.next());
+            } catch (EntitlementException e) {
+                outcome.fail(e);
+                return;
+            }
+            if (entitlements != null) {
+                combiner.add(entitlements);
+                if (combiner.isDone()) {
+                    outcome.decided = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * State shared by all the batches of a single evaluation.
+     */
+    private static final class Outcome {
+        private volatile boolean decided;
+        private volatile EntitlementException failure;
+
+        private boolean isFinished() {
+            return decided || failure != null;
+        }
+
+        private synchronized void fail(EntitlementException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+}
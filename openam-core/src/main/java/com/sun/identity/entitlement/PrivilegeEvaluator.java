@@ -35,27 +35,31 @@ import static org.forgerock.openam.entitlement.utils.EntitlementUtils.getEntitle
 import java.security.Principal;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ExecutorService;
 
 import javax.security.auth.Subject;
 
+import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.openam.entitlement.PolicyConstants;
 import org.forgerock.openam.entitlement.PrivilegeEvaluatorContext;
 import org.forgerock.openam.session.util.AppTokenHandler;
 import org.forgerock.openam.utils.CollectionUtils;
+import org.forgerock.util.thread.ExecutorServiceFactory;
 
-import com.sun.identity.entitlement.interfaces.IThreadPool;
 import com.sun.identity.shared.debug.Debug;
 
 /**
  * This class evaluates entitlements of a subject for a given resource
  * and a environment parameters.
+ * <p/>
+ * When more than one evaluation thread is configured, the matching policies
+ * are divided into batches of {@value #TASKS_PER_THREAD}, each evaluated by a
+ * {@link PrivilegeEvaluationTask} in a shared pool of that many threads,
+ * otherwise they are evaluated in the calling thread. The pool is created by
+ * the {@link ExecutorServiceFactory}, so it is shut down with the server.
  */
 class PrivilegeEvaluator {
     private String realm = "/";
@@ -66,23 +70,17 @@ class PrivilegeEvaluator {
     private String requestedResourceName;
     private Map<String, Set<String>> envParameters;
     private ResourceSearchIndexes indexes;
-    private List<List<Entitlement>> resultQ = new
-        LinkedList<List<Entitlement>>();
     private Application application;
     private Set<String> actionNames;
     private EntitlementCombiner entitlementCombiner;
     private boolean recursive;
-    private EntitlementException eException;
-    private final Lock lock = new ReentrantLock();
-    private final Condition hasResults = lock.newCondition();
 
     // Static variables
-    // TODO determine number of tasks per thread
     private static int evalThreadSize = Evaluator.DEFAULT_POLICY_EVAL_THREAD;
+    // Largest number of policies evaluated by a single task.
     private static final int TASKS_PER_THREAD = 5;
 
-    private static final IThreadPool threadPool;
-    private static final boolean isMultiThreaded;
+    private static final ExecutorService evaluationPool;
 
     static {
         EntitlementConfiguration ec = getEntitlementConfiguration(SUPER_ADMIN_SUBJECT, "/");
@@ -99,8 +97,10 @@ class PrivilegeEvaluator {
                     e);
             }
         }
-        isMultiThreaded = evalThreadSize > 1;
-        threadPool = isMultiThreaded ? new EntitlementThreadPool(evalThreadSize) : new SequentialThreadPool();
+        evaluationPool = evalThreadSize > 1
+                ? InjectorHolder.getInstance(ExecutorServiceFactory.class).createFixedThreadPool(evalThreadSize,
+                        "PolicyEvaluation")
+                : null;
     }
 
     /**
@@ -201,7 +201,7 @@ class PrivilegeEvaluator {
 
         indexes = entitlement.getResourceSearchIndexes(adminSubject, realm);
 
-        List<Entitlement> results = evaluate(realm);
+        List<Entitlement> results = evaluate(realm, null);
         Entitlement result = results.get(0);
 
         for (String action : entitlement.getActionValues().keySet()) {
@@ -243,14 +243,42 @@ class PrivilegeEvaluator {
     ) throws EntitlementException {
 
 
+        return evaluate(realm, adminSubject, subject, applicationName, normalisedResourceName,
+                requestedResourceName, envParameters, recursive, null);
+    }
+
+    /**
+     * Returns list of entitlements which is entitled to a subject, using subject search indexes the caller has
+     * already obtained from {@link SubjectAttributesManager#getSubjectSearchFilter(Subject, String)}.
+     *
+     * @param adminSubject Administrator subject which is used for evaluation.
+     * @param subject Subject to be evaluated.
+     * @param applicationName Application Name.
+     * @param normalisedResourceName The normalised resource name.
+     * @param requestedResourceName The requested resource name.
+     * @param envParameters Environment parameters.
+     * @param recursive <code>true</code> for sub tree evaluation.
+     * @param subjectIndexes The subject search indexes, or null to obtain them.
+     * @return list of entitlements.
+     * @throws com.sun.identity.entitlement.EntitlementException if
+     * evaluation fails.
+     */
+    List<Entitlement> evaluate(
+        String realm,
+        Subject adminSubject,
+        Subject subject,
+        String applicationName,
+        String normalisedResourceName,
+        String requestedResourceName,
+        Map<String, Set<String>> envParameters,
+        boolean recursive,
+        Set<String> subjectIndexes
+    ) throws EntitlementException {
         init(adminSubject, subject, realm, applicationName,
             normalisedResourceName, requestedResourceName, null, envParameters, recursive);
         indexes = getApplication().getResourceSearchIndex(normalisedResourceName, realm);
 
-        return evaluate(realm);
-
-
-
+        return evaluate(realm, subjectIndexes);
     }
 
     /**
@@ -258,134 +286,52 @@ class PrivilegeEvaluator {
      *
      * @param realm
      *         the evaluation realm
+     * @param subjectIndexes
+     *         the subject search indexes, or null to obtain them
      *
      * @return a list of applicable entitlements
      *
      * @throws EntitlementException
      */
-    private List<Entitlement> evaluate(String realm) throws EntitlementException {
-        final Debug debug = PolicyConstants.DEBUG;
-
+    private List<Entitlement> evaluate(String realm, Set<String> subjectIndexes) throws EntitlementException {
         // Search for relevant policies.
-        final SubjectAttributesManager sam = SubjectAttributesManager.getInstance(adminSubject, realm);
-        final Set<String> subjectIndexes = sam.getSubjectSearchFilter(subject, applicationName);
+        if (subjectIndexes == null) {
+            final SubjectAttributesManager sam = SubjectAttributesManager.getInstance(adminSubject, realm);
+            subjectIndexes = sam.getSubjectSearchFilter(subject, applicationName);
+        }
         final PrivilegeIndexStore indexStore = PrivilegeIndexStore.getInstance(adminSubject, realm);
         final Iterator<IPrivilege> policyIterator = indexStore.search(realm, indexes, subjectIndexes, recursive);
 
-        int totalCount = 0;
-        IPrivilege policy;
-
-        // First collect policies to be evaluated locally.
-        final Set<IPrivilege> localBatch = new HashSet<IPrivilege>(2 * TASKS_PER_THREAD);
-        while (totalCount < TASKS_PER_THREAD && policyIterator.hasNext()) {
-            policy = policyIterator.next();
-
-            if (policy instanceof ReferralPrivilege) {
-                // We want to ignore referrals - deprecated.
-                continue;
-            }
-
-            if (debug.messageEnabled()) {
-                debug.message("[PolicyEval] PolicyEvaluator.evaluate");
-                debug.message("[PolicyEval] search result: privilege=" + policy.getName());
-            }
-
-            localBatch.add(policy);
-            totalCount++;
-        }
-
         // Define an evaluation context.
         final PrivilegeEvaluatorContext context =
                 new PrivilegeEvaluatorContext(realm, normalisedResourceName, applicationName);
+        context.setSubjectMemberships(getIdentityMemberships(subjectIndexes));
         final Object appToken = AppTokenHandler.getAndClear();
 
-        // Submit additional policies to be executed by worker threads.
-        final Set<IPrivilege> threadBatch = new HashSet<IPrivilege>(2 * TASKS_PER_THREAD);
-        boolean tasksSubmitted = false;
-
-        while (policyIterator.hasNext()) {
-            tasksSubmitted = true;
-            policy = policyIterator.next();
-
-            if (policy instanceof ReferralPrivilege) {
-                // We want to ignore referrals - deprecated.
-                continue;
-            }
-
-            if (debug.messageEnabled()) {
-                debug.message("[PolicyEval] PolicyEvaluator.evaluate");
-                debug.message("[PolicyEval] search result: privilege=" + policy.getName());
-            }
-
-            threadBatch.add(policy);
-            totalCount++;
-
-            if (threadBatch.size() == TASKS_PER_THREAD) {
-                final Set<IPrivilege> copiedBatch = new HashSet<IPrivilege>(threadBatch);
-                threadPool.submit(new PrivilegeTask(this, copiedBatch, isMultiThreaded, appToken, context));
-                threadBatch.clear();
-            }
-        }
-
-        if (!threadBatch.isEmpty()) {
-            // Submit any remaining policies.
-            threadPool.submit(new PrivilegeTask(this, threadBatch, isMultiThreaded, appToken, context));
-        }
-
-        // Submit the local policies.
-        final Runnable localTask = new PrivilegeTask(this, localBatch, tasksSubmitted, appToken, context);
-        localTask.run();
-
-        // Wait for submitted threads to complete evaluation.
-        if (tasksSubmitted) {
-            if (isMultiThreaded) {
-                receiveEvalResults(totalCount);
-            } else {
-                boolean isDone = false;
-                while (!resultQ.isEmpty() && !isDone) {
-                    entitlementCombiner.add(resultQ.remove(0));
-                    isDone = entitlementCombiner.isDone();
-                }
-            }
-        } else if (eException == null) {
-            boolean isDone = false;
-            while (!resultQ.isEmpty() && !isDone) {
-                entitlementCombiner.add(resultQ.remove(0));
-                isDone = entitlementCombiner.isDone();
-            }
-        }
-
-        if (eException != null) {
-            // Throw caught exception.
-            throw eException;
-        }
+        // Policies are evaluated as the search returns them.
+        PrivilegeEvaluationTask.evaluate(evaluationPool, new RequestEvaluation(context, appToken), policyIterator,
+                TASKS_PER_THREAD, entitlementCombiner);
 
         return entitlementCombiner.getResults();
     }
 
-    private void receiveEvalResults(int totalCount) {
-        int counter = 0;
-        lock.lock();
-        boolean isDone = (eException != null);
-
-        try {
-            while (!isDone && (counter < totalCount)) {
-                if (resultQ.isEmpty()) {
-                    hasResults.await();
-                }
-                while (!resultQ.isEmpty() && !isDone) {
-                    entitlementCombiner.add(resultQ.remove(0));
-                    isDone = entitlementCombiner.isDone();
-                    counter++;
-                }
+    /**
+     * The subject search indexes already hold the universal IDs of the identities the subject is a member of, as
+     * read by the subject attributes collector, so identity subjects can use them instead of asking the identity
+     * repository again.
+     */
+    private Set<String> getIdentityMemberships(Set<String> subjectIndexes) {
+        final String prefix = SubjectAttributesCollector.NAMESPACE_IDENTITY + "=";
+        final String allEntities = prefix + SubjectAttributesCollector.ATTR_NAME_ALL_ENTITIES;
+        Set<String> memberships = new HashSet<String>();
+        for (String index : subjectIndexes) {
+            if (index.startsWith(prefix) && !index.equals(allEntities)) {
+                memberships.add(index.substring(prefix.length()));
             }
-        } catch (InterruptedException ex) {
-            PolicyConstants.DEBUG.error("PrivilegeEvaluator.evaluate", ex);
-        } finally {
-            lock.unlock();
         }
+        return memberships;
     }
-    
+
     private Application getApplication()
         throws EntitlementException {
         if (application == null) {
@@ -399,61 +345,47 @@ class PrivilegeEvaluator {
         return application;
     }
 
-    class PrivilegeTask implements Runnable {
-        final PrivilegeEvaluator parent;
-        private final Set<IPrivilege> privileges;
-        private final boolean isThreaded;
-        private final Object context;
-        private final PrivilegeEvaluatorContext ctx;
-
-        PrivilegeTask(PrivilegeEvaluator parent, Set<IPrivilege> privileges,
-            boolean isThreaded, Object context, PrivilegeEvaluatorContext ctx) {
-            this.parent = parent;
-            this.privileges = privileges;
-            this.isThreaded = isThreaded;
+    /**
+     * Evaluates the policies for the current request on behalf of a {@link PrivilegeEvaluationTask}.
+     */
+    private final class RequestEvaluation implements PrivilegeEvaluationTask.PolicyEvaluation {
+        private final PrivilegeEvaluatorContext context;
+        private final Object appToken;
+
+        RequestEvaluation(PrivilegeEvaluatorContext context, Object appToken) {
             this.context = context;
-            this.ctx = ctx;
+            this.appToken = appToken;
+        }
+
+        @Override
+        public EntitlementCombiner newCombiner() throws EntitlementException {
+            EntitlementCombiner combiner = application.getEntitlementCombiner();
+            combiner.init(normalisedResourceName, requestedResourceName, actionNames, recursive, application);
+            return combiner;
         }
 
-        public void run() {
-            PrivilegeEvaluatorContext.setCurrent(ctx);
-            
+        @Override
+        public List<Entitlement> evaluate(IPrivilege policy) throws EntitlementException {
+            if (policy instanceof ReferralPrivilege) {
+                // We want to ignore referrals - deprecated.
+                return null;
+            }
+
+            final Debug debug = PolicyConstants.DEBUG;
+            if (debug.messageEnabled()) {
+                debug.message("[PolicyEval] PolicyEvaluator.evaluate");
+                debug.message("[PolicyEval] search result: privilege=" + policy.getName());
+            }
+
+            // Worker threads are shared between requests, so the context is set for every policy, and removed
+            // again so that the subject's memberships cannot leak into other evaluations.
+            PrivilegeEvaluatorContext previous = PrivilegeEvaluatorContext.getCurrent();
+            PrivilegeEvaluatorContext.setCurrent(context);
             try {
-                for (final IPrivilege eval : privileges) {
-                    List<Entitlement> entitlements = eval.evaluate(
-                                            parent.adminSubject,
-                                            parent.realm, parent.subject,
-                                            parent.applicationName, parent.normalisedResourceName,
-                                            parent.requestedResourceName,
-                                            parent.actionNames, parent.envParameters,
-                                            parent.recursive, context);
-
-                    if (entitlements != null) {
-                        if (isThreaded) {
-                            try {
-                                parent.lock.lock();
-                                parent.resultQ.add(entitlements);
-                                parent.hasResults.signal();
-                            } finally {
-                                parent.lock.unlock();
-                            }
-                        } else {
-                            parent.resultQ.add(entitlements);
-                        }
-                    }
-                }
-            } catch (EntitlementException ex) {
-                if (isThreaded) {
-                    try {
-                        parent.lock.lock();
-                        parent.eException = ex;
-                        parent.hasResults.signal();
-                    } finally {
-                        parent.lock.unlock();
-                    }
-                } else {
-                    parent.eException = ex;
-                }
+                return policy.evaluate(adminSubject, realm, subject, applicationName, normalisedResourceName,
+                        requestedResourceName, actionNames, envParameters, recursive, appToken);
+            } finally {
+                PrivilegeEvaluatorContext.setCurrent(previous);
             }
         }
     }
@@ -29,26 +29,25 @@
 
 package com.sun.identity.entitlement;
 
-import com.iplanet.am.util.Cache;
 import com.sun.identity.entitlement.interfaces.ResourceName;
 
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+
 /**
  * A {@link ResourceName} implementation that matches the resourcenames using regular expressions.
  */
 public class RegExResourceName implements ResourceName {
     private String delimiter = "/";
-    private static final ReadWriteLock patternCacheLock =
-        new ReentrantReadWriteLock();
 
     private static final int MAX_CACHE_SIZE = 1000;
-    private static Cache patternCache = new Cache(MAX_CACHE_SIZE);
+    private static final Cache<String, Pattern> patternCache =
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHE_SIZE).build();
 
     public Set<String> getServiceTypeNames() {
         return null;
@@ -74,12 +73,7 @@ public class RegExResourceName implements ResourceName {
                 return ResourceMatch.EXACT_MATCH;
             }
 
-            ResourceMatch match = resourceMatch(orig, target);
-            if (!match.equals(ResourceMatch.NO_MATCH)) {
-                result = match;
-            }
-
-            result = (wildcardCompare) ? patternMatch(orig, target) : match;
+            result = (wildcardCompare) ? patternMatch(orig, target) : resourceMatch(orig, target);
         }
         return result;
     }
@@ -169,26 +163,21 @@ public class RegExResourceName implements ResourceName {
     }
 
     private static Pattern getPatternFromCache(String strPattern) {
-        patternCacheLock.writeLock().lock();
-        try {
-            Pattern pattern = (Pattern)patternCache.get(strPattern);
-            if (pattern != null) {
-                return pattern;
-            }
+        Pattern pattern = patternCache.getIfPresent(strPattern);
+        if (pattern != null) {
+            return pattern;
+        }
 
-            // take every non-star character literally, and replace * with .*? to get a compilable regex
-            String buff = strPattern.replaceAll("([^*]+)", "\\\\Q$1\\\\E").replace("*", ".*?");
+        // take every non-star character literally, and replace * with .*? to get a compilable regex
+        String buff = strPattern.replaceAll("([^*]+)", "\\\\Q$1\\\\E").replace("*", ".*?");
 
-            // replace trailing .*? with .*
-            if(buff.endsWith(".*?")) {
-                buff = buff.substring(0, buff.length()-1);
-            }
-            pattern = Pattern.compile(buff + "(.*)");
-            patternCache.put(strPattern, pattern);
-            return pattern;
-        } finally {
-            patternCacheLock.writeLock().unlock();
+        // replace trailing .*? with .*
+        if(buff.endsWith(".*?")) {
+            buff = buff.substring(0, buff.length()-1);
         }
+        pattern = Pattern.compile(buff + "(.*)");
+        patternCache.put(strPattern, pattern);
+        return pattern;
     }
 
     public String[] split(String res) {
@@ -26,12 +26,13 @@
  */
 
 /*
- * Portions Copyrighted [2011] [ForgeRock AS]
+ * Portions Copyrighted 2011-2016 ForgeRock AS.
  */
 package com.sun.identity.entitlement.opensso;
 
 import java.util.Set;
 
+import com.sun.identity.entitlement.DecisionCache;
 import com.sun.identity.entitlement.util.NetworkMonitor;
 import com.sun.identity.shared.stats.StatsListener;
 import com.sun.identity.shared.stats.Stats;
@@ -61,12 +62,25 @@ public class EntitlementsStats implements StatsListener {
 		// Cache statistics
 		sb.append("\nPolicyCache: ");
 		sb.append(OpenSSOIndexStore.getNumCachedPolicies());
+		sb.append("\nPolicyCache hit rate: ");
+		sb.append(OpenSSOIndexStore.getPolicyCacheHitRate());
+		sb.append("\nPolicyCache evictions: ");
+		sb.append(OpenSSOIndexStore.getNumEvictedPolicies());
+		sb.append("\nPolicyCache realm quota rejections: ");
+		sb.append(OpenSSOIndexStore.getNumRejectedPolicies());
 		sb.append("\nReferralCache: ");
 		sb.append(OpenSSOIndexStore.getNumCachedReferrals());
 		sb.append("\nTotal policies: ");
 		sb.append(DataStore.getNumberOfPolicies());
 		sb.append("\nTotal referrals: ");
 		sb.append(DataStore.getNumberOfReferrals());
+		DecisionCache decisionCache = DecisionCache.getInstance();
+		if (decisionCache.isEnabled()) {
+			sb.append("\nDecisionCache: ");
+			sb.append(decisionCache.size());
+			sb.append("\nDecisionCache hit rate: ");
+			sb.append(decisionCache.getHitRate());
+		}
 
         sb.append("\n-----------------------------\n");
 		stats.record(sb.toString());
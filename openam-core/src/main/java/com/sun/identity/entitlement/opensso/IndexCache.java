@@ -24,7 +24,7 @@
  *
  * $Id: IndexCache.java,v 1.3 2009/12/12 00:03:13 veiming Exp $
  *
- * Portions copyright 2013 ForgeRock, Inc.
+ * Portions copyright 2013-2016 ForgeRock AS.
  */
 package com.sun.identity.entitlement.opensso;
 
@@ -32,11 +32,12 @@ import com.sun.identity.entitlement.ResourceSaveIndexes;
 import com.sun.identity.entitlement.ResourceSearchIndexes;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Caches the indexes which are stored in Directory Server.
+ * <p/>
+ * Each kind of index is held in an {@link IndexTrie} keyed by the lower cased index, so every index is kept in
+ * memory however many privileges share it, and lookups never wait for updates to complete.
  */
 public class IndexCache {
     public static final String HOST_ID = "host";
@@ -44,26 +45,10 @@ public class IndexCache {
     public static final String PATH_ID = "path";
     public static final String PARENTPATH_ID = "parentpath";
 
-    private static final int CACHE_BUCKET_LIMIT = 25;
-
-    private int size = 1000000;
-    private int initCapacity;
-    private Cache subjectIndexCache;
-    private Cache hostIndexCache;
-    private Cache pathIndexCache;
-    private Cache parentPathIndexCache;
-    private ReadWriteLock rwlock = new ReentrantReadWriteLock();
-
-    /**
-     * Constructs
-     *
-     * @param size Size of cache.
-     */
-    public IndexCache(int size) {
-        this.size = size;
-        initCapacity = (int) (size * 0.01d);
-        clearCaches();
-    }
+    private final IndexTrie subjectIndexCache = new IndexTrie();
+    private final IndexTrie hostIndexCache = new IndexTrie();
+    private final IndexTrie pathIndexCache = new IndexTrie();
+    private final IndexTrie parentPathIndexCache = new IndexTrie();
 
     /**
      * Caches indexes.
@@ -84,31 +69,9 @@ public class IndexCache {
         cache(dn, indexes.getParentPathIndexes(), parentPathIndexCache);
     }
 
-    private void cache(String dn, Set<String> indexes, Cache cache) {
-        rwlock.writeLock().lock();
-
-        try {
-            for (String s : indexes) {
-                String lc = s.toLowerCase();
-                Set<String> setDNs = (Set<String>)cache.get(lc);
-                if (setDNs == null) {
-                    setDNs = new HashSet<String>();
-                    cache.put(lc, setDNs);
-                    setDNs.add(dn);
-                } else {
-                    String cacheName = cache.getName();
-                    if (!CacheTaboo.isTaboo(cacheName, lc)) {
-                        if (setDNs.size() >= CACHE_BUCKET_LIMIT) {
-                            CacheTaboo.taboo(cacheName, lc);
-                            cache.remove(lc);
-                        } else {
-                            setDNs.add(dn);
-                        }
-                    }
-                }
-            }
-        } finally {
-            rwlock.writeLock().unlock();
+    private void cache(String dn, Set<String> indexes, IndexTrie cache) {
+        for (String s : indexes) {
+            cache.add(s.toLowerCase(), dn);
         }
     }
 
@@ -126,29 +89,9 @@ public class IndexCache {
         }
     }
 
-    private void clear(String dn, Set<String> indexes, Cache cache) {
-        rwlock.writeLock().lock();
-        try {
-            for (String s : indexes) {
-                Set<String> setDNs = (Set<String>)cache.get(s);
-                if (setDNs != null) {
-                    setDNs.remove(dn);
-                }
-            }
-        } finally {
-            rwlock.writeLock().unlock();
-        }
-    }
-
-    private synchronized void clearCaches() {
-        rwlock.writeLock().lock();
-        try {
-            subjectIndexCache = new Cache(SUBJECT_ID, initCapacity, size);
-            hostIndexCache = new Cache(HOST_ID, initCapacity, size);
-            pathIndexCache = new Cache(PATH_ID, initCapacity, size);
-            parentPathIndexCache = new Cache(PARENTPATH_ID, initCapacity, size);
-        } finally {
-            rwlock.writeLock().unlock();
+    private void clear(String dn, Set<String> indexes, IndexTrie cache) {
+        for (String s : indexes) {
+            cache.remove(s.toLowerCase(), dn);
         }
     }
 
@@ -165,69 +108,35 @@ public class IndexCache {
         Set<String> subjectIndexes,
         boolean bSubTree
     ) {
-        rwlock.readLock().lock();
-        try {
-            Set<String> results = new HashSet<String>();
-
-            boolean hasSubjectIndexes = (subjectIndexes != null) &&
-                !subjectIndexes.isEmpty();
+        Set<String> results = new HashSet<String>();
 
-            if (hasSubjectIndexes) {
-                for (String i : subjectIndexes) {
-                    Set<String> r = (Set<String>)subjectIndexCache.get(i);
-                    if (r != null) {
-                        results.addAll(r);
-                    }
-                }
-                results.retainAll(getHostIndexes(indexes));
-            } else {
-                results.addAll(getHostIndexes(indexes));
-            }
+        boolean hasSubjectIndexes = (subjectIndexes != null) &&
+            !subjectIndexes.isEmpty();
 
-            if (bSubTree) {
-                results.retainAll(getPathParentIndexes(indexes));
-            } else {
-                results.retainAll(getPathIndexes(indexes));
-            }
+        if (hasSubjectIndexes) {
+            results.addAll(getIndexes(subjectIndexes, subjectIndexCache));
+            results.retainAll(getIndexes(indexes.getHostIndexes(), hostIndexCache));
+        } else {
+            results.addAll(getIndexes(indexes.getHostIndexes(), hostIndexCache));
+        }
 
+        if (results.isEmpty()) {
             return results;
-        } finally {
-            rwlock.readLock().unlock();
         }
-    }
 
-    private Set<String> getPathParentIndexes(ResourceSearchIndexes indexes) {
-        Set<String> parentPathIndexes = indexes.getParentPathIndexes();
-        Set<String> results = new HashSet<String>();
-        for (String i : parentPathIndexes) {
-            Set<String> r = (Set<String>) parentPathIndexCache.get(
-                i.toLowerCase());
-            if (r != null) {
-                results.addAll(r);
-            }
+        if (bSubTree) {
+            results.retainAll(getIndexes(indexes.getParentPathIndexes(), parentPathIndexCache));
+        } else {
+            results.retainAll(getIndexes(indexes.getPathIndexes(), pathIndexCache));
         }
-        return results;
-    }
 
-    private Set<String> getPathIndexes(ResourceSearchIndexes indexes) {
-        Set<String> pathIndexes = indexes.getPathIndexes();
-        Set<String> results = new HashSet<String>();
-        for (String i : pathIndexes) {
-            Set<String> r = (Set<String>) pathIndexCache.get(i.toLowerCase());
-            if (r != null) {
-                results.addAll(r);
-            }
-        }return results;
+        return results;
     }
 
-    private Set<String> getHostIndexes(ResourceSearchIndexes indexes) {
+    private Set<String> getIndexes(Set<String> indexes, IndexTrie cache) {
         Set<String> results = new HashSet<String>();
-        Set<String> hostIndexes = indexes.getHostIndexes();
-        for (String i : hostIndexes) {
-            Set<String> r = (Set<String>) hostIndexCache.get(i.toLowerCase());
-            if (r != null) {
-                results.addAll(r);
-            }
+        for (String i : indexes) {
+            results.addAll(cache.get(i.toLowerCase()));
         }
         return results;
     }
@@ -0,0 +1,230 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement.opensso;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Radix tree mapping normalised index strings to the set of distinguished names of the privileges that carry them.
+ * <p/>
+ * Index strings such as host, path and parent path indexes share long common prefixes, so each distinct index is
+ * stored once along a path of shared edges rather than as a separate hash key.
+ * <p/>
+ * Writers are serialised on the tree. Readers never lock: edge labels are immutable, child arrays are replaced rather
+ * than modified, and the distinguished names at each node are held in a concurrent set, so a reader always sees a
+ * consistent tree while it is being updated.
+ */
+final class IndexTrie {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+
+    /**
+     * Associates the distinguished name with the index.
+     *
+     * @param index Normalised index.
+     * @param dn Distinguished name.
+     */
+    synchronized void add(String index, String dn) {
+        Node node = root;
+        int offset = 0;
+        while (offset < index.length()) {
+            int slot = node.slotOf(index.charAt(offset));
+            if (slot < 0) {
+                Node child = new Node(index.substring(offset));
+                node.insertChild(-(slot + 1), child);
+                node = child;
+                break;
+            }
+            Node child = node.children[slot];
+            int common = commonPrefixLength(child.label, index, offset);
+            if (common < child.label.length()) {
+                // Split the edge: a new node for the shared prefix takes the existing child's place.
+                Node split = new Node(child.label.substring(0, common));
+                split.children = new Node[] {child.withLabel(child.label.substring(common))};
+                node.replaceChild(slot, split);
+                child = split;
+            }
+            node = child;
+            offset += common;
+        }
+        node.addValue(dn);
+    }
+
+    /**
+     * Removes the association between the distinguished name and the index, pruning any nodes left empty.
+     *
+     * @param index Normalised index.
+     * @param dn Distinguished name.
+     */
+    synchronized void remove(String index, String dn) {
+        remove(root, index, 0, dn);
+    }
+
+    /**
+     * @param index Normalised index.
+     * @return The distinguished names associated with the index. Never null. The returned set reflects concurrent
+     * updates and must not be modified.
+     */
+    Set<String> get(String index) {
+        Node node = root;
+        int offset = 0;
+        while (offset < index.length()) {
+            int slot = node.slotOf(index.charAt(offset));
+            if (slot < 0) {
+                return Collections.emptySet();
+            }
+            node = node.children[slot];
+            if (!index.startsWith(node.label, offset)) {
+                return Collections.emptySet();
+            }
+            offset += node.label.length();
+        }
+        Set<String> values = node.values;
+        return values == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(values);
+    }
+
+    /**
+     * @return The number of distinct indexes with at least one distinguished name.
+     */
+    int size() {
+        return count(root);
+    }
+
+    /**
+     * @return true if the node is now redundant and can be removed from its parent.
+     */
+    private boolean remove(Node node, String index, int offset, String dn) {
+        if (offset == index.length()) {
+            if (node.values != null) {
+                node.values.remove(dn);
+                if (node.values.isEmpty()) {
+                    node.values = null;
+                }
+            }
+        } else {
+            int slot = node.slotOf(index.charAt(offset));
+            if (slot < 0) {
+                return false;
+            }
+            Node child = node.children[slot];
+            if (!index.startsWith(child.label, offset)) {
+                return false;
+            }
+            if (remove(child, index, offset + child.label.length(), dn)) {
+                node.removeChild(slot);
+            }
+        }
+        return node != root && node.values == null && node.children.length == 0;
+    }
+
+    private static int count(Node node) {
+        int count = node.values == null ? 0 : 1;
+        for (Node child : node.children) {
+            count += count(child);
+        }
+        return count;
+    }
+
+    private static int commonPrefixLength(String label, String index, int offset) {
+        int max = Math.min(label.length(), index.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == index.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Node of the tree. Children are kept sorted by the first character of their label, which is unique among
+     * siblings.
+     */
+    private static final class Node {
+        private final String label;
+        private volatile Node[] children = NO_CHILDREN;
+        private volatile Set<String> values;
+
+        private Node(String label) {
+            this.label = label;
+        }
+
+        private Node withLabel(String newLabel) {
+            Node copy = new Node(newLabel);
+            copy.children = children;
+            copy.values = values;
+            return copy;
+        }
+
+        /**
+         * @return the slot of the child whose label starts with the character, or (-(insertion point) - 1).
+         */
+        private int slotOf(char c) {
+            Node[] current = children;
+            int low = 0;
+            int high = current.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = current[mid].label.charAt(0);
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private void insertChild(int slot, Node child) {
+            Node[] current = children;
+            Node[] updated = new Node[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, slot);
+            updated[slot] = child;
+            System.arraycopy(current, slot, updated, slot + 1, current.length - slot);
+            children = updated;
+        }
+
+        private void replaceChild(int slot, Node child) {
+            Node[] updated = Arrays.copyOf(children, children.length);
+            updated[slot] = child;
+            children = updated;
+        }
+
+        private void removeChild(int slot) {
+            Node[] current = children;
+            Node[] updated = new Node[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, slot);
+            System.arraycopy(current, slot + 1, updated, slot, current.length - slot - 1);
+            children = updated;
+        }
+
+        private void addValue(String dn) {
+            Set<String> current = values;
+            if (current == null) {
+                current = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                current.add(dn);
+                values = current;
+            } else {
+                current.add(dn);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ package com.sun.identity.entitlement.opensso;
 import static org.forgerock.openam.entitlement.PolicyConstants.SUPER_ADMIN_SUBJECT;
 import static org.forgerock.openam.entitlement.utils.EntitlementUtils.getApplicationService;
 
+import com.sun.identity.entitlement.DecisionCache;
 import com.sun.identity.entitlement.EntitlementException;
 import com.sun.identity.entitlement.PrivilegeIndexStore;
 import org.forgerock.openam.entitlement.PolicyConstants;
@@ -78,6 +79,9 @@ public class NotificationServlet extends HttpServlet {
             String action = uri.substring(path.length());
             action = action.substring(CONTEXT_PATH.length() +1);
 
+            // Cached decisions may depend on the privilege or application that changed on another server.
+            DecisionCache.getInstance().invalidateAll();
+
             if (action.equals(PRIVILEGE_DELETED)) {
                 handlePrivilegeDeleted(req);
             } else if (action.equals(REFERRAL_DELETED)) {
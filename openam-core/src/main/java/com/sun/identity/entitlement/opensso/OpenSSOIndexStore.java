@@ -39,6 +39,7 @@ import com.iplanet.sso.SSOToken;
 import com.sun.identity.common.CaseInsensitiveHashMap;
 import com.sun.identity.entitlement.Application;
 import com.sun.identity.entitlement.ApplicationTypeManager;
+import com.sun.identity.entitlement.DecisionCache;
 import com.sun.identity.entitlement.EntitlementConfiguration;
 import com.sun.identity.entitlement.EntitlementException;
 import com.sun.identity.entitlement.EntitlementThreadPool;
@@ -57,6 +58,7 @@ import com.sun.identity.entitlement.util.SimpleIterator;
 import com.sun.identity.policy.PolicyConfig;
 import com.sun.identity.policy.PolicyManager;
 import com.sun.identity.security.AdminTokenAction;
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
 import com.sun.identity.shared.BufferedIterator;
 import com.sun.identity.sm.DNMapper;
 import com.sun.identity.sm.OrganizationConfigManager;
@@ -84,6 +86,12 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
     private static final int DEFAULT_CACHE_SIZE = 100000;
     private static final int DEFAULT_THREAD_SIZE = 1;
     private static final int DEFAULT_IDX_CACHE_SIZE = 100000;
+    /**
+     * System property for the largest share of the policy cache, as a percentage, that the policies of a single realm
+     * may use. Defaults to the whole cache.
+     */
+    public static final String POLICY_CACHE_REALM_QUOTA = "org.forgerock.openam.entitlement.policy.cache.realm.quota";
+    private static final int DEFAULT_REALM_QUOTA = 100;
     private static final PolicyCache policyCache;
     private static final PolicyCache referralCache;
     private static final int policyCacheSize;
@@ -103,9 +111,10 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
         policyCacheSize = getInteger(ec,
             EntitlementConfiguration.POLICY_CACHE_SIZE, DEFAULT_CACHE_SIZE);
         if (policyCacheSize > 0) {
-            policyCache = new PolicyCache("PolicyCache", policyCacheSize);
+            int realmQuota = SystemPropertiesManager.getAsInt(POLICY_CACHE_REALM_QUOTA, DEFAULT_REALM_QUOTA);
+            policyCache = new PolicyCache("PolicyCache", policyCacheSize, realmQuota);
             referralCache = new PolicyCache("ReferralPolicyCache",
-                policyCacheSize);
+                policyCacheSize, realmQuota);
         } else {
             policyCache = null;
             referralCache = null;
@@ -174,7 +183,7 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
             synchronized (indexCaches) {
                 indexCache = (IndexCache)indexCaches.get(realmDN);
                 if (indexCache == null) {
-                    indexCache = new IndexCache(indexCacheSize);
+                    indexCache = new IndexCache();
                     indexCaches.put(realmDN, indexCache);
                 }
             }
@@ -182,7 +191,7 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
                 referralIndexCache = (IndexCache)referralIndexCaches.get(
                     realmDN);
                 if (referralIndexCache == null) {
-                    referralIndexCache = new IndexCache(indexCacheSize);
+                    referralIndexCache = new IndexCache();
                     referralIndexCaches.put(realmDN, referralIndexCache);
                 }
             }
@@ -558,10 +567,6 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
     }
 
     private boolean isPolicyCacheBehind(String realm) {
-        if (!CacheTaboo.isEmpty()) {
-            return true;
-        }
-
         int cacheEntries = policyCache.getCount(realm);
         int totalPolicies = DataStore.getNumberOfPolicies(realm);
         if ((totalPolicies > 0) &&(cacheEntries < totalPolicies)) {
@@ -572,10 +577,6 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
     }
 
     private boolean isReferralCacheBehind(String realm) {
-        if (!CacheTaboo.isEmpty()) {
-            return true;
-        }
-
         int cacheEntries = referralCache.getCount(realm);
         int totalReferrals = DataStore.getNumberOfReferrals(realm);
         if ((totalReferrals > 0) && (cacheEntries < totalReferrals)) {
@@ -937,6 +938,15 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
     public static int getNumCachedReferrals() {
         return referralCache.getCount();
     }
+    public static long getNumEvictedPolicies() {
+        return policyCache == null ? 0 : policyCache.getEvictionCount();
+    }
+    public static long getNumRejectedPolicies() {
+        return policyCache == null ? 0 : policyCache.getRejectionCount();
+    }
+    public static double getPolicyCacheHitRate() {
+        return policyCache == null ? 0 : policyCache.getHitRate();
+    }
 
     @Override
     public boolean hasPrivilgesWithApplication(
@@ -1005,6 +1015,7 @@ public class OpenSSOIndexStore extends PrivilegeIndexStore {
                 indexCaches.remove(orgName);
                 referralIndexCaches.remove(orgName);
                 getApplicationService(SUPER_ADMIN_SUBJECT, orgName).clearCache();
+                DecisionCache.getInstance().invalidateAll();
             }
         }
     }
@@ -29,25 +29,77 @@
 
 package com.sun.identity.entitlement.opensso;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.RemovalCause;
+import org.forgerock.guava.common.cache.RemovalListener;
+import org.forgerock.guava.common.cache.RemovalNotification;
+import org.forgerock.guava.common.cache.Weigher;
+import org.forgerock.openam.entitlement.PolicyConstants;
+
+import com.sun.identity.entitlement.Entitlement;
+import com.sun.identity.entitlement.IPrivilege;
 import com.sun.identity.entitlement.Privilege;
-import java.util.HashMap;
 import com.sun.identity.entitlement.ReferralPrivilege;
-import java.util.Map;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * Policy Cache
+ * Policy Cache.
+ * <p/>
+ * A concurrent cache of privileges by DN. Reads take no lock. The cache is bounded by the total weight of its
+ * privileges, where a privilege weighs one unit per resource name, so that a privilege protecting a single resource
+ * counts as one policy towards the configured size. Each realm may also be given a quota, the largest share of the
+ * cache its privileges may use, so that one large realm cannot push the privileges of every other realm out of the
+ * cache. Privileges that do not fit in the quota of their realm are not cached.
+ * <p/>
+ * The number of cached privileges is counted for each realm, so that callers can tell whether all the privileges of
+ * a realm are cached. Privileges evicted from the cache are no longer counted.
  */
 class PolicyCache {
-    private Cache cache;
-    private HashMap<String, Integer> countByRealm;
-    private ReadWriteLock rwlock = new ReentrantReadWriteLock();
 
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    private final String name;
+    private final Cache<String, CachedPrivilege> cache;
+    private final long realmQuota;
+    private final ConcurrentMap<String, RealmUsage> usageByRealm = new ConcurrentHashMap<String, RealmUsage>();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * Constructs a cache with no realm quota.
+     *
+     * @param name Name of the cache.
+     * @param size Largest total weight of the cached privileges.
+     */
     PolicyCache(String name, int size) {
-        int initCapacity = (int) (size * 0.01d);
-        cache = new Cache(name, initCapacity, size);
-        countByRealm = new HashMap<String, Integer>();
+        this(name, size, 100);
+    }
+
+    /**
+     * Constructs a cache.
+     *
+     * @param name Name of the cache.
+     * @param size Largest total weight of the cached privileges.
+     * @param realmQuotaPercent Largest share of the cache a single realm may use, as a percentage of its size.
+     */
+    PolicyCache(String name, int size, int realmQuotaPercent) {
+        this.name = name;
+        long maximumWeight = Math.max(size, 0);
+        int quotaPercent = Math.min(Math.max(realmQuotaPercent, 1), 100);
+        this.realmQuota = Math.max(1L, maximumWeight * quotaPercent / 100);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher(new PrivilegeWeigher())
+                .removalListener(new UsageListener())
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .recordStats()
+                .build();
     }
 
     /**
@@ -55,20 +107,10 @@ class PolicyCache {
      *
      * @param dn DN of the privilege object.
      * @param p Privilege.
+     * @param realm Realm of the privilege.
      */
     public void cache(String dn, Privilege p, String realm) {
-        rwlock.writeLock().lock();
-        try {
-            Object e = cache.put(dn, p);
-            if (e == null) {
-                // Update count only if added, not if replaced
-                Integer i = countByRealm.get(realm);
-                int count = (i == null) ? 1 : i.intValue() + 1;
-                countByRealm.put(realm, count);
-            }
-        } finally {
-            rwlock.writeLock().unlock();
-        }
+        put(dn, p, realm, true);
     }
 
     /**
@@ -76,74 +118,58 @@ class PolicyCache {
      *
      * @param dn DN of the referral privilege object.
      * @param p Referral privilege.
+     * @param realm Realm of the referral privilege.
      */
     public void cache(String dn, ReferralPrivilege p, String realm) {
-        rwlock.writeLock().lock();
-        try {
-            cache.put(dn, p);
-        } finally {
-            rwlock.writeLock().unlock();
-        }
+        put(dn, p, realm, true);
     }
 
-    public void cache(Map<String, Privilege> privileges, boolean force) {
-        rwlock.writeLock().lock();
-        try {
-            for (String dn : privileges.keySet()) {
-                if (force) {
-                    cache.put(dn, privileges.get(dn));
-                } else {
-                    Privilege p = (Privilege)privileges.get(dn);
-                    if (p == null) {
-                        cache.put(dn, privileges.get(dn));
-                    }
-                }
-            }
-        } finally {
-            rwlock.writeLock().unlock();
+    /**
+     * Caches privileges of a realm. Each privilege is cached independently, so other threads may read privileges
+     * from the cache while they are being added.
+     *
+     * @param privileges Privileges by DN.
+     * @param realm Realm of the privileges.
+     * @param force Whether to replace privileges that are already cached.
+     */
+    public void cache(Map<String, Privilege> privileges, String realm, boolean force) {
+        for (Map.Entry<String, Privilege> entry : privileges.entrySet()) {
+            put(entry.getKey(), entry.getValue(), realm, force);
         }
     }
 
+    /**
+     * Removes a privilege from the cache.
+     *
+     * @param dn DN of the privilege object.
+     * @param realm Realm of the privilege.
+     */
     public void decache(String dn, String realm) {
-        rwlock.writeLock().lock();
-        try {
-            Object p = cache.remove(dn);
-            if (p != null) {
-                // Update cache only if entry removed from cache
-                Integer i = countByRealm.get(realm);
-                if (i != null) {
-                    countByRealm.put(realm, i.intValue() - 1);
-                }
-            }
-        } finally {
-            rwlock.writeLock().unlock();
-        }
+        // The removal listener updates the realm usage.
+        cache.invalidate(dn);
     }
 
     public Privilege getPolicy(String dn) {
-        rwlock.readLock().lock();
-        try {
-            return (Privilege)cache.get(dn);
-        } finally {
-            rwlock.readLock().unlock();
-        }
+        CachedPrivilege cached = cache.getIfPresent(dn);
+        return cached != null && cached.privilege instanceof Privilege ? (Privilege) cached.privilege : null;
+    }
+
+    public ReferralPrivilege getReferral(String dn) {
+        CachedPrivilege cached = cache.getIfPresent(dn);
+        return cached != null && cached.privilege instanceof ReferralPrivilege
+                ? (ReferralPrivilege) cached.privilege : null;
     }
-    
+
     /**
      * Returns the number of cached policies in the given realm
-     * 
+     *
      * @param realm
      *            realm name
      * @return cached policies for the realm
      */
     public int getCount(String realm) {
-        rwlock.readLock().lock();
-        try {
-            Integer integer = countByRealm.get(realm);
-            return (integer != null) ? integer : 0;
-        } finally {
-            rwlock.readLock().unlock();
-        }
+        RealmUsage usage = usageByRealm.get(realm);
+        return usage == null ? 0 : usage.count.get();
     }
 
     /**
@@ -151,24 +177,156 @@ class PolicyCache {
      * @return cached policies.
      */
     public int getCount() {
-        rwlock.readLock().lock();
-        try {
-            int total = 0;
-            for (Integer i : countByRealm.values()) {
-                total += i;
+        int total = 0;
+        for (RealmUsage usage : usageByRealm.values()) {
+            total += usage.count.get();
+        }
+        return total;
+    }
+
+    /**
+     * @param realm realm name
+     * @return the weight of the cached privileges of the realm.
+     */
+    public long getWeight(String realm) {
+        RealmUsage usage = usageByRealm.get(realm);
+        return usage == null ? 0 : usage.weight.get();
+    }
+
+    /**
+     * @return the number of privileges evicted to make room for others.
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return the number of privileges not cached because their realm had used up its quota.
+     */
+    public long getRejectionCount() {
+        return rejections.get();
+    }
+
+    /**
+     * @return the fraction of look ups that found a cached privilege.
+     */
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    private void put(String dn, IPrivilege privilege, String realm, boolean force) {
+        CachedPrivilege replaced = cache.getIfPresent(dn);
+        if (!force && replaced != null) {
+            return;
+        }
+
+        CachedPrivilege cached = new CachedPrivilege(privilege, realm);
+        RealmUsage usage = getUsage(realm);
+        // The privilege being replaced is released once the new one is cached, so it does not count towards the quota.
+        int replacedWeight = replaced != null && replaced.realm.equals(realm) ? replaced.weight : 0;
+        if (!usage.reserve(cached.weight, replacedWeight, realmQuota)) {
+            rejections.incrementAndGet();
+            if (PolicyConstants.DEBUG.messageEnabled()) {
+                PolicyConstants.DEBUG.message("PolicyCache.cache: " + name + " quota of realm " + realm
+                        + " used up, not caching " + dn);
             }
-            return total;
-        } finally {
-            rwlock.readLock().unlock();
+            // The cached privilege, if any, is out of date.
+            cache.invalidate(dn);
+            return;
         }
+
+        // Realm usage is released by the removal listener when the privilege is replaced or evicted.
+        cache.put(dn, cached);
     }
 
-    public ReferralPrivilege getReferral(String dn) {
-        rwlock.readLock().lock();
-        try {
-            return (ReferralPrivilege)cache.get(dn);
-        } finally {
-            rwlock.readLock().unlock();
+    private RealmUsage getUsage(String realm) {
+        RealmUsage usage = usageByRealm.get(realm);
+        if (usage == null) {
+            RealmUsage newUsage = new RealmUsage();
+            usage = usageByRealm.putIfAbsent(realm, newUsage);
+            if (usage == null) {
+                usage = newUsage;
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * A cached privilege, with the realm and weight it is accounted under.
+     */
+    private static final class CachedPrivilege {
+        private final IPrivilege privilege;
+        private final String realm;
+        private final int weight;
+
+        private CachedPrivilege(IPrivilege privilege, String realm) {
+            this.privilege = privilege;
+            this.realm = realm;
+            this.weight = weigh(privilege);
+        }
+
+        private static int weigh(IPrivilege privilege) {
+            int resources = 0;
+            if (privilege instanceof Privilege) {
+                Entitlement entitlement = ((Privilege) privilege).getEntitlement();
+                Set<String> resourceNames = entitlement == null ? null : entitlement.getResourceNames();
+                resources = resourceNames == null ? 0 : resourceNames.size();
+            } else if (privilege instanceof ReferralPrivilege) {
+                Map<String, Set<String>> resourcesByApplication =
+                        ((ReferralPrivilege) privilege).getMapApplNameToResources();
+                if (resourcesByApplication != null) {
+                    for (Set<String> resourceNames : resourcesByApplication.values()) {
+                        resources += resourceNames == null ? 0 : resourceNames.size();
+                    }
+                }
+            }
+            return Math.max(1, resources);
+        }
+    }
+
+    /**
+     * Number and weight of the cached privileges of a realm.
+     */
+    private static final class RealmUsage {
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong weight = new AtomicLong();
+
+        private boolean reserve(int privilegeWeight, int replacedWeight, long quota) {
+            long current;
+            do {
+                current = weight.get();
+                if (current - replacedWeight + privilegeWeight > quota) {
+                    return false;
+                }
+            } while (!weight.compareAndSet(current, current + privilegeWeight));
+            count.incrementAndGet();
+            return true;
+        }
+
+        private void release(int privilegeWeight) {
+            weight.addAndGet(-privilegeWeight);
+            count.decrementAndGet();
+        }
+    }
+
+    private static final class PrivilegeWeigher implements Weigher<String, CachedPrivilege> {
+        @Override
+        public int weigh(String dn, CachedPrivilege cached) {
+            return cached.weight;
+        }
+    }
+
+    private final class UsageListener implements RemovalListener<String, CachedPrivilege> {
+        @Override
+        public void onRemoval(RemovalNotification<String, CachedPrivilege> notification) {
+            CachedPrivilege cached = notification.getValue();
+            if (cached == null) {
+                return;
+            }
+            getUsage(cached.realm).release(cached.weight);
+            if (notification.getCause() == RemovalCause.SIZE && PolicyConstants.DEBUG.messageEnabled()) {
+                PolicyConstants.DEBUG.message("PolicyCache: " + name + " evicted " + notification.getKey());
+            }
         }
     }
 }
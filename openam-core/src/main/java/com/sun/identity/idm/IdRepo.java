@@ -24,11 +24,12 @@
  *
  * $Id: IdRepo.java,v 1.8 2009/07/02 20:33:30 hengming Exp $
  *
- * Portions Copyrighted 2013-2015 ForgeRock AS.
+ * Portions Copyrighted 2013-2016 ForgeRock AS.
  */
 package com.sun.identity.idm;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -202,6 +203,38 @@ public abstract class IdRepo {
     public abstract Map<String, Set<String>> getAttributes(SSOToken token, IdType type, String name,
             Set<String> attrNames) throws IdRepoException, SSOException;
 
+    /**
+     * Returns requested attributes and values of several objects of the same type. Plugins that can read many
+     * objects with a single request should override this method; by default each object is read in turn.
+     *
+     * @param token
+     *     Single sign on token of identity performing the task.
+     * @param type
+     *     Identity type of the objects.
+     * @param names
+     *     Names of the objects of interest.
+     * @param attrNames
+     *     Set of attribute names to be read
+     * @return
+     *     Map of object name to its map of attribute-values. Objects that do not exist are not included.
+     * @throws IdRepoException If there are repository related error conditions.
+     * @throws SSOException If identity's single sign on token is invalid.
+     */
+    public Map<String, Map<String, Set<String>>> getAttributes(SSOToken token, IdType type, Set<String> names,
+            Set<String> attrNames) throws IdRepoException, SSOException {
+        Map<String, Map<String, Set<String>>> results = new HashMap<>(names.size());
+        for (String name : names) {
+            try {
+                results.put(name, getAttributes(token, type, name, attrNames));
+            } catch (IdRepoException e) {
+                if (!IdRepoErrorCode.TYPE_NOT_FOUND.equals(e.getErrorCode())) {
+                    throw e;
+                }
+            }
+        }
+        return results;
+    }
+
     /**
      * Returns requested binary attributes as an array of bytes.
      *
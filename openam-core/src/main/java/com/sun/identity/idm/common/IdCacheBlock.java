@@ -29,11 +29,21 @@
 
 package com.sun.identity.idm.common;
 
+import static org.forgerock.openam.utils.Time.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import com.iplanet.am.sdk.common.CacheBlockBase;
 import com.sun.identity.shared.debug.Debug;
 import com.iplanet.am.util.SystemProperties;
+import org.forgerock.util.annotations.VisibleForTesting;
 
 /**
  * This class represents the value part stored in the cache. Each IdCacheBlock
@@ -60,6 +70,13 @@ import com.iplanet.am.util.SystemProperties;
  * prevent un-necessary directory calls for non-existent entry attributes.
  * 
  * The attribute copy is dirtied by removing the entries which get modified.
+ *
+ * <p>
+ * Attributes whose values change without the entry itself being modified,
+ * such as group membership, can be given their own expiry time in seconds
+ * with the {@value #ATTRIBUTE_EXPIRE_TIMES_KEY} property, for example
+ * <code>isMemberOf=60,inetUserStatus=300</code>. Once expired, such
+ * attributes are read from the data store again.
  */
 public class IdCacheBlock extends CacheBlockBase {
 
@@ -79,11 +96,22 @@ public class IdCacheBlock extends CacheBlockBase {
 
     protected static long ENTRY_DEFAULT_EXPIRE_TIME;
 
+    protected static final String ATTRIBUTE_EXPIRE_TIMES_KEY =
+        "com.sun.identity.idm.cache.attribute.expire.times";
+
     private static final Debug DEBUG = Debug.getInstance("amIdm");
 
+    // Lower case attribute name -> time in milliseconds its values are cached for
+    private static final Map<String, Long> ATTRIBUTE_EXPIRE_TIMES;
+
     // Variable to store the fully qualified names for identities
     private Set fullyQualifiedNames;
 
+    private final Map<String, Long> attributeExpireTimes;
+
+    // Lower case attribute name -> time at which its cached values expire
+    private final ConcurrentMap<String, Long> attributeExpiryTimes = new ConcurrentHashMap<>();
+
     static {
         ENTRY_EXPIRATION_ENABLED_FLAG = SystemProperties.getAsBoolean(ENTRY_EXPIRATION_ENABLED_KEY, false);
         if (ENTRY_EXPIRATION_ENABLED_FLAG) {
@@ -91,6 +119,36 @@ public class IdCacheBlock extends CacheBlockBase {
             ENTRY_USER_EXPIRE_TIME = SystemProperties.getAsInt(ENTRY_USER_EXPIRE_TIME_KEY, 15) * 60000;
             ENTRY_DEFAULT_EXPIRE_TIME = SystemProperties.getAsInt(ENTRY_DEFAULT_EXPIRE_TIME_KEY, 30) * 60000;
         }
+        ATTRIBUTE_EXPIRE_TIMES = parseAttributeExpireTimes(SystemProperties.get(ATTRIBUTE_EXPIRE_TIMES_KEY));
+    }
+
+    /**
+     * Parses a comma separated list of <code>attribute=seconds</code> pairs.
+     *
+     * @param value The property value. May be null.
+     * @return lower case attribute names mapped to expiry times in milliseconds.
+     */
+    @VisibleForTesting
+    static Map<String, Long> parseAttributeExpireTimes(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> expireTimes = new HashMap<>();
+        for (String pair : value.split(",")) {
+            int index = pair.indexOf('=');
+            try {
+                if (index < 1) {
+                    throw new NumberFormatException();
+                }
+                long seconds = Long.parseLong(pair.substring(index + 1).trim());
+                if (seconds > 0) {
+                    expireTimes.put(pair.substring(0, index).trim().toLowerCase(), TimeUnit.SECONDS.toMillis(seconds));
+                }
+            } catch (NumberFormatException e) {
+                DEBUG.warning("IdCacheBlock: ignoring invalid " + ATTRIBUTE_EXPIRE_TIMES_KEY + " entry: " + pair);
+            }
+        }
+        return Collections.unmodifiableMap(expireTimes);
     }
 
     public Set getFullyQualifiedNames() {
@@ -118,10 +176,74 @@ public class IdCacheBlock extends CacheBlockBase {
     }
 
     public IdCacheBlock(String entryDN, boolean validEntry) {
-        super(entryDN, validEntry);
+        this(entryDN, validEntry, ATTRIBUTE_EXPIRE_TIMES);
     }
 
     public IdCacheBlock(String entryDN, String orgDN, boolean validEntry) {
         super(entryDN, orgDN, validEntry);
+        this.attributeExpireTimes = ATTRIBUTE_EXPIRE_TIMES;
+    }
+
+    @VisibleForTesting
+    IdCacheBlock(String entryDN, boolean validEntry, Map<String, Long> attributeExpireTimes) {
+        super(entryDN, validEntry);
+        this.attributeExpireTimes = attributeExpireTimes;
+    }
+
+    @Override
+    public void putAttributes(String principalDN, Map attributes, Set inAccessibleAttrNames, boolean isCompleteSet,
+            boolean byteValues) {
+        super.putAttributes(principalDN, attributes, inAccessibleAttrNames, isCompleteSet, byteValues);
+        if (!attributeExpireTimes.isEmpty()) {
+            long now = currentTimeMillis();
+            recordExpiryTimes(attributes.keySet(), now);
+            if (inAccessibleAttrNames != null) {
+                recordExpiryTimes(inAccessibleAttrNames, now);
+            }
+        }
+    }
+
+    private void recordExpiryTimes(Set attrNames, long now) {
+        for (Object attrName : attrNames) {
+            String name = ((String) attrName).toLowerCase();
+            Long expireTime = attributeExpireTimes.get(name);
+            if (expireTime != null) {
+                attributeExpiryTimes.put(name, now + expireTime);
+            }
+        }
+    }
+
+    /**
+     * Removes the cached values of any attributes that have their own expiry
+     * time and have expired, so that they are read from the data store again.
+     *
+     * @return true if any attributes were removed.
+     */
+    public boolean removeExpiredAttributes() {
+        if (attributeExpiryTimes.isEmpty()) {
+            return false;
+        }
+        long now = currentTimeMillis();
+        Set<String> expired = new HashSet<>();
+        for (Map.Entry<String, Long> entry : attributeExpiryTimes.entrySet()) {
+            if (entry.getValue() <= now && attributeExpiryTimes.remove(entry.getKey(), entry.getValue())) {
+                expired.add(entry.getKey());
+            }
+        }
+        if (expired.isEmpty()) {
+            return false;
+        }
+        if (DEBUG.messageEnabled()) {
+            DEBUG.message("IdCacheBlock.removeExpiredAttributes(): Attributes " + expired + " of entry "
+                    + getEntryDN() + " expired.");
+        }
+        removeAttributes(expired);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        attributeExpiryTimes.clear();
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.idm.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.forgerock.i18n.LocalizedIllegalArgumentException;
+import org.forgerock.openam.ldap.LDAPUtils;
+import org.forgerock.opendj.ldap.DN;
+
+import com.sun.identity.common.DNUtils;
+
+/**
+ * Indexes the keys of the identity cache under the DN of every entry they are below, so that the cache entries
+ * affected by a change to an entry can be found without visiting every cache entry.
+ * <p/>
+ * Keys are lower case universal identifiers, for example
+ * <code>id=demo,ou=user,o=sub,ou=services,dc=openam,dc=forgerock,dc=org</code>, which is indexed under itself,
+ * <code>ou=user,o=sub,ou=services,dc=openam,dc=forgerock,dc=org</code> and so on up to <code>dc=org</code>. DNs are
+ * normalised with {@link DNUtils#normalizeDN(DN)}, as are the DNs of changed entries.
+ * <p/>
+ * The keys of a DN are changed while holding their lock, and the DN is removed under the same lock once it has no
+ * keys left, so that a key cannot be added to keys which are no longer indexed.
+ */
+final class IdCacheDNIndex {
+
+    private final ConcurrentMap<String, Set<String>> keysByDN = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes a cache key.
+     *
+     * @param key The cache key.
+     */
+    void add(String key) {
+        for (String dn : getDNs(key)) {
+            add(dn, key);
+        }
+    }
+
+    private void add(String dn, String key) {
+        while (true) {
+            Set<String> keys = keysByDN.get(dn);
+            if (keys == null) {
+                Set<String> newKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+                keys = keysByDN.putIfAbsent(dn, newKeys);
+                if (keys == null) {
+                    keys = newKeys;
+                }
+            }
+            synchronized (keys) {
+                // Unless the keys were removed from the index while waiting for their lock
+                if (keysByDN.get(dn) == keys) {
+                    keys.add(key);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a cache key from the index.
+     *
+     * @param key The cache key.
+     */
+    void remove(String key) {
+        for (String dn : getDNs(key)) {
+            Set<String> keys = keysByDN.get(dn);
+            if (keys == null) {
+                continue;
+            }
+            synchronized (keys) {
+                if (keys.remove(key) && keys.isEmpty()) {
+                    keysByDN.remove(dn, keys);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cache keys at or below a DN.
+     *
+     * @param dn The DN.
+     * @return a copy of the keys.
+     */
+    Set<String> getKeys(String dn) {
+        Set<String> keys = keysByDN.get(normalize(dn));
+        return keys == null ? Collections.<String>emptySet() : new HashSet<>(keys);
+    }
+
+    /**
+     * @return the number of DNs indexed.
+     */
+    int size() {
+        return keysByDN.size();
+    }
+
+    /**
+     * Returns the normalised DN and every parent DN. A name which is not a DN is only indexed under itself, in lower
+     * case.
+     */
+    static List<String> getDNs(String name) {
+        List<String> dns = new ArrayList<>();
+        try {
+            for (DN dn = LDAPUtils.newDN(name); dn != null && !dn.isRootDN(); dn = dn.parent()) {
+                dns.add(DNUtils.normalizeDN(dn));
+            }
+        } catch (LocalizedIllegalArgumentException e) {
+            dns.clear();
+        }
+        if (dns.isEmpty()) {
+            dns.add(name.toLowerCase());
+        }
+        return dns;
+    }
+
+    private static String normalize(String name) {
+        String dn = null;
+        try {
+            dn = DNUtils.normalizeDN(name);
+        } catch (LocalizedIllegalArgumentException e) {
+            // Not a DN
+        }
+        return dn == null ? name.toLowerCase() : dn;
+    }
+}
@@ -60,12 +60,20 @@ import java.util.concurrent.ConcurrentMap;
 
 import org.forgerock.guava.common.cache.Cache;
 import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.RemovalCause;
+import org.forgerock.guava.common.cache.RemovalListener;
+import org.forgerock.guava.common.cache.RemovalNotification;
 import org.forgerock.openam.utils.CrestQuery;
 import org.forgerock.util.thread.listener.ShutdownListener;
 import org.forgerock.util.thread.listener.ShutdownManager;
 
 /*
  * Class which provides caching on top of available IdRepoLDAPServices.
+ *
+ * Cache blocks are keyed by the lower case universal identifier of the
+ * identity, which is made up of its name, type and realm. The keys are also
+ * indexed by the normalised DN of every entry they are below, so that a change
+ * to an entry only visits the cache blocks it affects.
  */
 public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServices, ConfigurationListener {
 
@@ -80,7 +88,9 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
     private static IdCachedServicesImpl instance;
 
     // Class Private
-    private Cache<String, IdCacheBlock> idRepoCache;
+    private volatile Cache<String, IdCacheBlock> idRepoCache;
+
+    private volatile IdCacheDNIndex dnIndex;
 
     private IdCacheStats cacheStats;
 
@@ -118,12 +128,59 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
     }
 
     private void initializeCache() {
-        idRepoCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        final IdCacheDNIndex index = new IdCacheDNIndex();
+        idRepoCache = CacheBuilder.newBuilder().maximumSize(maxSize)
+                .removalListener(new RemovalListener<String, IdCacheBlock>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, IdCacheBlock> notification) {
+                        if (notification.getCause() == RemovalCause.REPLACED) {
+                            return;
+                        }
+                        unindex(index, notification.getKey());
+                        if (notification.wasEvicted() && MonitoringUtil.isRunning()
+                                && ((monIdRepo = Agent.getIdrepoSvcMBean()) != null)) {
+                            monIdRepo.incCacheEvictions(getSize());
+                        }
+                    }
+                }).build();
+        dnIndex = index;
     }
 
     private void resetCache(int maxCacheSize) {
+        Cache<String, IdCacheBlock> oldCache = idRepoCache;
         setMaxSize(maxCacheSize);
-        clearCache();
+        initializeCache();
+        oldCache.invalidateAll();
+    }
+
+    private void putInCache(String dn, IdCacheBlock cb) {
+        // Index once cached; a removal of the key which overlaps indexes it again when it finds the key cached.
+        idRepoCache.put(dn, cb);
+        dnIndex.add(dn);
+    }
+
+    // Removes the key from the index, unless it has been cached again in the meantime
+    private void unindex(IdCacheDNIndex index, String dn) {
+        index.remove(dn);
+        if (idRepoCache.asMap().containsKey(dn)) {
+            index.add(dn);
+        }
+    }
+
+    // Returns the cache block for the universal identifier, without any expired attributes
+    private IdCacheBlock getCacheBlock(String dn) {
+        IdCacheBlock cb = idRepoCache.getIfPresent(dn);
+        if (cb != null) {
+            cb.removeExpiredAttributes();
+        }
+        return cb;
+    }
+
+    private void recordCacheMiss() {
+        if (MonitoringUtil.isRunning() &&
+            ((monIdRepo = Agent.getIdrepoSvcMBean()) != null)) {
+            monIdRepo.incCacheMisses(getSize());
+        }
     }
 
     /**
@@ -191,22 +248,19 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
     // Update/Dirty methods of this class.
     // *************************************************************************
     private void removeCachedAttributes(String affectDNs, Set attrNames) {
-        for (String key : idRepoCache.asMap().keySet()) {
-            key = DNUtils.normalizeDN(key);
-            int l1 = key.length();
-            int l2 = affectDNs.length();
-            if (key.regionMatches(true, (l1 - l2), affectDNs, 0, l2)) {
-                // key ends with 'affectDN' string
-                IdCacheBlock cb = idRepoCache.getIfPresent(key);
-                if (cb != null) {
-                    // key ends with 'affectDN' string
-                    if ((attrNames != null) &&
-                        !cb.hasExpiredAndUpdated() && cb.isExists()) {
-                        cb.removeAttributes(attrNames);
-                    } else {
-                        cb.clear();
-                    }
+        for (String key : dnIndex.getKeys(affectDNs)) {
+            // key is at or below 'affectDN'
+            IdCacheBlock cb = idRepoCache.getIfPresent(key);
+            if (cb != null) {
+                if ((attrNames != null) &&
+                    !cb.hasExpiredAndUpdated() && cb.isExists()) {
+                    cb.removeAttributes(attrNames);
+                } else {
+                    cb.clear();
                 }
+            } else {
+                // The key was indexed after it had already been removed from the cache
+                unindex(dnIndex, key);
             }
         }
     }
@@ -220,9 +274,8 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
      * EventService notifies that all entries have been modified (or should be
      * marked dirty).
      */
-    public synchronized void clearCache() {
+    public void clearCache() {
         idRepoCache.invalidateAll();
-        initializeCache();
     }
 
     /**
@@ -369,8 +422,9 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         AMHashMap attributes;
 
         // Check in the cache
-        IdCacheBlock cb = idRepoCache.getIfPresent(dn);
+        IdCacheBlock cb = getCacheBlock(dn);
         if (cb == null) { // Entry not present in cache
+            recordCacheMiss();
             if (DEBUG.messageEnabled()) {
                 DEBUG.message("IdCachedServicesImpl.getAttributes(): "
                         + "NO entry found in Cachefor key = " + dn
@@ -389,7 +443,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
             cb = new IdCacheBlock(dn, true);
             cb.putAttributes(principalDN, attributes, missAttrNames, false,
                     !isStringValues);
-            idRepoCache.put(dn, cb);
+            putInCache(dn, cb);
         } else { // Entry present in cache
             attributes = (AMHashMap) cb.getAttributes(principalDN, attrNames,
                     !isStringValues);
@@ -399,6 +453,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
             // found in DS
             Set missAttrNames = attributes.getMissingKeys(attrNames);
             if (!missAttrNames.isEmpty()) {
+                recordCacheMiss();
                 if (DEBUG.messageEnabled()) {
                     DEBUG.message("IdCachedServicesImpl."
                             + "getAttributes(): Trying to gett these missing "
@@ -452,7 +507,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
         String principalDN = IdUtils.getUniversalId(tokenId);
 
         // Get the cache entry
-        IdCacheBlock cb = idRepoCache.getIfPresent(dn);
+        IdCacheBlock cb = getCacheBlock(dn);
         AMHashMap attributes;
         if ((cb != null) && cb.hasCompleteSet(principalDN)) {
             cacheStats.updateGetHitCount(getSize());
@@ -468,6 +523,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
             }
             attributes = (AMHashMap) cb.getAttributes(principalDN, false);
         } else {
+            recordCacheMiss();
             // Get all the attributes from data store
             if (DEBUG.messageEnabled()) {
                 DEBUG.message("IdCachedServicesImpl."
@@ -479,7 +535,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
                 amOrgName, amsdkDN);
             if (cb == null) {
                 cb = new IdCacheBlock(dn, true);
-                idRepoCache.put(dn, cb);
+                putInCache(dn, cb);
             }
             cb.putAttributes(principalDN, attributes, null, true, false);
             if (DEBUG.messageEnabled()) {
@@ -584,7 +640,7 @@ public class IdCachedServicesImpl extends IdServicesImpl implements IdCachedServ
                 // If not search in server.
                 AMIdentity uvid = new AMIdentity(token, pattern, type, orgName, null);
                 String universalID = uvid.getUniversalId().toLowerCase();
-                IdCacheBlock cb = idRepoCache.getIfPresent(universalID);
+                IdCacheBlock cb = getCacheBlock(universalID);
                 if ((cb != null) && !cb.hasExpiredAndUpdated() && cb.isExists() &&
                                                                             (ctrl.getSearchModifierMap() == null)) {
                     // Check if search is for a specific identity
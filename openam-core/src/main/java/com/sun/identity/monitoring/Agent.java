@@ -2896,6 +2896,10 @@ public class Agent {
         return DN2Realm.get(rlmDN);
     }
 
+    public static String getRealmDNFromName(String name) {
+        return realm2DN.get(name);
+    }
+
     public static SsoServerAuthModulesEntryImpl getAuthModuleEntry (
             String rlmAuthInst)
     {
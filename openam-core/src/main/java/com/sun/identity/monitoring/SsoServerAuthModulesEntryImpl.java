@@ -24,13 +24,16 @@
  *
  * $Id: SsoServerAuthModulesEntryImpl.java,v 1.3 2009/10/21 00:02:10 bigfatrat Exp $
  *
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 
 package com.sun.identity.monitoring;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import com.sun.identity.authentication.service.AuthThreadManager;
 import com.sun.identity.shared.debug.Debug;
+import com.sun.management.snmp.SnmpStatusException;
 import com.sun.management.snmp.agent.SnmpMib;
 
 /**
@@ -114,4 +117,24 @@ public class SsoServerAuthModulesEntryImpl extends SsoServerAuthModulesEntry {
         li++;
         AuthModuleSuccessCount = Long.valueOf(li);
     }
+
+    /**
+     * Getter for the "AuthModuleLoginCount" variable.
+     */
+    @Override
+    public Long getAuthModuleLoginCount() throws SnmpStatusException {
+        return AuthThreadManager.getInstance().getLoginCount(getRealmDN(), AuthModuleName);
+    }
+
+    /**
+     * Getter for the "AuthModuleAverageLoginTime" variable.
+     */
+    @Override
+    public Long getAuthModuleAverageLoginTime() throws SnmpStatusException {
+        return Math.round(AuthThreadManager.getInstance().getAverageLoginTimeMs(getRealmDN(), AuthModuleName));
+    }
+
+    private String getRealmDN() {
+        return Agent.getRealmDNFromName(Agent.getRealmNameFromIndex(SsoServerRealmIndex));
+    }
 }
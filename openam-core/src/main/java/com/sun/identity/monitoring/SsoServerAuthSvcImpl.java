@@ -31,12 +31,15 @@ package com.sun.identity.monitoring;
 import static org.forgerock.openam.utils.Time.*;
 
 import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.authentication.service.AuthThreadManager;
 import com.sun.identity.shared.Constants;
 import com.sun.identity.shared.debug.Debug;
+import com.sun.management.snmp.SnmpStatusException;
 import com.sun.management.snmp.agent.SnmpMib;
 import java.util.Deque;
 import java.util.concurrent.LinkedBlockingDeque;
 import javax.management.MBeanServer;
+import org.forgerock.openam.ldap.LDAPAuthStatistics;
 
 /**
  * This class extends the "SsoServerAuthSvc" class.
@@ -56,6 +59,7 @@ public class SsoServerAuthSvcImpl extends SsoServerAuthSvc {
     private static int AVERAGE_RECORD_COUNT = 1000;
     private Deque<Long> historicSuccessRecords;
     private Deque<Long> historicFailureRecords;
+    private final LDAPAuthStatistics ldapAuthStatistics = LDAPAuthStatistics.getInstance();
 
     /**
      * Constructors
@@ -244,5 +248,68 @@ public class SsoServerAuthSvcImpl extends SsoServerAuthSvc {
             }
         }
     }
-}
 
+    /**
+     * Getter for the "LdapAuthConnectionWaitCount" variable.
+     */
+    @Override
+    public Long getLdapAuthConnectionWaitCount() throws SnmpStatusException {
+        return ldapAuthStatistics.getConnectionWaitCount();
+    }
+
+    /**
+     * Getter for the "LdapAuthAverageConnectionWaitTime" variable.
+     */
+    @Override
+    public Long getLdapAuthAverageConnectionWaitTime() throws SnmpStatusException {
+        return Math.round(ldapAuthStatistics.getAverageConnectionWaitMs());
+    }
+
+    /**
+     * Getter for the "LdapAuthMaxConnectionWaitTime" variable.
+     */
+    @Override
+    public Long getLdapAuthMaxConnectionWaitTime() throws SnmpStatusException {
+        return ldapAuthStatistics.getMaxConnectionWaitMs();
+    }
+
+    /**
+     * Getter for the "LdapAuthBindCount" variable.
+     */
+    @Override
+    public Long getLdapAuthBindCount() throws SnmpStatusException {
+        return ldapAuthStatistics.getBindCount();
+    }
+
+    /**
+     * Getter for the "LdapAuthAverageBindTime" variable.
+     */
+    @Override
+    public Long getLdapAuthAverageBindTime() throws SnmpStatusException {
+        return Math.round(ldapAuthStatistics.getAverageBindTimeMs());
+    }
+
+    /**
+     * Getter for the "LdapAuthMaxBindTime" variable.
+     */
+    @Override
+    public Long getLdapAuthMaxBindTime() throws SnmpStatusException {
+        return ldapAuthStatistics.getMaxBindTimeMs();
+    }
+
+    /**
+     * Getter for the "JaasLoginQueueDepth" variable.
+     */
+    @Override
+    public Long getJaasLoginQueueDepth() throws SnmpStatusException {
+        return (long) AuthThreadManager.getInstance().getLoginQueueDepth();
+    }
+
+    /**
+     * Getter for the "JaasActiveLoginCount" variable.
+     */
+    @Override
+    public Long getJaasActiveLoginCount() throws SnmpStatusException {
+        return (long) AuthThreadManager.getInstance().getActiveLoginCount();
+    }
+}
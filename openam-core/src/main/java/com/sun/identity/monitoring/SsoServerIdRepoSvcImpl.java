@@ -27,12 +27,14 @@
  */
 
 /*
- * Portions Copyrighted 2011 ForgeRock AS
+ * Portions Copyrighted 2011-2016 ForgeRock AS
  */
 package com.sun.identity.monitoring;
 
 import com.sun.identity.shared.debug.Debug;
+import com.sun.management.snmp.SnmpStatusException;
 import com.sun.management.snmp.agent.SnmpMib;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.management.MBeanServer;
 
 /**
@@ -40,6 +42,8 @@ import javax.management.MBeanServer;
  */
 public class SsoServerIdRepoSvcImpl extends SsoServerIdRepoSvc {
     private static Debug debug = null;
+    private final AtomicLong idRepoCacheMisses = new AtomicLong();
+    private final AtomicLong idRepoCacheEvictions = new AtomicLong();
 
     /**
      * Constructor
@@ -103,4 +107,38 @@ public class SsoServerIdRepoSvcImpl extends SsoServerIdRepoSvc {
         IdRepoSearchRqts = Long.valueOf(li);
         IdRepoCacheEntries = Long.valueOf(cacheEntries);
     }
+
+    /*
+     * incremented when a get request has to read the identity,
+     * or some of its attributes, from the data store
+     */
+    public void incCacheMisses (long cacheEntries) {
+        idRepoCacheMisses.incrementAndGet();
+        IdRepoCacheEntries = Long.valueOf(cacheEntries);
+    }
+
+    /*
+     * incremented when an identity is evicted from the cache
+     * because the cache is full
+     */
+    public void incCacheEvictions (long cacheEntries) {
+        idRepoCacheEvictions.incrementAndGet();
+        IdRepoCacheEntries = Long.valueOf(cacheEntries);
+    }
+
+    /**
+     * Getter for the "IdRepoCacheMisses" variable.
+     */
+    @Override
+    public Long getIdRepoCacheMisses() throws SnmpStatusException {
+        return idRepoCacheMisses.get();
+    }
+
+    /**
+     * Getter for the "IdRepoCacheEvictions" variable.
+     */
+    @Override
+    public Long getIdRepoCacheEvictions() throws SnmpStatusException {
+        return idRepoCacheEvictions.get();
+    }
 }
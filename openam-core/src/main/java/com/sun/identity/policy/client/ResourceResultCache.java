@@ -31,7 +31,6 @@ package com.sun.identity.policy.client;
 
 import static org.forgerock.openam.utils.Time.*;
 
-import com.iplanet.am.util.Cache;
 import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionException;
@@ -97,6 +96,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Singleton class that implements client side policy decision cache.
@@ -105,19 +105,17 @@ import java.util.Vector;
  */
 class ResourceResultCache implements SSOTokenListener {
 
-    //service>resource>tokenID>scope>result
     private static ResourceResultCache resourceResultCache;
 
     private PolicyProperties policyProperties;
     private Set remotePolicyListeners 
             = Collections.synchronizedSet(new HashSet(10));
 
-    //serviceName -> resourceName -> sessionId -> scope -> result
-    private Map resultCache = new HashMap(10); 
+    //sessionId, serviceName, resourceName, scope -> result
+    private volatile ResourceResultStore resultStore;
 
     private PolicyNotificationHandler notificationHandler;
-    private Set tokenRegistry = 
-        Collections.synchronizedSet(new HashSet(10000));
+    private Set<String> tokenRegistry = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     private int        cacheTtl;
     private Set        advicesHandleableByAM; 
 
@@ -168,6 +166,7 @@ class ResourceResultCache implements SSOTokenListener {
         this.policyProperties = policyProperties;
         notificationHandler = new PolicyNotificationHandler(this);
         cacheTtl = policyProperties.getCacheTtl();
+        resultStore = newResultStore(policyProperties);
 
         if (policyProperties.notificationEnabled()){
             //register notification handler with PLLClient
@@ -203,11 +202,26 @@ class ResourceResultCache implements SSOTokenListener {
             resourceResultCache = new ResourceResultCache(policyProperties);
         }  else {
             resourceResultCache.policyProperties = policyProperties;
-            resourceResultCache.cacheTtl = policyProperties.getCacheTtl();
+            if (resourceResultCache.cacheTtl != policyProperties.getCacheTtl()) {
+                resourceResultCache.cacheTtl = policyProperties.getCacheTtl();
+                resourceResultCache.resultStore = newResultStore(policyProperties);
+            }
         }
         return resourceResultCache;
     } 
 
+    /**
+     * Returns a new store for resource results, bounded by the configured
+     * resource and session caps and by the cache time to live
+     */
+    private static ResourceResultStore newResultStore(
+            PolicyProperties policyProperties) {
+        long maximumSize = (long) policyProperties.getResultsCacheResourceCap()
+                * policyProperties.getResultsCacheSessionCap();
+        return new ResourceResultStore(maximumSize,
+                policyProperties.getCacheTtl());
+    }
+
     /**
      * Returns reference to the singleton instance of 
      * <code>ResourceResultCache</code>
@@ -436,135 +450,88 @@ class ResourceResultCache implements SSOTokenListener {
                     + ":entering ");
         }
 
-        Map resourceTokenIDsMap = null;
-        // resultCache -> serviceName -> resourceName -> sessionId -> scope -> result
-        synchronized(resultCache) {
-            // resourceName -> sessionId -> scope -> result
-            resourceTokenIDsMap = (Map)resultCache.get(serviceName);
-            if (resourceTokenIDsMap == null) {
-                // changed to fix 4295 Policy cache causes frequent 
-                // full gc or out of memory issues
-                resourceTokenIDsMap 
-                        = new Cache(policyProperties.getResultsCacheResourceCap());
-                resultCache.put(serviceName, resourceTokenIDsMap);
-            }
-        }
-
-        Map tokenIDScopesMap = null;
-        // resourceTokenIDsMap -> resourceName -> sessionId -> scope -> result
-        synchronized(resourceTokenIDsMap) {
-            // sessionId -> scope -> result
-            tokenIDScopesMap = (Map)resourceTokenIDsMap.get(resourceName);
-            if (tokenIDScopesMap == null) {
-                // changed to fix 4295 Policy cache causes frequent full 
-                // gc or out of memory issues
-                tokenIDScopesMap  
-                        = new Cache(policyProperties.getResultsCacheSessionCap());
-                resourceTokenIDsMap.put(resourceName, tokenIDScopesMap);
-            }
-        }
-
-        Map scopeResultsMap= null;
         String tokenID =  token.getTokenID().toString();
-        // tokenIDScopesMap -> sessionId -> scope -> result
-        synchronized(tokenIDScopesMap) {
-            scopeResultsMap = (Map)tokenIDScopesMap.get(tokenID);
-            if (scopeResultsMap == null) {
-                scopeResultsMap = new HashMap();
-                tokenIDScopesMap.put(tokenID, scopeResultsMap);
-                if (!tokenRegistry.contains(tokenID)) {
-                    try {
-                        token.addSSOTokenListener(this);
-                        tokenRegistry.add(tokenID);
-                    } catch (SSOTokenListenersUnsupportedException ex) {
-                        // Catching exception to avoid adding tokenID to tokenRegistry
-                        // scopeResultsMap will be populated and returned to the caller but not cached
-                        debug.message("ResourceResultCache.getResourceResults(): could not add sso listener: {}", ex.getMessage());
-                    }
-                }
+        if (tokenRegistry.add(tokenID)) {
+            try {
+                token.addSSOTokenListener(this);
+            } catch (SSOTokenListenersUnsupportedException ex) {
+                // Removing tokenID from tokenRegistry so that the listener is tried again
+                // results are still cached until their time to live expires
+                tokenRegistry.remove(tokenID);
+                debug.message("ResourceResultCache.getResourceResults(): could not add sso listener: {}", ex.getMessage());
             }
         }
 
-        Object[] results = null;
+        ResourceResultStore store = resultStore;
+        ResourceResultStore.Results results 
+                = store.get(tokenID, serviceName, resourceName, scope);
         boolean fetchResultsFromServer = false;
-        // scopeResultsMap -> scope -> result
-        synchronized(scopeResultsMap) {
-            results = (Object[])scopeResultsMap.get(scope);
-            if ( results == null) {
-
-                //array elements:resourceResults, env, ttl, actionNames
-                results = new Object[4];
-                scopeResultsMap.put(scope, results);
+        if ( !useCache ) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since useCache is false");
             }
-
-            if ( !useCache ) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since useCache is false");
-                }
-                fetchResultsFromServer = true;
-            } else if (results[0] == null) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server "
-                            + " since results not in cache");
-                }
-                fetchResultsFromServer = true;
-            } else if ((env == null) && (results[1] != null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since env does not match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((env != null) && !env.equals(results[1])) { 
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since env does not Match");
-                }
-                fetchResultsFromServer = true;
-            } else if (((Long) results[2]).longValue()
-                    < currentTimeMillis()) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since results ttl has "
-                            + " expired");
-                }
-                fetchResultsFromServer = true;
-            } else if ((actionNames == null) && (results[3] != null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since action names do not "
-                            + " match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((actionNames != null) &&  (results[3] == null)) {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since action names do not "
-                            + " Match");
-                }
-                fetchResultsFromServer = true;
-            } else if ((results[3] !=null) &&!((Set)results[3]).containsAll(
-                    actionNames))  {
-                if (debug.messageEnabled()) {
-                    debug.message("ResourceResultCache.getResourceResults():"
-                            + "would contact server since cached action names "
-                            + " do not cover request action names");
-                }
-                fetchResultsFromServer = true;
-            } else if (resourceResultsHasAdvices((Set)(results[0]))
-                    && PolicyProperties.SELF.equals(cacheMode)) { 
-                //get from server if there were advices in the cached decision
-                //we do this only if cacheMode is self
-                fetchResultsFromServer = true;
-
+            fetchResultsFromServer = true;
+        } else if (results == null) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server "
+                        + " since results not in cache");
             }
-
+            fetchResultsFromServer = true;
+        } else if ((env == null) && (results.getEnv() != null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since env does not match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((env != null) && !env.equals(results.getEnv())) { 
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since env does not Match");
+            }
+            fetchResultsFromServer = true;
+        } else if (results.getTimeToLive() < currentTimeMillis()) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since results ttl has "
+                        + " expired");
+            }
+            fetchResultsFromServer = true;
+        } else if ((actionNames == null) && (results.getActionNames() != null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since action names do not "
+                        + " match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((actionNames != null) && (results.getActionNames() == null)) {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since action names do not "
+                        + " Match");
+            }
+            fetchResultsFromServer = true;
+        } else if ((results.getActionNames() != null)
+                && !results.getActionNames().containsAll(actionNames))  {
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache.getResourceResults():"
+                        + "would contact server since cached action names "
+                        + " do not cover request action names");
+            }
+            fetchResultsFromServer = true;
+        } else if (resourceResultsHasAdvices(results.getResourceResults())
+                && PolicyProperties.SELF.equals(cacheMode)) { 
+            //get from server if there were advices in the cached decision
+            //we do this only if cacheMode is self
+            fetchResultsFromServer = true;
         }
+        store.recordLookup(!fetchResultsFromServer);
 
         // changed to fix 4205 Policy client code has bottleneck when processing notificati 
         // FIXME: remove the check for service name with the some fix on server
         if (fetchResultsFromServer) {
+            long fetchStart = System.nanoTime();
             if(policyProperties.useRESTProtocol() 
                     && IPLANET_AM_WEB_AGENT_SERVICE.equalsIgnoreCase(serviceName)) {
                 resourceResults = getRESTResultsFromServer(appToken, 
@@ -575,22 +542,20 @@ class ResourceResultCache implements SSOTokenListener {
                         serviceName, token, resourceName, scope, 
                         actionNames, env);
             }
-            results[0] = resourceResults;
+            store.recordFetch(System.nanoTime() - fetchStart);
 
             if (env != null) {
                 env = PolicyUtils.cloneMap(env);
             }
-            results[1] = env;
-
-            results[2] 
-                    = new Long(currentTimeMillis() + cacheTtl);
 
             if (actionNames != null) {
                 Set actionNames1 = actionNames;
                 actionNames = new HashSet();
                 actionNames.addAll(actionNames1);
             }
-            results[3] = actionNames;
+            results = new ResourceResultStore.Results(resourceResults, env,
+                    currentTimeMillis() + cacheTtl, actionNames);
+            store.put(tokenID, serviceName, resourceName, scope, results);
         } else {
             if (debug.messageEnabled()) {
                 debug.message("ResourceResultCache.getResourceResults():"
@@ -600,7 +565,7 @@ class ResourceResultCache implements SSOTokenListener {
         }
 
 
-        resourceResults = (Set)(results[0]);
+        resourceResults = results.getResourceResults();
         if (debug.messageEnabled()) {
             debug.message("ResourceResultCache.getResourceResults("
                     + serviceName + ","
@@ -1232,42 +1197,20 @@ class ResourceResultCache implements SSOTokenListener {
         }
 
         try {
-            synchronized(resultCache) {
-                Set services = (Set)resultCache.keySet();
-                Iterator serviceIter = services.iterator();
-                while (serviceIter.hasNext()) {
-                    String serviceName = (String)serviceIter.next();
-                    Map resourceTokenIDsMap = (Map)resultCache.get(serviceName);
-                    synchronized(resourceTokenIDsMap) {
-                        Set resources = (Set)resourceTokenIDsMap.keySet();
-                        Iterator resourceIter = resources.iterator();
-                        while (resourceIter.hasNext()) {
-                            String resource = (String)resourceIter.next();
-                            Map tokenIDScopesMap 
-                                    = (Map)resourceTokenIDsMap.get(resource);
-                            if (tokenIDScopesMap != null) {
-                                tokenIDScopesMap.remove(tokenID);
-                            }
-                            
-                            boolean tokenPresent = tokenRegistry.remove(tokenID);
-                            if ( (tokenPresent == false) &&
-                                (debug.messageEnabled()) ) {
-                                debug.message("ResourceResultCache. tokenID= "
-                                    + SECRET_MASK
-                                    + " not found in Token Registry.");
-                            }
+            boolean tokenPresent = tokenRegistry.remove(tokenID);
+            if ( (tokenPresent == false) &&
+                (debug.messageEnabled()) ) {
+                debug.message("ResourceResultCache. tokenID= "
+                    + SECRET_MASK
+                    + " not found in Token Registry.");
+            }
 
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                    + "ssoTokenChanged():"
-                                    + "removing cache results for "
-                                    + "tokenID=" + SECRET_MASK //mask tokenID
-                                    + ":serviceName=" + serviceName 
-                                    + ":resource=" + resource);
-                            }
-                        }
-                    }
-                }
+            int removed = resultStore.removeToken(tokenID);
+            if (debug.messageEnabled()) {
+                debug.message("ResourceResultCache."
+                    + "ssoTokenChanged():"
+                    + "removed " + removed + " cached results for "
+                    + "tokenID=" + SECRET_MASK); //mask tokenID
             }
         } catch (Throwable t) {
             if (debug.warningEnabled()) {
@@ -1289,16 +1232,16 @@ class ResourceResultCache implements SSOTokenListener {
             return;
         }  
 
-        Map resourceTokenIDsMap 
-                = (Map)(resourceResultCache.resultCache).get(serviceName);
-        if ((resourceTokenIDsMap == null)
-                || resourceTokenIDsMap.isEmpty()) {
+        ResourceResultStore store = resourceResultCache.resultStore;
+        Set cachedResourceNames = store.getResourceNames(serviceName);
+        if (cachedResourceNames.isEmpty()) {
             return;
         } 
 
         ResourceName resourceComparator 
                 = resourceResultCache.policyProperties
                 .getResourceComparator(serviceName);
+        Set clearedResourceNames = new HashSet();
         Iterator arIter = affectedResourceNames.iterator();
         while (arIter.hasNext()) {
             String affectedRN = (String)arIter.next();
@@ -1307,67 +1250,46 @@ class ResourceResultCache implements SSOTokenListener {
                         + "clearCacheForResourceNames():"
                         + "affectedResourceName=" + affectedRN);
             }
-            synchronized (resourceTokenIDsMap) {
-                Set cachedResourceNames = resourceTokenIDsMap.keySet();
-                Iterator crIter = cachedResourceNames.iterator();
-                while (crIter.hasNext()) {
-                    String cachedRN = (String)crIter.next();
+            Iterator crIter = cachedResourceNames.iterator();
+            while (crIter.hasNext()) {
+                String cachedRN = (String)crIter.next();
+                if (debug.messageEnabled()) {
+                    debug.message("ResourceResultCache."
+                            + "clearCacheForResourceNames():"
+                            + "affectedResourceName=" + affectedRN
+                            + ":cachedResourceName=" + cachedRN);
+                }
+                String match = null;
+                if (affectedRN.equals(cachedRN)) {
+                    match = "SAME RESOURCE NAME";
+                } else {
+                    ResourceMatch rm 
+                            = resourceComparator.compare( cachedRN, 
+                            affectedRN, true); //wildcard compare
+                    if (rm.equals(ResourceMatch.EXACT_MATCH)) {
+                        match = "EXACT_MATCH";
+                    } else if (rm.equals(ResourceMatch.WILDCARD_MATCH)) {
+                        match = "WILD_CARD_MATCH";
+                    } else if (rm.equals(
+                            ResourceMatch.SUB_RESOURCE_MATCH)) {
+                        match = "SUB_RESOURCE_MACTH";
+                    }
+                }
+                if (match != null) {
+                    crIter.remove();
+                    clearedResourceNames.add(cachedRN);
                     if (debug.messageEnabled()) {
                         debug.message("ResourceResultCache."
                                 + "clearCacheForResourceNames():"
-                                + "affectedResourceName=" + affectedRN
-                                + ":cachedResourceName=" + cachedRN);
-                    }
-                    if (affectedRN.equals(cachedRN)) {
-                        crIter.remove();
-                        if (debug.messageEnabled()) {
-                            debug.message("ResourceResultCache."
-                                    + "clearCacheForResourceNames():"
-                                    + "cleared cached results for "
-                                    + "resourceName=" + cachedRN
-                                    + ":affectedResourceName=" + affectedRN
-                                    + ":match=SAME RESOURCE NAME");
-                        }
-                    } else {
-                        ResourceMatch rm 
-                                = resourceComparator.compare( cachedRN, 
-                                affectedRN, true); //wildcard compare
-                        if (rm.equals(ResourceMatch.EXACT_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=EXACT_MATCH");
-                            }
-                        } else if (rm.equals(ResourceMatch.WILDCARD_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=WILD_CARD_MATCH");
-                            }
-                        } else if (rm.equals(
-                                ResourceMatch.SUB_RESOURCE_MATCH)) {
-                            crIter.remove();
-                            if (debug.messageEnabled()) {
-                                debug.message("ResourceResultCache."
-                                        + "clearCacheForResourceNames():"
-                                        + "cleared cached results for "
-                                        + "resourceName=" + cachedRN
-                                        + ":affectedResourceName=" + affectedRN
-                                        + ":match=SUB_RESOURCE_MACTH");
-                            }
-                        }
+                                + "cleared cached results for "
+                                + "resourceName=" + cachedRN
+                                + ":affectedResourceName=" + affectedRN
+                                + ":match=" + match);
                     }
                 }
             }
         }
+        store.removeResources(serviceName, clearedResourceNames);
     }
 
     /**
@@ -1567,9 +1489,7 @@ class ResourceResultCache implements SSOTokenListener {
                     + "clearCachedDecisionsForService():"
                     + "serviceName=" + serviceName);
         } 
-        synchronized(resultCache) {
-            resultCache.remove(serviceName);
-        }
+        resultStore.removeService(serviceName);
     }
 
     /**
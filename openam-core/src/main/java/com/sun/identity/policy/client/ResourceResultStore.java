@@ -0,0 +1,356 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.policy.client;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.guava.common.cache.RemovalCause;
+import org.forgerock.guava.common.cache.RemovalListener;
+import org.forgerock.guava.common.cache.RemovalNotification;
+
+import com.sun.identity.policy.ResourceResult;
+
+/**
+ * Storage for the resource results cached by {@link ResourceResultCache}.
+ * <p/>
+ * Results are keyed by session, service, resource and scope. The store holds at most a fixed number of results, and
+ * discards each one once it is older than the cache time to live, so memory stays bounded without a cleanup thread.
+ * The keys cached for each session are also indexed by session, so that the results of a session that has ended are
+ * removed without visiting the results of every other session.
+ */
+final class ResourceResultStore {
+
+    private final Cache<Key, Results> results;
+    private final ConcurrentMap<String, Set<Key>> keysByTokenID = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong fetchTimeNanos = new AtomicLong();
+
+    /**
+     * @param maximumSize The largest number of results held.
+     * @param timeToLiveMs The time in milliseconds after which results are discarded.
+     */
+    ResourceResultStore(long maximumSize, long timeToLiveMs) {
+        this.results = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(maximumSize, 1))
+                .expireAfterWrite(Math.max(timeToLiveMs, 1), TimeUnit.MILLISECONDS)
+                .removalListener(new IndexRemovalListener())
+                .build();
+    }
+
+    /**
+     * @param tokenID The session token ID.
+     * @param serviceName The service name.
+     * @param resourceName The resource name.
+     * @param scope The scope of the results.
+     * @return the cached results, or null if none are cached.
+     */
+    Results get(String tokenID, String serviceName, String resourceName, String scope) {
+        return results.getIfPresent(new Key(tokenID, serviceName, resourceName, scope));
+    }
+
+    /**
+     * Caches results, replacing any already cached for the same key.
+     *
+     * @param tokenID The session token ID.
+     * @param serviceName The service name.
+     * @param resourceName The resource name.
+     * @param scope The scope of the results.
+     * @param cached The results.
+     */
+    void put(String tokenID, String serviceName, String resourceName, String scope, Results cached) {
+        Key key = new Key(tokenID, serviceName, resourceName, scope);
+        // Index before caching, so that an entry removed straight away cannot leave its key behind in the index.
+        index(key);
+        results.put(key, cached);
+    }
+
+    /**
+     * Removes all results cached for a session.
+     *
+     * @param tokenID The session token ID.
+     * @return the number of results removed.
+     */
+    int removeToken(String tokenID) {
+        Set<Key> keys = keysByTokenID.remove(tokenID);
+        if (keys == null) {
+            return 0;
+        }
+        results.invalidateAll(keys);
+        return keys.size();
+    }
+
+    /**
+     * Removes all results cached for a service.
+     *
+     * @param serviceName The service name.
+     */
+    void removeService(String serviceName) {
+        for (Key key : results.asMap().keySet()) {
+            if (key.serviceName.equals(serviceName)) {
+                results.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * @param serviceName The service name.
+     * @return the names of the resources with results cached for the service.
+     */
+    Set<String> getResourceNames(String serviceName) {
+        Set<String> resourceNames = new HashSet<>();
+        for (Key key : results.asMap().keySet()) {
+            if (key.serviceName.equals(serviceName)) {
+                resourceNames.add(key.resourceName);
+            }
+        }
+        return resourceNames;
+    }
+
+    /**
+     * Removes the results cached for resources of a service, for every session.
+     *
+     * @param serviceName The service name.
+     * @param resourceNames The resource names.
+     */
+    void removeResources(String serviceName, Set<String> resourceNames) {
+        if (resourceNames.isEmpty()) {
+            return;
+        }
+        for (Key key : results.asMap().keySet()) {
+            if (key.serviceName.equals(serviceName) && resourceNames.contains(key.resourceName)) {
+                results.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Records whether cached results could be used for a request.
+     *
+     * @param hit true if the cached results were used.
+     */
+    void recordLookup(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records the time taken to fetch results from the policy service.
+     *
+     * @param elapsedNanos The time taken in nanoseconds.
+     */
+    void recordFetch(long elapsedNanos) {
+        fetches.incrementAndGet();
+        fetchTimeNanos.addAndGet(elapsedNanos);
+    }
+
+    /**
+     * @return the number of results held, including any that have expired but not yet been discarded.
+     */
+    long size() {
+        return results.size();
+    }
+
+    /**
+     * @return the number of requests answered from cached results.
+     */
+    long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests that had to fetch results from the policy service.
+     */
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of results discarded because the store was full or they had expired.
+     */
+    long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of times results were fetched from the policy service.
+     */
+    long getFetchCount() {
+        return fetches.get();
+    }
+
+    /**
+     * @return the mean time in milliseconds taken to fetch results from the policy service.
+     */
+    double getAverageFetchTimeMs() {
+        long count = fetches.get();
+        return count == 0 ? 0.0d : (double) fetchTimeNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Adds a key to the keys indexed for its session. The keys indexed for a session are never changed, but replaced
+     * by a copy, so that a key cannot be lost to a concurrent change.
+     */
+    private void index(Key key) {
+        while (true) {
+            Set<Key> keys = keysByTokenID.get(key.tokenID);
+            if (keys == null) {
+                if (keysByTokenID.putIfAbsent(key.tokenID, Collections.singleton(key)) == null) {
+                    return;
+                }
+            } else if (keys.contains(key)) {
+                return;
+            } else {
+                Set<Key> updated = new HashSet<>(keys);
+                updated.add(key);
+                if (keysByTokenID.replace(key.tokenID, keys, Collections.unmodifiableSet(updated))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a key from the keys indexed for its session, and the session once it has none left.
+     */
+    private void unindex(Key key) {
+        while (true) {
+            Set<Key> keys = keysByTokenID.get(key.tokenID);
+            if (keys == null || !keys.contains(key)) {
+                return;
+            } else if (keys.size() == 1) {
+                if (keysByTokenID.remove(key.tokenID, keys)) {
+                    return;
+                }
+            } else {
+                Set<Key> updated = new HashSet<>(keys);
+                updated.remove(key);
+                if (keysByTokenID.replace(key.tokenID, keys, Collections.unmodifiableSet(updated))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Resource results cached for a request, with the environment and action names they were fetched for.
+     */
+    static final class Results {
+        private final Set<ResourceResult> resourceResults;
+        private final Map env;
+        private final long timeToLive;
+        private final Set<String> actionNames;
+
+        /**
+         * @param resourceResults The resource results.
+         * @param env The environment the results were fetched for. May be null.
+         * @param timeToLive The time after which the results must be fetched again.
+         * @param actionNames The action names the results were fetched for. May be null.
+         */
+        Results(Set<ResourceResult> resourceResults, Map env, long timeToLive, Set<String> actionNames) {
+            this.resourceResults = resourceResults;
+            this.env = env;
+            this.timeToLive = timeToLive;
+            this.actionNames = actionNames;
+        }
+
+        Set<ResourceResult> getResourceResults() {
+            return resourceResults;
+        }
+
+        Map getEnv() {
+            return env;
+        }
+
+        long getTimeToLive() {
+            return timeToLive;
+        }
+
+        Set<String> getActionNames() {
+            return actionNames;
+        }
+    }
+
+    private final class IndexRemovalListener implements RemovalListener<Key, Results> {
+
+        @Override
+        public void onRemoval(RemovalNotification<Key, Results> notification) {
+            if (notification.getCause() == RemovalCause.REPLACED) {
+                return;
+            }
+            if (notification.wasEvicted()) {
+                evictions.incrementAndGet();
+            }
+            unindex(notification.getKey());
+        }
+    }
+
+    private static final class Key {
+        private final String tokenID;
+        private final String serviceName;
+        private final String resourceName;
+        private final String scope;
+        private final int hashCode;
+
+        private Key(String tokenID, String serviceName, String resourceName, String scope) {
+            this.tokenID = tokenID;
+            this.serviceName = serviceName;
+            this.resourceName = resourceName;
+            this.scope = scope;
+
+            int hash = tokenID.hashCode();
+            hash = 31 * hash + serviceName.hashCode();
+            hash = 31 * hash + resourceName.hashCode();
+            hash = 31 * hash + (scope == null ? 0 : scope.hashCode());
+            this.hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && tokenID.equals(other.tokenID)
+                    && serviceName.equals(other.serviceName)
+                    && resourceName.equals(other.resourceName)
+                    && (scope == null ? other.scope == null : scope.equals(other.scope));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
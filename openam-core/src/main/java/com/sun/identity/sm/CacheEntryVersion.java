@@ -0,0 +1,102 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.sm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks whether a cached entry is dirty, and serialises its refreshes.
+ * <p/>
+ * The version is incremented without locking when the entry is changed, and each refresh records the version it
+ * started from once it completes; the entry is dirty while the two differ. A change made while the entry is being
+ * read therefore leaves it dirty rather than being lost.
+ */
+final class CacheEntryVersion {
+
+    /**
+     * Reads a cached entry again.
+     *
+     * @param <E> The type of exception thrown when the entry cannot be read.
+     */
+    interface Refresh<E extends Exception> {
+
+        /**
+         * Reads the entry again.
+         *
+         * @return Whether the entry was read. An entry which could not be read is not read again until it is next
+         * changed.
+         * @throws E If the entry could not be read, in which case it is still dirty.
+         */
+        boolean refresh() throws E;
+    }
+
+    private final AtomicLong version = new AtomicLong();
+    private volatile long refreshedVersion;
+    private final Object refreshLock = new Object();
+
+    /**
+     * @return Whether the entry has been changed since it was last refreshed.
+     */
+    boolean isDirty() {
+        return refreshedVersion != version.get();
+    }
+
+    /**
+     * Marks the entry as changed.
+     */
+    void markDirty() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Marks the entry as changed unless it has already been changed since it was last refreshed.
+     */
+    void expire() {
+        long refreshed = refreshedVersion;
+        version.compareAndSet(refreshed, refreshed + 1);
+    }
+
+    /**
+     * Refreshes the entry once any refresh in progress has completed.
+     *
+     * @param refresh Reads the entry.
+     * @param <E> The type of exception thrown when the entry cannot be read.
+     * @throws E If the entry could not be read.
+     */
+    <E extends Exception> void refresh(Refresh<E> refresh) throws E {
+        synchronized (refreshLock) {
+            // Changes made from now on must cause another refresh
+            long refreshingVersion = version.get();
+            boolean read = refresh.refresh();
+            refreshedVersion = read ? refreshingVersion : version.get();
+        }
+    }
+
+    /**
+     * Refreshes the entry unless another thread refreshed it while this thread was waiting to.
+     *
+     * @param refresh Reads the entry.
+     * @param <E> The type of exception thrown when the entry cannot be read.
+     * @throws E If the entry could not be read.
+     */
+    <E extends Exception> void refreshIfDirty(Refresh<E> refresh) throws E {
+        synchronized (refreshLock) {
+            if (isDirty()) {
+                refresh(refresh);
+            }
+        }
+    }
+}
@@ -35,24 +35,28 @@ import com.iplanet.am.util.SystemProperties;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.iplanet.sso.SSOException;
 import com.iplanet.sso.SSOToken;
 import com.sun.identity.shared.Constants;
-import java.util.Collections;
-import java.util.HashMap;
 
 import org.forgerock.opendj.ldap.DN;
+import org.forgerock.util.annotations.VisibleForTesting;
 
 /**
  * The class <code>CachedSchemaManagerImpl</code> provides interfaces to
  * manage the SMSEntry. It caches SMSEntries which is used by ServiceSchema and
  * ServiceConfig classes.
+ * <p/>
+ * Reads do not take locks. Each entry has a version which is incremented when
+ * the entry is changed, and records the version it was last refreshed at; the
+ * entry is dirty while the two differ. Refreshes are serialised per entry, and
+ * a change notified while a refresh is in progress leaves the entry dirty.
  */
 public class CachedSMSEntry {
 
@@ -60,21 +64,22 @@ public class CachedSMSEntry {
     protected static final String UPDATE_METHOD = "update";
 
     // Cache of CachedSMSEntries (static)
-    protected static Map smsEntries = Collections.synchronizedMap(
-        new HashMap(1000));
+    protected static final ConcurrentMap<String, CachedSMSEntry> smsEntries =
+        new ConcurrentHashMap<String, CachedSMSEntry>(1000);
 
     // Instance variables
     
     // Set of ServiceSchemaManagerImpls and ServiceConfigImpls
     // that must be updated where entry changes
-    protected Set serviceObjects = Collections.synchronizedSet(
-        new HashSet());
-    protected String notificationID;
+    protected Set<Object> serviceObjects =
+        Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+    protected volatile String notificationID;
 
-    protected Set principals = Collections.synchronizedSet(
-        new HashSet(10)); // Principals who have read access
+    // Principals who have read access
+    protected Set<String> principals =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(10));
 
-    protected SSOToken token; // Valid SSOToken used for read
+    protected volatile SSOToken token; // Valid SSOToken used for read
 
     protected String dn2Str;
 
@@ -83,14 +88,13 @@ public class CachedSMSEntry {
     protected SMSEntry smsEntry;
 
     // Flag that determines if this object can be used
-    private boolean valid;
+    private volatile boolean valid;
     
-    // Flag to determine if the cached entry is dirty and 
+    // Version to determine if the cached entry is dirty and 
     // must be refreshed along with the last update time & TTL
-    private boolean dirty;
-    private Object dirtyLock = new Object();
+    private final CacheEntryVersion version = new CacheEntryVersion();
     static boolean ttlEnabled;
-    static long lastUpdate;
+    static volatile long lastUpdate;
     static long ttl = 1800000;  // 30 minutes
     
     
@@ -127,13 +131,16 @@ public class CachedSMSEntry {
     
     // Used by JAXRPCObjectImpl
     public boolean isDirty() {
-        if (ttlEnabled && !dirty &&
+        if (ttlEnabled && !version.isDirty() &&
             ((currentTimeMillis() - lastUpdate) > ttl)) {
-            synchronized (dirtyLock) {
-                dirty = true;
-            }
+            version.expire();
         }
-        return dirty;
+        return version.isDirty();
+    }
+
+    // Marks the entry as dirty
+    private void markDirty() {
+        version.markDirty();
     }
 
     /**
@@ -146,9 +153,7 @@ public class CachedSMSEntry {
             SMSEntry.debug.message("CachedSMSEntry: update "
                     + "method called: " + dn2Str );
         }
-        synchronized (dirtyLock) {
-            dirty = true;
-        }
+        markDirty();
     }
     
     /**
@@ -156,46 +161,66 @@ public class CachedSMSEntry {
      * objects caching this entry. Used by JAXRPCObjectImpl
      */
     public void refresh() {
-        synchronized (dirtyLock) {
-            if (SMSEntry.debug.messageEnabled()) {
-                SMSEntry.debug.message("CachedSMSEntry: refresh "
-                    + "method called: " + dn2Str );
-            }
+        version.refresh(reader);
+    }
 
-            // Read the LDAP attributes and update listeners
-            boolean updated = false;
-            dirty = true;
-            try {
-                SSOToken t = getValidSSOToken();
-                if (t != null) {
-                    smsEntry.read(t);
-                    lastUpdate = currentTimeMillis();
-                    updated = true;
-                } else if (SMSEntry.debug.warningEnabled()) {
-                    SMSEntry.debug.warning("CachedSMSEntry:update No VALID " +
-                        "SSOToken found for dn: " + dn2Str);
-                }
-            } catch (SMSException e) {
-                // Error in reading the attribtues, entry could be deleted
-                // or does not have permissions to read the object
-                SMSEntry.debug.error("Error in reading entry attributes: " +
-                    dn2Str, e);
-            } catch (SSOException ssoe) {
-                // Error in reading the attribtues, SSOToken problem
-                // Might have timed-out
-                SMSEntry.debug.error("SSOToken problem in reading entry "
-                    + "attributes: " + dn2Str, ssoe);
+    // Reads the attributes on behalf of the entry version
+    private final CacheEntryVersion.Refresh<RuntimeException> reader =
+        new CacheEntryVersion.Refresh<RuntimeException>() {
+            @Override
+            public boolean refresh() {
+                return read();
             }
-            if (!updated) {
-                // No valid SSOToken were foung
-                // this entry is no long valid, remove from cache
-                clear();
+        };
+
+    // Reads the attributes and updates listeners, and returns
+    // whether the attributes were read
+    private boolean read() {
+        if (SMSEntry.debug.messageEnabled()) {
+            SMSEntry.debug.message("CachedSMSEntry: refresh "
+                + "method called: " + dn2Str );
+        }
+
+        // Read the LDAP attributes and update listeners
+        boolean updated = false;
+        try {
+            SSOToken t = getValidSSOToken();
+            if (t != null) {
+                smsEntry.read(t);
+                lastUpdate = currentTimeMillis();
+                updated = true;
+            } else if (SMSEntry.debug.warningEnabled()) {
+                SMSEntry.debug.warning("CachedSMSEntry:update No VALID " +
+                    "SSOToken found for dn: " + dn2Str);
             }
-            // Update service listeners either success or failure
-            // updateServiceListeners(UPDATE_METHOD);
-            updateServiceListeners(UPDATE_METHOD);
-            dirty = false;
+        } catch (SMSException e) {
+            // Error in reading the attribtues, entry could be deleted
+            // or does not have permissions to read the object
+            SMSEntry.debug.error("Error in reading entry attributes: " +
+                dn2Str, e);
+        } catch (SSOException ssoe) {
+            // Error in reading the attribtues, SSOToken problem
+            // Might have timed-out
+            SMSEntry.debug.error("SSOToken problem in reading entry "
+                + "attributes: " + dn2Str, ssoe);
         }
+        if (!updated) {
+            // No valid SSOToken were foung
+            // this entry is no long valid, remove from cache
+            clear();
+        }
+        // Update service listeners either success or failure
+        // updateServiceListeners(UPDATE_METHOD);
+        updateServiceListeners(UPDATE_METHOD);
+        return updated;
+    }
+
+    /**
+     * Refreshes the entry unless another thread has refreshed it while
+     * this thread was waiting to.
+     */
+    private void refreshIfDirty() {
+        version.refreshIfDirty(reader);
     }
     
     /**
@@ -204,12 +229,15 @@ public class CachedSMSEntry {
      * @param e object that contains the updated values for the attributes
      * @throws com.sun.identity.sm.SMSException
      */
-    void refresh(SMSEntry e) throws SMSException {
-        synchronized (dirtyLock) {
-            smsEntry.refresh(e);
-            updateServiceListeners(UPDATE_METHOD);
-            dirty = false;
-        }
+    void refresh(final SMSEntry e) throws SMSException {
+        version.refresh(new CacheEntryVersion.Refresh<SMSException>() {
+            @Override
+            public boolean refresh() throws SMSException {
+                smsEntry.refresh(e);
+                updateServiceListeners(UPDATE_METHOD);
+                return true;
+            }
+        });
     }
     
     /**
@@ -230,12 +258,10 @@ public class CachedSMSEntry {
         SMSEventListenerManager.removeNotification(notificationID);
         notificationID = null;
         valid = false;
-        synchronized(dirtyLock) {
-            dirty = true;
-        }
+        markDirty();
         // Remove from cache
         if (removeFromCache) {
-            smsEntries.remove(dnRFCStr);
+            smsEntries.remove(dnRFCStr, this);
         }
     }
     
@@ -244,18 +270,16 @@ public class CachedSMSEntry {
         // Check if the cached SSOToken is valid
         if (!SMSEntry.tm.isValidToken(token)) {
             // Get a valid ssoToken from cached TokenIDs
-            synchronized (principals) {
-                for (Iterator items = principals.iterator(); items.hasNext();) {
-                    String tokenID = (String) items.next();
-                    try {
-                        token = SMSEntry.tm.createSSOToken(tokenID);
-                        if (SMSEntry.tm.isValidToken(token)) {
-                            break;
-                        }
-                    } catch (SSOException ssoe) {
-                        // SSOToken has expired, remove from list
-                        items.remove();
+            for (Iterator<String> items = principals.iterator(); items.hasNext();) {
+                String tokenID = items.next();
+                try {
+                    token = SMSEntry.tm.createSSOToken(tokenID);
+                    if (SMSEntry.tm.isValidToken(token)) {
+                        break;
                     }
+                } catch (SSOException ssoe) {
+                    // SSOToken has expired, remove from list
+                    items.remove();
                 }
             }
         }
@@ -280,16 +304,8 @@ public class CachedSMSEntry {
                     + "method called: " + dn2Str);
         }
         // Inform the ServiceSchemaManager's of changes to attributes
-        ArrayList tmpServiceObjects = new ArrayList();
-        synchronized (serviceObjects) {
-            for(Iterator objs = serviceObjects.iterator(); objs.hasNext();) {
-                tmpServiceObjects.add(objs.next());
-            }
-        }
-
-        for(Iterator objs = tmpServiceObjects.iterator(); objs.hasNext();){
+        for (Object obj : serviceObjects) {
             try {
-                Object obj = objs.next();
                 Method m = obj.getClass().getDeclaredMethod(
                     method, (Class[]) null);
                 m.invoke(obj, (Object[]) null);
@@ -318,8 +334,7 @@ public class CachedSMSEntry {
         }
     }
 
-    synchronized void addPrincipal(SSOToken t) {
-        // Making a local copy to avoid synchronization problems
+    void addPrincipal(SSOToken t) {
         principals.add(t.getTokenID().toString());
     }
 
@@ -333,7 +348,7 @@ public class CachedSMSEntry {
 
     public SMSEntry getClonedSMSEntry() {
         if (isDirty()) {
-            refresh();
+            refreshIfDirty();
         }
         try {
             return ((SMSEntry) smsEntry.clone());
@@ -345,7 +360,7 @@ public class CachedSMSEntry {
 
     boolean isNewEntry() {
         if (isDirty()) {
-            refresh();
+            refreshIfDirty();
         }
         return (smsEntry.isNewEntry());
     }
@@ -377,20 +392,15 @@ public class CachedSMSEntry {
             SMSEntry.debug.message("CachedSMSEntry::getInstance: " + dn);
         }
         String cacheEntry = DN.valueOf(dn).toString().toLowerCase();
-        CachedSMSEntry answer = (CachedSMSEntry) smsEntries.get(cacheEntry);
+        CachedSMSEntry answer = smsEntries.get(cacheEntry);
         if ((answer == null) || !answer.isValid()) {
-            // Construct the SMS entry. Should be outside the synchronized
-            // block since SMSEntry call delegation which in turn calls
+            // Construct the SMS entry. Should be outside the map update
+            // since SMSEntry call delegation which in turn calls
             // policy, idrepo, special repo and SMS again
             CachedSMSEntry tmp = new CachedSMSEntry(new SMSEntry(t, dn));
-            synchronized (smsEntries) {
-                if (((answer = (CachedSMSEntry) smsEntries.get(cacheEntry))
-                    == null) || !answer.isValid()) {
-                    // Add it to cache
-                    answer = tmp;
-                    smsEntries.put(cacheEntry, answer);
-                }
-            }
+            // If another thread cached the entry first, clear this one
+            // so that it does not stay registered for notifications
+            answer = addToCache(smsEntries, cacheEntry, tmp, CACHED_ENTRIES);
         }
         
         // Check if user has permissions
@@ -410,6 +420,48 @@ public class CachedSMSEntry {
         return (answer);
     }
     
+    // Checks whether cached entries are valid, and discards entries which
+    // were not cached
+    @VisibleForTesting
+    interface CacheEntries<T> {
+        boolean isValid(T entry);
+
+        void discard(T entry);
+    }
+
+    private static final CacheEntries<CachedSMSEntry> CACHED_ENTRIES =
+        new CacheEntries<CachedSMSEntry>() {
+            @Override
+            public boolean isValid(CachedSMSEntry entry) {
+                return entry.isValid();
+            }
+
+            @Override
+            public void discard(CachedSMSEntry entry) {
+                entry.clear(false);
+            }
+        };
+
+    // Caches the entry unless a valid entry is already cached, and
+    // returns the cached entry. An entry which is not cached is discarded
+    @VisibleForTesting
+    static <T> T addToCache(ConcurrentMap<String, T> cache, String key,
+            T entry, CacheEntries<T> entries) {
+        while (true) {
+            T current = cache.putIfAbsent(key, entry);
+            if (current == null) {
+                return entry;
+            }
+            if (entries.isValid(current)) {
+                entries.discard(entry);
+                return current;
+            }
+            if (cache.replace(key, current, entry)) {
+                return entry;
+            }
+        }
+    }
+
     static void initializeProperties() {
         // Initialize the TTL
         String ttlEnabledString = SystemProperties.get(
@@ -433,15 +485,12 @@ public class CachedSMSEntry {
 
     // Clears the cache
     static void clearCache() {
-        synchronized (smsEntries) {
-            for (Iterator items = smsEntries.values().iterator();
-                items.hasNext();) {
-                CachedSMSEntry cEntry = (CachedSMSEntry) items.next();
-                // this entry is no long valid
-                cEntry.clear(false);
-            }
-            // Remove all entries from cache
-            smsEntries.clear();
+        for (Iterator<CachedSMSEntry> items = smsEntries.values().iterator();
+            items.hasNext();) {
+            CachedSMSEntry cEntry = items.next();
+            // this entry is no long valid, remove it from cache
+            items.remove();
+            cEntry.clear(false);
         }
     }
 
@@ -24,7 +24,7 @@
  *
  * $Id: SMSEntry.java,v 1.53 2009/12/07 19:46:47 veiming Exp $
  *
- * Portions Copyrighted 2010-2015 ForgeRock AS.
+ * Portions Copyrighted 2010-2016 ForgeRock AS.
  */
 
 package com.sun.identity.sm;
@@ -1741,11 +1741,13 @@ public class SMSEntry implements Cloneable {
 
     protected String normalizedDN;
 
-    private boolean newEntry;
+    // Replaced as a whole when a cached entry is read, so that readers
+    // which do not hold the refresh lock see a complete snapshot
+    private volatile boolean newEntry;
 
     private boolean readOnly;
 
-    private Map attrSet;
+    private volatile Map attrSet;
 
     private Set modSet;
 
@@ -52,6 +52,16 @@ public interface Blacklist<T extends Blacklistable> {
      */
     void subscribe(Listener listener);
 
+    /**
+     * Subscribe for notifications when entries are blacklisted, as {@link #subscribe(Listener)}, but only replaying
+     * existing entries that were blacklisted at or after the given time. Used by subscribers that have already
+     * restored the earlier state of the blacklist from elsewhere.
+     *
+     * @param listener the event listener to call when entries are blacklisted.
+     * @param replaySince the time (in milliseconds from UTC epoch) from which existing entries should be replayed.
+     */
+    void subscribe(Listener listener, long replaySince);
+
     interface Listener {
         /**
          * Indicates that the given entry has been blacklisted.
@@ -16,56 +16,104 @@
 
 package org.forgerock.openam.blacklist;
 
-import javax.annotation.Nonnull;
-import java.nio.charset.Charset;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.common.ShutdownManager;
 import com.sun.identity.shared.debug.Debug;
-import org.forgerock.bloomfilter.BloomFilter;
-import org.forgerock.bloomfilter.BloomFilters;
-import org.forgerock.bloomfilter.ConcurrencyStrategy;
-import org.forgerock.bloomfilter.ExpiryStrategy;
-import org.forgerock.guava.common.hash.Funnel;
-import org.forgerock.guava.common.hash.Funnels;
-import org.forgerock.guava.common.hash.PrimitiveSink;
 import org.forgerock.openam.utils.StringUtils;
 import org.forgerock.util.Reject;
 import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.thread.listener.ShutdownListener;
+import org.forgerock.util.time.TimeService;
 
 /**
  * A entry blacklist decorator implementation that uses a bloom filter to reduce the number of checks that need to
  * be performed against the underlying blacklist implementation. The advantage of a bloom filter is that it can store
  * very large blacklists (millions of entries) in memory, but with some possibility of false positives.
+ * <p/>
+ * Entries are held in a {@link RollingBloomFilter} partitioned by expiry time, with buckets at least as wide as the
+ * blacklist purge delay, so expired entries are dropped a bucket at a time. Checking the blacklist does not allocate
+ * or lock unless the bloom filter reports a possible match.
+ * <p/>
+ * If a snapshot directory is configured with {@value #SNAPSHOT_DIRECTORY_PROPERTY}, the bloom filter is written to
+ * a snapshot periodically, as configured by {@value #SNAPSHOT_INTERVAL_PROPERTY}, and on shutdown, and is restored
+ * from it on startup. Only entries blacklisted since the snapshot was taken are then replayed from the delegate, so a
+ * server which did not shut down cleanly replays no more than one interval of entries beyond that.
  *
  * @param <T> The blacklist type.
  */
 public final class BloomFilterBlacklist<T extends Blacklistable> implements Blacklist<T> {
+    /**
+     * System property naming the directory in which bloom filter snapshots are kept.
+     */
+    public static final String SNAPSHOT_DIRECTORY_PROPERTY =
+            "org.forgerock.openam.blacklist.bloomfilter.snapshot.directory";
+
+    /**
+     * System property giving the interval in milliseconds between bloom filter snapshots. Snapshots are then only
+     * taken on shutdown if not positive.
+     */
+    public static final String SNAPSHOT_INTERVAL_PROPERTY =
+            "org.forgerock.openam.blacklist.bloomfilter.snapshot.interval";
+
     private static final double FALSE_POSITIVE_PROBABILITY = 0.001d; // 0.1%
     private static final int NUM_EXPECTED_BLACKLISTED_ENTRIES = 10000;
-    private static final int CAPACITY_GROWTH_FACTOR = 2;
-    private static final double FALSE_POSITIVE_PROBABILITY_SCALE_FACTOR = 0.6d;
+    private static final long MIN_BUCKET_WINDOW_MS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * Entries blacklisted shortly before a snapshot was taken are replayed again, to allow for clock skew between
+     * servers.
+     */
+    private static final long SNAPSHOT_REPLAY_OVERLAP_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long DEFAULT_SNAPSHOT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final String SNAPSHOT_SUFFIX = ".bloom";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
 
     private static final Debug DEBUG = Debug.getInstance("blacklist");
 
     private final Blacklist<T> delegate;
-    private final long purgeDelayMs;
-    private final BloomFilter<BlacklistEntry> bloomFilter;
+    private final RollingBloomFilter bloomFilter;
+    private final File snapshotFile;
+    private final TimeService clock;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong filterMatches = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
 
     @VisibleForTesting
-    BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs, final BloomFilter<BlacklistEntry> bloomFilter) {
-        Reject.ifNull(delegate, bloomFilter);
+    BloomFilterBlacklist(Blacklist<T> delegate, final RollingBloomFilter bloomFilter, File snapshotFile,
+            TimeService clock) {
+        Reject.ifNull(delegate, bloomFilter, clock);
 
         this.delegate = delegate;
-        this.purgeDelayMs = purgeDelayMs;
         this.bloomFilter = bloomFilter;
+        this.snapshotFile = snapshotFile;
+        this.clock = clock;
+
+        long replaySince = restoreSnapshot();
 
         delegate.subscribe(new Listener() {
             @Override
             public void onBlacklisted(String id, long expiryTime) {
                 DEBUG.message("BloomFilterBlacklist: Blacklisting entry from event: {}", id);
-                bloomFilter.add(new BlacklistEntry(id, expiryTime));
+                bloomFilter.add(id, expiryTime);
             }
-        });
-
+        }, replaySince);
     }
 
     /**
@@ -81,14 +129,42 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
      * @param purgeDelayMs The purge delay in milli seconds.
      */
     public BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs) {
-        this(delegate, purgeDelayMs, BloomFilters.create(EntryFunnel.INSTANCE)
-                        .withFalsePositiveProbability(FALSE_POSITIVE_PROBABILITY)
-                        .withInitialCapacity(NUM_EXPECTED_BLACKLISTED_ENTRIES)
-                        .withExpiryStrategy(EntryExpirationStrategy.INSTANCE)
-                        .withCapacityGrowthFactor(CAPACITY_GROWTH_FACTOR)
-                        .withFalsePositiveProbabilityScaleFactor(FALSE_POSITIVE_PROBABILITY_SCALE_FACTOR)
-                        .withConcurrencyStrategy(ConcurrencyStrategy.ATOMIC)
-                        .build());
+        this(delegate, purgeDelayMs, null, null);
+    }
+
+    /**
+     * Creates the bloom filter entry blacklist as {@link #BloomFilterBlacklist(Blacklist, long)}, additionally
+     * restoring the bloom filter from, and saving it periodically and on shutdown to, the named snapshot in the
+     * directory configured by {@value #SNAPSHOT_DIRECTORY_PROPERTY}.
+     *
+     * @param delegate the definitive blacklist.
+     * @param purgeDelayMs The purge delay in milli seconds.
+     * @param snapshotName The name of the snapshot, unique to this blacklist. May be null to disable snapshots.
+     * @param scheduler The scheduler on which periodic snapshots are taken.
+     */
+    public BloomFilterBlacklist(Blacklist<T> delegate, long purgeDelayMs, String snapshotName,
+            ScheduledExecutorService scheduler) {
+        this(delegate, new RollingBloomFilter(Math.max(purgeDelayMs, MIN_BUCKET_WINDOW_MS),
+                        NUM_EXPECTED_BLACKLISTED_ENTRIES, FALSE_POSITIVE_PROBABILITY, TimeService.SYSTEM),
+                snapshotFile(snapshotName), TimeService.SYSTEM);
+
+        if (snapshotFile != null) {
+            long intervalMs = SystemProperties.getAsLong(SNAPSHOT_INTERVAL_PROPERTY, DEFAULT_SNAPSHOT_INTERVAL_MS);
+            if (intervalMs > 0) {
+                scheduler.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        saveSnapshot();
+                    }
+                }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+            }
+            ShutdownManager.getInstance().addShutdownListener(new ShutdownListener() {
+                @Override
+                public void shutdown() {
+                    saveSnapshot();
+                }
+            });
+        }
     }
 
     @Override
@@ -99,10 +175,14 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
 
     @Override
     public boolean isBlacklisted(T entry) throws BlacklistException {
-        DEBUG.message("BloomFilterBlacklist: checking blacklist");
-        boolean blacklisted = false;
-        if (bloomFilter.mightContain(BlacklistEntry.from(entry, purgeDelayMs))) {
-            blacklisted = delegate.isBlacklisted(entry);
+        lookups.incrementAndGet();
+        if (!bloomFilter.mightContain(entry.getStableStorageID())) {
+            return false;
+        }
+        filterMatches.incrementAndGet();
+        boolean blacklisted = delegate.isBlacklisted(entry);
+        if (!blacklisted) {
+            falsePositives.incrementAndGet();
         }
         return blacklisted;
     }
@@ -112,68 +192,121 @@ public final class BloomFilterBlacklist<T extends Blacklistable> implements Blac
         delegate.subscribe(listener);
     }
 
+    @Override
+    public void subscribe(Listener listener, long replaySince) {
+        delegate.subscribe(listener, replaySince);
+    }
+
     /**
-     * Adapter to allow entries to be stored in Guava bloom filters. Uses the UTF-8 encoded bytes of the
-     * stable id of the entry as the key.
+     * @return the number of blacklist checks made.
      */
-    private enum EntryFunnel implements Funnel<BlacklistEntry> {
-        INSTANCE;
+    public long getLookupCount() {
+        return lookups.get();
+    }
 
-        private static final Funnel<CharSequence> UTF8FUNNEL = Funnels.stringFunnel(Charset.forName("UTF-8"));
+    /**
+     * @return the number of blacklist checks where the bloom filter reported a possible match that the delegate
+     * blacklist then rejected.
+     */
+    public long getFalsePositiveCount() {
+        return falsePositives.get();
+    }
 
-        @Override
-        public void funnel(@Nonnull BlacklistEntry entry, @Nonnull PrimitiveSink primitiveSink) {
-            UTF8FUNNEL.funnel(entry.stableId, primitiveSink);
-        }
+    /**
+     * @return the fraction of checks for entries that were not blacklisted which nonetheless had to be confirmed
+     * against the delegate blacklist.
+     */
+    public double getFalsePositiveRate() {
+        long falsePositiveCount = falsePositives.get();
+        long negatives = lookups.get() - (filterMatches.get() - falsePositiveCount);
+        return negatives <= 0 ? 0.0d : (double) falsePositiveCount / negatives;
     }
 
     /**
-     * Strategy to determine when a entry has expired and no longer needs to be stored in the bloom filter.
+     * @return the false positive probability expected from the current occupancy of the bloom filter.
      */
-    private enum EntryExpirationStrategy implements ExpiryStrategy<BlacklistEntry> {
-        INSTANCE;
+    public double getExpectedFalsePositiveProbability() {
+        return bloomFilter.getExpectedFalsePositiveProbability();
+    }
 
-        @Override
-        public long expiryTime(BlacklistEntry entry) {
-            return entry.expiryTime;
-        }
+    /**
+     * @return the number of bytes used by the bloom filter.
+     */
+    public long getMemorySizeInBytes() {
+        return bloomFilter.getMemorySizeInBytes();
     }
 
     /**
-     * Minimal information about an entry required for blacklisting in the bloom filter.
+     * Writes the bloom filter to the snapshot file, if one is configured. The snapshot is written to a temporary file
+     * first so a failure part way through never leaves a truncated snapshot behind. The temporary file is created
+     * with a unique name, so servers sharing the snapshot directory never write to the same one.
      */
     @VisibleForTesting
-    public static final class BlacklistEntry {
-        private final String stableId;
-        private final long expiryTime;
-
-        BlacklistEntry(final String stableId, final long expiryTime) {
-            this.stableId = stableId;
-            this.expiryTime = expiryTime;
+    synchronized void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
         }
-
-        static BlacklistEntry from(Blacklistable entry, long purgeDelayMs) throws BlacklistException {
-            return new BlacklistEntry(entry.getStableStorageID(), entry.getBlacklistExpiryTime() + purgeDelayMs);
-        }
-
-        @Override
-        public boolean equals(final Object o) {
-            if (this == o) {
-                return true;
+        File temporary = null;
+        try {
+            temporary = File.createTempFile(snapshotFile.getName() + ".", TEMPORARY_SUFFIX,
+                    snapshotFile.getParentFile());
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary))))) {
+                out.writeLong(clock.now());
+                bloomFilter.writeTo(out);
+            }
+            try {
+                Files.move(temporary.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
             }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
+            if (DEBUG.messageEnabled()) {
+                DEBUG.message("BloomFilterBlacklist: Saved snapshot {} with {} entries, {} bytes, "
+                        + "false positive rate {}", snapshotFile, bloomFilter.getEntryCount(),
+                        getMemorySizeInBytes(), getFalsePositiveRate());
             }
+        } catch (IOException e) {
+            DEBUG.warning("BloomFilterBlacklist: Unable to save snapshot {}", snapshotFile, e);
+        } finally {
+            if (temporary != null && temporary.exists() && !temporary.delete()) {
+                DEBUG.warning("BloomFilterBlacklist: Unable to delete temporary snapshot {}", temporary);
+            }
+        }
+    }
 
-            final BlacklistEntry that = (BlacklistEntry) o;
-            return expiryTime == that.expiryTime && StringUtils.isEqualTo(stableId, that.stableId);
+    /**
+     * Restores the bloom filter from the snapshot file, if one is configured and exists. A snapshot which cannot be
+     * read is deleted, and is replaced by the next snapshot taken.
+     *
+     * @return the time from which blacklisted entries must be replayed from the delegate to bring the bloom filter
+     * up to date.
+     */
+    private long restoreSnapshot() {
+        if (snapshotFile == null || !snapshotFile.isFile()) {
+            return 0;
         }
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(
+                new BufferedInputStream(new FileInputStream(snapshotFile))))) {
+            long snapshotTime = in.readLong();
+            bloomFilter.readFrom(in);
+            DEBUG.message("BloomFilterBlacklist: Restored snapshot {} taken at {}", snapshotFile, snapshotTime);
+            return Math.max(0, snapshotTime - SNAPSHOT_REPLAY_OVERLAP_MS);
+        } catch (IOException e) {
+            DEBUG.warning("BloomFilterBlacklist: Unable to restore snapshot {}, replaying full blacklist",
+                    snapshotFile, e);
+            if (!snapshotFile.delete()) {
+                DEBUG.warning("BloomFilterBlacklist: Unable to delete snapshot {}", snapshotFile);
+            }
+            return 0;
+        }
+    }
 
-        @Override
-        public int hashCode() {
-            int result = stableId != null ? stableId.hashCode() : 0;
-            result = 31 * result + (int) (expiryTime ^ (expiryTime >>> 32));
-            return result;
+    private static File snapshotFile(String snapshotName) {
+        String directory = SystemProperties.get(SNAPSHOT_DIRECTORY_PROPERTY);
+        if (StringUtils.isBlank(directory) || StringUtils.isBlank(snapshotName)) {
+            return null;
         }
+        return new File(directory, snapshotName + SNAPSHOT_SUFFIX);
     }
 }
@@ -144,6 +144,11 @@ public final class CTSBlacklist<T extends Blacklistable> implements Blacklist<T>
 
     @Override
     public void subscribe(final Listener listener) {
+        subscribe(listener, 0);
+    }
+
+    @Override
+    public void subscribe(final Listener listener, final long replaySince) {
         pollTask.start();
         Reject.ifNull(listener);
         listeners.add(listener);
@@ -153,7 +158,7 @@ public final class CTSBlacklist<T extends Blacklistable> implements Blacklist<T>
             @Override
             public void run() {
                 // Replay the existing blacklisted entries for the listener
-                for (PartialToken token : findEntriesBlacklistedSince(0)) {
+                for (PartialToken token : findEntriesBlacklistedSince(replaySince)) {
                     listener.onBlacklisted(token.<String>getValue(CoreTokenField.TOKEN_ID),
                             token.<Calendar>getValue(CoreTokenField.EXPIRY_DATE).getTimeInMillis());
                 }
@@ -0,0 +1,415 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.blacklist;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.forgerock.util.Reject;
+import org.forgerock.util.time.TimeService;
+
+/**
+ * Time-partitioned bloom filter of blacklisted entry ids.
+ * <p/>
+ * Entries are partitioned into buckets by their expiry time, each bucket covering a fixed window of expiry times.
+ * Once the end of a bucket's window has passed, every entry in it has expired and the whole bucket is dropped, so
+ * the filter never needs to remove individual entries. A bucket that receives more entries than it was sized for
+ * grows by chaining a further filter, keeping the false positive probability of each filter near the target.
+ * <p/>
+ * Additions are serialised, while {@link #mightContain(String)} is lock-free and does not allocate: the id is hashed
+ * directly from its characters and the bits of every live bucket are probed in place.
+ * <p/>
+ * The filter can be written to and read from a compact binary snapshot so that a restarted server does not have to
+ * rebuild it from scratch. A snapshot is only read if its filters have the dimensions this filter would create, and
+ * it is within the limits on the number of buckets and total size, so a corrupt snapshot cannot exhaust memory.
+ */
+final class RollingBloomFilter {
+
+    private static final int SNAPSHOT_MAGIC = 0x424c4246; // "BLBF"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final int BYTES_PER_WORD = Long.SIZE / Byte.SIZE;
+    private static final int MAX_SNAPSHOT_BUCKETS = 10000;
+    private static final long MAX_SNAPSHOT_SIZE_IN_BYTES = 256L * 1024 * 1024;
+
+    private final long windowMs;
+    private final int expectedInsertions;
+    private final int filterWords;
+    private final int filterHashes;
+    private final TimeService clock;
+
+    private volatile Bucket[] buckets = new Bucket[0];
+
+    /**
+     * @param windowMs the width, in milliseconds, of the window of expiry times held by each bucket.
+     * @param expectedInsertions the number of entries each bucket filter is sized for.
+     * @param falsePositiveProbability the target false positive probability of each bucket filter.
+     * @param clock the source of the current time.
+     */
+    RollingBloomFilter(long windowMs, int expectedInsertions, double falsePositiveProbability, TimeService clock) {
+        Reject.ifFalse(windowMs > 0, "windowMs must be > 0");
+        Reject.ifFalse(expectedInsertions > 0, "expectedInsertions must be > 0");
+        Reject.ifFalse(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+                "falsePositiveProbability must be between 0 and 1");
+        Reject.ifNull(clock);
+        this.windowMs = windowMs;
+        this.expectedInsertions = expectedInsertions;
+        double ln2 = Math.log(2);
+        long numBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (ln2 * ln2));
+        this.filterWords = (int) Math.max(1, (numBits + Long.SIZE - 1) / Long.SIZE);
+        this.filterHashes = (int) Math.max(1, Math.round((double) filterWords * Long.SIZE / expectedInsertions * ln2));
+        this.clock = clock;
+    }
+
+    /**
+     * Adds the given id to the bucket for its expiry time. Entries that have already expired are ignored.
+     *
+     * @param id the stable id of the blacklisted entry.
+     * @param expiryTime the time (in milliseconds from UTC epoch) after which the entry can be forgotten.
+     */
+    synchronized void add(String id, long expiryTime) {
+        long now = clock.now();
+        if (expiryTime <= now) {
+            return;
+        }
+        removeExpiredBuckets(now);
+        long hash = hash(id);
+        bucketFor(expiryTime).add(hash, rehash(hash));
+    }
+
+    /**
+     * @param id the stable id of the entry to check.
+     * @return {@code false} if the entry has definitely not been added, or has expired; {@code true} if it might
+     * have been added and not yet expired.
+     */
+    boolean mightContain(String id) {
+        long now = clock.now();
+        long hash = hash(id);
+        long rehash = rehash(hash);
+        Bucket[] current = buckets;
+        for (int i = 0; i < current.length; i++) {
+            Bucket bucket = current[i];
+            if (bucket.end > now && bucket.mightContain(hash, rehash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops any buckets whose entries have all expired.
+     */
+    synchronized void removeExpired() {
+        removeExpiredBuckets(clock.now());
+    }
+
+    /**
+     * @return the number of live buckets.
+     */
+    int getBucketCount() {
+        return buckets.length;
+    }
+
+    /**
+     * @return the number of entries added to live buckets.
+     */
+    long getEntryCount() {
+        long count = 0;
+        for (Bucket bucket : buckets) {
+            for (Filter filter : bucket.filters) {
+                count += filter.count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of bytes used by the bit arrays of the live buckets.
+     */
+    long getMemorySizeInBytes() {
+        long size = 0;
+        for (Bucket bucket : buckets) {
+            for (Filter filter : bucket.filters) {
+                size += filter.bits.length() * (long) BYTES_PER_WORD;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the probability that {@link #mightContain(String)} returns {@code true} for an id that was never
+     * added, given the current occupancy of the live buckets.
+     */
+    double getExpectedFalsePositiveProbability() {
+        double trueNegative = 1.0d;
+        for (Bucket bucket : buckets) {
+            for (Filter filter : bucket.filters) {
+                trueNegative *= 1.0d - filter.expectedFalsePositiveProbability();
+            }
+        }
+        return 1.0d - trueNegative;
+    }
+
+    /**
+     * Writes the live buckets to the given output.
+     *
+     * @param out the output to write the snapshot to.
+     * @throws IOException if the snapshot could not be written.
+     */
+    synchronized void writeTo(DataOutput out) throws IOException {
+        removeExpiredBuckets(clock.now());
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeByte(SNAPSHOT_VERSION);
+        out.writeLong(windowMs);
+        out.writeInt(buckets.length);
+        for (Bucket bucket : buckets) {
+            out.writeLong(bucket.period);
+            out.writeInt(bucket.filters.length);
+            for (Filter filter : bucket.filters) {
+                out.writeInt(filter.numHashes);
+                out.writeInt(filter.count);
+                out.writeInt(filter.bits.length());
+                for (int i = 0; i < filter.bits.length(); i++) {
+                    out.writeLong(filter.bits.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of this filter with the unexpired buckets of a snapshot written by
+     * {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read the snapshot from.
+     * @throws IOException if the snapshot could not be read, was written with a different bucket window or filter
+     * dimensions, or exceeds the limits on its number of buckets or size. This filter is then left unchanged.
+     */
+    synchronized void readFrom(DataInput in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a blacklist bloom filter snapshot");
+        }
+        int version = in.readUnsignedByte();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported blacklist bloom filter snapshot version " + version);
+        }
+        long snapshotWindowMs = in.readLong();
+        if (snapshotWindowMs != windowMs) {
+            throw new IOException("Snapshot bucket window " + snapshotWindowMs + "ms does not match " + windowMs
+                    + "ms");
+        }
+        long now = clock.now();
+        int bucketCount = in.readInt();
+        if (bucketCount < 0 || bucketCount > MAX_SNAPSHOT_BUCKETS) {
+            throw new IOException("Snapshot bucket count " + bucketCount + " is not between 0 and "
+                    + MAX_SNAPSHOT_BUCKETS);
+        }
+        long maxFilters = MAX_SNAPSHOT_SIZE_IN_BYTES / ((long) filterWords * BYTES_PER_WORD);
+        long totalFilters = 0;
+        List<Bucket> loaded = new ArrayList<>(bucketCount);
+        for (int b = 0; b < bucketCount; b++) {
+            long period = in.readLong();
+            int filterCount = in.readInt();
+            totalFilters += filterCount;
+            if (filterCount <= 0 || totalFilters > maxFilters) {
+                throw new IOException("Snapshot filter count " + filterCount + " is not positive or exceeds the "
+                        + MAX_SNAPSHOT_SIZE_IN_BYTES + " byte limit");
+            }
+            Filter[] filters = new Filter[filterCount];
+            for (int f = 0; f < filterCount; f++) {
+                int numHashes = in.readInt();
+                int count = in.readInt();
+                int words = in.readInt();
+                if (numHashes != filterHashes || words != filterWords || count < 0 || count > expectedInsertions) {
+                    throw new IOException("Snapshot filter of " + words + " words with " + numHashes
+                            + " hashes and " + count + " entries does not match the configured filters");
+                }
+                AtomicLongArray bits = new AtomicLongArray(words);
+                for (int i = 0; i < words; i++) {
+                    bits.set(i, in.readLong());
+                }
+                filters[f] = new Filter(bits, numHashes, count);
+            }
+            Bucket bucket = new Bucket(period, windowMs, filters);
+            if (bucket.end > now) {
+                loaded.add(bucket);
+            }
+        }
+        buckets = loaded.toArray(new Bucket[loaded.size()]);
+    }
+
+    private Bucket bucketFor(long expiryTime) {
+        long period = expiryTime / windowMs;
+        Bucket[] current = buckets;
+        for (Bucket bucket : current) {
+            if (bucket.period == period) {
+                if (bucket.last().count >= expectedInsertions) {
+                    bucket.grow(newFilter());
+                }
+                return bucket;
+            }
+        }
+        Bucket bucket = new Bucket(period, windowMs, new Filter[] {newFilter()});
+        Bucket[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = bucket;
+        buckets = grown;
+        return bucket;
+    }
+
+    private void removeExpiredBuckets(long now) {
+        Bucket[] current = buckets;
+        int live = 0;
+        for (Bucket bucket : current) {
+            if (bucket.end > now) {
+                live++;
+            }
+        }
+        if (live == current.length) {
+            return;
+        }
+        Bucket[] remaining = new Bucket[live];
+        int i = 0;
+        for (Bucket bucket : current) {
+            if (bucket.end > now) {
+                remaining[i++] = bucket;
+            }
+        }
+        buckets = remaining;
+    }
+
+    private Filter newFilter() {
+        return new Filter(new AtomicLongArray(filterWords), filterHashes, 0);
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters of the id, finished with the MurmurHash3 mixer.
+     */
+    private static long hash(String id) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    private static long rehash(long hash) {
+        // Odd, so that successive probes visit distinct bits.
+        return mix(hash + GOLDEN_GAMMA) | 1L;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Filters holding the entries that expire within one window.
+     */
+    private static final class Bucket {
+        private final long period;
+        private final long end;
+        private volatile Filter[] filters;
+
+        private Bucket(long period, long windowMs, Filter[] filters) {
+            this.period = period;
+            this.end = period >= Long.MAX_VALUE / windowMs ? Long.MAX_VALUE : (period + 1) * windowMs;
+            this.filters = filters;
+        }
+
+        private Filter last() {
+            return filters[filters.length - 1];
+        }
+
+        private void grow(Filter filter) {
+            Filter[] current = filters;
+            Filter[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = filter;
+            filters = grown;
+        }
+
+        private void add(long hash, long rehash) {
+            last().add(hash, rehash);
+        }
+
+        private boolean mightContain(long hash, long rehash) {
+            Filter[] current = filters;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].mightContain(hash, rehash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Single fixed-size bloom filter using double hashing.
+     */
+    private static final class Filter {
+        private final AtomicLongArray bits;
+        private final long numBits;
+        private final int numHashes;
+        private volatile int count;
+
+        private Filter(AtomicLongArray bits, int numHashes, int count) {
+            this.bits = bits;
+            this.numBits = (long) bits.length() * Long.SIZE;
+            this.numHashes = numHashes;
+            this.count = count;
+        }
+
+        // Only called while holding the lock of the enclosing RollingBloomFilter, so there is a single writer.
+        private void add(long hash, long rehash) {
+            long combined = hash;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = (combined & Long.MAX_VALUE) % numBits;
+                int word = (int) (bit >>> 6);
+                bits.set(word, bits.get(word) | (1L << bit));
+                combined += rehash;
+            }
+            count++;
+        }
+
+        private boolean mightContain(long hash, long rehash) {
+            long combined = hash;
+            for (int i = 0; i < numHashes; i++) {
+                long bit = (combined & Long.MAX_VALUE) % numBits;
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += rehash;
+            }
+            return true;
+        }
+
+        private double expectedFalsePositiveProbability() {
+            return Math.pow(1.0d - Math.exp(-(double) numHashes * count / numBits), numHashes);
+        }
+    }
+}
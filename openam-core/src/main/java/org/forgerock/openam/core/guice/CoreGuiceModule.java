@@ -108,8 +108,6 @@ import org.forgerock.openam.cts.adapters.SAMLAdapter;
 import org.forgerock.openam.cts.adapters.TokenAdapter;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.cts.api.tokens.SAMLToken;
-import org.forgerock.openam.cts.impl.query.reaper.ReaperConnection;
-import org.forgerock.openam.cts.impl.query.reaper.ReaperQuery;
 import org.forgerock.openam.cts.impl.queue.ResultHandlerFactory;
 import org.forgerock.openam.cts.monitoring.CTSConnectionMonitoringStore;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
@@ -228,9 +226,6 @@ public class CoreGuiceModule extends AbstractModule {
         // Enable monitoring of all CTS operations
         bind(ResultHandlerFactory.class).to(MonitoredResultHandlerFactory.class);
 
-        // CTS Reaper configuration
-        bind(ReaperQuery.class).to(ReaperConnection.class);
-
         // Policy Monitoring
         bind(PolicyMonitor.class).to(PolicyMonitorImpl.class);
 
@@ -587,7 +582,8 @@ public class CoreGuiceModule extends AbstractModule {
 
     @Provides @Singleton @Inject
     public static Blacklist<Session> getSessionBlacklist(final CTSBlacklist<Session> ctsBlacklist,
-            final SessionServiceConfig serviceConfig) {
+            final SessionServiceConfig serviceConfig,
+            @Named(CoreTokenConstants.CTS_SCHEDULED_SERVICE) ScheduledExecutorService scheduler) {
 
         if (!serviceConfig.isSessionBlacklistingEnabled()) {
             return new NoOpBlacklist<>();
@@ -603,7 +599,7 @@ public class CoreGuiceModule extends AbstractModule {
         }
 
         if (pollIntervalMs > 0) {
-            blacklist = new BloomFilterBlacklist<>(blacklist, purgeDelayMs);
+            blacklist = new BloomFilterBlacklist<>(blacklist, purgeDelayMs, "session-blacklist", scheduler);
         }
 
         return blacklist;
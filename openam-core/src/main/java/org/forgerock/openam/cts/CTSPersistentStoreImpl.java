@@ -19,6 +19,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -35,6 +36,8 @@ import org.forgerock.openam.cts.continuous.ContinuousQueryListener;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.cts.exceptions.DeleteFailedException;
 import org.forgerock.openam.cts.impl.CoreTokenAdapter;
+import org.forgerock.openam.cts.impl.TokenReadCache;
+import org.forgerock.openam.cts.impl.queue.ResultHandlerFactory;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
 import org.forgerock.openam.tokens.CoreTokenField;
@@ -46,24 +49,40 @@ import org.forgerock.openam.tokens.CoreTokenField;
  * related tasks.
  * This is detailed in the {@link CoreTokenAdapter} in more detail.
  *
+ * Reads may optionally be served by a {@link TokenReadCache}. When the cache is enabled every write made through
+ * this store invalidates the token in the cache both when the write is queued and when it has completed, so that a
+ * read which overlaps the write cannot leave the previous state of the token in the cache. The cache is registered
+ * as a listener on the CTS change feed on first use so that changes made by other servers are also invalidated.
+ *
  * @see Token
  * @see CoreTokenAdapter
+ * @see TokenReadCache
  */
 @Singleton
 public class CTSPersistentStoreImpl implements CTSPersistentStore {
 
+    private static final TokenFilter ALL_TOKENS = new TokenFilterBuilder().build();
+
     private final CoreTokenAdapter adapter;
+    private final TokenReadCache cache;
+    private final ResultHandlerFactory handlerFactory;
     private final Debug debug;
+    private final AtomicBoolean cacheListening = new AtomicBoolean(false);
 
     /**
      * Creates a default implementation of the CTSPersistentStoreImpl.
      *
      * @param adapter Required for CTS operations.
+     * @param cache Required for caching token reads, which may be disabled.
+     * @param handlerFactory Required for the results of write operations.
      * @param debug Required for debugging.
      */
     @Inject
-    public CTSPersistentStoreImpl(CoreTokenAdapter adapter, @Named(CoreTokenConstants.CTS_DEBUG) Debug debug) {
+    public CTSPersistentStoreImpl(CoreTokenAdapter adapter, TokenReadCache cache,
+            ResultHandlerFactory handlerFactory, @Named(CoreTokenConstants.CTS_DEBUG) Debug debug) {
         this.adapter = adapter;
+        this.cache = cache;
+        this.handlerFactory = handlerFactory;
         this.debug = debug;
     }
 
@@ -75,19 +94,40 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
      */
     @Override
     public void create(Token token) throws CoreTokenException {
-        final ResultHandler<Token, CoreTokenException> createHandler = adapter.create(token);
+        final ResultHandler<Token, CoreTokenException> createHandler =
+                adapter.create(token, invalidating(token.getTokenId(), handlerFactory.getCreateHandler()));
         createHandler.getResults();
         debug("Token {0} created", token.getTokenId());
     }
 
     @Override
     public void createAsync(Token token) throws CoreTokenException {
-        adapter.create(token);
+        adapter.create(token, invalidating(token.getTokenId(), handlerFactory.getCreateHandler()));
         debug("Token {0} queued for creation", token.getTokenId());
     }
 
     @Override
     public Token read(String tokenId) throws CoreTokenException {
+        if (!cache.isEnabled()) {
+            return readFromStore(tokenId);
+        }
+
+        startCacheInvalidation();
+        Token cached = cache.get(tokenId);
+        if (cached != null) {
+            debug("Token {0} read from cache", tokenId);
+            return cached;
+        }
+
+        long version = cache.getVersion(tokenId);
+        Token token = readFromStore(tokenId);
+        if (token != null) {
+            cache.put(token, version);
+        }
+        return token;
+    }
+
+    private Token readFromStore(String tokenId) throws CoreTokenException {
         Token token = adapter.read(tokenId);
         if (token == null) {
             debug("Token {0} did not exist", tokenId);
@@ -98,9 +138,25 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
         return token;
     }
 
+    /**
+     * Registers the read cache with the CTS change feed the first time it is used. If the cache cannot be
+     * registered it is disabled, as it could not otherwise be kept consistent with changes made by other servers.
+     */
+    private void startCacheInvalidation() {
+        if (cacheListening.compareAndSet(false, true)) {
+            try {
+                adapter.continuousQuery(cache, ALL_TOKENS);
+            } catch (CoreTokenException e) {
+                error("Failed to listen for token changes, disabling read cache: {0}", e.getMessage());
+                cache.disable();
+            }
+        }
+    }
+
     @Override
     public void update(Token token) throws CoreTokenException {
-        final ResultHandler<Token, CoreTokenException> updateHandler = adapter.updateOrCreate(token);
+        final ResultHandler<Token, CoreTokenException> updateHandler =
+                adapter.updateOrCreate(token, invalidating(token.getTokenId(), handlerFactory.getUpdateHandler()));
         //block until we get the results, and ignore non-exception results
         updateHandler.getResults();
         debug("Token {0} updated", token.getTokenId());
@@ -108,7 +164,7 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
 
     @Override
     public void updateAsync(Token token) throws CoreTokenException {
-        adapter.updateOrCreate(token);
+        adapter.updateOrCreate(token, invalidating(token.getTokenId(), handlerFactory.getUpdateHandler()));
         debug("Token {0} queued for update", token.getTokenId());
     }
 
@@ -124,7 +180,8 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
 
     @Override
     public void delete(String tokenId) throws CoreTokenException {
-        final ResultHandler<String, CoreTokenException> deleteHandler = adapter.delete(tokenId);
+        final ResultHandler<String, CoreTokenException> deleteHandler =
+                adapter.delete(tokenId, invalidating(tokenId, handlerFactory.getDeleteHandler()));
         //block until we get the results, and ignore non-exception results
         deleteHandler.getResults();
         debug("Token {0} deleted", tokenId);
@@ -132,10 +189,24 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
 
     @Override
     public void deleteAsync(String tokenId) throws CoreTokenException {
-        adapter.delete(tokenId);
+        adapter.delete(tokenId, invalidating(tokenId, handlerFactory.getDeleteHandler()));
         debug("Token {0} queued for deletion", tokenId);
     }
 
+    /**
+     * Invalidates the token in the read cache, and returns a handler which invalidates it again once the write has
+     * completed, before passing the result on to the given handler. The second invalidation discards any state
+     * cached by a read made while the write was in progress.
+     */
+    private <T> ResultHandler<T, CoreTokenException> invalidating(String tokenId,
+            ResultHandler<T, CoreTokenException> handler) {
+        if (!cache.isEnabled()) {
+            return handler;
+        }
+        cache.invalidate(tokenId);
+        return new InvalidatingResultHandler<>(tokenId, handler);
+    }
+
     @Override
     public int delete(Map<CoreTokenField, Object> query) throws DeleteFailedException {
         TokenFilterBuilder.FilterAttributeBuilder builder = new TokenFilterBuilder()
@@ -208,6 +279,7 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
 
     @Override
     public void deleteOnQueryAsync(TokenFilter tokenFilter) throws CoreTokenException {
+        cache.invalidateAll();
         debug("DeleteOnQuery: with query {0}", tokenFilter.toString());
         adapter.deleteOnQuery(tokenFilter);
     }
@@ -223,4 +295,35 @@ public class CTSPersistentStoreImpl implements CTSPersistentStore {
             debug.error(MessageFormat.format(CoreTokenConstants.DEBUG_HEADER + format, args));
         }
     }
+
+    /**
+     * Invalidates a token in the read cache when a write to it completes, successfully or not.
+     */
+    private final class InvalidatingResultHandler<T> implements ResultHandler<T, CoreTokenException> {
+
+        private final String tokenId;
+        private final ResultHandler<T, CoreTokenException> delegate;
+
+        private InvalidatingResultHandler(String tokenId, ResultHandler<T, CoreTokenException> delegate) {
+            this.tokenId = tokenId;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public T getResults() throws CoreTokenException {
+            return delegate.getResults();
+        }
+
+        @Override
+        public void processResults(T result) {
+            cache.invalidate(tokenId);
+            delegate.processResults(result);
+        }
+
+        @Override
+        public void processError(Exception error) {
+            cache.invalidate(tokenId);
+            delegate.processError(error);
+        }
+    }
 }
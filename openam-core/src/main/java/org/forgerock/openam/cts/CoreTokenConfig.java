@@ -19,6 +19,7 @@ import com.iplanet.am.util.SystemProperties;
 import com.iplanet.dpro.session.service.InternalSession;
 import com.sun.identity.shared.Constants;
 import com.sun.identity.shared.configuration.SystemPropertiesManager;
+import org.forgerock.openam.cts.utils.blob.strategies.CompressionStrategy;
 
 import java.util.concurrent.TimeUnit;
 
@@ -37,6 +38,12 @@ public class CoreTokenConfig {
     private final int healthCheckPeriod;
     private final int runPeriod;
     private final int cleanupPageSize;
+    private final int cleanupMinPageSize;
+    private final int cleanupMaxPageSize;
+    private final int cleanupTargetPageLatency;
+    private final int cleanupPartitions;
+    private final int cleanupPartitionWidth;
+    private final int cleanupMaxPagesInFlight;
 
     private final int sleepInterval;
 
@@ -44,6 +51,7 @@ public class CoreTokenConfig {
     private final boolean tokensEncrypted;
     private final boolean tokensCompressed;
     private final boolean attributeNamesCompressed;
+    private final String tokenCompressionCodec;
 
     /**
      * Create a new default instance of the CoreTokenConfig which will establish the various configuration
@@ -70,12 +78,22 @@ public class CoreTokenConfig {
 
         // Control Token Compression.
         tokensCompressed = SystemProperties.getAsBoolean(Constants.SESSION_REPOSITORY_COMPRESSION);
+        tokenCompressionCodec = SystemPropertiesManager.get(CoreTokenConstants.CTS_COMPRESSION_CODEC,
+                CompressionStrategy.GZIP);
 
         // Control Attribute Name Compression.
         attributeNamesCompressed = SystemProperties.getAsBoolean(Constants.SESSION_REPOSITORY_ATTRIBUTE_NAME_COMPRESSION);
 
-        // Controls the size of pages requested for CTS Reaper
+        // Controls the size of pages requested for CTS Reaper, initially and as adapted to the deletion rate
         cleanupPageSize = 1000;
+        cleanupMinPageSize = 100;
+        cleanupMaxPageSize = getSystemManagerPropertyAsInt(CoreTokenConstants.REAPER_MAX_PAGE_SIZE, 10000);
+        cleanupTargetPageLatency = getSystemManagerPropertyAsInt(CoreTokenConstants.REAPER_TARGET_PAGE_LATENCY, 5000);
+
+        // Controls how the CTS Reaper partitions the expiry time range between concurrent workers
+        cleanupPartitions = getSystemManagerPropertyAsInt(CoreTokenConstants.REAPER_PARTITIONS, 1);
+        cleanupPartitionWidth = getSystemManagerPropertyAsInt(CoreTokenConstants.REAPER_PARTITION_WIDTH, 60 * 1000);
+        cleanupMaxPagesInFlight = getSystemManagerPropertyAsInt(CoreTokenConstants.REAPER_MAX_PAGES_IN_FLIGHT, 16);
     }
 
     /**
@@ -172,6 +190,13 @@ public class CoreTokenConfig {
         return tokensCompressed;
     }
 
+    /**
+     * @return The name of the codec used to compress Tokens. Defaults to the legacy GZip format.
+     */
+    public String getTokenCompressionCodec() {
+        return tokenCompressionCodec;
+    }
+
     /**
      * @return True if The Token Attribute Names should be compressed as well. False by default.
      */
@@ -185,4 +210,46 @@ public class CoreTokenConfig {
     public int getCleanupPageSize() {
         return cleanupPageSize;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return The smallest LDAP Query Page size in Tokens the CTS Reaper will adapt to.
+     */
+    public int getCleanupMinPageSize() {
+        return cleanupMinPageSize;
+    }
+
+    /**
+     * @return The largest LDAP Query Page size in Tokens the CTS Reaper will adapt to.
+     */
+    public int getCleanupMaxPageSize() {
+        return cleanupMaxPageSize;
+    }
+
+    /**
+     * @return The time in milliseconds within which the CTS Reaper aims to have each page of Tokens deleted.
+     */
+    public int getCleanupTargetPageLatency() {
+        return cleanupTargetPageLatency;
+    }
+
+    /**
+     * @return The number of partitions of the expiry time range that the CTS Reaper searches concurrently.
+     */
+    public int getCleanupPartitions() {
+        return cleanupPartitions;
+    }
+
+    /**
+     * @return The smallest width in milliseconds of each CTS Reaper partition of the expiry time range.
+     */
+    public int getCleanupPartitionWidth() {
+        return cleanupPartitionWidth;
+    }
+
+    /**
+     * @return The largest number of pages of Tokens the CTS Reaper will have queued for deletion at any one time.
+     */
+    public int getCleanupMaxPagesInFlight() {
+        return cleanupMaxPagesInFlight;
+    }
+}
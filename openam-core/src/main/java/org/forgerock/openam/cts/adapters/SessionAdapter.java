@@ -15,11 +15,9 @@
  */
 package org.forgerock.openam.cts.adapters;
 
-import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 
@@ -28,8 +26,6 @@ import org.forgerock.openam.cts.api.fields.SessionTokenField;
 import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.api.tokens.TokenIdFactory;
 import org.forgerock.openam.cts.utils.JSONSerialisation;
-import org.forgerock.openam.cts.utils.blob.TokenBlobUtils;
-import org.forgerock.openam.cts.utils.blob.strategies.AttributeCompressionStrategy;
 import org.forgerock.openam.tokens.TokenType;
 import org.forgerock.openam.utils.TimeUtils;
 
@@ -45,12 +41,14 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
     private final TokenIdFactory tokenIdFactory;
     private final CoreTokenConfig config;
     private final JSONSerialisation serialisation;
-    private final TokenBlobUtils blobUtils;
 
     /**
-     * The field name Pattern is required for internal Session JSON fudging.
+     * The serialised field name is required for internal Session JSON fudging.
      */
-    private static final Pattern LATEST_ACCESSED_TIME = getLatestAccessedTimeRegexp();
+    private static final String LATEST_ACCESS_TIME_ATTRIBUTE = JSONSerialisation.jsonAttributeName(
+            SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName());
+    private static final byte[] LATEST_ACCESS_TIME_FIELD =
+            LATEST_ACCESS_TIME_ATTRIBUTE.getBytes(StandardCharsets.UTF_8);
 
     /**
      * Creates a default instance with dependencies defined.
@@ -58,15 +56,13 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
      * @param tokenIdFactory Non null.
      * @param config Non null.
      * @param serialisation Non null.
-     * @param blobUtils A collection of Binary Object utilities.
      */
     @Inject
     public SessionAdapter(TokenIdFactory tokenIdFactory, CoreTokenConfig config,
-                          JSONSerialisation serialisation, TokenBlobUtils blobUtils) {
+                          JSONSerialisation serialisation) {
         this.tokenIdFactory = tokenIdFactory;
         this.config = config;
         this.serialisation = serialisation;
-        this.blobUtils = blobUtils;
     }
 
     /**
@@ -98,8 +94,7 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
         token.setAttribute(SessionTokenField.SESSION_ID.getField(), session.getID().toString());
 
         // Binary data
-        String jsonBlob = serialisation.serialise(session);
-        blobUtils.setBlobFromString(token, jsonBlob);
+        token.setBlob(serialisation.serialiseToBytes(session));
 
         String latestAccessTime = filterLatestAccessTime(token);
         if (latestAccessTime != null) {
@@ -121,22 +116,12 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
      * @return Non null InternalSession.
      */
     public InternalSession fromToken(Token token) {
-        String jsonBlob = blobUtils.getBlobAsString(token);
-        int index = findIndexOfValidField(jsonBlob);
+        byte[] jsonBlob = token.getBlob();
 
         // Do we need to insert the LatestAccessTime Into the Blob?
         String latestAccessTime = token.getValue(SessionTokenField.LATEST_ACCESS_TIME.getField());
-        if (latestAccessTime != null && index != -1) {
-            // Assemble the Sting to insert
-            // latestAccessTime
-            String fieldName = SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName();
-            // "latestAccessTime":
-            String jsonField = JSONSerialisation.jsonAttributeName(fieldName);
-            // "latestAccessTime":12345,
-            String addition = jsonField + latestAccessTime + ",";
-
-            // Insert the string into the JSON Blob
-            jsonBlob = jsonBlob.substring(0, index) + addition + jsonBlob.substring(index, jsonBlob.length());
+        if (latestAccessTime != null) {
+            jsonBlob = insertLatestAccessTime(jsonBlob, latestAccessTime);
         }
 
         InternalSession session = serialisation.deserialise(jsonBlob, InternalSession.class);
@@ -149,50 +134,86 @@ public class SessionAdapter implements TokenAdapter<InternalSession> {
     }
 
     /**
-     * Search the JSON blob contents and locate a valid field within the JSON.
+     * Latest Accessed Time is a tricky field as it is internal to the InternalSession and only
+     * accessible when the Token has been serialised.
+     * <p>
+     * The field is located and removed from the binary data directly, so the JSON is never decoded to a String.
      *
-     * @param blob The serialised JSON blob string to search.
-     * @return -1 if no fields were found, or the index of the start position of a valid JSON field.
+     * @param token Token which will be examined for the serialised field. Non null.
+     * @return The value of the field which was removed, or null if the field was not found.
      */
-    public int findIndexOfValidField(String blob) {
-        for (Field field : AttributeCompressionStrategy.getAllValidFields(InternalSession.class)) {
-            String search = JSONSerialisation.jsonAttributeName(field.getName());
-            int index = blob.indexOf(search);
-            if (index != -1) {
-                return index;
+    public String filterLatestAccessTime(Token token) {
+        byte[] contents = token.getBlob();
+        int start = indexOf(contents, LATEST_ACCESS_TIME_FIELD, 0);
+        while (start != -1) {
+            int valueStart = start + LATEST_ACCESS_TIME_FIELD.length;
+            while (valueStart < contents.length && isWhitespace(contents[valueStart])) {
+                valueStart++;
+            }
+            int valueEnd = valueStart;
+            while (valueEnd < contents.length && contents[valueEnd] >= '0' && contents[valueEnd] <= '9') {
+                valueEnd++;
             }
+
+            if (valueEnd > valueStart) {
+                int end = valueEnd < contents.length && contents[valueEnd] == ',' ? valueEnd + 1 : valueEnd;
+                byte[] filtered = new byte[contents.length - (end - start)];
+                System.arraycopy(contents, 0, filtered, 0, start);
+                System.arraycopy(contents, end, filtered, start, contents.length - end);
+                token.setBlob(filtered);
+                return new String(contents, valueStart, valueEnd - valueStart, StandardCharsets.US_ASCII);
+            }
+            start = indexOf(contents, LATEST_ACCESS_TIME_FIELD, start + 1);
         }
-        return -1;
+        return null;
     }
 
     /**
-     * Latest Accessed Time is a tricky field as it is internal to the InternalSession and only
-     * accessible when the Token has been serialised.
+     * Inserts the latest access time as the first field of the serialised InternalSession.
      *
-     * @param token Token which will be examined for the serialised field. Non null.
+     * @param blob The serialised JSON blob.
+     * @param latestAccessTime The value of the latest access time field.
+     * @return The JSON blob with the field inserted, or the unmodified blob if it contained no fields.
      */
-    public String filterLatestAccessTime(Token token) {
-        String contents = blobUtils.getBlobAsString(token);
-        Matcher matcher = LATEST_ACCESSED_TIME.matcher(contents);
-        if (!matcher.find()) {
-            return null;
+    private static byte[] insertLatestAccessTime(byte[] blob, String latestAccessTime) {
+        int index = 0;
+        while (index < blob.length && isWhitespace(blob[index])) {
+            index++;
+        }
+        if (index == blob.length || blob[index] != '{') {
+            return blob;
+        }
+        index++;
+        while (index < blob.length && isWhitespace(blob[index])) {
+            index++;
+        }
+        if (index == blob.length || blob[index] != '"') {
+            return blob;
         }
 
-        String latestAccessTime = matcher.group(1);
-        contents = contents.substring(0, matcher.start()) + contents.substring(matcher.end(), contents.length());
-        blobUtils.setBlobFromString(token, contents);
+        // "latestAccessTime":12345,
+        byte[] addition = (LATEST_ACCESS_TIME_ATTRIBUTE + latestAccessTime + ",").getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[blob.length + addition.length];
+        System.arraycopy(blob, 0, result, 0, index);
+        System.arraycopy(addition, 0, result, index, addition.length);
+        System.arraycopy(blob, index, result, index + addition.length, blob.length - index);
+        return result;
+    }
 
-        return latestAccessTime;
+    private static int indexOf(byte[] data, byte[] search, int fromIndex) {
+        outer:
+        for (int i = fromIndex; i <= data.length - search.length; i++) {
+            for (int j = 0; j < search.length; j++) {
+                if (data[i + j] != search[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
     }
 
-    /**
-     * Helper function to simplify code around this Pattern.
-     * @return Non null.
-     */
-    private static Pattern getLatestAccessedTimeRegexp() {
-        return Pattern.compile(
-                JSONSerialisation.jsonAttributeName(
-                        SessionTokenField.LATEST_ACCESS_TIME.getInternalSessionFieldName())
-                        + "\\s*([0-9]+),?");
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
     }
 }
@@ -55,6 +55,32 @@ public class CoreTokenConstants {
      */
     public static final String CLEANUP_PERIOD = "com.sun.identity.session.repository.cleanupRunPeriod";
     public static final String HEALTH_CHECK_PERIOD = "com.sun.identity.session.repository.healthCheckRunPeriod";
+
+    /**
+     * The number of partitions of the expiry time range the CTS Reaper will search and delete concurrently.
+     */
+    public static final String REAPER_PARTITIONS = "org.forgerock.services.cts.reaper.partitions";
+
+    /**
+     * The smallest width in milliseconds of the expiry time range covered by each CTS Reaper partition.
+     */
+    public static final String REAPER_PARTITION_WIDTH = "org.forgerock.services.cts.reaper.partition.width";
+
+    /**
+     * The largest number of expired tokens the CTS Reaper will request in one page.
+     */
+    public static final String REAPER_MAX_PAGE_SIZE = "org.forgerock.services.cts.reaper.max.page.size";
+
+    /**
+     * The time in milliseconds within which the CTS Reaper aims to have each page of expired tokens deleted.
+     */
+    public static final String REAPER_TARGET_PAGE_LATENCY = "org.forgerock.services.cts.reaper.target.page.latency";
+
+    /**
+     * The largest number of pages of expired tokens the CTS Reaper partitions together will have queued for deletion
+     * at any one time.
+     */
+    public static final String REAPER_MAX_PAGES_IN_FLIGHT = "org.forgerock.services.cts.reaper.max.pages.in.flight";
     /**
      * Globals public Constants, so not to pollute entire product.
      */
@@ -130,6 +156,33 @@ public class CoreTokenConstants {
      */
     public static final String CTS_ASYNC_QUEUE_SIZE = "org.forgerock.services.cts.async.queue.size";
 
+    /**
+     * The maximum number of queued tasks an asynchronous task processor will take from its queue and process
+     * against its connection in one batch.
+     */
+    public static final String CTS_ASYNC_BATCH_SIZE = "org.forgerock.services.cts.async.batch.size";
+
+    /**
+     * The maximum duration in milliseconds an asynchronous task processor will wait for further tasks to arrive
+     * before processing a batch which is not full.
+     */
+    public static final String CTS_ASYNC_BATCH_LINGER = "org.forgerock.services.cts.async.batch.linger";
+
+    /**
+     * The maximum number of tokens held by the CTS token read cache. Zero disables the cache.
+     */
+    public static final String CTS_READ_CACHE_SIZE = "org.forgerock.services.cts.read.cache.size";
+
+    /**
+     * The maximum duration in milliseconds a token will be held by the CTS token read cache.
+     */
+    public static final String CTS_READ_CACHE_TTL = "org.forgerock.services.cts.read.cache.ttl";
+
+    /**
+     * The codec used to compress token binary data when compression is enabled: gzip (default), deflate or lz4.
+     */
+    public static final String CTS_COMPRESSION_CODEC = "org.forgerock.services.cts.compression.codec";
+
     /**
      * Where to broadcast session logout/destroy to.
      */
@@ -97,7 +97,11 @@ public class Token {
     }
 
     /**
-     * Copy constructor will create a shallow-copy of the provided Token.
+     * Copy constructor will create a deep copy of the provided Token.
+     *
+     * Attribute values are held in their encoded String form and decoded on each access, so the copy shares no
+     * mutable state with the provided Token: changes to either Token, or to the arrays and Calendars returned by
+     * them, are not visible through the other.
      *
      * @param copy Non null Token to copy.
      */
@@ -88,9 +88,22 @@ public class CoreTokenAdapter {
      * an error as a result of this operation.
      */
     public ResultHandler<Token, CoreTokenException> create(Token token) throws CoreTokenException {
+        return create(token, handlerFactory.getCreateHandler());
+    }
+
+    /**
+     * Create a token in the persistent store, passing the result to the given handler.
+     *
+     * @param token Token to create.
+     * @param createHandler Non null handler for the result of the operation.
+     * @return The given ResultHandler.
+     * @throws CoreTokenException If the Token exists already or there was
+     * an error as a result of this operation.
+     */
+    public ResultHandler<Token, CoreTokenException> create(Token token,
+            ResultHandler<Token, CoreTokenException> createHandler) throws CoreTokenException {
         applyBlobStrategy(token);
         debug("Create: queued {0} Token {1}\n{2}", token.getType(), token.getTokenId(), token);
-        final ResultHandler<Token, CoreTokenException> createHandler = handlerFactory.getCreateHandler();
         dispatcher.create(token, createHandler);
         return createHandler;
     }
@@ -138,9 +151,23 @@ public class CoreTokenAdapter {
      * @throws SetFailedException If an error occurs updating an existing token.
      */
     public ResultHandler<Token, CoreTokenException> updateOrCreate(Token token) throws CoreTokenException {
+        return updateOrCreate(token, handlerFactory.getUpdateHandler());
+    }
+
+    /**
+     * Update or create a Token in the LDAP store, passing the result to the given handler.
+     *
+     * @param token Token to update or create.
+     * @param updateHandler Non null handler for the result of the operation.
+     * @return The given ResultHandler.
+     * @throws CreateFailedException If an error occurs attempting to create the token.
+     * @throws SetFailedException If an error occurs updating an existing token.
+     * @see #updateOrCreate(Token)
+     */
+    public ResultHandler<Token, CoreTokenException> updateOrCreate(Token token,
+            ResultHandler<Token, CoreTokenException> updateHandler) throws CoreTokenException {
         applyBlobStrategy(token);
         debug("UpdateOrCreate: queued {0} Token {1}\n{2}", token.getType(), token.getTokenId(), token);
-        final ResultHandler<Token, CoreTokenException> updateHandler = handlerFactory.getUpdateHandler();
         dispatcher.update(token, updateHandler);
         return updateHandler;
     }
@@ -152,8 +179,19 @@ public class CoreTokenAdapter {
      * @throws CoreTokenException If there was an error while trying to remove the token with the given Id.
      */
     public ResultHandler<String, CoreTokenException> delete(String tokenId) throws CoreTokenException {
+        return delete(tokenId, handlerFactory.getDeleteHandler());
+    }
+
+    /**
+     * Deletes a token from the store based on its token id, passing the result to the given handler.
+     * @param tokenId Non null token id.
+     * @param deleteHandler Non null handler for the result of the operation.
+     * @return The given ResultHandler.
+     * @throws CoreTokenException If there was an error while trying to remove the token with the given Id.
+     */
+    public ResultHandler<String, CoreTokenException> delete(String tokenId,
+            ResultHandler<String, CoreTokenException> deleteHandler) throws CoreTokenException {
         debug("Delete: queued delete {0}", tokenId);
-        final ResultHandler<String, CoreTokenException> deleteHandler = handlerFactory.getDeleteHandler();
         dispatcher.delete(tokenId, deleteHandler);
         return deleteHandler;
     }
@@ -45,6 +45,9 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.requests.ModifyRequest;
 import org.forgerock.opendj.ldap.responses.Result;
 import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.promise.Promise;
+import org.forgerock.util.promise.Promises;
 
 /**
  * Responsible adapting the LDAP SDK Connection and its associated domain
@@ -123,17 +126,7 @@ public class LdapAdapter implements TokenStorageAdapter<Connection> {
      * @throws LdapOperationFailedException If the operation failed for a known reason.
      */
     public boolean update(Connection connection, Token previous, Token updated) throws LdapOperationFailedException {
-        Entry currentEntry = conversion.getEntry(updated);
-        LdapTokenAttributeConversion.stripObjectClass(currentEntry);
-
-        Entry previousEntry = conversion.getEntry(previous);
-        LdapTokenAttributeConversion.stripObjectClass(previousEntry);
-
-        ModifyRequest request = Entries.diffEntries(previousEntry, currentEntry,
-            Entries.diffOptions().replaceSingleValuedAttributes());
-
-        request.addControl(TransactionIdControl.newControl(AuditRequestContext.createSubTransactionIdValue()));
-
+        ModifyRequest request = diff(previous, updated);
         if (request.getModifications().isEmpty()) {
             return false;
         }
@@ -166,6 +159,85 @@ public class LdapAdapter implements TokenStorageAdapter<Connection> {
         }
     }
 
+    /**
+     * Starts the creation of the Token in LDAP without waiting for the result.
+     *
+     * @param connection The non null connection to perform this call against.
+     * @param token Non null Token to create.
+     * @return A promise which fails with an {@link LdapOperationFailedException} if the Token was not created.
+     */
+    @Override
+    public Promise<Void, DataLayerException> createAsync(Connection connection, Token token) {
+        Entry entry = conversion.getEntry(token);
+        return processResultAsync(connection.addAsync(LDAPRequests.newAddRequest(entry)), false);
+    }
+
+    /**
+     * Starts a read against the LDAP connection without waiting for the result.
+     *
+     * @param connection The non null connection to perform this call against.
+     * @param tokenId The id of the Token to read.
+     * @return A promise of the Token if found, otherwise of null.
+     */
+    @Override
+    public Promise<Token, DataLayerException> readAsync(Connection connection, String tokenId) {
+        DN dn = conversion.generateTokenDN(tokenId);
+        Promise<SearchResultEntry, LdapException> promise =
+                connection.searchSingleEntryAsync(LDAPRequests.newSingleEntrySearchRequest(dn));
+        return promise.thenAsync(new AsyncFunction<SearchResultEntry, Token, DataLayerException>() {
+            @Override
+            public Promise<Token, DataLayerException> apply(SearchResultEntry resultEntry) {
+                return Promises.<Token, DataLayerException>newResultPromise(conversion.tokenFromEntry(resultEntry));
+            }
+        }, new AsyncFunction<LdapException, Token, DataLayerException>() {
+            @Override
+            public Promise<Token, DataLayerException> apply(LdapException e) {
+                Result result = e.getResult();
+                if (result != null && ResultCode.NO_SUCH_OBJECT.equals(result.getResultCode())) {
+                    return Promises.<Token, DataLayerException>newResultPromise(null);
+                }
+                return Promises.<Token, DataLayerException>newExceptionPromise(
+                        new LdapOperationFailedException(result));
+            }
+        });
+    }
+
+    /**
+     * Starts an update of the Token without waiting for the result.
+     *
+     * @param connection The non null connection to perform this call against.
+     * @param previous The non null previous Token to check against.
+     * @param updated The non null Token to update with.
+     * @return A promise of true if the token was updated, or false if there were no changes detected.
+     */
+    @Override
+    public Promise<Boolean, DataLayerException> updateAsync(Connection connection, Token previous, Token updated) {
+        ModifyRequest request = diff(previous, updated);
+        if (request.getModifications().isEmpty()) {
+            return Promises.newResultPromise(false);
+        }
+        return processResultAsync(connection.modifyAsync(request), false)
+                .thenAsync(new AsyncFunction<Void, Boolean, DataLayerException>() {
+                    @Override
+                    public Promise<Boolean, DataLayerException> apply(Void value) {
+                        return Promises.newResultPromise(true);
+                    }
+                });
+    }
+
+    /**
+     * Starts a delete of the Token ID provided without waiting for the result.
+     *
+     * @param connection Non null connection to call.
+     * @param tokenId The non null Token ID to delete.
+     * @return A promise which fails with an {@link LdapOperationFailedException} if the Token may still exist.
+     */
+    @Override
+    public Promise<Void, DataLayerException> deleteAsync(Connection connection, String tokenId) {
+        String dn = String.valueOf(conversion.generateTokenDN(tokenId));
+        return processResultAsync(connection.deleteAsync(LDAPRequests.newDeleteRequest(dn)), true);
+    }
+
     @Override
     public Collection<Token> query(Connection connection, TokenFilter query) throws DataLayerException {
         try {
@@ -197,6 +269,52 @@ public class LdapAdapter implements TokenStorageAdapter<Connection> {
             .executeContinuousQuery(connection, listener);
     }
 
+    private ModifyRequest diff(Token previous, Token updated) {
+        Entry currentEntry = conversion.getEntry(updated);
+        LdapTokenAttributeConversion.stripObjectClass(currentEntry);
+
+        Entry previousEntry = conversion.getEntry(previous);
+        LdapTokenAttributeConversion.stripObjectClass(previousEntry);
+
+        ModifyRequest request = Entries.diffEntries(previousEntry, currentEntry,
+            Entries.diffOptions().replaceSingleValuedAttributes());
+
+        request.addControl(TransactionIdControl.newControl(AuditRequestContext.createSubTransactionIdValue()));
+        return request;
+    }
+
+    /**
+     * Maps the result of an asynchronous LDAP operation in the same way as {@link #processResult(Result)}.
+     *
+     * @param promise Non null promise of the operation result.
+     * @param ignoreNoSuchObject Whether the entry not existing counts as success, as it does for a delete.
+     * @return A promise which fails with an {@link LdapOperationFailedException} if the operation was not successful.
+     */
+    private Promise<Void, DataLayerException> processResultAsync(Promise<Result, LdapException> promise,
+            final boolean ignoreNoSuchObject) {
+        return promise.thenAsync(new AsyncFunction<Result, Void, DataLayerException>() {
+            @Override
+            public Promise<Void, DataLayerException> apply(Result result) {
+                if (result.getResultCode().isExceptional()) {
+                    return Promises.<Void, DataLayerException>newExceptionPromise(
+                            new LdapOperationFailedException(result));
+                }
+                return Promises.newResultPromise(null);
+            }
+        }, new AsyncFunction<LdapException, Void, DataLayerException>() {
+            @Override
+            public Promise<Void, DataLayerException> apply(LdapException e) {
+                Result result = e.getResult();
+                if (ignoreNoSuchObject && result != null
+                        && ResultCode.NO_SUCH_OBJECT.equals(result.getResultCode())) {
+                    return Promises.newResultPromise(null);
+                }
+                return Promises.<Void, DataLayerException>newExceptionPromise(
+                        new LdapOperationFailedException(result));
+            }
+        });
+    }
+
     /**
      * Verify if the result was successful.
      *
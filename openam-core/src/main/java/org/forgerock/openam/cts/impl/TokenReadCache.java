@@ -0,0 +1,268 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.impl;
+
+import java.text.MessageFormat;
+import java.util.Calendar;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+import org.forgerock.openam.cts.api.CoreTokenConstants;
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.continuous.ContinuousQueryListener;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.util.annotations.VisibleForTesting;
+
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * An optional, bounded cache of recently read CTS tokens which sits in front of the persistence layer.
+ *
+ * The cache is disabled unless {@link CoreTokenConstants#CTS_READ_CACHE_SIZE} is set to a positive value. Each
+ * cached token is held for at most {@link CoreTokenConstants#CTS_READ_CACHE_TTL} milliseconds, and never beyond
+ * its own expiry time.
+ *
+ * The cache is kept consistent with the persistence layer by invalidating a token whenever it is written by this
+ * server, and by acting as a {@link ContinuousQueryListener} on the CTS change feed so that changes made by other
+ * servers are also invalidated. Should the change feed lose its connection the entire cache is cleared.
+ *
+ * To avoid a read that was in progress while a token was changed from caching the old state of that token, every
+ * invalidation increments a version counter for the token's stripe; a read result is only cached if the version
+ * it observed before reading is still current once it has been cached.
+ *
+ * The cache holds a deep copy of each token put into it and callers always receive a deep copy of the cached
+ * token (see {@link Token#Token(Token)}), so modifications made by callers, either to the token they cached or
+ * to the token they were returned, are never visible to other readers.
+ */
+@Singleton
+public class TokenReadCache implements ContinuousQueryListener {
+
+    /**
+     * Default duration in milliseconds that a token will be held in the cache.
+     */
+    public static final long DEFAULT_TTL = 10000L;
+
+    private static final int STRIPES = 64;
+
+    private final CTSOperationsMonitoringStore monitoringStore;
+    private final Debug debug;
+    private final Cache<String, CachedToken> cache;
+    private final long ttl;
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private volatile boolean enabled;
+
+    /**
+     * Creates the cache using the system configuration.
+     *
+     * @param monitoringStore Required to report cache hits, misses and invalidations.
+     * @param debug Required for debugging.
+     */
+    @Inject
+    public TokenReadCache(CTSOperationsMonitoringStore monitoringStore,
+            @Named(CoreTokenConstants.CTS_DEBUG) Debug debug) {
+        this(SystemProperties.getAsInt(CoreTokenConstants.CTS_READ_CACHE_SIZE, 0),
+                SystemProperties.getAsLong(CoreTokenConstants.CTS_READ_CACHE_TTL, DEFAULT_TTL),
+                monitoringStore, debug);
+    }
+
+    @VisibleForTesting
+    TokenReadCache(int size, long ttl, CTSOperationsMonitoringStore monitoringStore, Debug debug) {
+        this.monitoringStore = monitoringStore;
+        this.debug = debug;
+        this.ttl = ttl > 0 ? ttl : DEFAULT_TTL;
+        this.enabled = size > 0;
+        if (enabled) {
+            cache = CacheBuilder.newBuilder()
+                    .maximumSize(size)
+                    .expireAfterWrite(this.ttl, TimeUnit.MILLISECONDS)
+                    .concurrencyLevel(STRIPES)
+                    .build();
+            debug("Token read cache enabled, size {0}, ttl {1}ms", size, this.ttl);
+        } else {
+            cache = null;
+        }
+    }
+
+    /**
+     * @return true if tokens will be cached.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stops any further caching and clears the cache. Used when the cache can no longer be kept consistent
+     * with the persistence layer.
+     */
+    public void disable() {
+        if (enabled) {
+            enabled = false;
+            cache.invalidateAll();
+            debug("Token read cache disabled");
+        }
+    }
+
+    /**
+     * Gets the current invalidation version for the given token. This must be called before the token is read
+     * from the persistence layer, and the result passed to {@link #put(Token, long)}.
+     *
+     * @param tokenId Non null token ID.
+     * @return The current version.
+     */
+    public long getVersion(String tokenId) {
+        return versions.get(stripe(tokenId));
+    }
+
+    /**
+     * Returns a copy of the cached token.
+     *
+     * @param tokenId Non null token ID.
+     * @return A copy of the token, or null if the token is not cached.
+     */
+    public Token get(String tokenId) {
+        if (!enabled) {
+            return null;
+        }
+        CachedToken cached = cache.getIfPresent(tokenId);
+        if (cached != null && cached.isExpired(System.currentTimeMillis())) {
+            cache.invalidate(tokenId);
+            cached = null;
+        }
+        monitoringStore.addTokenCacheRead(cached != null);
+        return cached == null ? null : new Token(cached.token);
+    }
+
+    /**
+     * Caches a copy of a token read from the persistence layer, provided that the token has not been invalidated
+     * since the given version was obtained.
+     *
+     * @param token Non null token.
+     * @param version The version returned by {@link #getVersion(String)} before the token was read.
+     */
+    public void put(Token token, long version) {
+        if (!enabled) {
+            return;
+        }
+        String tokenId = token.getTokenId();
+        int stripe = stripe(tokenId);
+        if (versions.get(stripe) != version) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiry = now + ttl;
+        Calendar tokenExpiry = token.getExpiryTimestamp();
+        if (tokenExpiry != null) {
+            expiry = Math.min(expiry, tokenExpiry.getTimeInMillis());
+        }
+        if (expiry <= now) {
+            return;
+        }
+        cache.put(tokenId, new CachedToken(new Token(token), expiry));
+        // An invalidation may have raced with the put above; if so, the entry cannot be trusted.
+        if (versions.get(stripe) != version) {
+            cache.invalidate(tokenId);
+        }
+    }
+
+    /**
+     * Removes the token from the cache and prevents in progress reads of the token from being cached.
+     *
+     * @param tokenId Non null token ID.
+     */
+    public void invalidate(String tokenId) {
+        if (!enabled) {
+            return;
+        }
+        versions.incrementAndGet(stripe(tokenId));
+        cache.invalidate(tokenId);
+        monitoringStore.addTokenCacheInvalidation();
+    }
+
+    /**
+     * Removes every token from the cache.
+     */
+    public void invalidateAll() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            versions.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+        monitoringStore.addTokenCacheInvalidation();
+    }
+
+    @Override
+    public void objectChanged(String tokenId) {
+        invalidate(tokenId);
+    }
+
+    @Override
+    public void objectsChanged(Set<String> tokenIds) {
+        for (String tokenId : tokenIds) {
+            invalidate(tokenId);
+        }
+    }
+
+    @Override
+    public void connectionLost() {
+        debug("Change feed connection lost, clearing token read cache");
+        invalidateAll();
+    }
+
+    @Override
+    public void processError(DataLayerException error) {
+        debug.error(CoreTokenConstants.DEBUG_HEADER + "Unable to listen for token changes, disabling token read cache",
+                error);
+        disable();
+    }
+
+    private static int stripe(String tokenId) {
+        return (tokenId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    private void debug(String format, Object... args) {
+        if (debug.messageEnabled()) {
+            debug.message(MessageFormat.format(CoreTokenConstants.DEBUG_HEADER + format, args));
+        }
+    }
+
+    /**
+     * A cached token along with the time at which it must no longer be returned.
+     */
+    private static final class CachedToken {
+        private final Token token;
+        private final long expiry;
+
+        private CachedToken(Token token, long expiry) {
+            this.token = token;
+            this.expiry = expiry;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiry;
+        }
+    }
+}
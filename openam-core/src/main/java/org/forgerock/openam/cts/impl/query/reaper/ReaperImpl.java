@@ -15,18 +15,11 @@
  */
 package org.forgerock.openam.cts.impl.query.reaper;
 
-import static org.forgerock.openam.utils.Time.*;
-
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Iterator;
 
-import javax.inject.Inject;
-
-import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
-import org.forgerock.openam.sm.datalayer.api.ConnectionType;
-import org.forgerock.openam.sm.datalayer.api.DataLayer;
 import org.forgerock.openam.sm.datalayer.api.query.QueryBuilder;
 import org.forgerock.openam.sm.datalayer.api.query.QueryFactory;
 import org.forgerock.openam.tokens.CoreTokenField;
@@ -36,6 +29,9 @@ import org.forgerock.util.query.QueryFilter;
 /**
  * This implementation will construct an appropriate filter to use for querying the persistence layer
  * and then perform the query.
+ *
+ * The query is limited to the Tokens which expired within a range of time, so that the expired Tokens
+ * can be partitioned between concurrent queries.
  */
 public class ReaperImpl<C, F> implements ReaperQuery {
 
@@ -43,17 +39,24 @@ public class ReaperImpl<C, F> implements ReaperQuery {
     private final QueryBuilder<C, F> query;
     private C connection;
 
-    @Inject
-    public ReaperImpl(@DataLayer(ConnectionType.CTS_REAPER) QueryFactory queryFactory, CoreTokenConfig config) {
-        QueryFactory<C, F> queryFactoryProvided = queryFactory;
-        Reject.ifTrue(config.getCleanupPageSize() <= 0);
-        int pageSize = config.getCleanupPageSize();
-
-        Calendar calendar = getCalendarInstance();
+    /**
+     * @param queryFactory Required for building the query.
+     * @param expiredAfter If not null, only Tokens which expired at or after this time are returned.
+     * @param expiredBefore Non null, only Tokens which expired before this time are returned.
+     * @param pageSize The positive number of Tokens to return in each page.
+     */
+    public ReaperImpl(QueryFactory<C, F> queryFactory, Calendar expiredAfter, Calendar expiredBefore,
+            int pageSize) {
+        Reject.ifNull(expiredBefore);
+        Reject.ifTrue(pageSize <= 0);
 
-        QueryFilter<CoreTokenField> filter = QueryFilter.lessThan(CoreTokenField.EXPIRY_DATE, calendar);
-        query = queryFactoryProvided.createInstance()
-                .withFilter(filter.accept(queryFactoryProvided.createFilterConverter(), null))
+        QueryFilter<CoreTokenField> filter = QueryFilter.lessThan(CoreTokenField.EXPIRY_DATE, expiredBefore);
+        if (expiredAfter != null) {
+            filter = QueryFilter.and(
+                    QueryFilter.greaterThanOrEqualTo(CoreTokenField.EXPIRY_DATE, expiredAfter), filter);
+        }
+        query = queryFactory.createInstance()
+                .withFilter(filter.accept(queryFactory.createFilterConverter(), null))
                 .pageResultsBy(pageSize)
                 .returnTheseAttributes(CoreTokenField.TOKEN_ID);
     }
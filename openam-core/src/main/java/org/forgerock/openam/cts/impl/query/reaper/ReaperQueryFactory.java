@@ -11,21 +11,80 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.query.reaper;
 
-import org.forgerock.guice.core.InjectorHolder;
+import java.io.Closeable;
+import java.util.Calendar;
+
+import javax.inject.Inject;
+
+import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.exceptions.LdapInitializationFailedException;
+import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
+import org.forgerock.openam.sm.datalayer.api.ConnectionType;
+import org.forgerock.openam.sm.datalayer.api.DataLayer;
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.query.QueryFactory;
+import org.forgerock.openam.utils.IOUtils;
 
 /**
  * Generates instances of the ReaperQuery.
  */
 public class ReaperQueryFactory {
+
+    private final ConnectionFactory connectionFactory;
+    private final QueryFactory queryFactory;
+
+    /**
+     * @param connectionFactory Required for establishing a connection for each query.
+     * @param queryFactory Required for building each query.
+     */
+    @Inject
+    public ReaperQueryFactory(@DataLayer(ConnectionType.CTS_REAPER) ConnectionFactory connectionFactory,
+            @DataLayer(ConnectionType.CTS_REAPER) QueryFactory queryFactory) {
+        this.connectionFactory = connectionFactory;
+        this.queryFactory = queryFactory;
+    }
+
     /**
-     * Defers to the {@link InjectorHolder} for instantiation.
+     * Creates a query for the Tokens which expired within the given range of time. Each query uses its own
+     * connection to the persistence layer.
+     *
+     * @param expiredAfter If not null, only Tokens which expired at or after this time are returned.
+     * @param expiredBefore Non null, only Tokens which expired before this time are returned.
+     * @param pageSize The positive number of Tokens to return in each page.
      * @return Non null.
      */
-    public ReaperQuery getQuery() {
-        return InjectorHolder.getInstance(ReaperQuery.class);
+    @SuppressWarnings("unchecked")
+    public ReaperQuery getQuery(Calendar expiredAfter, Calendar expiredBefore, int pageSize) {
+        return new ReaperConnection(connectionFactory,
+                new ReaperImpl(queryFactory, expiredAfter, expiredBefore, pageSize));
+    }
+
+    /**
+     * Determines whether any Token expired before the given time, by requesting a single page of one Token on a
+     * connection of its own.
+     *
+     * @param expiredBefore Non null, the time before which to look for expired Tokens.
+     * @return True if at least one Token expired before the given time.
+     * @throws CoreTokenException If there was any unexpected error during processing.
+     */
+    @SuppressWarnings("unchecked")
+    public boolean hasExpiredTokens(Calendar expiredBefore) throws CoreTokenException {
+        ReaperImpl impl = new ReaperImpl(queryFactory, null, expiredBefore, 1);
+        Closeable connection;
+        try {
+            connection = (Closeable) connectionFactory.create();
+        } catch (DataLayerException e) {
+            throw new LdapInitializationFailedException(e);
+        }
+        try {
+            impl.setConnection(connection);
+            return impl.nextPage() != null;
+        } finally {
+            IOUtils.closeIfNotNull(connection);
+        }
     }
 }
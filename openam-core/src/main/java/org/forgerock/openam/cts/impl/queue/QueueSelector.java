@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.queue;
 
@@ -26,20 +26,60 @@ import org.forgerock.util.Reject;
  * we can avoid concurrent modification exceptions due to operations being performed on
  * the same Token by different threads.
  *
- * This algorithm is prone to modulus bias towards zero for numbers that are not a power of
- * two. Therefore this algorithm should only be used if this is the case.
+ * The Token ID hash is first mixed to spread poorly distributed identifiers and then
+ * mapped to a queue using the jump consistent hash algorithm of Lamping and Veach. This
+ * gives an even distribution for any number of queues, not only powers of two, and when
+ * the number of queues changes from n to n + 1 only 1/(n + 1) of the Token IDs are moved
+ * to a different queue.
+ *
+ * @see <a href="http://arxiv.org/abs/1406.2294">A Fast, Minimal Memory, Consistent Hash Algorithm</a>
  */
 public final class QueueSelector {
+    private static final long JUMP_MULTIPLIER = 2862933555777941757L;
+    private static final double JUMP_RANGE = (double) (1L << 31);
+
     /**
      * Static utility class
      */
     private QueueSelector() {}
 
+    /**
+     * Select the queue for the given Token ID.
+     *
+     * @param tokenId Non null Token ID.
+     * @param queues The number of queues available, must be positive.
+     * @return A queue index between zero (inclusive) and {@code queues} (exclusive).
+     */
     public static int select(String tokenId, int queues) {
         Reject.ifTrue(tokenId == null, "Token ID cannot be null");
         Reject.ifTrue(queues <= 0, "queues must be positive");
 
-        int value = Math.abs(tokenId.hashCode());
-        return value % queues;
+        return jump(mix(tokenId.hashCode()), queues);
+    }
+
+    /**
+     * Jump consistent hash: maps a 64 bit key to a bucket in the range [0, buckets).
+     */
+    private static int jump(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * JUMP_MULTIPLIER + 1;
+            j = (long) ((b + 1) * (JUMP_RANGE / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    /**
+     * 64 bit finaliser from MurmurHash3, used to spread the bits of the String hash code.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
     }
 }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.queue.config;
 
@@ -41,6 +41,8 @@ import org.forgerock.openam.sm.exceptions.InvalidConfigurationException;
 public class CTSQueueConfiguration implements QueueConfiguration {
     public static final int DEFAULT_TIMEOUT = 120;
     public static final int DEFAULT_QUEUE_SIZE = 5000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_BATCH_LINGER = 0;
 
     private final ConnectionConfigFactory dataLayerConfig;
     private final Debug debug;
@@ -84,44 +86,51 @@ public class CTSQueueConfiguration implements QueueConfiguration {
         return queueSize;
     }
 
+    /**
+     * @return {@inheritDoc} Default is {@link #DEFAULT_BATCH_SIZE}.
+     */
     @Override
-    public int getProcessors() throws DataLayerException {
-        try {
-            int max = dataLayerConfig.getConfig(ConnectionType.CTS_ASYNC).getMaxConnections();
-            return findPowerOfTwo(max - 1);
-        } catch (IllegalArgumentException e) {
-            throw new DataLayerException("Number of connections too low", e);
-        } catch (InvalidConfigurationException e) {
-            throw new DataLayerException("Configuration was invalid", e);
+    public int getBatchSize() {
+        int batchSize = SystemProperties.getAsInt(CoreTokenConstants.CTS_ASYNC_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        if (batchSize <= 0) {
+            debug("Batch size {0} was invalid, using default {1}", batchSize, DEFAULT_BATCH_SIZE);
+            return DEFAULT_BATCH_SIZE;
         }
+        return batchSize;
     }
 
     /**
-     * Not every even number is a power of two.
-     * @see <a href="http://en.wikipedia.org/wiki/Power_of_two#Fast_algorithm_to_check_if_a_positive_number_is_a_power_of_two">Wikipedia</a>
-     *
-     * @return true if the integer is a power of two.
+     * @return {@inheritDoc} Default is {@link #DEFAULT_BATCH_LINGER}.
      */
-    private static boolean isPowerOfTwo(int value) {
-        return (value & (value - 1)) == 0;
+    @Override
+    public int getBatchLinger() {
+        int linger = SystemProperties.getAsInt(CoreTokenConstants.CTS_ASYNC_BATCH_LINGER, DEFAULT_BATCH_LINGER);
+        if (linger < 0) {
+            debug("Batch linger {0} was invalid, using default {1}", linger, DEFAULT_BATCH_LINGER);
+            return DEFAULT_BATCH_LINGER;
+        }
+        return linger;
     }
 
     /**
-     * Locate a power of two that is less than or equal to the given number.
-     *
-     * @see QueueSelector#select(String, int)
+     * {@inheritDoc}
      *
-     * @param value Starting value, must be positive.
-     * @return A valid power of two less than or equal to the given value. Not negative.
-     * @throws IllegalArgumentException If no power of two was found.
+     * One processor is created for each available connection, less one which is reserved. As the
+     * {@link QueueSelector} distributes Token IDs evenly over any number of queues, the number of
+     * processors is not restricted to a power of two.
      */
-    public static int findPowerOfTwo(int value) {
-        for (int ii = value; ii > 0; ii--) {
-            if (isPowerOfTwo(ii)) {
-                return ii;
+    @Override
+    public int getProcessors() throws DataLayerException {
+        try {
+            int max = dataLayerConfig.getConfig(ConnectionType.CTS_ASYNC).getMaxConnections();
+            int processors = max - 1;
+            if (processors <= 0) {
+                throw new DataLayerException("Number of connections too low");
             }
+            return processors;
+        } catch (InvalidConfigurationException e) {
+            throw new DataLayerException("Configuration was invalid", e);
         }
-        throw new IllegalArgumentException("No power of two found.");
     }
 
     private void debug(String format, Object... args) {
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring;
@@ -141,4 +141,79 @@ public interface CTSOperationsMonitoringStore {
      * @return the maximum observed failure rate of the given operation in the current monitoring period.
      */
     long getMaximumOperationFailuresPerPeriod(CTSOperation operation);
+
+    /**
+     * Records a task being placed on one of the CTS asynchronous task queues.
+     *
+     * @param queue The index of the queue the task was placed on.
+     * @param depth The depth of the queue after the task was added.
+     * @param waitTime The time in milliseconds the caller waited for space on the queue.
+     */
+    void addQueueOperation(int queue, int depth, long waitTime);
+
+    /**
+     * Gets the most recently observed depth of the given CTS asynchronous task queue.
+     *
+     * @param queue The index of the queue.
+     * @return The depth of the queue.
+     */
+    int getQueueDepth(int queue);
+
+    /**
+     * Gets the maximum depth observed for the given CTS asynchronous task queue since server start up.
+     *
+     * @param queue The index of the queue.
+     * @return The maximum depth of the queue.
+     */
+    int getMaximumQueueDepth(int queue);
+
+    /**
+     * Gets the average time in milliseconds callers waited to place a task on the given CTS asynchronous task queue.
+     *
+     * @param queue The index of the queue.
+     * @return The average wait time of the queue.
+     */
+    double getAverageQueueWaitTime(int queue);
+
+    /**
+     * Gets the maximum time in milliseconds a caller waited to place a task on the given CTS asynchronous task queue.
+     *
+     * @param queue The index of the queue.
+     * @return The maximum wait time of the queue.
+     */
+    long getMaximumQueueWaitTime(int queue);
+
+    /**
+     * Records a read of a token made through the CTS token read cache.
+     *
+     * @param hit true if the token was returned from the cache, false if it was read from the persistence layer.
+     */
+    void addTokenCacheRead(boolean hit);
+
+    /**
+     * Records the invalidation of a token held by the CTS token read cache.
+     */
+    void addTokenCacheInvalidation();
+
+    /**
+     * Gets the cumulative count of reads answered by the CTS token read cache since server start up.
+     *
+     * @return The number of cache hits.
+     */
+    long getTokenCacheHitCount();
+
+    /**
+     * Gets the cumulative count of reads which could not be answered by the CTS token read cache since
+     * server start up.
+     *
+     * @return The number of cache misses.
+     */
+    long getTokenCacheMissCount();
+
+    /**
+     * Gets the cumulative count of invalidations of the CTS token read cache since server start up.
+     *
+     * @return The number of cache invalidations.
+     */
+    long getTokenCacheInvalidationCount();
 }
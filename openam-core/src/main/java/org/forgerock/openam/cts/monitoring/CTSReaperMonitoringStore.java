@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring;
@@ -41,4 +41,25 @@ public interface CTSReaperMonitoringStore {
      * @return The rate of session deletion by the CTS Reaper.
      */
     double getRateOfDeletedSessions();
+
+    /**
+     * Gets the average number of tokens deleted per second of CTS Reaper run time since server start up.
+     *
+     * @return The deletion throughput of the CTS Reaper.
+     */
+    double getReaperThroughput();
+
+    /**
+     * Updates the number of expired tokens the CTS Reaper run in progress has found but not yet seen deleted.
+     *
+     * @param pendingDeletions The number of outstanding deletions.
+     */
+    void updateReaperBacklog(long pendingDeletions);
+
+    /**
+     * Gets the number of expired tokens the CTS Reaper run in progress has found but not yet seen deleted.
+     *
+     * @return The number of outstanding deletions.
+     */
+    long getReaperBacklog();
 }
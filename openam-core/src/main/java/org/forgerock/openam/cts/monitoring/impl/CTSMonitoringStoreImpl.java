@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring.impl;
@@ -24,8 +24,10 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.monitoring.CTSConnectionMonitoringStore;
 import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.cts.monitoring.CTSReaperMonitoringStore;
+import org.forgerock.openam.cts.monitoring.impl.cache.TokenCacheStore;
 import org.forgerock.openam.cts.monitoring.impl.connections.ConnectionStore;
 import org.forgerock.openam.cts.monitoring.impl.operations.TokenOperationsStore;
+import org.forgerock.openam.cts.monitoring.impl.queue.TaskQueueStore;
 import org.forgerock.openam.cts.monitoring.impl.reaper.ReaperMonitor;
 
 import javax.inject.Inject;
@@ -56,6 +58,8 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
     private final ExecutorService executorService;
     private final ReaperMonitor reaperMonitor;
     private final ConnectionStore connectionStore;
+    private final TaskQueueStore taskQueueStore;
+    private final TokenCacheStore tokenCacheStore;
 
     /**
      * Constructs an instance of the CTSMonitoringStoreImpl.
@@ -64,18 +68,25 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
      * @param executorService An instance of an ExecutorService.
      * @param tokenOperationsStore An instance of the TokenOperationsStore.
      * @param reaperMonitor An instance of the ReaperMonitor.
+     * @param connectionStore An instance of the ConnectionStore.
+     * @param taskQueueStore An instance of the TaskQueueStore.
+     * @param tokenCacheStore An instance of the TokenCacheStore.
      */
     @Inject
     public CTSMonitoringStoreImpl(@Named(EXECUTOR_BINDING_NAME) final ExecutorService executorService,
                                   final TokenOperationsStore tokenOperationsStore,
                                   final ReaperMonitor reaperMonitor,
                                   final ConnectionStore connectionStore,
+                                  final TaskQueueStore taskQueueStore,
+                                  final TokenCacheStore tokenCacheStore,
                                   @Named(CoreTokenConstants.CTS_DEBUG) final Debug debug) {
         this.debug = debug;
         this.executorService = executorService;
         this.tokenOperationsStore = tokenOperationsStore;
         this.reaperMonitor = reaperMonitor;
         this.connectionStore = connectionStore;
+        this.taskQueueStore = taskQueueStore;
+        this.tokenCacheStore = tokenCacheStore;
     }
 
     /**
@@ -190,6 +201,56 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
         return tokenOperationsStore.getMaximumOperationFailuresPerPeriod(operation);
     }
 
+    @Override
+    public void addQueueOperation(int queue, int depth, long waitTime) {
+        taskQueueStore.addQueueOperation(queue, depth, waitTime);
+    }
+
+    @Override
+    public int getQueueDepth(int queue) {
+        return taskQueueStore.getQueueDepth(queue);
+    }
+
+    @Override
+    public int getMaximumQueueDepth(int queue) {
+        return taskQueueStore.getMaximumQueueDepth(queue);
+    }
+
+    @Override
+    public double getAverageQueueWaitTime(int queue) {
+        return taskQueueStore.getAverageQueueWaitTime(queue);
+    }
+
+    @Override
+    public long getMaximumQueueWaitTime(int queue) {
+        return taskQueueStore.getMaximumQueueWaitTime(queue);
+    }
+
+    @Override
+    public void addTokenCacheRead(boolean hit) {
+        tokenCacheStore.addRead(hit);
+    }
+
+    @Override
+    public void addTokenCacheInvalidation() {
+        tokenCacheStore.addInvalidation();
+    }
+
+    @Override
+    public long getTokenCacheHitCount() {
+        return tokenCacheStore.getHitCount();
+    }
+
+    @Override
+    public long getTokenCacheMissCount() {
+        return tokenCacheStore.getMissCount();
+    }
+
+    @Override
+    public long getTokenCacheInvalidationCount() {
+        return tokenCacheStore.getInvalidationCount();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -206,6 +267,21 @@ public class CTSMonitoringStoreImpl implements CTSOperationsMonitoringStore, CTS
         return reaperMonitor.getRateOfDeletion();
     }
 
+    @Override
+    public double getReaperThroughput() {
+        return reaperMonitor.getThroughput();
+    }
+
+    @Override
+    public void updateReaperBacklog(long pendingDeletions) {
+        reaperMonitor.setBacklog(pendingDeletions);
+    }
+
+    @Override
+    public long getReaperBacklog() {
+        return reaperMonitor.getBacklog();
+    }
+
     @Override
     public void addConnection(boolean success) {
         connectionStore.addConnection(success);
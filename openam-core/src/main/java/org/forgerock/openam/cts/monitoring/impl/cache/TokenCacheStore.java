@@ -0,0 +1,76 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.monitoring.impl.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+/**
+ * A data structure that stores the cumulative hit, miss and invalidation counts of the CTS token read cache.
+ *
+ * @since 14.0.0
+ * @see org.forgerock.openam.cts.impl.TokenReadCache
+ * @see org.forgerock.openam.monitoring.cts.CtsTokenCacheImpl
+ */
+@Singleton
+public class TokenCacheStore {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Records a read which was answered from the cache, or one which had to go to the persistence layer.
+     *
+     * @param hit true if the read was answered from the cache.
+     */
+    public void addRead(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * Records the invalidation of a cached token.
+     */
+    public void addInvalidation() {
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * @return The number of reads answered from the cache since server start up.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of reads not answered from the cache since server start up.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of cache invalidations since server start up.
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.monitoring.impl.queue;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+/**
+ * A data structure that stores the depth and enqueue wait time of each of the CTS asynchronous task queues.
+ * <br/>
+ * The wait time is the time a caller spent blocked while offering a task to a full queue, and so is a direct
+ * measure of the back pressure the CTS is applying to callers of that queue.
+ *
+ * @since 14.0.0
+ */
+@Singleton
+public class TaskQueueStore {
+
+    private final ConcurrentMap<Integer, QueueStatistics> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Records a task being placed on a queue.
+     *
+     * @param queue The index of the queue.
+     * @param depth The depth of the queue after the task was added.
+     * @param waitTime The time in milliseconds spent waiting for space on the queue.
+     */
+    public void addQueueOperation(int queue, int depth, long waitTime) {
+        QueueStatistics statistics = queues.get(queue);
+        if (statistics == null) {
+            QueueStatistics newStatistics = new QueueStatistics();
+            statistics = queues.putIfAbsent(queue, newStatistics);
+            if (statistics == null) {
+                statistics = newStatistics;
+            }
+        }
+        statistics.add(depth, waitTime);
+    }
+
+    /**
+     * Gets the number of queues that have been reported to this store.
+     *
+     * @return The number of queues.
+     */
+    public int getQueueCount() {
+        return queues.size();
+    }
+
+    /**
+     * Gets the most recently observed depth of the given queue.
+     *
+     * @param queue The index of the queue.
+     * @return The depth of the queue, or zero if nothing has been recorded for it.
+     */
+    public int getQueueDepth(int queue) {
+        QueueStatistics statistics = queues.get(queue);
+        return statistics == null ? 0 : statistics.depth.get();
+    }
+
+    /**
+     * Gets the maximum depth observed for the given queue since server start up.
+     *
+     * @param queue The index of the queue.
+     * @return The maximum depth of the queue, or zero if nothing has been recorded for it.
+     */
+    public int getMaximumQueueDepth(int queue) {
+        QueueStatistics statistics = queues.get(queue);
+        return statistics == null ? 0 : statistics.maximumDepth.get();
+    }
+
+    /**
+     * Gets the average time in milliseconds callers have waited to place a task on the given queue.
+     *
+     * @param queue The index of the queue.
+     * @return The average wait time, or zero if nothing has been recorded for the queue.
+     */
+    public double getAverageQueueWaitTime(int queue) {
+        QueueStatistics statistics = queues.get(queue);
+        if (statistics == null) {
+            return 0D;
+        }
+        long count = statistics.count.get();
+        return count == 0 ? 0D : (double) statistics.totalWaitTime.get() / count;
+    }
+
+    /**
+     * Gets the maximum time in milliseconds a caller has waited to place a task on the given queue.
+     *
+     * @param queue The index of the queue.
+     * @return The maximum wait time, or zero if nothing has been recorded for the queue.
+     */
+    public long getMaximumQueueWaitTime(int queue) {
+        QueueStatistics statistics = queues.get(queue);
+        return statistics == null ? 0L : statistics.maximumWaitTime.get();
+    }
+
+    /**
+     * Lock free counters for a single queue.
+     */
+    private static final class QueueStatistics {
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicInteger maximumDepth = new AtomicInteger();
+        private final AtomicLong maximumWaitTime = new AtomicLong();
+        private final AtomicLong totalWaitTime = new AtomicLong();
+        private final AtomicLong count = new AtomicLong();
+
+        private void add(int depth, long waitTime) {
+            this.depth.set(depth);
+            count.incrementAndGet();
+            totalWaitTime.addAndGet(waitTime);
+
+            int currentDepth = maximumDepth.get();
+            while (depth > currentDepth && !maximumDepth.compareAndSet(currentDepth, depth)) {
+                currentDepth = maximumDepth.get();
+            }
+            long currentWait = maximumWaitTime.get();
+            while (waitTime > currentWait && !maximumWaitTime.compareAndSet(currentWait, waitTime)) {
+                currentWait = maximumWaitTime.get();
+            }
+        }
+    }
+}
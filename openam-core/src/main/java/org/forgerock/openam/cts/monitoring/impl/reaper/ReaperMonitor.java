@@ -11,94 +11,80 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring.impl.reaper;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This class maintains a store of information about each CTS Reaper run since server start up.
+ * This class maintains running totals of the CTS Reaper runs since server start up, along with the
+ * current backlog of the run in progress.
+ *
+ * Only totals are kept so that the memory used does not grow with the number of runs.
  *
  * @since 12.0.0
  */
 public class ReaperMonitor {
 
-    private final List<ReaperRun> reaperRuns = new ArrayList<ReaperRun>();
+    private long runs;
+    private long totalDeleted;
+    private long totalRunTime;
+    private final AtomicLong backlog = new AtomicLong();
 
     /**
-     * {@inheritDoc}
+     * Records a completed reaper run.
+     *
+     * @param startTime The start time of the reaper run.
+     * @param runTime The duration of the reaper run in milliseconds.
+     * @param numberOfDeletedSessions The total number of deleted sessions.
      */
-    public void add(final long startTime, final long runTime, final long numberOfDeletedSessions) {
-        reaperRuns.add(new ReaperRun(startTime, runTime, numberOfDeletedSessions));
+    public synchronized void add(final long startTime, final long runTime, final long numberOfDeletedSessions) {
+        runs++;
+        totalDeleted += numberOfDeletedSessions;
+        totalRunTime += runTime;
     }
 
     /**
-     * {@inheritDoc}
+     * Gets the average number of tokens deleted per reaper run.
+     *
+     * @return The average number of deletions per run, or zero if there have been no runs.
      */
-    public double getRateOfDeletion() {
-
-        if (reaperRuns.isEmpty()) {
+    public synchronized double getRateOfDeletion() {
+        if (runs == 0) {
             return 0D;
         }
-
-        double numDeletedSessions = 0D;
-        for (ReaperRun reaperRun : reaperRuns) {
-            numDeletedSessions += reaperRun.getNumberOfDeletedSessions();
-        }
-        return numDeletedSessions / reaperRuns.size();
+        return (double) totalDeleted / runs;
     }
 
     /**
-     * Models a run by the CTS Reaper and holds information about when the run started and stopped and the number of
-     * sessions the run deleted.
+     * Gets the average number of tokens deleted per second of reaper run time.
+     *
+     * @return The deletion throughput, or zero if no run time has been recorded.
      */
-    private static class ReaperRun {
-
-        private final long startTime;
-        private final long runTime;
-        private final long numberOfDeletedSessions;
-
-        /**
-         * Creates a new Reaper Run instance.
-         *
-         * @param startTime The start time of the reaper run.
-         * @param runTime The end time of the reaper run.
-         * @param numberOfDeletedSessions The total number of deleted sessions.
-         */
-        public ReaperRun(final long startTime, final long runTime, final long numberOfDeletedSessions) {
-            this.startTime = startTime;
-            this.runTime = runTime;
-            this.numberOfDeletedSessions = numberOfDeletedSessions;
-        }
-
-        /**
-         * Gets the start time of the reaper run.
-         *
-         * @return The start time of the run.
-         */
-        private long getStartTime() {
-            return startTime;
+    public synchronized double getThroughput() {
+        if (totalRunTime == 0) {
+            return 0D;
         }
+        return totalDeleted * 1000D / totalRunTime;
+    }
 
-        /**
-         * Gets the end time of the reaper run.
-         *
-         * @return The end time of the run.
-         */
-        private long getRunTime() {
-            return runTime;
-        }
+    /**
+     * Sets the number of tokens the reaper run in progress has found but not yet seen deleted.
+     *
+     * @param pendingDeletions The number of outstanding deletions.
+     */
+    public void setBacklog(long pendingDeletions) {
+        backlog.set(pendingDeletions);
+    }
 
-        /**
-         * Gets the total number of deleted sessions.
-         *
-         * @return Number of deleted sessions by the run.
-         */
-        private long getNumberOfDeletedSessions() {
-            return numberOfDeletedSessions;
-        }
+    /**
+     * Gets the number of tokens the reaper run in progress has found but not yet seen deleted.
+     *
+     * @return The number of outstanding deletions.
+     */
+    public long getBacklog() {
+        return backlog.get();
     }
 }
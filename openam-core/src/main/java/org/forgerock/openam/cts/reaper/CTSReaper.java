@@ -11,25 +11,40 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.reaper;
 
+import static org.forgerock.openam.utils.Time.*;
+
 import com.google.inject.name.Named;
 import com.sun.identity.shared.debug.Debug;
-import org.apache.commons.lang.time.StopWatch;
+import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.cts.impl.query.reaper.ReaperQuery;
 import org.forgerock.openam.cts.impl.query.reaper.ReaperQueryFactory;
 import org.forgerock.openam.cts.monitoring.CTSReaperMonitoringStore;
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.thread.ExecutorServiceFactory;
 
 import javax.inject.Inject;
 import java.text.MessageFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Responsible for the scheduled deletion of expired Tokens.
@@ -42,6 +57,19 @@ import java.util.concurrent.CountDownLatch;
  * as such simplifies the implementation to one that queries the results and delegates the
  * responsibility of deletion to the SDK.
  *
+ * The expiry time range may be partitioned into time slices which are searched concurrently,
+ * each on its own connection, so that a large backlog of expired tokens is found and queued for
+ * deletion in parallel. The range split between the partitions runs from the start of the last
+ * successful run, before which all expired tokens have already been deleted, to now. The first run
+ * has no such bound, and instead probes the store for the expiry time of the oldest expired token.
+ * The oldest partition also covers all earlier expiry times, so that no expired token is missed.
+ *
+ * The partitions share a limit on the number of pages which have been queued for deletion but not
+ * yet deleted, so that a large backlog does not flood the CTS asynchronous queues.
+ *
+ * The page size is adapted to the rate at which expired tokens were deleted by the previous run,
+ * so that each page takes about the configured target latency to delete.
+ *
  * Once the search is complete, we need to wait for all asynchronous delete operations to
  * complete before we close the connection to the Directory. Otherwise we risk closing a
  * connection that has pending operations on it.
@@ -51,30 +79,70 @@ import java.util.concurrent.CountDownLatch;
  *
  * Thread Policy: This runnable will respond to Thread interrupts and will exit cleanly
  * when interrupted.
+ *
+ * @see CoreTokenConfig#getCleanupPartitions()
+ * @see CoreTokenConfig#getCleanupPartitionWidth()
+ * @see CoreTokenConfig#getCleanupMaxPagesInFlight()
+ * @see CoreTokenConfig#getCleanupTargetPageLatency()
  */
 public class CTSReaper implements Runnable {
     // Injected
     private final TokenDeletion tokenDeletion;
     private final ReaperQueryFactory queryFactory;
     private final CTSReaperMonitoringStore monitoringStore;
+    private final ExecutorService partitionExecutor;
     private final Debug debug;
 
+    private final int partitions;
+    private final long partitionWidth;
+    private final long targetPageLatency;
+    private final int maxPagesInFlight;
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final AtomicInteger pageSize;
+    private final AtomicLong backlog = new AtomicLong();
+    // Tokens which expired before this time were deleted by the last successful run, 0 until there has been one
+    private volatile long reapedBefore;
 
     /**
      * Create an instance, but do not schedule the instance for execution.
      *
+     * @param queryFactory Required for querying expired tokens.
      * @param tokenDeletion Required for deleting tokens.
      * @param monitoringStore Required for monitoring reaper runs.
+     * @param config Required for the partition and page size configuration.
+     * @param executorServiceFactory Required for searching partitions concurrently.
      * @param debug Required for debugging.
      */
     @Inject
     public CTSReaper(final ReaperQueryFactory queryFactory, final TokenDeletion tokenDeletion,
-                     final CTSReaperMonitoringStore monitoringStore,
+                     final CTSReaperMonitoringStore monitoringStore, final CoreTokenConfig config,
+                     final ExecutorServiceFactory executorServiceFactory,
                      @Named(CoreTokenConstants.CTS_REAPER_DEBUG) final Debug debug) {
+        this(queryFactory, tokenDeletion, monitoringStore, config,
+                config.getCleanupPartitions() > 1
+                        ? executorServiceFactory.createFixedThreadPool(config.getCleanupPartitions() - 1,
+                                "CTSReaperPartition")
+                        : null,
+                debug);
+    }
+
+    @VisibleForTesting
+    CTSReaper(final ReaperQueryFactory queryFactory, final TokenDeletion tokenDeletion,
+              final CTSReaperMonitoringStore monitoringStore, final CoreTokenConfig config,
+              final ExecutorService partitionExecutor, final Debug debug) {
         this.queryFactory = queryFactory;
         this.tokenDeletion = tokenDeletion;
         this.monitoringStore = monitoringStore;
+        this.partitionExecutor = partitionExecutor;
         this.debug = debug;
+        this.partitions = partitionExecutor == null ? 1 : Math.max(1, config.getCleanupPartitions());
+        this.partitionWidth = config.getCleanupPartitionWidth();
+        this.targetPageLatency = config.getCleanupTargetPageLatency();
+        this.maxPagesInFlight = Math.max(1, config.getCleanupMaxPagesInFlight());
+        this.minPageSize = config.getCleanupMinPageSize();
+        this.maxPageSize = Math.max(minPageSize, config.getCleanupMaxPageSize());
+        this.pageSize = new AtomicInteger(config.getCleanupPageSize());
     }
 
     /**
@@ -86,56 +154,205 @@ public class CTSReaper implements Runnable {
 
         debug("Reaper starting");
 
-        // Timers for debugging
-        StopWatch query = new StopWatch();
-        StopWatch waiting = new StopWatch();
+        long startTime = currentTimeMillis();
+        Calendar now = getCalendarInstance();
+        int runPageSize = pageSize.get();
+        Semaphore pagesInFlight = new Semaphore(maxPagesInFlight);
+        List<Future<Long>> workers = new ArrayList<Future<Long>>();
 
-        // Latches will track deletion of each page of results
-        List<CountDownLatch> latches = new ArrayList<CountDownLatch>();
+        try {
+            Calendar[] bounds = getPartitionBounds(now);
 
-        ReaperQuery reaperQuery = queryFactory.getQuery();
+            // The most recent partition is searched by this thread, all others by the partition workers
+            for (int partition = 1; partition < bounds.length - 1; partition++) {
+                workers.add(partitionExecutor.submit(
+                        new PartitionReaper(bounds, partition, runPageSize, pagesInFlight)));
+            }
+            long total = reapPartition(bounds, 0, runPageSize, pagesInFlight);
+            for (Future<Long> worker : workers) {
+                total += worker.get();
+            }
+            reapedBefore = now.getTimeInMillis();
 
-        try {
-            long total = 0;
-            query.start();
-            for (Collection<String> ids = reaperQuery.nextPage(); ids != null; ids = reaperQuery.nextPage()) {
-                // If the thread has been interrupted, exit all processing.
-                if (Thread.interrupted()) {
-                    Thread.currentThread().interrupt();
-                    debug("Interrupted, returning");
-                    return;
-                }
-
-                total += ids.size();
-                debug("Queried {0} tokens", Long.toString(total));
-
-                // Latch will track the deletions of the page
-                latches.add(tokenDeletion.deleteBatch(ids));
+            long duration = currentTimeMillis() - startTime;
+            monitoringStore.addReaperRun(startTime, duration, total);
+            adaptPageSize(runPageSize, total, duration);
+
+            debug("Deleted {0} tokens in {1}ms", Long.toString(total), Long.toString(duration));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            debug("Interrupted, returning");
+            return;
+        } catch (ExecutionException e) {
+            debug.error("CTS Reaper failed", e.getCause());
+        } catch (CoreTokenException e) {
+            debug.error("CTS Reaper failed", e);
+        } finally {
+            for (Future<Long> worker : workers) {
+                worker.cancel(true);
             }
+            backlog.set(0);
+            monitoringStore.updateReaperBacklog(0);
+        }
+
+        debug("Reaper complete");
+    }
+
+    /**
+     * Splits the range of expiry times which may hold expired Tokens into equal partitions, as many as are
+     * configured but none narrower than the configured width.
+     *
+     * @return The bounds of the partitions, most recent first. Partition {@code i} covers the Tokens which expired
+     * at or after {@code bounds[i + 1]} and before {@code bounds[i]}. The last bound is null, as the oldest
+     * partition covers all earlier expiry times.
+     */
+    private Calendar[] getPartitionBounds(Calendar now) throws CoreTokenException {
+        long oldest = reapedBefore > 0 ? reapedBefore : findOldestExpiry(now);
+        long range = Math.max(0, now.getTimeInMillis() - oldest);
+        int count = (int) Math.max(1, Math.min(partitions, range / partitionWidth));
 
-            query.stop();
-            waiting.start();
+        Calendar[] bounds = new Calendar[count + 1];
+        for (int partition = 0; partition < count; partition++) {
+            bounds[partition] = offset(now, -range * partition / count);
+        }
+        return bounds;
+    }
 
-            debug("Expired Token Query Time: {0}ms", Long.toString(query.getTime()));
+    /**
+     * Probes the store for the expiry time of the oldest expired Token, first stepping back from now by doubling
+     * multiples of the partition width, then narrowing the step found down to one partition width.
+     *
+     * @return A time at most one partition width before the expiry time of the oldest expired Token.
+     */
+    private long findOldestExpiry(Calendar now) throws CoreTokenException {
+        long nowMillis = now.getTimeInMillis();
+        long step = partitionWidth;
+        while (step < nowMillis && queryFactory.hasExpiredTokens(offset(now, -step))) {
+            step *= 2;
+        }
+        // There are no expired Tokens before nowMillis - step, but there are before nowMillis - step / 2
+        long noneBefore = nowMillis - Math.min(step, nowMillis);
+        long someBefore = nowMillis - step / 2;
+        while (someBefore - noneBefore > partitionWidth) {
+            long middle = noneBefore + (someBefore - noneBefore) / 2;
+            if (queryFactory.hasExpiredTokens(offset(now, middle - nowMillis))) {
+                someBefore = middle;
+            } else {
+                noneBefore = middle;
+            }
+        }
+        debug("Oldest expired token found within {0}ms of now", Long.toString(nowMillis - noneBefore));
+        return noneBefore;
+    }
 
-            // Wait stage
-            for (CountDownLatch latch : latches) {
-                try {
-                    latch.await();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+    /**
+     * Searches one partition of the expiry time range and queues the Tokens found for deletion, then waits for
+     * all of the deletions to complete.
+     *
+     * @return The number of Tokens deleted.
+     */
+    private long reapPartition(Calendar[] bounds, int partition, int runPageSize, Semaphore pagesInFlight)
+            throws CoreTokenException, InterruptedException {
+        ReaperQuery reaperQuery = queryFactory.getQuery(bounds[partition + 1], bounds[partition], runPageSize);
+
+        // Pages which have been queued for deletion, oldest first
+        Deque<PendingPage> pages = new ArrayDeque<PendingPage>();
+        long total = 0;
+        for (Collection<String> ids = reaperQuery.nextPage(); ids != null; ids = reaperQuery.nextPage()) {
+            // If the thread has been interrupted, exit all processing.
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
             }
 
-            waiting.stop();
-            monitoringStore.addReaperRun(query.getStartTime(), query.getTime() + waiting.getTime(), total);
+            total += ids.size();
+            updateBacklog(ids.size());
+            debug("Partition {0} queried {1} tokens", Integer.toString(partition), Long.toString(total));
 
-            debug("Worker threads Time: {0}ms", Long.toString(waiting.getTime()));
-        } catch (CoreTokenException e) {
-            debug.error("CTS Reaper failed", e);
+            // Latch will track the deletions of the page
+            acquirePageInFlight(pages, pagesInFlight);
+            pages.addLast(new PendingPage(tokenDeletion.deleteBatch(ids), ids.size()));
+            removeDeletedPages(pages, pagesInFlight);
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
         }
 
-        debug("Reaper complete");
+        // Wait stage
+        while (!pages.isEmpty()) {
+            awaitOldestPage(pages, pagesInFlight);
+        }
+        return total;
+    }
+
+    /**
+     * Waits until another page may be queued for deletion. While the limit shared by the partitions is reached,
+     * this partition waits for its own oldest page to be deleted, or if it has none, for another partition to
+     * release one.
+     */
+    private void acquirePageInFlight(Deque<PendingPage> pages, Semaphore pagesInFlight) throws InterruptedException {
+        while (!pagesInFlight.tryAcquire()) {
+            if (pages.isEmpty()) {
+                pagesInFlight.acquire();
+                return;
+            }
+            awaitOldestPage(pages, pagesInFlight);
+        }
+    }
+
+    /**
+     * Waits for the oldest page in the queue to be deleted, then removes it.
+     */
+    private void awaitOldestPage(Deque<PendingPage> pages, Semaphore pagesInFlight) throws InterruptedException {
+        pages.peekFirst().latch.await();
+        removePage(pages, pagesInFlight);
+    }
+
+    /**
+     * Removes the oldest pages from the queue for as long as they have been deleted, without waiting.
+     */
+    private void removeDeletedPages(Deque<PendingPage> pages, Semaphore pagesInFlight) throws InterruptedException {
+        while (!pages.isEmpty() && pages.peekFirst().latch.await(0, TimeUnit.MILLISECONDS)) {
+            removePage(pages, pagesInFlight);
+        }
+    }
+
+    private void removePage(Deque<PendingPage> pages, Semaphore pagesInFlight) {
+        updateBacklog(-pages.removeFirst().tokens);
+        pagesInFlight.release();
+    }
+
+    private void updateBacklog(long delta) {
+        monitoringStore.updateReaperBacklog(backlog.addAndGet(delta));
+    }
+
+    /**
+     * Sizes the pages of the next run so that each page would take about the target latency to delete at the rate
+     * tokens were deleted by this run. Deletions from all partitions share the same queues, so each page is
+     * deleted at its share of that rate. Runs which found less than one page of tokens are ignored, as their
+     * rate says more about the query than about deletion.
+     */
+    private void adaptPageSize(int runPageSize, long total, long duration) {
+        if (total < runPageSize) {
+            return;
+        }
+        double tokensPerMs = (double) total / Math.max(1, duration);
+        long size = Math.round(tokensPerMs * targetPageLatency / partitions);
+        int adapted = (int) Math.min(maxPageSize, Math.max(minPageSize, size));
+        if (adapted != runPageSize) {
+            pageSize.set(adapted);
+            debug("Page size adapted to {0} tokens", Integer.toString(adapted));
+        }
+    }
+
+    @VisibleForTesting
+    int getPageSize() {
+        return pageSize.get();
+    }
+
+    private static Calendar offset(Calendar time, long millis) {
+        Calendar result = (Calendar) time.clone();
+        result.setTimeInMillis(time.getTimeInMillis() + millis);
+        return result;
     }
 
     private void debug(String msg, String... args) {
@@ -145,4 +362,39 @@ public class CTSReaper implements Runnable {
                     args));
         }
     }
+
+    /**
+     * Reaps one of the older partitions of the expiry time range on a partition worker.
+     */
+    private final class PartitionReaper implements Callable<Long> {
+        private final Calendar[] bounds;
+        private final int partition;
+        private final int runPageSize;
+        private final Semaphore pagesInFlight;
+
+        private PartitionReaper(Calendar[] bounds, int partition, int runPageSize, Semaphore pagesInFlight) {
+            this.bounds = bounds;
+            this.partition = partition;
+            this.runPageSize = runPageSize;
+            this.pagesInFlight = pagesInFlight;
+        }
+
+        @Override
+        public Long call() throws CoreTokenException, InterruptedException {
+            return reapPartition(bounds, partition, runPageSize, pagesInFlight);
+        }
+    }
+
+    /**
+     * A page of tokens which has been queued for deletion.
+     */
+    private static final class PendingPage {
+        private final CountDownLatch latch;
+        private final int tokens;
+
+        private PendingPage(CountDownLatch latch, int tokens) {
+            this.latch = latch;
+            this.tokens = tokens;
+        }
+    }
 }
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.utils;
 
@@ -76,6 +76,30 @@ public class JSONSerialisation {
         }
     }
 
+    /**
+     * Serialise an object to UTF-8 encoded JSON.
+     * <p>
+     * The JSON is written directly as UTF-8 into Jackson's recycled output buffers, avoiding the intermediate
+     * String and the separate encoding step of {@code serialise(object).getBytes("UTF-8")}, whilst producing
+     * exactly the same bytes.
+     *
+     * @param <T> The generic type of the passed in object.
+     * @param object Non null object to serialise.
+     * @return Non null UTF-8 encoded JSON.
+     */
+    public <T> byte[] serialiseToBytes(T object) {
+        try {
+            return mapper.writeValueAsBytes(object);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "Failed to serialise {0}:{1}",
+                            object.getClass().getSimpleName(),
+                            object),
+                    e);
+        }
+    }
+
     /**
      * Deserialise JSON to an object of type T.
      *
@@ -97,6 +121,26 @@ public class JSONSerialisation {
         }
     }
 
+    /**
+     * Deserialise UTF-8 encoded JSON to an object of type T, without first decoding it to a String.
+     *
+     * @param data Non null UTF-8 encoded JSON to parse and deserialise.
+     * @param clazz Class which contains the type of the value stored in JSON, required for deserialsiation.
+     * @param <T> Type to cast the created object to when deserialising.
+     * @return Non null object of type T.
+     */
+    public <T> T deserialise(byte[] data, Class<T> clazz) {
+        try {
+            return mapper.readValue(data, clazz);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    MessageFormat.format(
+                            "Failed to deserailise {0}",
+                            clazz.getSimpleName()),
+                    e);
+        }
+    }
+
     /**
      * Wrap the attribute name in quotes and a colon to make it look like a JSON attribute.
      *
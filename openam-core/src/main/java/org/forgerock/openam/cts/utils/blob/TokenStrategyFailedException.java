@@ -1,5 +1,5 @@
 /**
- * Copyright 2013 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  *
  * The contents of this file are subject to the terms of the Common Development and
  * Distribution License (the License). You may not use this file except in compliance with the
@@ -21,6 +21,10 @@ package org.forgerock.openam.cts.utils.blob;
  * @author robert.wapshott@forgerock.com
  */
 public class TokenStrategyFailedException extends Exception {
+    public TokenStrategyFailedException(String error) {
+        super(error);
+    }
+
     public TokenStrategyFailedException(Throwable e) {
         super(e);
     }
@@ -11,26 +11,113 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.utils.blob.strategies;
 
 import org.apache.commons.io.IOUtils;
+import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.utils.blob.BlobStrategy;
 import org.forgerock.openam.cts.utils.blob.TokenStrategyFailedException;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.CompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.DeflateCompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.LZ4CompressionCodec;
 import org.forgerock.util.Reject;
 
+import javax.inject.Inject;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
- * Responsible for compressing the binary object of Tokens using a GZip compression.
+ * Responsible for compressing the binary object of Tokens.
+ * <p>
+ * By default Tokens are compressed using GZip, which is the format understood by all versions of OpenAM.
+ * Alternatively a faster {@link CompressionCodec} may be configured, in which case the compressed data is
+ * prefixed with a versioned header:
+ * <pre>
+ *     [marker (1 byte)][format version (1 byte)][codec id (1 byte)][original length (4 bytes)][data]
+ * </pre>
+ * Both formats are always accepted on reverse so that the configured codec can be changed without
+ * migrating Tokens which are already stored.
  */
 public class CompressionStrategy implements BlobStrategy {
 
+    /** Configuration name of the legacy GZip format. */
+    public static final String GZIP = "gzip";
+
+    static final byte HEADER_MARKER = (byte) 0xC7;
+    static final byte FORMAT_VERSION = 1;
+    static final int HEADER_LENGTH = 7;
+
+    /**
+     * The largest ratio of original to compressed length that any supported codec can produce. Deflate is limited
+     * to a little over 1032:1 and LZ4 to about 255:1, so a header claiming a larger length is corrupt or forged,
+     * and must not be trusted to size the decompression buffer.
+     */
+    static final int MAX_COMPRESSION_RATIO = 1032;
+
+    private static final byte GZIP_MAGIC_1 = (byte) 0x1F;
+    private static final byte GZIP_MAGIC_2 = (byte) 0x8B;
+
+    private final CompressionCodec codec;
+    private final Map<Byte, CompressionCodec> codecs = new HashMap<>();
+
+    /**
+     * Creates a strategy which compresses using the legacy GZip format.
+     */
+    public CompressionStrategy() {
+        this((CompressionCodec) null);
+    }
+
+    /**
+     * Creates a strategy which compresses using the codec selected in the Core Token Service configuration.
+     *
+     * @param config Non null configuration.
+     */
+    @Inject
+    public CompressionStrategy(CoreTokenConfig config) {
+        this(getCodec(config.getTokenCompressionCodec()));
+    }
+
+    /**
+     * Creates a strategy which compresses using the provided codec.
+     *
+     * @param codec The codec to compress with, or null to use the legacy GZip format.
+     */
+    public CompressionStrategy(CompressionCodec codec) {
+        this.codec = codec;
+        register(new DeflateCompressionCodec());
+        register(new LZ4CompressionCodec());
+        if (codec != null) {
+            codecs.put(codec.getId(), codec);
+        }
+    }
+
+    private void register(CompressionCodec codec) {
+        codecs.put(codec.getId(), codec);
+    }
+
+    /**
+     * Selects a codec by its configuration name.
+     *
+     * @param name The name of the codec, possibly null.
+     * @return The matching codec, or null if the legacy GZip format should be used.
+     */
+    static CompressionCodec getCodec(String name) {
+        if (DeflateCompressionCodec.NAME.equalsIgnoreCase(name)) {
+            return new DeflateCompressionCodec();
+        }
+        if (LZ4CompressionCodec.NAME.equalsIgnoreCase(name)) {
+            return new LZ4CompressionCodec();
+        }
+        return null;
+    }
+
     /**
      * Compress the Tokens binary object.
      *
@@ -41,16 +128,24 @@ public class CompressionStrategy implements BlobStrategy {
     @Override
     public byte[] perform(byte[] blob) throws TokenStrategyFailedException {
         Reject.ifNull(blob);
-        final ByteArrayOutputStream bout = new ByteArrayOutputStream(blob.length);
+        if (codec == null) {
+            return gzip(blob);
+        }
         try {
-            final GZIPOutputStream out = new GZIPOutputStream(bout);
-            out.write(blob);
-            out.flush();
-            out.close();
+            final byte[] compressed = codec.compress(blob);
+            final byte[] result = new byte[HEADER_LENGTH + compressed.length];
+            result[0] = HEADER_MARKER;
+            result[1] = FORMAT_VERSION;
+            result[2] = codec.getId();
+            result[3] = (byte) (blob.length >>> 24);
+            result[4] = (byte) (blob.length >>> 16);
+            result[5] = (byte) (blob.length >>> 8);
+            result[6] = (byte) blob.length;
+            System.arraycopy(compressed, 0, result, HEADER_LENGTH, compressed.length);
+            return result;
         } catch (IOException e) {
             throw new TokenStrategyFailedException(e);
         }
-        return bout.toByteArray();
     }
 
     /**
@@ -63,6 +158,48 @@ public class CompressionStrategy implements BlobStrategy {
     @Override
     public byte[] reverse(byte[] blob) throws TokenStrategyFailedException {
         Reject.ifNull(blob);
+        if (blob.length >= 2 && blob[0] == GZIP_MAGIC_1 && blob[1] == GZIP_MAGIC_2) {
+            return gunzip(blob);
+        }
+        if (blob.length < HEADER_LENGTH || blob[0] != HEADER_MARKER) {
+            throw new TokenStrategyFailedException("Unrecognised compressed Token format");
+        }
+        if (blob[1] != FORMAT_VERSION) {
+            throw new TokenStrategyFailedException("Unsupported compressed Token format version: " + blob[1]);
+        }
+        final CompressionCodec blobCodec = codecs.get(blob[2]);
+        if (blobCodec == null) {
+            throw new TokenStrategyFailedException("Unsupported Token compression codec: " + blob[2]);
+        }
+        final int originalLength = (blob[3] & 0xFF) << 24
+                | (blob[4] & 0xFF) << 16
+                | (blob[5] & 0xFF) << 8
+                | (blob[6] & 0xFF);
+        final int compressedLength = blob.length - HEADER_LENGTH;
+        if (originalLength < 0 || originalLength > (long) compressedLength * MAX_COMPRESSION_RATIO) {
+            throw new TokenStrategyFailedException("Invalid compressed Token length: " + originalLength);
+        }
+        try {
+            return blobCodec.decompress(blob, HEADER_LENGTH, compressedLength, originalLength);
+        } catch (IOException e) {
+            throw new TokenStrategyFailedException(e);
+        }
+    }
+
+    private byte[] gzip(byte[] blob) throws TokenStrategyFailedException {
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream(blob.length);
+        try {
+            final GZIPOutputStream out = new GZIPOutputStream(bout);
+            out.write(blob);
+            out.flush();
+            out.close();
+        } catch (IOException e) {
+            throw new TokenStrategyFailedException(e);
+        }
+        return bout.toByteArray();
+    }
+
+    private byte[] gunzip(byte[] blob) throws TokenStrategyFailedException {
         final int lengthGuess = blob.length * 2;
         final ByteArrayOutputStream bout = new ByteArrayOutputStream(lengthGuess);
         try {
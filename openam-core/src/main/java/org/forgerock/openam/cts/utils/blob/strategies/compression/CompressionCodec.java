@@ -0,0 +1,59 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import java.io.IOException;
+
+/**
+ * A compression algorithm which can be used to compress Token binary data.
+ * <p>
+ * Each codec is identified by a unique id which is written into the header of the compressed data, so that
+ * data compressed with one codec can still be read after the configured codec has been changed.
+ * Implementations must be thread safe.
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return The unique id of this codec as written to the compressed data header.
+     */
+    byte getId();
+
+    /**
+     * @return The name used to select this codec in configuration.
+     */
+    String getName();
+
+    /**
+     * Compresses the provided data.
+     *
+     * @param data Non null data to compress.
+     * @return Non null compressed data.
+     * @throws IOException If the data could not be compressed.
+     */
+    byte[] compress(byte[] data) throws IOException;
+
+    /**
+     * Decompresses a region of the provided data.
+     *
+     * @param data Non null data containing the compressed bytes.
+     * @param offset The offset of the compressed bytes within the data.
+     * @param length The number of compressed bytes.
+     * @param originalLength The length of the data before it was compressed.
+     * @return Non null decompressed data of exactly originalLength bytes.
+     * @throws IOException If the data was not valid for this codec.
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException;
+}
@@ -0,0 +1,211 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A pure Java implementation of the LZ4 block format.
+ * <p>
+ * LZ4 trades compression ratio for speed: it typically compresses session JSON to around half of
+ * its size but is several times faster than GZip in both directions, and needs no native resources.
+ * Only the block format is produced, the length of the original data is recorded by the caller.
+ */
+public class LZ4CompressionCodec implements CompressionCodec {
+
+    /** The id of this codec in the compressed data header. */
+    public static final byte ID = 2;
+    /** The configuration name of this codec. */
+    public static final String NAME = "lz4";
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int RUN_MASK = 0xF;
+    private static final int HASH_LOG = 12;
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        final int length = data.length;
+        final byte[] out = new byte[length + length / 255 + 16];
+        int outOffset = 0;
+        int anchor = 0;
+
+        if (length > MF_LIMIT) {
+            final int[] table = new int[1 << HASH_LOG];
+            Arrays.fill(table, -1);
+            final int limit = length - MF_LIMIT;
+            final int matchLimit = length - LAST_LITERALS;
+            int offset = 0;
+
+            while (offset < limit) {
+                final int sequence = readInt(data, offset);
+                final int hash = hash(sequence);
+                int ref = table[hash];
+                table[hash] = offset;
+                if (ref < 0 || offset - ref > MAX_DISTANCE || readInt(data, ref) != sequence) {
+                    offset++;
+                    continue;
+                }
+
+                // Extend the match backwards over any pending literals, then forwards.
+                while (offset > anchor && ref > 0 && data[offset - 1] == data[ref - 1]) {
+                    offset--;
+                    ref--;
+                }
+                int matchLength = MIN_MATCH;
+                while (offset + matchLength < matchLimit && data[offset + matchLength] == data[ref + matchLength]) {
+                    matchLength++;
+                }
+
+                outOffset = writeSequence(data, anchor, offset - anchor, offset - ref, matchLength, out, outOffset);
+                offset += matchLength;
+                anchor = offset;
+            }
+        }
+
+        outOffset = writeLiterals(data, anchor, length - anchor, out, outOffset);
+        return Arrays.copyOf(out, outOffset);
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int originalLength) throws IOException {
+        final byte[] out = new byte[originalLength];
+        final int end = offset + length;
+        int outOffset = 0;
+        try {
+            while (true) {
+                final int token = data[offset++] & 0xFF;
+
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int next;
+                    do {
+                        next = data[offset++] & 0xFF;
+                        literalLength += next;
+                    } while (next == 0xFF);
+                }
+                if (literalLength > end - offset || literalLength > originalLength - outOffset) {
+                    throw new IOException("Malformed LZ4 data: literals exceed bounds");
+                }
+                System.arraycopy(data, offset, out, outOffset, literalLength);
+                offset += literalLength;
+                outOffset += literalLength;
+
+                if (offset == end) {
+                    break;
+                }
+
+                final int distance = (data[offset++] & 0xFF) | ((data[offset++] & 0xFF) << 8);
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int next;
+                    do {
+                        next = data[offset++] & 0xFF;
+                        matchLength += next;
+                    } while (next == 0xFF);
+                }
+                matchLength += MIN_MATCH;
+
+                int ref = outOffset - distance;
+                if (distance == 0 || ref < 0 || matchLength > originalLength - outOffset) {
+                    throw new IOException("Malformed LZ4 data: match exceeds bounds");
+                }
+                // Matches may overlap the bytes they produce, so copy one byte at a time.
+                for (int i = 0; i < matchLength; i++) {
+                    out[outOffset++] = out[ref++];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Malformed LZ4 data: unexpected end of input", e);
+        }
+
+        if (outOffset != originalLength) {
+            throw new IOException("Malformed LZ4 data: expected " + originalLength + " bytes but found " + outOffset);
+        }
+        return out;
+    }
+
+    private static int writeSequence(byte[] data, int literalOffset, int literalLength, int distance,
+            int matchLength, byte[] out, int outOffset) {
+        final int tokenOffset = outOffset++;
+        int token;
+        if (literalLength >= RUN_MASK) {
+            token = RUN_MASK << 4;
+            outOffset = writeLength(literalLength - RUN_MASK, out, outOffset);
+        } else {
+            token = literalLength << 4;
+        }
+        System.arraycopy(data, literalOffset, out, outOffset, literalLength);
+        outOffset += literalLength;
+
+        out[outOffset++] = (byte) distance;
+        out[outOffset++] = (byte) (distance >>> 8);
+
+        final int remainingMatch = matchLength - MIN_MATCH;
+        if (remainingMatch >= RUN_MASK) {
+            token |= RUN_MASK;
+            outOffset = writeLength(remainingMatch - RUN_MASK, out, outOffset);
+        } else {
+            token |= remainingMatch;
+        }
+        out[tokenOffset] = (byte) token;
+        return outOffset;
+    }
+
+    private static int writeLiterals(byte[] data, int literalOffset, int literalLength, byte[] out, int outOffset) {
+        if (literalLength >= RUN_MASK) {
+            out[outOffset++] = (byte) (RUN_MASK << 4);
+            outOffset = writeLength(literalLength - RUN_MASK, out, outOffset);
+        } else {
+            out[outOffset++] = (byte) (literalLength << 4);
+        }
+        System.arraycopy(data, literalOffset, out, outOffset, literalLength);
+        return outOffset + literalLength;
+    }
+
+    private static int writeLength(int length, byte[] out, int outOffset) {
+        while (length >= 0xFF) {
+            out[outOffset++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        out[outOffset++] = (byte) length;
+        return outOffset;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF)
+                | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16
+                | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2014 ForgeRock, AS.
+ * Copyright 2013-2016 ForgeRock, AS.
  *
  * The contents of this file are subject to the terms of the Common Development and
  * Distribution License (the License). You may not use this file except in compliance with the
@@ -24,6 +24,7 @@ import org.forgerock.util.Reject;
 import javax.security.auth.Subject;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * During policy evaluation multiple matching entitlement privileges can contain the same entitlement conditions
@@ -33,7 +34,8 @@ import java.util.Set;
  * are only executed once per privilege evaluations. This is being implemented using the {@link
  * PrivilegeEvaluatorContext} object, which is shared across privilege evaluator threads. It's worthwhile to note, that
  * the context is only shared per a single privilege evaluation, hence different privilege evaluations have different
- * caches.
+ * caches. Evaluator threads asking for a condition that another thread is already evaluating wait for its decision,
+ * while conditions with different keys are evaluated in parallel.
  */
 public class CachingEntitlementCondition implements EntitlementCondition {
 
@@ -93,37 +95,29 @@ public class CachingEntitlementCondition implements EntitlementCondition {
      * @return {@inheritDoc}
      * @throws EntitlementException {@inheritDoc}
      */
-    public ConditionDecision evaluate(String realm, Subject subject, String resourceName,
-                                      Map<String, Set<String>> environment) throws EntitlementException {
-        String classMethod = "CachingEntitlementCondition.evaluate() ";
+    public ConditionDecision evaluate(final String realm, final Subject subject, final String resourceName,
+                                      final Map<String, Set<String>> environment) throws EntitlementException {
+        final String classMethod = "CachingEntitlementCondition.evaluate() ";
         PrivilegeEvaluatorContext context = PrivilegeEvaluatorContext.getCurrent();
         if (context == null) {
             DEBUG.warning(classMethod + "PrivilegeEvaluatorContext is not available, condition cache is discarded.");
             return backingCondition.evaluate(realm, subject, resourceName, environment);
         }
 
-        //context is shared across evaluator threads, so we can synchronize on it. Different privilege evaluations have
-        //different contexts as well.
+        //context is shared across evaluator threads, but different privilege evaluations have different contexts.
         final String cacheKey = backingCondition.getClass().getName() + getState();
 
-        synchronized (context) {
-            ConditionDecision cachedResult = context.getConditionDecisionCache()
-                    .get(cacheKey);
-
-            if (cachedResult != null) {
+        return context.getConditionDecision(cacheKey, new Callable<ConditionDecision>() {
+            @Override
+            public ConditionDecision call() throws EntitlementException {
+                ConditionDecision result = backingCondition.evaluate(realm, subject, resourceName, environment);
                 if (DEBUG.messageEnabled()) {
-                    DEBUG.message(classMethod + "returning cached condition decision");
+                    DEBUG.message(classMethod + "caching condition decision \"" + result.isSatisfied()
+                            + "\" for condition: " + cacheKey);
                 }
-                return cachedResult;
-            }
-            ConditionDecision result = backingCondition.evaluate(realm, subject, resourceName, environment);
-            if (DEBUG.messageEnabled()) {
-                DEBUG.message(classMethod + "caching condition decision \"" + result.isSatisfied()
-                        + "\" for condition: " + cacheKey);
+                return result;
             }
-            context.getConditionDecisionCache().put(cacheKey, result);
-            return result;
-        }
+        });
     }
 
     @Override
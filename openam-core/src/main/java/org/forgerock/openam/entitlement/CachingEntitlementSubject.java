@@ -0,0 +1,116 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.entitlement;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.security.auth.Subject;
+
+import org.forgerock.util.Reject;
+
+import com.sun.identity.entitlement.EntitlementException;
+import com.sun.identity.entitlement.EntitlementSubject;
+import com.sun.identity.entitlement.SubjectAttributesManager;
+import com.sun.identity.entitlement.SubjectDecision;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * The subject counterpart of {@link CachingEntitlementCondition}. Many of the privileges matching a request usually
+ * share the same subjects, such as membership of the same groups, and each of those checks may need a round trip to
+ * the identity repository. The {@link CachingEntitlementSubject} makes sure that the exact same entitlement subjects
+ * are only evaluated once per privilege evaluation, by caching their decisions in the {@link
+ * PrivilegeEvaluatorContext} of the evaluation.
+ */
+public class CachingEntitlementSubject implements EntitlementSubject {
+
+    private static final Debug DEBUG = Debug.getInstance("Entitlement");
+    private final EntitlementSubject backingSubject;
+
+    /**
+     * Constructs a caching wrapper around the given subject.
+     *
+     * @param backingSubject The subject to evaluate. Must not be null.
+     */
+    public CachingEntitlementSubject(EntitlementSubject backingSubject) {
+        Reject.ifNull(backingSubject);
+        this.backingSubject = backingSubject;
+    }
+
+    @Override
+    public void setState(String state) {
+        backingSubject.setState(state);
+    }
+
+    @Override
+    public String getState() {
+        return backingSubject.getState();
+    }
+
+    @Override
+    public Map<String, Set<String>> getSearchIndexAttributes() {
+        return backingSubject.getSearchIndexAttributes();
+    }
+
+    @Override
+    public Set<String> getRequiredAttributeNames() {
+        return backingSubject.getRequiredAttributeNames();
+    }
+
+    /**
+     * Returns the decision of the backing subject cached in the {@link PrivilegeEvaluatorContext}, evaluating the
+     * subject first if no decision is cached yet. In case the context is not available for any reason, then the
+     * subject is evaluated every time.
+     *
+     * @param realm {@inheritDoc}
+     * @param mgr {@inheritDoc}
+     * @param subject {@inheritDoc}
+     * @param resourceName {@inheritDoc}
+     * @param environment {@inheritDoc}
+     * @return {@inheritDoc}
+     * @throws EntitlementException {@inheritDoc}
+     */
+    @Override
+    public SubjectDecision evaluate(final String realm, final SubjectAttributesManager mgr, final Subject subject,
+            final String resourceName, final Map<String, Set<String>> environment) throws EntitlementException {
+        final String classMethod = "CachingEntitlementSubject.evaluate() ";
+        PrivilegeEvaluatorContext context = PrivilegeEvaluatorContext.getCurrent();
+        if (context == null) {
+            DEBUG.warning(classMethod + "PrivilegeEvaluatorContext is not available, subject cache is discarded.");
+            return backingSubject.evaluate(realm, mgr, subject, resourceName, environment);
+        }
+
+        final String cacheKey = backingSubject.getClass().getName() + getState();
+
+        return context.getSubjectDecision(cacheKey, new Callable<SubjectDecision>() {
+            @Override
+            public SubjectDecision call() throws EntitlementException {
+                SubjectDecision result = backingSubject.evaluate(realm, mgr, subject, resourceName, environment);
+                if (DEBUG.messageEnabled()) {
+                    DEBUG.message(classMethod + "caching subject decision \"" + result.isSatisfied()
+                            + "\" for subject: " + cacheKey);
+                }
+                return result;
+            }
+        });
+    }
+
+    @Override
+    public boolean isIdentity() {
+        return backingSubject.isIdentity();
+    }
+}
@@ -21,14 +21,25 @@
  * your own identifying information:
  * "Portions Copyrighted [year] [name of copyright owner]"
  *
+ * Portions Copyrighted 2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement;
 
 import com.sun.identity.entitlement.ConditionDecision;
+import com.sun.identity.entitlement.EntitlementException;
+import com.sun.identity.entitlement.SubjectDecision;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Holds the context of the policy evaluation making it available to policy
@@ -46,7 +57,20 @@ public class PrivilegeEvaluatorContext implements Serializable {
      * An entitlement condition decision cache, where the condition decisions are cached based on the condition's JSON
      * representation.
      */
-    private Map<String, ConditionDecision> conditionDecisionCache = new HashMap<String, ConditionDecision>();
+    private final Map<String, ConditionDecision> conditionDecisionCache =
+            new ConcurrentHashMap<String, ConditionDecision>();
+    /**
+     * An entitlement subject decision cache, where the subject decisions are cached based on the subject's JSON
+     * representation.
+     */
+    private final Map<String, SubjectDecision> subjectDecisionCache = new ConcurrentHashMap<String, SubjectDecision>();
+    /**
+     * Decisions being made by one of the evaluator threads, so that other threads wait for them instead of making
+     * the same decision again.
+     */
+    private final transient ConcurrentMap<String, FutureTask<?>> pendingDecisions =
+            new ConcurrentHashMap<String, FutureTask<?>>();
+    private volatile Set<String> subjectMemberships = Collections.emptySet();
     private static ThreadLocal <PrivilegeEvaluatorContext> currentCtx = new ThreadLocal();
 
     /**
@@ -135,4 +159,112 @@ public class PrivilegeEvaluatorContext implements Serializable {
     public Map<String, ConditionDecision> getConditionDecisionCache() {
         return conditionDecisionCache;
     }
+
+    /**
+     * Return the subject decision cache.
+     *
+     * @return the subject decision cache.
+     */
+    public Map<String, SubjectDecision> getSubjectDecisionCache() {
+        return subjectDecisionCache;
+    }
+
+    /**
+     * Sets the universal IDs of the identities the subject being evaluated is known to be, or to be a member of.
+     *
+     * @param universalIds The universal IDs, as read by the subject attributes collector.
+     */
+    public void setSubjectMemberships(Set<String> universalIds) {
+        Set<String> memberships = new HashSet<String>(universalIds.size());
+        for (String universalId : universalIds) {
+            memberships.add(universalId.toLowerCase());
+        }
+        this.subjectMemberships = memberships;
+    }
+
+    /**
+     * Whether the subject being evaluated is known to be, or to be a member of, the given identity. A false result
+     * only means the membership is not known, not that the subject is not a member.
+     *
+     * @param universalId The universal ID of the identity.
+     * @return true if the subject is known to be a member of the identity.
+     */
+    public boolean isKnownSubjectMembership(String universalId) {
+        return universalId != null && subjectMemberships.contains(universalId.toLowerCase());
+    }
+
+    /**
+     * Returns the condition decision cached under the given key, or evaluates it once, however many evaluator threads
+     * ask for it at the same time.
+     *
+     * @param cacheKey The key of the condition.
+     * @param evaluation Evaluates the condition.
+     * @return the condition decision.
+     * @throws EntitlementException if the condition cannot be evaluated.
+     */
+    ConditionDecision getConditionDecision(String cacheKey, Callable<ConditionDecision> evaluation)
+            throws EntitlementException {
+        return getDecision(conditionDecisionCache, "condition:" + cacheKey, cacheKey, evaluation);
+    }
+
+    /**
+     * Returns the subject decision cached under the given key, or evaluates it once, however many evaluator threads
+     * ask for it at the same time.
+     *
+     * @param cacheKey The key of the subject.
+     * @param evaluation Evaluates the subject.
+     * @return the subject decision.
+     * @throws EntitlementException if the subject cannot be evaluated.
+     */
+    SubjectDecision getSubjectDecision(String cacheKey, Callable<SubjectDecision> evaluation)
+            throws EntitlementException {
+        return getDecision(subjectDecisionCache, "subject:" + cacheKey, cacheKey, evaluation);
+    }
+
+    private <T> T getDecision(Map<String, T> cache, String pendingKey, String cacheKey, Callable<T> evaluation)
+            throws EntitlementException {
+        T decision = cache.get(cacheKey);
+        if (decision != null) {
+            return decision;
+        }
+
+        FutureTask<T> task = new FutureTask<T>(evaluation);
+        @SuppressWarnings("unchecked")
+        FutureTask<T> pending = (FutureTask<T>) pendingDecisions.putIfAbsent(pendingKey, task);
+        if (pending == null) {
+            try {
+                decision = cache.get(cacheKey);
+                if (decision != null) {
+                    // Made by another thread since the first look up.
+                    return decision;
+                }
+                task.run();
+                decision = getResult(task);
+                cache.put(cacheKey, decision);
+                return decision;
+            } finally {
+                pendingDecisions.remove(pendingKey, task);
+            }
+        }
+        return getResult(pending);
+    }
+
+    private static <T> T getResult(FutureTask<T> task) throws EntitlementException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EntitlementException(EntitlementException.INTERNAL_ERROR, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EntitlementException) {
+                throw (EntitlementException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new EntitlementException(EntitlementException.INTERNAL_ERROR, cause);
+        }
+    }
 }
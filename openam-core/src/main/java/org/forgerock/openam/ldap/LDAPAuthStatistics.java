@@ -0,0 +1,130 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.ldap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.util.annotations.VisibleForTesting;
+
+/**
+ * Timings of the LDAP operations performed by {@link LDAPAuthUtils} when authenticating users, shared by all the
+ * LDAP based authentication modules.
+ * <p/>
+ * The connection wait is the time taken for a connection pool to hand out a connection, which grows once the pool is
+ * exhausted. The bind time is the time between sending the bind request of the user and receiving its result.
+ * <p/>
+ * The statistics are published through the monitoring agent, in the authentication service group of the server MIB.
+ *
+ * @see com.sun.identity.monitoring.SsoServerAuthSvcImpl
+ */
+public final class LDAPAuthStatistics {
+
+    private static final LDAPAuthStatistics INSTANCE = new LDAPAuthStatistics();
+
+    private final AtomicLong connectionWaits = new AtomicLong();
+    private final AtomicLong connectionWaitNanos = new AtomicLong();
+    private final AtomicLong maxConnectionWaitNanos = new AtomicLong();
+    private final AtomicLong binds = new AtomicLong();
+    private final AtomicLong bindNanos = new AtomicLong();
+    private final AtomicLong maxBindNanos = new AtomicLong();
+
+    @VisibleForTesting
+    LDAPAuthStatistics() {
+    }
+
+    /**
+     * @return the statistics of this server.
+     */
+    public static LDAPAuthStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records the time taken to obtain a connection from a pool.
+     *
+     * @param elapsedNanos The time taken in nanoseconds.
+     */
+    void recordConnectionWait(long elapsedNanos) {
+        connectionWaits.incrementAndGet();
+        connectionWaitNanos.addAndGet(elapsedNanos);
+        updateMax(maxConnectionWaitNanos, elapsedNanos);
+    }
+
+    /**
+     * Records the time taken by a bind, whether or not it succeeded.
+     *
+     * @param elapsedNanos The time taken in nanoseconds.
+     */
+    void recordBind(long elapsedNanos) {
+        binds.incrementAndGet();
+        bindNanos.addAndGet(elapsedNanos);
+        updateMax(maxBindNanos, elapsedNanos);
+    }
+
+    /**
+     * @return the number of connections obtained from the connection pools.
+     */
+    public long getConnectionWaitCount() {
+        return connectionWaits.get();
+    }
+
+    /**
+     * @return the mean time in milliseconds taken to obtain a connection from a pool.
+     */
+    public double getAverageConnectionWaitMs() {
+        return averageMs(connectionWaitNanos.get(), connectionWaits.get());
+    }
+
+    /**
+     * @return the longest time in milliseconds taken to obtain a connection from a pool.
+     */
+    public long getMaxConnectionWaitMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxConnectionWaitNanos.get());
+    }
+
+    /**
+     * @return the number of user binds performed.
+     */
+    public long getBindCount() {
+        return binds.get();
+    }
+
+    /**
+     * @return the mean time in milliseconds taken by a user bind.
+     */
+    public double getAverageBindTimeMs() {
+        return averageMs(bindNanos.get(), binds.get());
+    }
+
+    /**
+     * @return the longest time in milliseconds taken by a user bind.
+     */
+    public long getMaxBindTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxBindNanos.get());
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    private static double averageMs(long totalNanos, long count) {
+        return count == 0 ? 0.0d : (double) totalNanos / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
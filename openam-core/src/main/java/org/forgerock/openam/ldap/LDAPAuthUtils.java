@@ -92,6 +92,7 @@ import org.forgerock.opendj.ldap.responses.Result;
 import org.forgerock.opendj.ldap.responses.SearchResultEntry;
 import org.forgerock.opendj.ldif.ConnectionEntryReader;
 import org.forgerock.util.Options;
+import org.forgerock.util.annotations.VisibleForTesting;
 import org.forgerock.util.thread.listener.ShutdownListener;
 import org.forgerock.util.time.Duration;
 
@@ -263,6 +264,26 @@ public class LDAPAuthUtils {
         }
     }
 
+    /**
+     * Constructor using the given connection pools for user binds and for user searches.
+     *
+     * @param primaryServers List of primary servers.
+     * @param secondaryServers List of secondary servers.
+     * @param bundle ResourceBundle to be used for getting localized messages.
+     * @param baseDN Directory Base DN.
+     * @param connectionPool The pool of connections used for user binds.
+     * @param adminConnectionPool The pool of connections used for user searches.
+     * @throws LDAPUtilException If the provided search base was invalid.
+     */
+    @VisibleForTesting
+    LDAPAuthUtils(Set<String> primaryServers, Set<String> secondaryServers, ResourceBundle bundle, String baseDN,
+            Debug debug, ConnectionFactory connectionPool, ConnectionFactory adminConnectionPool)
+            throws LDAPUtilException {
+        this(primaryServers, secondaryServers, false, bundle, baseDN, debug);
+        this.cPool = connectionPool;
+        this.acPool = adminConnectionPool;
+    }
+
     private ConnectionFactory createConnectionPool(Map<String, ConnectionFactory> connectionPools,
             String bindingUser, char[] bindingPwd) throws LdapException, LDAPUtilException {
         ConnectionFactory connPool;
@@ -445,7 +466,7 @@ public class LDAPAuthUtils {
             cPool = createConnectionPool(connectionPools, null, null);
         }
 
-        return cPool.getConnection();
+        return getConnection(cPool);
     }
 
     /**
@@ -457,7 +478,19 @@ public class LDAPAuthUtils {
             acPool = createConnectionPool(adminConnectionPools, authDN, authPassword);
         }
 
-        return acPool.getConnection();
+        return getConnection(acPool);
+    }
+
+    /**
+     * Returns a connection from a pool, recording how long it took to obtain.
+     */
+    private Connection getConnection(ConnectionFactory pool) throws LdapException {
+        long start = System.nanoTime();
+        try {
+            return pool.getConnection();
+        } finally {
+            LDAPAuthStatistics.getInstance().recordConnectionWait(System.nanoTime() - start);
+        }
     }
 
     /**
@@ -845,7 +878,13 @@ public class LDAPAuthUtils {
                 }
 
                 conn = getConnection();
-                BindResult bindResult = conn.bind(bindRequest);
+                BindResult bindResult;
+                long start = System.nanoTime();
+                try {
+                    bindResult = conn.bind(bindRequest);
+                } finally {
+                    LDAPAuthStatistics.getInstance().recordBind(System.nanoTime() - start);
+                }
                 controls = processControls(bindResult);
             } finally {
                 if (conn != null) {
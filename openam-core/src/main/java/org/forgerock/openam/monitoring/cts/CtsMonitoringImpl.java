@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  *
  * The contents of this file are subject to the terms of the Common Development and
  * Distribution License (the License). You may not use this file except in compliance with the
@@ -23,9 +23,14 @@ import com.sun.identity.shared.debug.Debug;
 import com.sun.management.snmp.SnmpStatusException;
 import com.sun.management.snmp.agent.SnmpMib;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.cts.monitoring.CTSReaperMonitoringStore;
 import org.forgerock.openam.cts.monitoring.impl.persistence.CtsPersistenceOperationsMonitor;
 import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.sm.datalayer.api.ConnectionType;
+import org.forgerock.openam.sm.datalayer.api.DataLayer;
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.QueueConfiguration;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -43,6 +48,9 @@ import java.util.List;
  *          - OperationTable - Contains mappings of the CTS CRUDL Operations
  *          - TokenTable - Contains mappings of the CTS token types
  *
+ *      The queue table is instead indexed by the CTS asynchronous task queues, of which there
+ *      are as many as the configured number of queue processors.
+ *
  *  - Lookup tables, which take parameters from one or more of the index tables to provide
  *      the arguments to the functions on which
  *
@@ -167,6 +175,7 @@ public class CtsMonitoringImpl<E extends Enum<E>, F extends Enum<F>> extends Cts
                     operationEntries, tokenEntries);
             createCRUDOperationsTable(myMib, CtsCRUDOperationsTable, operationEntries);
             createTokenOperationsTable(myMib, CtsTokenOperationsTable, tokenEntries);
+            createQueueTable(myMib, CtsQueueTable);
 
         } catch (SnmpStatusException e) {
             if(debug.messageEnabled()) {
@@ -199,6 +208,36 @@ public class CtsMonitoringImpl<E extends Enum<E>, F extends Enum<F>> extends Cts
 
     }
 
+    /**
+     * Generates the endpoints for the Queue table. The endpoints for this table take one
+     * index - the CTS asynchronous task queue.
+     *
+     * @param myMib Mibfile from which the definition of these tables comes
+     * @param table The table in to which we will write the endpoints
+     * @throws SnmpStatusException If anything goes wrong while writing to the table
+     */
+    private void createQueueTable(SnmpMib myMib, TableCtsQueueTable table) throws SnmpStatusException {
+
+        final int queues;
+        try {
+            queues = InjectorHolder.getInstance(Key.get(QueueConfiguration.class,
+                    DataLayer.Types.typed(ConnectionType.CTS_ASYNC))).getProcessors();
+        } catch (DataLayerException e) {
+            debug.error("Unable to determine the number of CTS queues. CTS queue monitoring not available.", e);
+            return;
+        }
+
+        CTSOperationsMonitoringStore monitoringStore = InjectorHolder.getInstance(CTSOperationsMonitoringStore.class);
+
+        for (int queue = 0; queue < queues; queue++) {
+            final CtsQueueEntry entry = new CtsQueueEntryImpl(myMib, monitoringStore);
+            entry.QueueTableIndex = (long) queue + 1; // +1 as OID aren't 0-based
+
+            table.addEntry(entry);
+        }
+
+    }
+
     /**
      * Generates the endpoints for the CRUD Operations table. The endpoints for this table
      * take one index - the operation type.
@@ -256,5 +295,25 @@ public class CtsMonitoringImpl<E extends Enum<E>, F extends Enum<F>> extends Cts
         return (long) reaperMonitoringStore.getRateOfDeletedSessions();
     }
 
+    /**
+     * Gets the average number of tokens the CTS Reaper has deleted per second of run time.
+     *
+     * @return The deletion throughput of the CTS Reaper, rounded to the nearest token per second.
+     */
+    @Override
+    public Long getReaperThroughput() {
+        return Math.round(reaperMonitoringStore.getReaperThroughput());
+    }
+
+    /**
+     * Gets the number of expired tokens the CTS Reaper run in progress has found but not yet seen deleted.
+     *
+     * @return The backlog of the CTS Reaper.
+     */
+    @Override
+    public Long getReaperBacklog() {
+        return reaperMonitoringStore.getReaperBacklog();
+    }
+
 }
 
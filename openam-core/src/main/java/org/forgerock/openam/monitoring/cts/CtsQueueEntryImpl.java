@@ -0,0 +1,88 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring.cts;
+
+import com.sun.management.snmp.SnmpStatusException;
+import com.sun.management.snmp.agent.SnmpMib;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+
+/**
+ * This class represents the depth and wait time statistics of one of the CTS asynchronous task queues.
+ *
+ * The queue is input as part of the OID which results in this class being called and is available
+ * through {@link CtsQueueEntry#getQueueTableIndex()}.
+ */
+public class CtsQueueEntryImpl extends CtsQueueEntry {
+
+    //from which to retrieve the data
+    private final CTSOperationsMonitoringStore monitoringStore;
+
+    /**
+     * Constructor allows us to pass in the CTSOperationsMonitoringStore.
+     *
+     * @param myMib Mib file this Entry implementation is a member of
+     * @param monitoringStore The store holding the queue statistics
+     */
+    public CtsQueueEntryImpl(SnmpMib myMib, CTSOperationsMonitoringStore monitoringStore) {
+        super(myMib);
+        this.monitoringStore = monitoringStore;
+    }
+
+    /**
+     * Returns the number of tasks on the queue when a task was last added to it.
+     *
+     * @return the depth of the queue
+     */
+    @Override
+    public Long getQueueDepth() throws SnmpStatusException {
+        return (long) monitoringStore.getQueueDepth(getQueue());
+    }
+
+    /**
+     * Returns the maximum number of tasks on the queue since server startup.
+     *
+     * @return the maximum depth of the queue
+     */
+    @Override
+    public Long getQueueMaximumDepth() throws SnmpStatusException {
+        return (long) monitoringStore.getMaximumQueueDepth(getQueue());
+    }
+
+    /**
+     * Returns the average time in milliseconds callers waited for space on the queue.
+     *
+     * @return the average wait time, rounded to the nearest millisecond
+     */
+    @Override
+    public Long getQueueAverageWaitTime() throws SnmpStatusException {
+        return Math.round(monitoringStore.getAverageQueueWaitTime(getQueue()));
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a caller waited for space on the queue.
+     *
+     * @return the maximum wait time
+     */
+    @Override
+    public Long getQueueMaximumWaitTime() throws SnmpStatusException {
+        return monitoringStore.getMaximumQueueWaitTime(getQueue());
+    }
+
+    private int getQueue() throws SnmpStatusException {
+        return getQueueTableIndex().intValue() - 1; // -1 as OID aren't 0-based
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring.cts;
+
+import com.sun.management.snmp.SnmpStatusException;
+import com.sun.management.snmp.agent.SnmpMib;
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+
+/**
+ * Implementation of the endpoint created by the monitoring framework for the CTS token read cache.
+ *
+ * The injected monitoring store is shared between the monitoring framework
+ * and the {@link org.forgerock.openam.cts.impl.TokenReadCache}.
+ */
+public class CtsTokenCacheImpl extends CtsTokenCache {
+
+    private final CTSOperationsMonitoringStore monitoringStore;
+
+    /**
+     * Constructs an instance of the CtsTokenCacheImpl
+     *
+     * @param myMib The Mib.
+     */
+    public CtsTokenCacheImpl(SnmpMib myMib) {
+        super(myMib);
+        this.monitoringStore = InjectorHolder.getInstance(CTSOperationsMonitoringStore.class);
+    }
+
+    /**
+     * Getter for the "TokenCacheHits" variable.
+     */
+    @Override
+    public Long getTokenCacheHits() throws SnmpStatusException {
+        return monitoringStore.getTokenCacheHitCount();
+    }
+
+    /**
+     * Getter for the "TokenCacheMisses" variable.
+     */
+    @Override
+    public Long getTokenCacheMisses() throws SnmpStatusException {
+        return monitoringStore.getTokenCacheMissCount();
+    }
+
+    /**
+     * Getter for the "TokenCacheInvalidations" variable.
+     */
+    @Override
+    public Long getTokenCacheInvalidations() throws SnmpStatusException {
+        return monitoringStore.getTokenCacheInvalidationCount();
+    }
+}
@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014-2015 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 package org.forgerock.openam.monitoring.session;
 
@@ -32,6 +32,7 @@ public class FORGEROCK_OPENAM_SESSION_MIBImpl extends FORGEROCK_OPENAM_SESSION_M
     private InternalSessions internalSessions;
     private RemoteSessions remoteSessions;
     private StatelessSessions statelessSessions;
+    private SessionBlacklist sessionBlacklist;
 
 
     /**
@@ -147,4 +148,18 @@ public class FORGEROCK_OPENAM_SESSION_MIBImpl extends FORGEROCK_OPENAM_SESSION_M
         return statelessSessions;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    protected SessionBlacklist createSessionBlacklistMBean(String groupName, String groupOid,
+                                                           ObjectName groupObjname, MBeanServer server) {
+        sessionBlacklist = new SessionBlacklistImpl(this);
+
+        return sessionBlacklist;
+    }
+
+    public SessionBlacklist getSessionBlacklist() {
+        return sessionBlacklist;
+    }
+
 }
@@ -0,0 +1,74 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.monitoring.session;
+
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import com.iplanet.dpro.session.Session;
+import com.sun.management.snmp.SnmpStatusException;
+import com.sun.management.snmp.agent.SnmpMib;
+import org.forgerock.guice.core.InjectorHolder;
+import org.forgerock.openam.blacklist.Blacklist;
+import org.forgerock.openam.blacklist.BloomFilterBlacklist;
+
+/**
+ * Monitoring for the bloom filter of the stateless session blacklist. Every value is zero unless the blacklist is
+ * backed by a bloom filter.
+ */
+public class SessionBlacklistImpl extends SessionBlacklist {
+    private static final double PARTS_PER_MILLION = 1000000.0d;
+
+    public SessionBlacklistImpl(final SnmpMib mib) {
+        super(mib);
+    }
+
+    /**
+     * Getter for the "SessionBlacklistLookups" variable.
+     */
+    @Override
+    public Long getSessionBlacklistLookups() throws SnmpStatusException {
+        BloomFilterBlacklist<Session> bloomFilter = getBloomFilter();
+        return bloomFilter == null ? 0L : bloomFilter.getLookupCount();
+    }
+
+    /**
+     * Getter for the "SessionBlacklistFalsePositiveRate" variable.
+     */
+    @Override
+    public Long getSessionBlacklistFalsePositiveRate() throws SnmpStatusException {
+        BloomFilterBlacklist<Session> bloomFilter = getBloomFilter();
+        return bloomFilter == null ? 0L : Math.round(bloomFilter.getFalsePositiveRate() * PARTS_PER_MILLION);
+    }
+
+    /**
+     * Getter for the "SessionBlacklistMemorySize" variable.
+     */
+    @Override
+    public Long getSessionBlacklistMemorySize() throws SnmpStatusException {
+        BloomFilterBlacklist<Session> bloomFilter = getBloomFilter();
+        return bloomFilter == null ? 0L : bloomFilter.getMemorySizeInBytes();
+    }
+
+    /**
+     * The blacklist is looked up when read, rather than when the MIB is created, so that monitoring does not
+     * initialise the session blacklist.
+     */
+    private BloomFilterBlacklist<Session> getBloomFilter() {
+        Blacklist<Session> blacklist = InjectorHolder.getInstance(Key.get(new TypeLiteral<Blacklist<Session>>() {}));
+        return blacklist instanceof BloomFilterBlacklist ? (BloomFilterBlacklist<Session>) blacklist : null;
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.monitoring.session;
@@ -64,6 +64,22 @@ public class StatelessSessionsImpl extends StatelessSessions {
         return monitoringStore.getAverageRefreshTime(SessionMonitorType.STATELESS);
     }
 
+    /**
+     * Getter for the "AverageStatelessVerifyTime" variable.
+     */
+    @Override
+    public Long getAverageStatelessVerifyTime() throws SnmpStatusException {
+        return monitoringStore.getAverageVerifyTime(SessionMonitorType.STATELESS);
+    }
+
+    /**
+     * Getter for the "AverageStatelessDecryptTime" variable.
+     */
+    @Override
+    public Long getAverageStatelessDecryptTime() throws SnmpStatusException {
+        return monitoringStore.getAverageDecryptTime(SessionMonitorType.STATELESS);
+    }
+
     /**
      * Getter for the "SumStatelessSessions" variable.
      */
@@ -32,48 +32,91 @@ import com.sun.identity.shared.debug.Debug;
 import org.forgerock.guice.core.InjectorHolder;
 import org.forgerock.util.Reject;
 
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.time.TimeService;
+
 import javax.inject.Singleton;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static org.forgerock.openam.session.SessionConstants.DESTROYED;
+import static org.forgerock.openam.session.SessionConstants.*;
 import static org.forgerock.openam.utils.Time.*;
 
 /**
  * Responsible for providing a single point of contact for all Sessions stored in memory.
+ * <p>
+ * The cache is bounded by {@link SessionConstants#SESSION_CACHE_MAX_SIZE}. Sessions which have not been read for
+ * longer than their maximum idle time, or have been cached for longer than their maximum session time, are evicted
+ * by a periodic sweep. When the cache is full the least recently read Sessions are evicted, down to 90% of the
+ * maximum size. Evicted Sessions are simply fetched again on their next use. Sessions with local listeners, and
+ * destroyed Sessions waiting to be purged, are never evicted.
+ * <p>
+ * Eviction is performed by whichever thread adds a Session when a sweep is due, at most one thread at a time;
+ * reads never block.
  */
 @Singleton
 public class SessionCache {
 
+    private static final int EVICTION_SAMPLE_SIZE = 1024;
+    private static final double EVICTION_LOW_WATERMARK = 0.9;
+
     /**
      * Maps stateful sessions, allowing their sessionId to be used as a lookup to the Session object.
      */
-    private final ConcurrentMap<SessionID, Session> sessionTable = new ConcurrentHashMap<SessionID, Session>();
+    private final ConcurrentMap<SessionID, CachedSession> sessionTable =
+            new ConcurrentHashMap<SessionID, CachedSession>();
 
     private final SessionPollerPool sessionPollerPool;
 
     private final Debug debug;
 
-    private static SessionCache instance;
+    private final int maxSize;
+    private final long defaultIdleTimeout;
+    private final long sweepInterval;
+    private final TimeService clock;
+
+    private final AtomicBoolean evicting = new AtomicBoolean(false);
+    private volatile long nextSweep;
+    private final AtomicLong expiredEvictions = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
 
     /**
      * ClientSDK: Usage without Guice, must maintain static initialisation.
      *
      * @return Provides accesses to a SessionCache singleton.
      */
-    public synchronized static SessionCache getInstance() {
-        if (instance == null) {
-            instance = new SessionCache(SessionPollerPool.getInstance(), Debug.getInstance(SessionConstants.SESSION_DEBUG));
-        }
-        return instance;
+    public static SessionCache getInstance() {
+        return InstanceHolder.INSTANCE;
     }
 
     // Hidden to enforce singleton.
     private SessionCache(SessionPollerPool sessionPollerPool,
                         @Named(SessionConstants.SESSION_DEBUG) Debug debug) {
+        this(sessionPollerPool, debug,
+                SystemProperties.getAsInt(SESSION_CACHE_MAX_SIZE, DEFAULT_SESSION_CACHE_MAX_SIZE),
+                TimeUnit.MINUTES.toMillis(
+                        SystemProperties.getAsLong(SESSION_CACHE_IDLE_TIMEOUT, DEFAULT_SESSION_CACHE_IDLE_TIMEOUT)),
+                TimeUnit.SECONDS.toMillis(
+                        SystemProperties.getAsLong(SESSION_CACHE_SWEEP_INTERVAL, DEFAULT_SESSION_CACHE_SWEEP_INTERVAL)),
+                TimeService.SYSTEM);
+    }
+
+    @VisibleForTesting
+    SessionCache(SessionPollerPool sessionPollerPool, Debug debug, int maxSize, long defaultIdleTimeout,
+            long sweepInterval, TimeService clock) {
         this.sessionPollerPool = sessionPollerPool;
         this.debug = debug;
+        this.maxSize = maxSize;
+        this.defaultIdleTimeout = defaultIdleTimeout;
+        this.sweepInterval = sweepInterval;
+        this.clock = clock;
+        this.nextSweep = clock.now() + sweepInterval;
     }
 
     /**
@@ -93,7 +136,12 @@ public class SessionCache {
      */
     public Session readSession(SessionID sessionID) {
         Reject.ifNull(sessionID);
-        return sessionTable.get(sessionID);
+        CachedSession cached = sessionTable.get(sessionID);
+        if (cached == null) {
+            return null;
+        }
+        cached.lastRead = clock.now();
+        return cached.session;
     }
 
     /**
@@ -104,7 +152,9 @@ public class SessionCache {
     public void writeSession(Session session) {
         Reject.ifNull(session);
         Reject.ifNull(session.getID());
-        sessionTable.put(session.getID(), session);
+        if (sessionTable.put(session.getID(), new CachedSession(session, clock.now())) == null) {
+            evictIfNecessary();
+        }
     }
 
     /**
@@ -114,7 +164,29 @@ public class SessionCache {
      */
     public Session deleteSession(SessionID sessionID) {
         Reject.ifNull(sessionID);
-        return sessionTable.remove(sessionID);
+        CachedSession removed = sessionTable.remove(sessionID);
+        return removed == null ? null : removed.session;
+    }
+
+    /**
+     * @return The number of Sessions currently held in the table.
+     */
+    public int size() {
+        return sessionTable.size();
+    }
+
+    /**
+     * @return The number of Sessions evicted because they exceeded their idle or maximum time.
+     */
+    public long getExpiredEvictionCount() {
+        return expiredEvictions.get();
+    }
+
+    /**
+     * @return The number of Sessions evicted to keep the table within its maximum size.
+     */
+    public long getSizeEvictionCount() {
+        return sizeEvictions.get();
     }
 
     /**
@@ -312,6 +384,101 @@ public class SessionCache {
         return session;
     }
 
+    /**
+     * Runs an expiry sweep if one is due, and evicts the least recently read Sessions if the table is over its
+     * maximum size. Only one thread evicts at a time, others return immediately.
+     */
+    private void evictIfNecessary() {
+        long now = clock.now();
+        boolean overSize = maxSize > 0 && sessionTable.size() > maxSize;
+        if ((!overSize && now < nextSweep) || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long expired = 0;
+            if (now >= nextSweep) {
+                nextSweep = now + sweepInterval;
+                expired = evictExpired(now);
+            }
+            long evicted = 0;
+            if (maxSize > 0 && sessionTable.size() > maxSize) {
+                evicted = evictLeastRecentlyRead(now);
+            }
+            if (debug.messageEnabled() && (expired > 0 || evicted > 0)) {
+                debug.message("SessionCache: evicted " + expired + " expired and " + evicted
+                        + " least recently used sessions, " + sessionTable.size() + " remain");
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private long evictExpired(long now) {
+        long count = 0;
+        for (Map.Entry<SessionID, CachedSession> entry : sessionTable.entrySet()) {
+            CachedSession cached = entry.getValue();
+            if (cached.isExpired(now, defaultIdleTimeout) && isEvictable(cached, now)
+                    && evict(entry.getKey(), cached)) {
+                count++;
+            }
+        }
+        expiredEvictions.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Evicts Sessions down to the low watermark. The read time below which Sessions are evicted is estimated
+     * from a sample of the table, so that only a single further pass over the table is needed.
+     */
+    private long evictLeastRecentlyRead(long now) {
+        int size = sessionTable.size();
+        int excess = size - (int) (maxSize * EVICTION_LOW_WATERMARK);
+        if (excess <= 0) {
+            return 0;
+        }
+
+        long[] sample = new long[Math.min(EVICTION_SAMPLE_SIZE, size)];
+        int sampled = 0;
+        for (CachedSession cached : sessionTable.values()) {
+            if (sampled == sample.length) {
+                break;
+            }
+            sample[sampled++] = cached.lastRead;
+        }
+        if (sampled == 0) {
+            return 0;
+        }
+        Arrays.sort(sample, 0, sampled);
+        int cutoffIndex = Math.min(sampled - 1, (int) ((long) sampled * excess / size) - 1);
+        long cutoff = sample[Math.max(0, cutoffIndex)];
+
+        long count = 0;
+        for (Map.Entry<SessionID, CachedSession> entry : sessionTable.entrySet()) {
+            if (count >= excess) {
+                break;
+            }
+            CachedSession cached = entry.getValue();
+            if (cached.lastRead <= cutoff && isEvictable(cached, now) && evict(entry.getKey(), cached)) {
+                count++;
+            }
+        }
+        sizeEvictions.addAndGet(count);
+        return count;
+    }
+
+    private boolean isEvictable(CachedSession cached, long now) {
+        Session session = cached.session;
+        return session.getPurgeAt() <= now && session.getLocalSessionEventListeners().isEmpty();
+    }
+
+    private boolean evict(SessionID sessionID, CachedSession cached) {
+        if (sessionTable.remove(sessionID, cached)) {
+            cached.session.cancel();
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Determines the reduce crosstalk purge delay, or defaults to 0.
      *
@@ -326,4 +493,37 @@ public class SessionCache {
         }
         return 0;
     }
-}
\ No newline at end of file
+
+    /**
+     * A Session held in the table, along with when it was cached and last read.
+     */
+    private static final class CachedSession {
+        private final Session session;
+        private final long cachedAt;
+        private volatile long lastRead;
+
+        private CachedSession(Session session, long now) {
+            this.session = session;
+            this.cachedAt = now;
+            this.lastRead = now;
+        }
+
+        private boolean isExpired(long now, long defaultIdleTimeout) {
+            long maxIdleTime = session.getMaxIdleTime();
+            long idleTimeout = maxIdleTime > 0 ? TimeUnit.MINUTES.toMillis(maxIdleTime) : defaultIdleTimeout;
+            if (now - lastRead > idleTimeout) {
+                return true;
+            }
+            long maxSessionTime = session.getMaxSessionTime();
+            return maxSessionTime > 0 && now - cachedAt > TimeUnit.MINUTES.toMillis(maxSessionTime);
+        }
+    }
+
+    /**
+     * Lazily creates the ClientSDK singleton without synchronising every call to {@link #getInstance()}.
+     */
+    private static final class InstanceHolder {
+        private static final SessionCache INSTANCE = new SessionCache(SessionPollerPool.getInstance(),
+                Debug.getInstance(SessionConstants.SESSION_DEBUG));
+    }
+}
@@ -82,4 +82,26 @@ public class SessionConstants {
     public static final int DEFAULT_POOL_SIZE = 5;
 
     public static final int DEFAULT_THRESHOLD = 10000;
+
+    /**
+     * Maximum number of Sessions held by the {@link SessionCache}. Zero or less leaves the cache unbounded.
+     */
+    public static final String SESSION_CACHE_MAX_SIZE = "org.forgerock.openam.session.cache.max.size";
+
+    public static final int DEFAULT_SESSION_CACHE_MAX_SIZE = 100000;
+
+    /**
+     * Minutes a Session may go unused in the {@link SessionCache} when the session does not report its own
+     * maximum idle time.
+     */
+    public static final String SESSION_CACHE_IDLE_TIMEOUT = "org.forgerock.openam.session.cache.idle.timeout";
+
+    public static final long DEFAULT_SESSION_CACHE_IDLE_TIMEOUT = 30;
+
+    /**
+     * Seconds between sweeps of the {@link SessionCache} for expired Sessions.
+     */
+    public static final String SESSION_CACHE_SWEEP_INTERVAL = "org.forgerock.openam.session.cache.sweep.interval";
+
+    public static final long DEFAULT_SESSION_CACHE_SWEEP_INTERVAL = 60;
 }
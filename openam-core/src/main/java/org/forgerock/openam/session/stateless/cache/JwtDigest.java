@@ -0,0 +1,91 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.session.stateless.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.forgerock.util.Reject;
+
+/**
+ * Compact, immutable fingerprint of a JWT holding the 256 bit SHA-256 digest of the token as four longs.
+ *
+ * Used as a cache key in place of the JWT itself, so caches do not retain multi-kilobyte token strings and key
+ * comparisons are a handful of long comparisons.
+ */
+public final class JwtDigest {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e);
+            }
+        }
+    };
+
+    private final long d0;
+    private final long d1;
+    private final long d2;
+    private final long d3;
+
+    private JwtDigest(byte[] digest) {
+        this.d0 = toLong(digest, 0);
+        this.d1 = toLong(digest, 8);
+        this.d2 = toLong(digest, 16);
+        this.d3 = toLong(digest, 24);
+    }
+
+    /**
+     * @param jwt Non null JWT.
+     * @return The digest of the given JWT.
+     */
+    public static JwtDigest of(String jwt) {
+        Reject.ifNull(jwt);
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return new JwtDigest(digest.digest(jwt.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof JwtDigest)) {
+            return false;
+        }
+        JwtDigest that = (JwtDigest) o;
+        return d0 == that.d0 && d1 == that.d1 && d2 == that.d2 && d3 == that.d3;
+    }
+
+    @Override
+    public int hashCode() {
+        // The digest is already uniformly distributed, so any part of it is a good hash.
+        return (int) (d0 ^ (d0 >>> 32));
+    }
+}
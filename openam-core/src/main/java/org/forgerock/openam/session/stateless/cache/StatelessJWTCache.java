@@ -15,16 +15,15 @@
  */
 package org.forgerock.openam.session.stateless.cache;
 
-import java.util.Collections;
-import java.util.Map;
-
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
 import org.forgerock.openam.session.stateless.StatelessConfig;
-import org.forgerock.openam.utils.collections.LeastRecentlyUsed;
 import org.forgerock.util.Reject;
 import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.time.TimeService;
 
 import com.iplanet.dpro.session.service.SessionServiceConfig;
 import com.iplanet.dpro.session.share.SessionInfo;
@@ -39,18 +38,37 @@ import com.iplanet.services.naming.ServiceListeners;
  * This cache is intentionally unable to perform the reverse lookup of SessionInfo to
  * JWT, as we expect the JWT to change each time the SessionInfo changes.
  *
+ * Entries are keyed by a {@link JwtDigest} of the JWT rather than the JWT itself. Each entry
+ * remembers the expiry time of its SessionInfo; an entry for an expired session is treated as a miss and
+ * discarded when it is next read.
+ *
  * Assumption: There is only one representation of a JWT to the SessionInfo it contains.
  *
- * Thread Safety: This class uses a synchronized data structure and so is thread safe.
+ * Thread Safety: This class uses a segmented concurrent cache and so is thread safe.
  */
 @Singleton
 public class StatelessJWTCache {
-    private final Map<String, SessionInfo> sessionInfoCache;
+
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    private final Cache<JwtDigest, CachedSessionInfo> sessionInfoCache;
+    private final boolean enabled;
+    private final TimeService timeService;
 
     @Inject
     public StatelessJWTCache(StatelessConfig config, ServiceListeners listeners) {
-        sessionInfoCache = Collections.synchronizedMap(
-                new LeastRecentlyUsed<String, SessionInfo>(config.getJWTCacheSize()));
+        this(config, listeners, TimeService.SYSTEM);
+    }
+
+    @VisibleForTesting
+    StatelessJWTCache(StatelessConfig config, ServiceListeners listeners, TimeService timeService) {
+        int size = config.getJWTCacheSize();
+        this.timeService = timeService;
+        this.enabled = size > 0;
+        this.sessionInfoCache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(size, 0))
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .build();
 
         // Responds to configuration changes, preventing possibly invalid keys from remaining in the cache
         final ServiceListeners.Action action = new ServiceListeners.Action() {
@@ -70,15 +88,31 @@ public class StatelessJWTCache {
      */
     public void cache(SessionInfo info, String jwtToken) {
         Reject.ifNull(info, jwtToken, "Arguments cannot be null.");
-        sessionInfoCache.put(jwtToken, info);
+        if (!enabled) {
+            return;
+        }
+        sessionInfoCache.put(JwtDigest.of(jwtToken), new CachedSessionInfo(info, info.getExpiryTime()));
     }
 
     /**
      * @param jwt Possibly null JWT token.
-     * @return Possibly null. Cached SessionInfo that corresponds to the given JWT token.
+     * @return Possibly null. Cached SessionInfo that corresponds to the given JWT token, or null if the JWT
+     * is not cached or the session it describes has expired.
      */
     public SessionInfo getSessionInfo(String jwt) {
-        return sessionInfoCache.get(jwt);
+        if (!enabled || jwt == null) {
+            return null;
+        }
+        JwtDigest key = JwtDigest.of(jwt);
+        CachedSessionInfo cached = sessionInfoCache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.isExpired(timeService.now())) {
+            sessionInfoCache.asMap().remove(key, cached);
+            return null;
+        }
+        return cached.sessionInfo;
     }
 
     /**
@@ -86,15 +120,33 @@ public class StatelessJWTCache {
      * @return True if there is a JWT representation for this SessionInfo.
      */
     public boolean contains(SessionInfo info) {
-        return sessionInfoCache.containsValue(info);
+        if (info == null) {
+            return false;
+        }
+        for (CachedSessionInfo cached : sessionInfoCache.asMap().values()) {
+            if (info.equals(cached.sessionInfo)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
+     * Prefer {@link #getSessionInfo(String)} where the SessionInfo is needed, as it performs a single lookup.
+     *
      * @param jwtToken Possibly null JWT token.
-     * @return True if this JWT has been stored in the cache previously.
+     * @return True if this JWT has been stored in the cache previously and has not expired.
      */
     public boolean contains(String jwtToken) {
-        return sessionInfoCache.containsKey(jwtToken);
+        return getSessionInfo(jwtToken) != null;
+    }
+
+    /**
+     * @return The approximate number of entries in the cache.
+     */
+    @VisibleForTesting
+    long size() {
+        return sessionInfoCache.size();
     }
 
     /**
@@ -105,6 +157,24 @@ public class StatelessJWTCache {
      */
     @VisibleForTesting
     void clear() {
-        sessionInfoCache.clear();
+        sessionInfoCache.invalidateAll();
+    }
+
+    /**
+     * A SessionInfo together with the time, in milliseconds since the epoch, at which its session expires.
+     * An expiry time of zero or less means the expiry is unknown and the entry is only removed by eviction.
+     */
+    private static final class CachedSessionInfo {
+        private final SessionInfo sessionInfo;
+        private final long expiryTime;
+
+        private CachedSessionInfo(SessionInfo sessionInfo, long expiryTime) {
+            this.sessionInfo = sessionInfo;
+            this.expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(long now) {
+            return expiryTime > 0 && now >= expiryTime;
+        }
     }
-}
\ No newline at end of file
+}
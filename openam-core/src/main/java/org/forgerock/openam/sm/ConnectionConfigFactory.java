@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.sm;
 
@@ -20,6 +20,7 @@ import javax.inject.Named;
 
 import java.util.Set;
 
+import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.ldap.LDAPURL;
 import org.forgerock.openam.sm.datalayer.api.ConnectionType;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
@@ -27,6 +28,8 @@ import org.forgerock.openam.sm.datalayer.impl.ldap.LdapDataLayerConfiguration;
 import org.forgerock.openam.sm.exceptions.InvalidConfigurationException;
 import org.forgerock.openam.sm.utils.ConfigurationValidator;
 
+import com.sun.identity.shared.configuration.SystemPropertiesManager;
+
 /**
  * The factory used for acquiring the configuration used by the Service Manager data layer.
  *
@@ -105,10 +108,12 @@ public class ConnectionConfigFactory {
     }
 
     private ConnectionConfig wrapCtsReaperConfiguration(ConnectionConfig configuration) {
+        // One connection for each partition searched concurrently by the CTS Reaper
+        final int partitions = SystemPropertiesManager.getAsInt(CoreTokenConstants.REAPER_PARTITIONS, 1);
         return new DelegatingConnectionConfig(configuration) {
             @Override
             public int getMaxConnections() {
-                return 1;
+                return Math.max(1, partitions);
             }
         };
     }
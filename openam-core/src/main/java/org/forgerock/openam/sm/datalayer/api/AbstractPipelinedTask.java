@@ -0,0 +1,75 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.sm.datalayer.api;
+
+import org.forgerock.util.promise.Promise;
+
+/**
+ * Abstract task whose operation can be pipelined by the Task Processor.
+ * @param <T> Connection to use.
+ */
+public abstract class AbstractPipelinedTask<T> extends AbstractTask<T> implements PipelinedTask {
+
+    private Promise<?, DataLayerException> operation;
+
+    /**
+     * A new abstract pipelined task constructor - requires at least a ResultHandler to be configured.
+     *
+     * @param handler Non null handler to notify.
+     */
+    public AbstractPipelinedTask(ResultHandler<T, ?> handler) {
+        super(handler);
+    }
+
+    @Override
+    public <C> void start(C connection, TokenStorageAdapter<C> adapter) {
+        if (isError()) {
+            return;
+        }
+        operation = startTask(connection, adapter);
+    }
+
+    @Override
+    public void complete() throws DataLayerException {
+        if (operation == null) {
+            return;
+        }
+
+        try {
+            operation.getOrThrowUninterruptibly();
+        } catch (DataLayerException e) {
+            processError(e);
+            throw e;
+        } finally {
+            operation = null;
+        }
+        processResults();
+    }
+
+    /**
+     * Issues the operation of the task without waiting for it to complete.
+     *
+     * @param connection Non null connection to use.
+     * @param adapter Required for connection-coupled operations.
+     * @return A non null promise which completes with the operation.
+     */
+    protected abstract <C> Promise<?, DataLayerException> startTask(C connection, TokenStorageAdapter<C> adapter);
+
+    /**
+     * Notifies the handler of the result of the completed operation.
+     */
+    protected abstract void processResults();
+}
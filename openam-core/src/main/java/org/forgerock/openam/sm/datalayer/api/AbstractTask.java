@@ -39,6 +39,13 @@ public abstract class AbstractTask<T> implements Task {
         handler.processError(error);
     }
 
+    /**
+     * @return Whether the handler has already been notified of an error, in which case the task is not performed.
+     */
+    protected boolean isError() {
+        return isError;
+    }
+
     @Override
     public <T> void execute(T connection, TokenStorageAdapter<T> adapter) throws DataLayerException {
         if (isError) {
@@ -0,0 +1,48 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.sm.datalayer.api;
+
+/**
+ * A task whose operation can be pipelined with the operations of tasks for other tokens on the same connection.
+ * <p>
+ * The operation is issued by {@link #start(Object, TokenStorageAdapter)}, which does not wait for it to complete,
+ * and its outcome is collected by {@link #complete()}, which notifies the result handler on the calling thread.
+ * Once started, a task must be completed before any other task for the same token is started.
+ */
+public interface PipelinedTask extends Task {
+
+    /**
+     * @return The non null ID of the Token this task operates on.
+     */
+    String getTokenId();
+
+    /**
+     * Issues the operation of this task without waiting for it to complete.
+     *
+     * @param connection Non null connection to use.
+     * @param adapter Required for connection-coupled operations.
+     * @param <T> The type of connection.
+     */
+    <T> void start(T connection, TokenStorageAdapter<T> adapter);
+
+    /**
+     * Waits for the operation issued by {@link #start(Object, TokenStorageAdapter)} to complete and notifies the
+     * result handler of its outcome.
+     *
+     * @throws DataLayerException If the operation failed, in which case the handler has been notified of the error.
+     */
+    void complete() throws DataLayerException;
+}
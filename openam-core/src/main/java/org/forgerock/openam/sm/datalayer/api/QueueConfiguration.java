@@ -50,4 +50,21 @@ public interface QueueConfiguration {
      * @return A positive number of processors to initialise.
      */
     int getProcessors() throws DataLayerException;
+
+    /**
+     * The maximum number of tasks that a Task Processor will take from its work queue at once and process
+     * against a single connection. Operations on different tokens within a batch are pipelined, so this also
+     * bounds the number of requests a Task Processor has outstanding on its connection.
+     *
+     * @return A positive number of tasks.
+     */
+    int getBatchSize();
+
+    /**
+     * The maximum duration a Task Processor will wait for further tasks to arrive on its work queue before
+     * processing a batch that is not full. Zero means a batch is processed as soon as the queue is empty.
+     *
+     * @return A non negative duration in milliseconds.
+     */
+    int getBatchLinger();
 }
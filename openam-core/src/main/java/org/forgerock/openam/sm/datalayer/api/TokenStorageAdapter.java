@@ -22,6 +22,7 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.continuous.ContinuousQuery;
 import org.forgerock.openam.cts.continuous.ContinuousQueryListener;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
+import org.forgerock.util.promise.Promise;
 
 /**
  * Adapts the token to some activity against the connection type, T.
@@ -67,6 +68,44 @@ public interface TokenStorageAdapter<T> {
      */
     void delete(T connection, String tokenId) throws DataLayerException;
 
+    /**
+     * Starts the creation of the Token in the database without waiting for it to complete, so that it can be
+     * pipelined with other operations on the same connection.
+     *
+     * @param connection The non null connection to perform this call against.
+     * @param token Non null Token to create.
+     * @return A promise which completes once the Token has been created, or fails with the reason it was not.
+     */
+    Promise<Void, DataLayerException> createAsync(T connection, Token token);
+
+    /**
+     * Starts a read against the database connection without waiting for it to complete.
+     *
+     * @param connection The non null connection to perform this call against.
+     * @param tokenId The id of the Token to read.
+     * @return A promise of the Token if found, otherwise of null.
+     */
+    Promise<Token, DataLayerException> readAsync(T connection, String tokenId);
+
+    /**
+     * Starts an update of the Token without waiting for it to complete.
+     *
+     * @param connection The non null connection to perform this call against.
+     * @param previous The non null previous Token to check against.
+     * @param updated The non null Token to update with.
+     * @return A promise of true if the token was updated, or false if there were no changes detected.
+     */
+    Promise<Boolean, DataLayerException> updateAsync(T connection, Token previous, Token updated);
+
+    /**
+     * Starts a delete of the Token ID provided without waiting for it to complete.
+     *
+     * @param connection Non null connection to call.
+     * @param tokenId The non null Token ID to delete.
+     * @return A promise which completes once the Token no longer exists, or fails with the reason it may still.
+     */
+    Promise<Void, DataLayerException> deleteAsync(T connection, String tokenId);
+
     /**
      * Performs a full-token query using the provided filter.
      *
@@ -29,11 +29,13 @@ import javax.inject.Named;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.cts.impl.queue.QueueSelector;
 import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.audit.context.AbstractAuditRequestContextPropagatingDecorator;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
 import org.forgerock.openam.audit.context.AuditRequestContext;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.QueueTimeoutException;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TaskExecutor;
@@ -65,7 +67,9 @@ import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
  * This provides an automatic throttling function for the CTS. The queues provide a
  * buffer for the CTS in the event that more come in than can be handled. If however
  * this situation persists for an extended duration, then the CTS queues will
- * throttle the caller until the CTS has had time to catch up.
+ * throttle the caller until the CTS has had time to catch up. The depth of each queue and
+ * the time callers spent waiting for space on it are reported to the
+ * {@link CTSOperationsMonitoringStore} so that an unevenly loaded queue can be identified.
  *
  * @see org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration#getQueueTimeout()
  */
@@ -79,6 +83,7 @@ public class SeriesTaskExecutor implements TaskExecutor {
     private final ThreadMonitor monitor;
     private final CTSQueueConfiguration configuration;
     private final ExecutorService poolService;
+    private final CTSOperationsMonitoringStore monitoringStore;
 
     /**
      * Create a default instance of the SeriesTaskExecutor.
@@ -87,6 +92,7 @@ public class SeriesTaskExecutor implements TaskExecutor {
      * @param processorFactory Required to create worker thread instances.
      * @param monitor Required to ensure threads are restarted.
      * @param configuration Required to determine runtime configuration options.
+     * @param monitoringStore Required to report queue depth and wait time.
      * @param debug Required for debugging.
      */
     @Inject
@@ -95,18 +101,19 @@ public class SeriesTaskExecutor implements TaskExecutor {
             SeriesTaskExecutorThreadFactory processorFactory,
             ThreadMonitor monitor,
             CTSQueueConfiguration configuration,
+            CTSOperationsMonitoringStore monitoringStore,
             @Named(DataLayerConstants.DATA_LAYER_DEBUG) Debug debug) {
         this.debug = debug;
         this.monitor = monitor;
         this.configuration = configuration;
         this.processorFactory = processorFactory;
         this.poolService = poolService;
+        this.monitoringStore = monitoringStore;
     }
 
     @Override
     public void execute(String tokenId, Task task) throws DataLayerException {
-        BlockingQueue<Task> queue = getQueue(tokenId);
-        offer(queue, task);
+        offer(selectQueue(tokenId), task);
     }
 
     /**
@@ -138,50 +145,44 @@ public class SeriesTaskExecutor implements TaskExecutor {
         }
         debug("Created {0} Task Processors", processors);
 
-        initialised = true;    }
-
-    /**
-     * Select a random queue to use for the query operation.
-     * @return Non null.
-     */
-    private BlockingQueue<Task> getQueueForQuery() {
-        String key = Integer.toString(random.nextInt());
-        return getQueue(key);
+        initialised = true;
     }
 
     /**
      * Select the appropriate queue based on the given Token ID.
      *
-     * The QueueSelector algorithm used will be consistent against the Token ID.
+     * The QueueSelector algorithm used will be consistent against the Token ID. Tasks without
+     * a Token ID, such as queries, are assigned a random queue.
      *
-     * @param tokenId Non null Token ID.
-     * @return A non null Queue to assign the task to.
+     * @param tokenId Token ID, may be null.
+     * @return The index of the queue to assign the task to.
      */
-    private BlockingQueue<Task> getQueue(String tokenId) {
-        if (tokenId == null) {
-            return getQueueForQuery();
-        }
-        int select = QueueSelector.select(tokenId, processors);
+    private int selectQueue(String tokenId) {
+        String key = tokenId == null ? Integer.toString(random.nextInt()) : tokenId;
+        int select = QueueSelector.select(key, processors);
         debug("Select Queue: Token ID {0} - Queue {1}", tokenId, select);
-        return taskQueues[select];
+        return select;
     }
 
     /**
      * Assign the task to the queue with a known timeout.
-     * @param queue Non null BlockingQueue.
+     * @param index The index of the queue.
      * @param task Task to add.
      * @throws org.forgerock.openam.sm.datalayer.api.QueueTimeoutException If the timeout expired before the Task was added.
      */
-    private void offer(BlockingQueue<Task> queue, Task task) throws QueueTimeoutException {
+    private void offer(int index, Task task) throws QueueTimeoutException {
+        BlockingQueue<Task> queue = taskQueues[index];
         try {
             debug("Queuing Task {0}", task.toString());
+            long start = System.nanoTime();
             if (!queue.offer(wrap(task), configuration.getQueueTimeout(), TimeUnit.SECONDS)) {
                 throw new QueueTimeoutException(task);
             }
+            monitoringStore.addQueueOperation(index, queue.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
         } catch (InterruptedException e) {
             throw new QueueTimeoutException(task, e);
         }
-
     }
 
     private void debug(String format, Object... args) {
@@ -192,6 +193,9 @@ public class SeriesTaskExecutor implements TaskExecutor {
     }
 
     Task wrap(Task task) {
+        if (task instanceof PipelinedTask) {
+            return new AuditRequestContextPropagatingPipelinedTask((PipelinedTask) task);
+        }
         return new AuditRequestContextPropagatingTask(task);
     }
 
@@ -226,4 +230,44 @@ public class SeriesTaskExecutor implements TaskExecutor {
         }
     }
 
+    /**
+     * <code>PipelinedTask</code> Decorator that propagates thread local {@link AuditRequestContext} to worker thread
+     * while the task is started and completed.
+     */
+    static class AuditRequestContextPropagatingPipelinedTask extends AuditRequestContextPropagatingTask
+            implements PipelinedTask {
+
+        private final PipelinedTask delegate;
+
+        AuditRequestContextPropagatingPipelinedTask(PipelinedTask delegate) {
+            super(delegate);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getTokenId() {
+            return delegate.getTokenId();
+        }
+
+        @Override
+        public <T> void start(T connection, TokenStorageAdapter<T> adapter) {
+            setContext();
+            try {
+                delegate.start(connection, adapter);
+            } finally {
+                revertContext();
+            }
+        }
+
+        @Override
+        public void complete() throws DataLayerException {
+            setContext();
+            try {
+                delegate.complete();
+            } finally {
+                revertContext();
+            }
+        }
+    }
+
 }
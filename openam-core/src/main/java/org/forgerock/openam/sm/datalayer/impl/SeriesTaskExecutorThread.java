@@ -11,18 +11,22 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.sm.datalayer.impl;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.QueueConfiguration;
 import org.forgerock.openam.sm.datalayer.api.Task;
 
 import com.sun.identity.shared.debug.Debug;
@@ -37,14 +41,23 @@ import com.sun.identity.shared.debug.Debug;
  * This decoupled design is intended to ensure that each TaskProcessor can be
  * run as part of a thread pool, and process tasks in a continuous fashion.
  *
+ * Tasks are taken from the queue in batches: once a task is available, any further
+ * tasks already on the queue (optionally waiting up to the configured linger time for
+ * more to arrive) are drained up to the configured batch size and then processed
+ * against the same connection, pipelining the operations of tasks for different tokens.
+ *
  * Thread Policy: This runnable will respond to Thread interrupts and will
  * exit cleanly in the event of an interrupt.
  *
  * @see org.forgerock.openam.sm.datalayer.api.Task
  * @see org.forgerock.openam.sm.datalayer.impl.tasks.TaskFactory
+ * @see org.forgerock.openam.sm.datalayer.impl.tasks.TaskPipeline
+ * @see QueueConfiguration#getBatchSize()
+ * @see QueueConfiguration#getBatchLinger()
  */
 public class SeriesTaskExecutorThread implements Runnable {
-    private final SimpleTaskExecutor taskExecutor;
+    private final SimpleTaskExecutor<?> taskExecutor;
+    private final QueueConfiguration configuration;
     private BlockingQueue<Task> queue;
     private final Debug debug;
 
@@ -52,11 +65,15 @@ public class SeriesTaskExecutorThread implements Runnable {
      * Generate a default instance of the Task Processor.
      *
      * @param debug Required for debugging.
+     * @param taskExecutor Required to execute the tasks against a connection.
+     * @param configuration Required to determine the batch size and linger time.
      */
     @Inject
-    public SeriesTaskExecutorThread(@Named(CoreTokenConstants.CTS_DEBUG) Debug debug, SimpleTaskExecutor taskExecutor) {
+    public SeriesTaskExecutorThread(@Named(CoreTokenConstants.CTS_DEBUG) Debug debug, SimpleTaskExecutor taskExecutor,
+            QueueConfiguration configuration) {
         this.debug = debug;
         this.taskExecutor = taskExecutor;
+        this.configuration = configuration;
     }
 
     /**
@@ -85,21 +102,52 @@ public class SeriesTaskExecutorThread implements Runnable {
             throw new IllegalStateException("Cannot start task executor", e);
         }
 
+        int batchSize = configuration.getBatchSize();
+        long linger = TimeUnit.MILLISECONDS.toNanos(configuration.getBatchLinger());
+
         // Iterate until shutdown
         while (!Thread.currentThread().isInterrupted()) {
+            List<Task> batch = new ArrayList<>();
             try {
-                Task task = queue.take();
-                debug("process Task {0}", task);
-                taskExecutor.execute(null, task);
+                batch.add(queue.take());
+                fillBatch(batch, batchSize, linger);
             } catch (InterruptedException e) {
                 error("interrupt detected", e);
                 Thread.currentThread().interrupt();
             }
+            if (!batch.isEmpty()) {
+                debug("process {0} Tasks", batch.size());
+                taskExecutor.execute(batch);
+            }
         }
 
         debug("Processor thread shutdown.");
     }
 
+    /**
+     * Drains further tasks from the queue into the batch until it is full, or the queue is empty and the
+     * linger time has passed.
+     */
+    private void fillBatch(List<Task> batch, int batchSize, long linger) throws InterruptedException {
+        queue.drainTo(batch, batchSize - batch.size());
+        if (linger <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + linger;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            Task task = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (task == null) {
+                return;
+            }
+            batch.add(task);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
     private void debug(String format, Object... args) {
         if (debug.messageEnabled()) {
             debug.message(MessageFormat.format(
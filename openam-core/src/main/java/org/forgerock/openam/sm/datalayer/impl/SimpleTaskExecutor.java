@@ -19,6 +19,9 @@ package org.forgerock.openam.sm.datalayer.impl;
 import java.io.Closeable;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -27,9 +30,11 @@ import org.forgerock.openam.cts.api.CoreTokenConstants;
 import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
 import org.forgerock.openam.sm.datalayer.api.DataLayerConstants;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TaskExecutor;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.openam.sm.datalayer.impl.tasks.TaskPipeline;
 
 import com.sun.identity.shared.debug.Debug;
 
@@ -73,22 +78,78 @@ public class SimpleTaskExecutor<T> implements TaskExecutor {
      */
     @Override
     public void execute(String tokenId, Task task) {
+        if (ensureConnection(Collections.singletonList(task))) {
+            executeTask(task);
+        }
+    }
+
+    /**
+     * Executes a batch of tasks against the same connection.
+     *
+     * The batch is divided into rounds by {@link TaskPipeline}. The operations of all of the tasks in a round are
+     * issued before waiting for any of them to complete, so a round of creates, updates or deletes of different
+     * tokens costs one round trip to the store rather than one per task. Tasks for the same token, and tasks which
+     * cannot be pipelined, are executed in the order they were queued.
+     *
+     * The connection is validated before the first round, and again only after a task has failed, rather
+     * than before every task in the batch.
+     *
+     * @param tasks The tasks to be executed, in the order they were queued.
+     */
+    public void execute(Collection<Task> tasks) {
+        boolean checkConnection = true;
+        for (List<Task> round : TaskPipeline.rounds(tasks)) {
+            if (checkConnection && !ensureConnection(round)) {
+                continue;
+            }
+            if (TaskPipeline.isPipelined(round)) {
+                checkConnection = !executePipelined(round);
+            } else {
+                checkConnection = !executeTask(round.get(0));
+            }
+        }
+    }
+
+    private boolean ensureConnection(List<Task> round) {
         try {
             if (!connectionFactory.isValid(connection)) {
                 close();
                 start();
             }
+            return true;
         } catch (DataLayerException e) {
             error("acquiring connection", e);
-            task.processError(e);
-            return;
+            for (Task task : round) {
+                task.processError(e);
+            }
+            return false;
         }
+    }
 
+    private boolean executeTask(Task task) {
         try {
             task.execute(connection, adapter);
+            return true;
         } catch (DataLayerException e) {
             error("processing task", e);
+            return false;
+        }
+    }
+
+    private boolean executePipelined(List<Task> round) {
+        for (Task task : round) {
+            ((PipelinedTask) task).start(connection, adapter);
+        }
+        boolean success = true;
+        for (Task task : round) {
+            try {
+                ((PipelinedTask) task).complete();
+            } catch (DataLayerException e) {
+                error("processing task", e);
+                success = false;
+            }
         }
+        return success;
     }
 
     /**
@@ -102,8 +102,9 @@ public class CTSDJLDAPv3PersistentSearch extends LDAPv3PersistentSearch<Continuo
         @Override
         public boolean handle(SearchResultEntry entry, String dn, DN previousDn, PersistentSearchChangeType type) {
             if (type != null) {
+                String tokenId = entry.getName().rdn().getFirstAVA().getAttributeValue().toString();
                 for (ContinuousQueryListener listener : getListeners().keySet()) {
-                    listener.objectChanged(entry.getName().toString());
+                    listener.objectChanged(tokenId);
                 }
             }
             return true;
@@ -16,17 +16,18 @@
 package org.forgerock.openam.sm.datalayer.impl.tasks;
 
 import org.forgerock.openam.cts.api.tokens.Token;
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.util.promise.Promise;
 
 import java.text.MessageFormat;
 
 /**
  * Responsible for creating a Token in LDAP Store.
  */
-public class CreateTask extends AbstractTask {
+public class CreateTask extends AbstractPipelinedTask {
     private final Token token;
 
     /**
@@ -53,6 +54,28 @@ public class CreateTask extends AbstractTask {
         handler.processResults(token);
     }
 
+    /**
+     * Starts a creation operation which can be pipelined with operations on other Tokens.
+     *
+     * @param connection Non null connection to use.
+     * @param adapter Required for LDAP operations.
+     * @return A promise which completes once the Token has been created.
+     */
+    @Override
+    protected Promise<?, DataLayerException> startTask(Object connection, TokenStorageAdapter adapter) {
+        return adapter.createAsync(connection, token);
+    }
+
+    @Override
+    protected void processResults() {
+        handler.processResults(token);
+    }
+
+    @Override
+    public String getTokenId() {
+        return token.getTokenId();
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("CreateTask: {0}", token.getTokenId());
@@ -15,17 +15,18 @@
  */
 package org.forgerock.openam.sm.datalayer.impl.tasks;
 
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.util.promise.Promise;
 
 import java.text.MessageFormat;
 
 /**
  * Deletes a given Token from the persistence layer.
  */
-public class DeleteTask extends AbstractTask {
+public class DeleteTask extends AbstractPipelinedTask {
 
     private final String tokenId;
 
@@ -52,6 +53,28 @@ public class DeleteTask extends AbstractTask {
         handler.processResults(tokenId);
     }
 
+    /**
+     * Starts a delete operation which can be pipelined with operations on other Tokens.
+     *
+     * @param connection Non null connection to use for the operation.
+     * @param adapter Non null adapter to use for the operation.
+     * @return A promise which completes once the Token has been deleted.
+     */
+    @Override
+    protected Promise<?, DataLayerException> startTask(Object connection, TokenStorageAdapter adapter) {
+        return adapter.deleteAsync(connection, tokenId);
+    }
+
+    @Override
+    protected void processResults() {
+        handler.processResults(tokenId);
+    }
+
+    @Override
+    public String getTokenId() {
+        return tokenId;
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("DeleteTask: {0}", tokenId);
@@ -0,0 +1,78 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.sm.datalayer.impl.tasks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
+import org.forgerock.openam.sm.datalayer.api.Task;
+
+/**
+ * Divides a batch of tasks taken from a queue into rounds which can each be executed against a single connection.
+ * <p>
+ * A round is either a run of consecutive {@link PipelinedTask}s for different tokens, whose operations can all be
+ * issued before waiting for any of them to complete, or a single task which cannot be pipelined. A task for a token
+ * which already has a task in the current round starts a new round, so the operations on each token are still
+ * applied in the order in which they were queued.
+ */
+public final class TaskPipeline {
+
+    private TaskPipeline() {
+    }
+
+    /**
+     * Divides the batch of tasks into rounds, preserving their order.
+     *
+     * @param tasks Non null batch of tasks, in queue order.
+     * @return Non null list of non empty rounds.
+     */
+    public static List<List<Task>> rounds(Collection<Task> tasks) {
+        List<List<Task>> rounds = new ArrayList<>();
+        List<Task> round = new ArrayList<>();
+        Set<String> tokenIds = new HashSet<>();
+        for (Task task : tasks) {
+            boolean pipelined = task instanceof PipelinedTask;
+            if (!round.isEmpty() && (!pipelined || tokenIds.contains(((PipelinedTask) task).getTokenId()))) {
+                rounds.add(round);
+                round = new ArrayList<>();
+                tokenIds.clear();
+            }
+            if (pipelined) {
+                round.add(task);
+                tokenIds.add(((PipelinedTask) task).getTokenId());
+            } else {
+                rounds.add(Collections.singletonList(task));
+            }
+        }
+        if (!round.isEmpty()) {
+            rounds.add(round);
+        }
+        return rounds;
+    }
+
+    /**
+     * @param round Non null round returned by {@link #rounds(Collection)}.
+     * @return Whether the tasks in the round can be pipelined.
+     */
+    public static boolean isPipelined(List<Task> round) {
+        return round.get(0) instanceof PipelinedTask;
+    }
+}
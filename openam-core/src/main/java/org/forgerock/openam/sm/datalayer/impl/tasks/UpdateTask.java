@@ -17,18 +17,20 @@ package org.forgerock.openam.sm.datalayer.impl.tasks;
 
 import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
-import org.forgerock.openam.sm.datalayer.api.AbstractTask;
+import org.forgerock.openam.sm.datalayer.api.AbstractPipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.forgerock.util.AsyncFunction;
+import org.forgerock.util.promise.Promise;
 
 import java.text.MessageFormat;
 
 /**
  * Responsible for updating the LDAP persistence with the provided Token.
  */
-public class UpdateTask extends AbstractTask {
+public class UpdateTask extends AbstractPipelinedTask {
     private final Token token;
 
     /**
@@ -61,6 +63,38 @@ public class UpdateTask extends AbstractTask {
         handler.processResults(token);
     }
 
+    /**
+     * Starts the read of the Token followed by its update or creation, which can be pipelined with operations
+     * on other Tokens.
+     *
+     * @param connection Non null Connection.
+     * @param adapter Non null for connection-coupled operations.
+     * @return A promise which completes once the Token has been updated or created.
+     */
+    @Override
+    protected Promise<?, DataLayerException> startTask(final Object connection, final TokenStorageAdapter adapter) {
+        Promise<Token, DataLayerException> read = adapter.readAsync(connection, token.getTokenId());
+        return read.thenAsync(new AsyncFunction<Token, Object, DataLayerException>() {
+            @Override
+            public Promise<?, DataLayerException> apply(Token previous) {
+                if (previous == null) {
+                    return adapter.createAsync(connection, token);
+                }
+                return adapter.updateAsync(connection, previous, token);
+            }
+        });
+    }
+
+    @Override
+    protected void processResults() {
+        handler.processResults(token);
+    }
+
+    @Override
+    public String getTokenId() {
+        return token.getTokenId();
+    }
+
     @Override
     public String toString() {
         return MessageFormat.format("UpdateTask: {0}", token.getTokenId());
@@ -20,6 +20,7 @@ import java.util.Map;
 import java.util.TreeMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import org.forgerock.json.jose.builders.EncryptedJwtBuilder;
@@ -41,6 +42,8 @@ import org.forgerock.util.annotations.VisibleForTesting;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iplanet.dpro.session.monitoring.SessionMonitorType;
+import com.iplanet.dpro.session.monitoring.SessionMonitoringStore;
 import com.iplanet.dpro.session.share.SessionInfo;
 
 /**
@@ -141,6 +144,22 @@ public final class JwtSessionMapper {
      * @throws JwtRuntimeException If there was a problem reconstructing the JWT
      */
     SessionInfo fromJwt(@Nonnull String jwtString) throws JwtRuntimeException {
+        return fromJwt(jwtString, null);
+    }
+
+    /**
+     * Extract the SessionInfo stored in the provided JWT's serialized_session claim, recording the time taken to
+     * verify and decrypt the JWT.
+     *
+     * @param jwtString Non-null, String which represents a JWT with SessionInfo state assigned to a serialized_session claim.
+     * @param monitoringStore Possibly null store to record verification and decryption times in.
+     *
+     * @return SessionInfo A correctly parsed SessionInfo for the given JWT String.
+     *
+     * @throws JwtRuntimeException If there was a problem reconstructing the JWT
+     */
+    SessionInfo fromJwt(@Nonnull String jwtString, @Nullable SessionMonitoringStore monitoringStore)
+            throws JwtRuntimeException {
 
         Reject.ifNull(jwtString, "jwtString must not be null.");
 
@@ -152,15 +171,17 @@ public final class JwtSessionMapper {
                 EncryptedThenSignedJwt signedEncryptedJwt = jwtBuilderFactory.reconstruct(jwtString,
                         EncryptedThenSignedJwt.class);
 
-                if (!doesJwtAlgorithmMatch(signedEncryptedJwt) || !signedEncryptedJwt.verify(verificationHandler)) {
-                    throw new JwtRuntimeException("Invalid JWT!");
-                }
+                verify(signedEncryptedJwt, monitoringStore);
 
+                long start = System.nanoTime();
                 signedEncryptedJwt.decrypt(decryptionKey);
+                recordDecryptTime(start, monitoringStore);
                 signedJwt = signedEncryptedJwt;
             } else {
                 EncryptedJwt encryptedJwt = jwtBuilderFactory.reconstruct(jwtString, EncryptedJwt.class);
+                long start = System.nanoTime();
                 encryptedJwt.decrypt(decryptionKey);
+                recordDecryptTime(start, monitoringStore);
                 return fromJson(encryptedJwt.getClaimsSet());
             }
 
@@ -169,9 +190,7 @@ public final class JwtSessionMapper {
             // could throw JwtRuntimeException
             signedJwt = jwtBuilderFactory.reconstruct(jwtString, SignedJwt.class);
 
-            if (!doesJwtAlgorithmMatch(signedJwt) || !signedJwt.verify(verificationHandler)) {
-                throw new JwtRuntimeException("Invalid JWT!");
-            }
+            verify(signedJwt, monitoringStore);
         }
 
 
@@ -179,6 +198,30 @@ public final class JwtSessionMapper {
         return fromJson(claimsSet);
     }
 
+    /**
+     * Verifies the algorithm and signature of the JWT, recording the time taken to verify the signature.
+     */
+    private void verify(SignedJwt signedJwt, SessionMonitoringStore monitoringStore) {
+        if (!doesJwtAlgorithmMatch(signedJwt)) {
+            throw new JwtRuntimeException("Invalid JWT!");
+        }
+
+        long start = System.nanoTime();
+        boolean verified = signedJwt.verify(verificationHandler);
+        if (monitoringStore != null) {
+            monitoringStore.storeVerifyTime(System.nanoTime() - start, SessionMonitorType.STATELESS);
+        }
+        if (!verified) {
+            throw new JwtRuntimeException("Invalid JWT!");
+        }
+    }
+
+    private void recordDecryptTime(long start, SessionMonitoringStore monitoringStore) {
+        if (monitoringStore != null) {
+            monitoringStore.storeDecryptTime(System.nanoTime() - start, SessionMonitorType.STATELESS);
+        }
+    }
+
     private SessionInfo fromJson(JwtClaimsSet claimsSet) {
         return MAPPER.convertValue(toMap(claimsSet), SessionInfo.class);
     }
@@ -27,6 +27,7 @@ import com.iplanet.dpro.session.SessionException;
 import com.iplanet.dpro.session.SessionID;
 import com.iplanet.dpro.session.service.InternalSession;
 import com.iplanet.dpro.session.service.SessionConstants;
+import com.iplanet.dpro.session.monitoring.SessionMonitoringStore;
 import com.iplanet.dpro.session.service.SessionServerConfig;
 import com.iplanet.dpro.session.service.SessionServiceConfig;
 import com.iplanet.dpro.session.share.SessionInfo;
@@ -49,20 +50,24 @@ public class StatelessSessionFactory {
     private final StatelessJWTCache cache;
     private final SessionServerConfig sessionServerConfig;
     private final SessionServiceConfig sessionServiceConfig;
+    private final SessionMonitoringStore sessionMonitoringStore;
 
     /**
      * Guice initialised constructor.
      * @param cache Non null.
      * @param sessionServerConfig Non null.
      * @param sessionServiceConfig Non null.
+     * @param sessionMonitoringStore Non null.
      */
     @Inject
     public StatelessSessionFactory(StatelessJWTCache cache,
                                    SessionServerConfig sessionServerConfig,
-                                   SessionServiceConfig sessionServiceConfig) {
+                                   SessionServiceConfig sessionServiceConfig,
+                                   SessionMonitoringStore sessionMonitoringStore) {
         this.cache = cache;
         this.sessionServerConfig = sessionServerConfig;
         this.sessionServiceConfig = sessionServiceConfig;
+        this.sessionMonitoringStore = sessionMonitoringStore;
     }
 
     // Lazy initialised to avoid early init issues.
@@ -128,14 +133,14 @@ public class StatelessSessionFactory {
      */
     public SessionInfo getSessionInfo(SessionID sessionID) throws SessionException {
         String jwt = getJWTFromSessionID(sessionID, true);
-        if (cache.contains(jwt)) {
+        SessionInfo sessionInfo = cache.getSessionInfo(jwt);
+        if (sessionInfo != null) {
             debug.message("StatelessSessionFactory.getSessionInfo: JWT {} found in cache", jwt);
-            return cache.getSessionInfo(jwt);
+            return sessionInfo;
         }
 
-        SessionInfo sessionInfo;
         try {
-            sessionInfo = getJwtSessionMapper().fromJwt(jwt);
+            sessionInfo = getJwtSessionMapper().fromJwt(jwt, sessionMonitoringStore);
         } catch (JwtRuntimeException e) {
             debug.message("StatelessSessionFactory.getSessionInfo: JWT {} Does not map to passed sessionID {}", jwt, sessionID, e);
             throw new SessionException(e);
@@ -200,7 +205,8 @@ public class StatelessSessionFactory {
         }
         try {
             StatelessSession statelessSession;
-            if (cache.contains(tokenId)) {
+            SessionInfo cachedInfo = cache.getSessionInfo(tokenId);
+            if (cachedInfo != null) {
                 /**
                  * NB: We cannot use the JWTCache to map in the reverse direction (SessionInfo-JWT)
                  * because the SessionInfo object can change contents, but remain the same reference
@@ -209,7 +215,7 @@ public class StatelessSessionFactory {
                  *
                  * We can re-evaluate this if it becomes a hot-spot.
                  */
-                statelessSession = generate(cache.getSessionInfo(tokenId));
+                statelessSession = generate(cachedInfo);
             } else {
                 SessionID sessionID = new SessionID(tokenId);
                 if (!containsJwt(sessionID)) {
@@ -11,7 +11,7 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 package com.iplanet.dpro.session.monitoring;
 
@@ -38,12 +38,14 @@ public class SessionMonitoringStoreTest {
     private ConcurrentHashMap destroyStore = mock(ConcurrentHashMap.class);
     private ConcurrentHashMap logoutStore = mock(ConcurrentHashMap.class);
     private ConcurrentHashMap propertyStore = mock(ConcurrentHashMap.class);
+    private ConcurrentHashMap verifyStore = mock(ConcurrentHashMap.class);
+    private ConcurrentHashMap decryptStore = mock(ConcurrentHashMap.class);
 
     @BeforeMethod
     public void setUp() {
         mockFactory = mock(SessionMonitoringTimingStoreFactory.class);
         testSessionMonitoringStore = new SessionMonitoringStore(service, mockFactory, refreshStore,
-                propertyStore, destroyStore, logoutStore);
+                propertyStore, destroyStore, logoutStore, verifyStore, decryptStore);
     }
 
     @Test
@@ -198,6 +200,44 @@ public class SessionMonitoringStoreTest {
     }
 
     // Executor that runs everything in the calling thread without a pool
+    @Test
+    public void testStoreVerifyTimeCreatesEntryIfNoneExists() {
+        //given
+        long duration = 0L;
+        SessionMonitorType type = SessionMonitorType.STATELESS;
+
+        SessionMonitoringTimingStore timingStore = mock(SessionMonitoringTimingStore.class);
+
+        given(verifyStore.containsKey(type)).willReturn(false);
+        given(verifyStore.get(type)).willReturn(timingStore);
+
+        //when
+        testSessionMonitoringStore.storeVerifyTime(duration, type);
+
+        //then
+        verify(mockFactory, times(1)).createSessionMonitoringTimingStore();
+        verify(timingStore, times(1)).addTimingEntry(anyLong());
+    }
+
+    @Test
+    public void testStoreDecryptTimeCreatesEntry() {
+        //given
+        long duration = 0L;
+        SessionMonitorType type = SessionMonitorType.STATELESS;
+
+        SessionMonitoringTimingStore timingStore = mock(SessionMonitoringTimingStore.class);
+
+        given(decryptStore.containsKey(type)).willReturn(true);
+        given(decryptStore.get(type)).willReturn(timingStore);
+
+        //when
+        testSessionMonitoringStore.storeDecryptTime(duration, type);
+
+        //then
+        verify(mockFactory, times(0)).createSessionMonitoringTimingStore();
+        verify(timingStore, times(1)).addTimingEntry(anyLong());
+    }
+
     private class CallerRunsExecutor extends AbstractExecutorService {
 
         private volatile boolean shutdown;
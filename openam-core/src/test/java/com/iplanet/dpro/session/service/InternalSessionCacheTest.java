@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 package com.iplanet.dpro.session.service;
 
@@ -19,8 +19,17 @@ import com.iplanet.dpro.session.SessionID;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
@@ -136,4 +145,147 @@ public class InternalSessionCacheTest {
         assertThat(cache.getByRestrictedID(oldRestriction)).isNull();
         assertThat(cache.getByRestrictedID(newRestriction)).isEqualTo(session);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldCacheAllRestrictedTokens() {
+        // Given
+        SessionID first = mock(SessionID.class);
+        SessionID second = mock(SessionID.class);
+        given(session.getRestrictedTokens()).willReturn(new HashSet<SessionID>(Arrays.asList(first, second)));
+
+        // When
+        cache.put(session);
+
+        // Then
+        assertThat(cache.getByRestrictedID(first)).isEqualTo(session);
+        assertThat(cache.getByRestrictedID(second)).isEqualTo(session);
+    }
+
+    @Test
+    public void shouldAllowAccessViaUniversalIDIgnoringCase() {
+        // Given
+        given(session.getUUID()).willReturn("id=Badger,ou=user,dc=openam");
+
+        // When
+        cache.put(session);
+
+        // Then
+        assertThat(cache.getByUUID("id=badger,ou=user,dc=openam")).containsOnly(session);
+        assertThat(cache.getByUUID("id=ferret,ou=user,dc=openam")).isEmpty();
+    }
+
+    @Test
+    public void shouldRemoveUniversalID() {
+        // Given
+        given(session.getUUID()).willReturn("badger");
+        cache.put(session);
+
+        // When
+        cache.remove(session);
+
+        // Then
+        assertThat(cache.getByUUID("badger")).isEmpty();
+    }
+
+    @Test
+    public void shouldIndexUniversalIDWhenReindexed() {
+        // Given
+        cache.put(session);
+        given(session.getUUID()).willReturn("badger");
+
+        // When
+        cache.reindex(session);
+
+        // Then
+        assertThat(cache.getByUUID("badger")).containsOnly(session);
+    }
+
+    @Test
+    public void shouldNotReindexRemovedSession() {
+        // Given
+        cache.put(session);
+        cache.remove(session);
+        given(session.getUUID()).willReturn("badger");
+
+        // When
+        cache.reindex(session);
+
+        // Then
+        assertThat(cache.getBySessionID(sessionId)).isNull();
+        assertThat(cache.getByUUID("badger")).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepOtherSessionsForUniversalID() {
+        // Given
+        InternalSession other = mock(InternalSession.class);
+        given(other.getID()).willReturn(mock(SessionID.class));
+        given(other.getUUID()).willReturn("badger");
+        given(session.getUUID()).willReturn("badger");
+        cache.put(session);
+        cache.put(other);
+
+        // When
+        cache.remove(session);
+
+        // Then
+        assertThat(cache.getByUUID("badger")).containsOnly(other);
+    }
+
+    @Test
+    public void shouldKeepIndexesConsistentUnderConcurrentUpdates() throws Exception {
+        // Given
+        final int threads = 8;
+        final int sessionsPerThread = 500;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        final List<Future<?>> results = new ArrayList<Future<?>>();
+        final List<InternalSession> kept = Collections.synchronizedList(new ArrayList<InternalSession>());
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    List<InternalSession> sessions = new ArrayList<InternalSession>();
+                    for (int i = 0; i < sessionsPerThread; i++) {
+                        InternalSession s = mock(InternalSession.class);
+                        given(s.getID()).willReturn(mock(SessionID.class));
+                        given(s.getSessionHandle()).willReturn("handle-" + thread + "-" + i);
+                        given(s.getUUID()).willReturn("user-" + (i % 10));
+                        given(s.getRestrictedTokens()).willReturn(
+                                new HashSet<SessionID>(Arrays.asList(mock(SessionID.class))));
+                        sessions.add(s);
+                    }
+                    barrier.await();
+                    for (int i = 0; i < sessionsPerThread; i++) {
+                        cache.put(sessions.get(i));
+                        if (i % 2 == 0) {
+                            cache.remove(sessions.get(i));
+                        } else {
+                            kept.add(sessions.get(i));
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Then
+        assertThat(cache.size()).isEqualTo(threads * sessionsPerThread / 2);
+        int indexedByUser = 0;
+        for (int i = 0; i < 10; i++) {
+            indexedByUser += cache.getByUUID("user-" + i).size();
+        }
+        assertThat(indexedByUser).isEqualTo(kept.size());
+        for (InternalSession s : kept) {
+            assertThat(cache.getByHandle(s.getSessionHandle())).isSameAs(s);
+            assertThat(cache.getByRestrictedID(s.getRestrictedTokens().iterator().next())).isSameAs(s);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package com.sun.identity.authentication.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.forgerock.openam.utils.Time.currentTimeMillis;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AuthThreadManagerTest {
+
+    private static final String REALM_DN = "o=openam";
+
+    private ExecutorService loginExecutor;
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture future;
+    private AuthThreadManager manager;
+
+    @BeforeMethod
+    public void setUp() {
+        BlockingQueue<Runnable> queue = new LinkedBlockingQueue<>(10);
+        loginExecutor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, queue);
+        scheduler = mock(ScheduledExecutorService.class);
+        future = mock(ScheduledFuture.class);
+        given(scheduler.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).willReturn(future);
+        manager = new AuthThreadManager(loginExecutor, queue, scheduler);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        loginExecutor.shutdownNow();
+        Thread.interrupted();
+    }
+
+    @Test
+    public void shouldScheduleTimeoutForPageTimeout() {
+        // When
+        manager.setHash(Thread.currentThread(), 63, currentTimeMillis());
+
+        // Then
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+        assertThat(delay.getValue()).isGreaterThan(55000L).isLessThanOrEqualTo(60000L);
+    }
+
+    @Test
+    public void shouldInterruptWaitingThreadWhenItTimesOut() {
+        // Given
+        Thread thread = Thread.currentThread();
+        manager.setHash(thread, 60, currentTimeMillis());
+
+        // When
+        scheduledTimeout().run();
+
+        // Then
+        assertThat(Thread.interrupted()).isTrue();
+        assertThat(manager.isTimedOut(thread)).isTrue();
+        manager.removeFromHash(thread, "timedOutHash");
+        assertThat(manager.isTimedOut(thread)).isFalse();
+    }
+
+    @Test
+    public void shouldNotInterruptThreadOnceTimeoutIsRemoved() {
+        // Given
+        Thread thread = Thread.currentThread();
+        manager.setHash(thread, 60, currentTimeMillis());
+        Runnable timeout = scheduledTimeout();
+
+        // When
+        manager.removeFromHash(thread, "timeoutHash");
+        timeout.run();
+
+        // Then
+        verify(future).cancel(false);
+        assertThat(Thread.interrupted()).isFalse();
+        assertThat(manager.isTimedOut(thread)).isFalse();
+    }
+
+    @Test
+    public void shouldRecordLoginTimesByName() throws Exception {
+        // When
+        manager.submitLogin(REALM_DN, "LDAP", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+        manager.submitLogin(REALM_DN, "LDAP", new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+
+        // Then
+        assertThat(manager.getLoginCount(REALM_DN, "LDAP")).isEqualTo(2);
+        assertThat(manager.getLoginCount("O=OpenAM", "LDAP")).isEqualTo(2);
+        assertThat(manager.getLoginCount("o=other", "LDAP")).isEqualTo(0);
+        assertThat(manager.getLoginCount(REALM_DN, "DataStore")).isEqualTo(0);
+        assertThat(manager.getActiveLoginCount()).isEqualTo(0);
+        assertThat(manager.getLoginQueueDepth()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldReportLoginsWaitingForLoginThread() throws Exception {
+        // Given
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable waitingLogin = new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        // When
+        Future<?> running = manager.submitLogin(REALM_DN, "LDAP", waitingLogin);
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+        Future<?> queued = manager.submitLogin(REALM_DN, "LDAP", waitingLogin);
+
+        // Then
+        assertThat(manager.getActiveLoginCount()).isEqualTo(1);
+        assertThat(manager.getLoginQueueDepth()).isEqualTo(1);
+        release.countDown();
+        running.get(10, TimeUnit.SECONDS);
+        queued.get(10, TimeUnit.SECONDS);
+        assertThat(manager.getLoginQueueDepth()).isEqualTo(0);
+        assertThat(manager.getLoginCount(REALM_DN, "LDAP")).isEqualTo(2);
+    }
+
+    private Runnable scheduledTimeout() {
+        ArgumentCaptor<Runnable> timeout = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(timeout.capture(), anyLong(), any(TimeUnit.class));
+        return timeout.getValue();
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.iplanet.sso.SSOToken;
+import com.iplanet.sso.SSOTokenID;
+
+public class DecisionCacheTest {
+
+    private static final String REALM = "/";
+    private static final String APP_NAME = "iPlanetAMWebAgentService";
+    private static final String RESOURCE = "http://www.example.com:80/index.html";
+    private static final long NOW = 1000000L;
+    private static final long MAX_AGE = 30000L;
+
+    private final Map<String, SSOToken> sessions = new HashMap<String, SSOToken>();
+    private TimeService clock;
+    private DecisionCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = mock(TimeService.class);
+        given(clock.now()).willReturn(NOW);
+        cache = new DecisionCache(100, MAX_AGE, clock);
+    }
+
+    @Test
+    public void shouldBeDisabledWithoutSize() {
+        assertThat(new DecisionCache(0, MAX_AGE, clock).isEnabled()).isFalse();
+        assertThat(cache.isEnabled()).isTrue();
+    }
+
+    @Test
+    public void shouldReturnCachedDecision() {
+        // Given
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision(true, Long.MAX_VALUE));
+
+        // When
+        List<Entitlement> result = cache.get(key("demo", "group=staff"));
+
+        // Then
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getActionValue("GET")).isTrue();
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getHitRate()).isEqualTo(1.0d);
+    }
+
+    @Test
+    public void shouldDistinguishSubjectsAndAttributes() {
+        // Given
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision(true, Long.MAX_VALUE));
+
+        // When / Then
+        assertThat(cache.get(key("other", "group=staff"))).isNull();
+        assertThat(cache.get(key("demo", "group=admins"))).isNull();
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldExpireDecisionAtEntitlementTimeToLive() {
+        // Given
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision(true, NOW + 1000));
+
+        // When
+        given(clock.now()).willReturn(NOW + 1000);
+
+        // Then
+        assertThat(cache.get(key("demo", "group=staff"))).isNull();
+    }
+
+    @Test
+    public void shouldExpireDecisionAtMaximumAge() {
+        // Given
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision(true, Long.MAX_VALUE));
+
+        // When
+        given(clock.now()).willReturn(NOW + MAX_AGE - 1);
+        List<Entitlement> beforeMaxAge = cache.get(key("demo", "group=staff"));
+        given(clock.now()).willReturn(NOW + MAX_AGE);
+        List<Entitlement> atMaxAge = cache.get(key("demo", "group=staff"));
+
+        // Then
+        assertThat(beforeMaxAge).isNotNull();
+        assertThat(atMaxAge).isNull();
+    }
+
+    @Test
+    public void shouldNotCacheDecisionMadeBeforeInvalidation() {
+        // Given
+        long generation = cache.getGeneration();
+        cache.invalidateAll();
+
+        // When
+        cache.put(key("demo", "group=staff"), generation, decision(true, Long.MAX_VALUE));
+
+        // Then
+        assertThat(cache.get(key("demo", "group=staff"))).isNull();
+    }
+
+    @Test
+    public void shouldDiscardDecisionsOnInvalidation() {
+        // Given
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision(true, Long.MAX_VALUE));
+
+        // When
+        cache.invalidateAll();
+
+        // Then
+        assertThat(cache.get(key("demo", "group=staff"))).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotShareCachedEntitlementsWithCallers() {
+        // Given
+        List<Entitlement> decision = decision(true, Long.MAX_VALUE);
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision);
+
+        // When
+        decision.get(0).setActionValues(Collections.singletonMap("GET", false));
+        cache.get(key("demo", "group=staff")).get(0).setActionValues(Collections.singletonMap("GET", false));
+
+        // Then
+        assertThat(cache.get(key("demo", "group=staff")).get(0).getActionValue("GET")).isTrue();
+    }
+
+    @Test
+    public void shouldKeepApplicationOfCachedEntitlements() throws Exception {
+        // Given
+        Application application = mock(Application.class);
+        List<Entitlement> decision = decision(true, Long.MAX_VALUE);
+        decision.get(0).setApplication(application);
+        cache.put(key("demo", "group=staff"), cache.getGeneration(), decision);
+
+        // When
+        Entitlement result = cache.get(key("demo", "group=staff")).get(0);
+
+        // Then
+        assertThat(result.getApplication(null, REALM)).isSameAs(application);
+    }
+
+    @Test
+    public void shouldNotCacheDecisionsForSubjectsWithoutSession() {
+        // Given
+        Subject staff = new Subject();
+        staff.getPrincipals().add(new ClaimsPrincipal("demo", "group=staff"));
+        Subject admins = new Subject();
+        admins.getPrincipals().add(new ClaimsPrincipal("demo", "group=admins"));
+        cache.put(key(staff, "group=staff"), cache.getGeneration(), decision(true, Long.MAX_VALUE));
+
+        // When / Then
+        assertThat(cache.get(key(admins, "group=staff"))).isNull();
+        assertThat(cache.get(key(staff, "group=staff"))).isNull();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    private DecisionCache.Key key(String principalName, String subjectIndex) {
+        Subject subject = new Subject();
+        subject.getPrincipals().add(new TestPrincipal(principalName));
+        subject.getPrivateCredentials().add(session(principalName));
+        return key(subject, subjectIndex);
+    }
+
+    private static DecisionCache.Key key(Subject subject, String subjectIndex) {
+        Set<String> subjectIndexes = Collections.singleton(subjectIndex);
+        Map<String, Set<String>> environment = Collections.singletonMap("requestIp", Collections.singleton("10.0.0.1"));
+        return new DecisionCache.Key(REALM, APP_NAME, RESOURCE, RESOURCE, false, subject, subjectIndexes,
+                environment);
+    }
+
+    private SSOToken session(String principalName) {
+        SSOToken session = sessions.get(principalName);
+        if (session == null) {
+            session = mock(SSOToken.class);
+            given(session.getTokenID()).willReturn(mock(SSOTokenID.class));
+            sessions.put(principalName, session);
+        }
+        return session;
+    }
+
+    private static List<Entitlement> decision(boolean allow, long timeToLive) {
+        Entitlement entitlement = new Entitlement(APP_NAME, RESOURCE, Collections.singletonMap("GET", allow));
+        entitlement.setTTL(timeToLive);
+        return Collections.singletonList(entitlement);
+    }
+
+    private static final class TestPrincipal implements Principal {
+        private final String name;
+
+        private TestPrincipal(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * A principal which, like a JWT principal, is named by one claim but carries others.
+     */
+    private static final class ClaimsPrincipal implements Principal {
+        private final String subject;
+        private final String claims;
+
+        private ClaimsPrincipal(String subject, String claims) {
+            this.subject = subject;
+            this.claims = claims;
+        }
+
+        @Override
+        public String getName() {
+            return subject;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClaimsPrincipal && subject.equals(((ClaimsPrincipal) o).subject)
+                    && claims.equals(((ClaimsPrincipal) o).claims);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * subject.hashCode() + claims.hashCode();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.identity.entitlement.interfaces.ResourceName;
+import org.HdrHistogram.Histogram;
+import org.testng.Reporter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class PrivilegeEvaluationTaskTest {
+
+    private static final String APP_NAME = "testAppName";
+    private static final String RESOURCE_NAME = "http://www.example.com:80/index.html";
+    private static final String ACTION = "GET";
+    private static final int THRESHOLD = 5;
+
+    private ExecutorService pool;
+    private Application application;
+    private IPrivilege permit;
+    private IPrivilege deny;
+    private IPrivilege failing;
+    private AtomicInteger evaluations;
+    private TestEvaluation evaluation;
+
+    @BeforeClass
+    public void startPool() {
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass
+    public void stopPool() {
+        pool.shutdownNow();
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        application = mock(Application.class);
+        given(application.getName()).willReturn(APP_NAME);
+        given(application.getResourceComparator()).willReturn(mock(ResourceName.class));
+
+        permit = mock(IPrivilege.class);
+        deny = mock(IPrivilege.class);
+        failing = mock(IPrivilege.class);
+        evaluations = new AtomicInteger();
+        evaluation = new TestEvaluation();
+    }
+
+    @Test
+    public void shouldCombineAllPoliciesInCallingThreadWithoutPool() throws Exception {
+        // Given
+        List<IPrivilege> policies = policies(20, permit);
+
+        // When
+        EntitlementCombiner combiner =
+                PrivilegeEvaluationTask.evaluate(null, evaluation, policies.iterator(), THRESHOLD, evaluation.newCombiner());
+
+        // Then
+        assertThat(evaluations.get()).isEqualTo(20);
+        assertThat(combiner.getResults().get(0).getActionValue(ACTION)).isTrue();
+    }
+
+    @Test
+    public void shouldCombineAllPoliciesInPool() throws Exception {
+        // Given
+        List<IPrivilege> policies = policies(1000, permit);
+
+        // When
+        EntitlementCombiner combiner =
+                PrivilegeEvaluationTask.evaluate(pool, evaluation, policies.iterator(), THRESHOLD, evaluation.newCombiner());
+
+        // Then
+        assertThat(evaluations.get()).isEqualTo(1000);
+        assertThat(combiner.getResults()).hasSize(1);
+        assertThat(combiner.getResults().get(0).getActionValue(ACTION)).isTrue();
+    }
+
+    @Test
+    public void shouldStopEvaluatingOnceDenied() throws Exception {
+        // Given
+        List<IPrivilege> policies = policies(20, permit);
+        policies.set(2, deny);
+
+        // When
+        EntitlementCombiner combiner =
+                PrivilegeEvaluationTask.evaluate(null, evaluation, policies.iterator(), THRESHOLD, evaluation.newCombiner());
+
+        // Then
+        assertThat(evaluations.get()).isEqualTo(3);
+        assertThat(combiner.isDone()).isTrue();
+        assertThat(combiner.getResults().get(0).getActionValue(ACTION)).isFalse();
+    }
+
+    @Test
+    public void shouldMergeDenyFromAnyPartOfTheSplit() throws Exception {
+        // Given
+        List<IPrivilege> policies = policies(1000, permit);
+        policies.set(999, deny);
+
+        // When
+        EntitlementCombiner combiner =
+                PrivilegeEvaluationTask.evaluate(pool, evaluation, policies.iterator(), THRESHOLD, evaluation.newCombiner());
+
+        // Then
+        assertThat(combiner.isDone()).isTrue();
+        assertThat(combiner.getResults().get(0).getActionValue(ACTION)).isFalse();
+    }
+
+    @Test
+    public void shouldSkipRemainingPoliciesOnceDeniedInPool() throws Exception {
+        // Given
+        List<IPrivilege> policies = policies(100000, permit);
+        policies.set(0, deny);
+
+        // When
+        PrivilegeEvaluationTask.evaluate(pool, evaluation, policies.iterator(), THRESHOLD, evaluation.newCombiner());
+
+        // Then
+        assertThat(evaluations.get()).isLessThan(100000);
+    }
+
+    @Test
+    public void shouldEvaluateInCallingThreadOncePoolIsShutDown() throws Exception {
+        // Given
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        List<IPrivilege> policies = policies(20, permit);
+
+        // When
+        EntitlementCombiner combiner =
+                PrivilegeEvaluationTask.evaluate(stopped, evaluation, policies.iterator(), THRESHOLD,
+                        evaluation.newCombiner());
+
+        // Then
+        assertThat(evaluations.get()).isEqualTo(20);
+        assertThat(combiner.getResults().get(0).getActionValue(ACTION)).isTrue();
+    }
+
+    @Test(expectedExceptions = EntitlementException.class)
+    public void shouldPropagateEvaluationFailure() throws Exception {
+        // Given
+        List<IPrivilege> policies = policies(1000, permit);
+        policies.set(500, failing);
+
+        // When
+        PrivilegeEvaluationTask.evaluate(pool, evaluation, policies.iterator(), THRESHOLD, evaluation.newCombiner());
+    }
+
+    @Test
+    public void shouldStartEvaluatingBeforeAllPoliciesAreFound() throws Exception {
+        // Given
+        final CountDownLatch evaluated = new CountDownLatch(1);
+        final Iterator<IPrivilege> found = policies(20, permit).iterator();
+        Iterator<IPrivilege> search = new Iterator<IPrivilege>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return found.hasNext();
+            }
+
+            @Override
+            public IPrivilege next() {
+                if (++read == 2 * THRESHOLD) {
+                    // The search only returns more policies once the first batch has been evaluated.
+                    try {
+                        assertThat(evaluated.await(10, TimeUnit.SECONDS)).isTrue();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return found.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        TestEvaluation evaluation = new TestEvaluation() {
+            @Override
+            public List<Entitlement> evaluate(IPrivilege policy) throws EntitlementException {
+                evaluated.countDown();
+                return super.evaluate(policy);
+            }
+        };
+
+        // When
+        PrivilegeEvaluationTask.evaluate(pool, evaluation, search, THRESHOLD, evaluation.newCombiner());
+
+        // Then
+        assertThat(evaluations.get()).isEqualTo(20);
+    }
+
+    @DataProvider
+    public Object[][] realmSizes() {
+        return new Object[][] {{1000}, {10000}, {100000}};
+    }
+
+    /**
+     * Compares the latency of evaluating a realm of permitting policies in the calling thread with evaluating it in
+     * the pool, logging the 99th percentile to the test report.
+     *
+     * @param numPolicies the number of policies in the synthetic realm.
+     */
+    @Test(dataProvider = "realmSizes", enabled = false)
+    public void testLatency(int numPolicies) throws Exception {
+        final int rounds = 50;
+        List<IPrivilege> policies = policies(numPolicies, permit);
+
+        for (ExecutorService evaluationPool : new ExecutorService[] {null, pool}) {
+            // Warmup
+            for (int i = 0; i < rounds; i++) {
+                PrivilegeEvaluationTask.evaluate(evaluationPool, evaluation, policies.iterator(), THRESHOLD,
+                        evaluation.newCombiner());
+            }
+            // Microsecond precision timings: max=60 seconds, 3 significant digits
+            Histogram latencies = new Histogram(TimeUnit.SECONDS.toMicros(60), 3);
+            for (int i = 0; i < rounds; i++) {
+                long start = System.nanoTime();
+                PrivilegeEvaluationTask.evaluate(evaluationPool, evaluation, policies.iterator(), THRESHOLD,
+                        evaluation.newCombiner());
+                latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+            Reporter.log(String.format("%d policies, %s: p99 %d us/evaluation", numPolicies,
+                    evaluationPool == null ? "sequential" : "pooled", latencies.getValueAtPercentile(99)));
+        }
+    }
+
+    private static List<IPrivilege> policies(int count, IPrivilege policy) {
+        return new ArrayList<>(Collections.nCopies(count, policy));
+    }
+
+    private class TestEvaluation implements PrivilegeEvaluationTask.PolicyEvaluation {
+
+        @Override
+        public EntitlementCombiner newCombiner() throws EntitlementException {
+            EntitlementCombiner combiner = new DenyOverride();
+            combiner.init(RESOURCE_NAME, RESOURCE_NAME, Collections.singleton(ACTION), false, application);
+            return combiner;
+        }
+
+        @Override
+        public List<Entitlement> evaluate(IPrivilege policy) throws EntitlementException {
+            evaluations.incrementAndGet();
+            if (policy == failing) {
+                throw new EntitlementException(EntitlementException.UNSUPPORTED_OPERATION);
+            }
+            return Collections.singletonList(new Entitlement(APP_NAME, RESOURCE_NAME,
+                    Collections.singletonMap(ACTION, policy == permit)));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement.opensso;
+
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.sun.identity.entitlement.ResourceSaveIndexes;
+import com.sun.identity.entitlement.ResourceSearchIndexes;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IndexCacheTest {
+
+    private IndexCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new IndexCache();
+    }
+
+    @Test
+    public void shouldMatchOnHostAndPathIndexes() {
+        // Given
+        cache.cache(saveIndexes("://www.example.com", "/index.html", "/*"), null, "dn1");
+        cache.cache(saveIndexes("://www.example.com", "/other.html", "/*"), null, "dn2");
+
+        // When
+        Set<String> result = cache.getMatchingEntries(
+                searchIndexes("://WWW.example.com", "/index.html", "/*"), null, false);
+
+        // Then
+        assertThat(result).containsOnly("dn1");
+    }
+
+    @Test
+    public void shouldMatchOnParentPathIndexesInSubTreeMode() {
+        // Given
+        cache.cache(saveIndexes("://www.example.com", "/index.html", "/*"), null, "dn1");
+        cache.cache(saveIndexes("://www.example.com", "/other.html", "/*"), null, "dn2");
+        cache.cache(saveIndexes("://www.example.org", "/other.html", "/*"), null, "dn3");
+
+        // When
+        Set<String> result = cache.getMatchingEntries(
+                searchIndexes("://www.example.com", "/index.html", "/*"), null, true);
+
+        // Then
+        assertThat(result).containsOnly("dn1", "dn2");
+    }
+
+    @Test
+    public void shouldRestrictMatchesToSubjectIndexes() {
+        // Given
+        cache.cache(saveIndexes("://www.example.com", "/index.html", "/*"), singleton("subject1"), "dn1");
+        cache.cache(saveIndexes("://www.example.com", "/index.html", "/*"), singleton("subject2"), "dn2");
+
+        // When
+        Set<String> result = cache.getMatchingEntries(
+                searchIndexes("://www.example.com", "/index.html", "/*"), singleton("SUBJECT2"), false);
+
+        // Then
+        assertThat(result).containsOnly("dn2");
+    }
+
+    @Test
+    public void shouldKeepPopularIndexesCached() {
+        // Given
+        for (int i = 0; i < 100; i++) {
+            cache.cache(saveIndexes("://www.example.com", "/page" + i, "/*"), null, "dn" + i);
+        }
+
+        // When
+        Set<String> result = cache.getMatchingEntries(
+                searchIndexes("://www.example.com", "/page50", "/*"), null, true);
+
+        // Then
+        assertThat(result).hasSize(100);
+    }
+
+    @Test
+    public void shouldNoLongerMatchClearedEntries() {
+        // Given
+        ResourceSaveIndexes indexes = saveIndexes("://www.example.com", "/index.html", "/*");
+        cache.cache(indexes, null, "dn1");
+
+        // When
+        cache.clear(indexes, "dn1");
+
+        // Then
+        assertThat(cache.getMatchingEntries(
+                searchIndexes("://www.example.com", "/index.html", "/*"), null, false)).isEmpty();
+    }
+
+    private ResourceSaveIndexes saveIndexes(String host, String path, String parentPath) {
+        return new ResourceSaveIndexes(set(host), set(path), set(parentPath));
+    }
+
+    private ResourceSearchIndexes searchIndexes(String host, String path, String parentPath) {
+        return new ResourceSearchIndexes(set(host), set(path), set(parentPath));
+    }
+
+    private Set<String> set(String value) {
+        return new HashSet<String>(Collections.singleton(value));
+    }
+}
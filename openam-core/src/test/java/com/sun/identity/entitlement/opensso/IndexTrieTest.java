@@ -0,0 +1,132 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement.opensso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IndexTrieTest {
+
+    private IndexTrie trie;
+
+    @BeforeMethod
+    public void setUp() {
+        trie = new IndexTrie();
+    }
+
+    @Test
+    public void shouldReturnEmptySetForUnknownIndex() {
+        assertThat(trie.get("://www.example.com")).isEmpty();
+    }
+
+    @Test
+    public void shouldStoreIndexesSharingPrefixes() {
+        // Given
+        trie.add("/a/b/c", "dn1");
+        trie.add("/a/b", "dn2");
+        trie.add("/a/bc", "dn3");
+        trie.add("/a/b/c", "dn4");
+        trie.add("", "dn5");
+
+        // Then
+        assertThat(trie.get("/a/b/c")).containsOnly("dn1", "dn4");
+        assertThat(trie.get("/a/b")).containsOnly("dn2");
+        assertThat(trie.get("/a/bc")).containsOnly("dn3");
+        assertThat(trie.get("")).containsOnly("dn5");
+        assertThat(trie.get("/a")).isEmpty();
+        assertThat(trie.get("/a/b/c/d")).isEmpty();
+        assertThat(trie.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldNotLimitTheNumberOfEntriesForAnIndex() {
+        // When
+        for (int i = 0; i < 1000; i++) {
+            trie.add("/*", "dn" + i);
+        }
+
+        // Then
+        assertThat(trie.get("/*")).hasSize(1000);
+    }
+
+    @Test
+    public void shouldRemoveEntriesAndPruneEmptyNodes() {
+        // Given
+        trie.add("/a/b/c", "dn1");
+        trie.add("/a/b/d", "dn2");
+
+        // When
+        trie.remove("/a/b/c", "dn1");
+        trie.remove("/a/b/x", "dn2");
+
+        // Then
+        assertThat(trie.get("/a/b/c")).isEmpty();
+        assertThat(trie.get("/a/b/d")).containsOnly("dn2");
+        assertThat(trie.size()).isEqualTo(1);
+
+        // And when
+        trie.add("/a/b/c", "dn3");
+
+        // Then
+        assertThat(trie.get("/a/b/c")).containsOnly("dn3");
+    }
+
+    @Test
+    public void shouldAlwaysFindExistingEntriesWhileBeingUpdated() throws Exception {
+        // Given
+        trie.add("://www.example.com", "stable");
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final CountDownLatch started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Boolean> reader = executor.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                started.countDown();
+                while (running.get()) {
+                    if (!trie.get("://www.example.com").contains("stable")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+
+        // When
+        started.await();
+        for (int i = 0; i < 5000; i++) {
+            trie.add("://www.example" + i + ".com", "dn" + i);
+            trie.add("://www.example.co" + i, "dn" + i);
+        }
+        for (int i = 0; i < 5000; i++) {
+            trie.remove("://www.example" + i + ".com", "dn" + i);
+        }
+        running.set(false);
+
+        // Then
+        assertThat(reader.get(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+    }
+}
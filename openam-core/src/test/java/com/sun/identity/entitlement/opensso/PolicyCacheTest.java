@@ -0,0 +1,189 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.entitlement.opensso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.sun.identity.entitlement.Entitlement;
+import com.sun.identity.entitlement.Privilege;
+import org.testng.annotations.Test;
+
+public class PolicyCacheTest {
+
+    private static final String REALM = "o=realm,ou=services,dc=openam,dc=forgerock,dc=org";
+    private static final String OTHER_REALM = "o=other,ou=services,dc=openam,dc=forgerock,dc=org";
+
+    @Test
+    public void shouldCountCachedPoliciesByRealm() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 1000);
+        Privilege policy = policy(1);
+
+        // When
+        cache.cache(dn(1), policy, REALM);
+        cache.cache(dn(2), policy(1), REALM);
+        cache.cache(dn(3), policy(1), OTHER_REALM);
+
+        // Then
+        assertThat(cache.getPolicy(dn(1))).isSameAs(policy);
+        assertThat(cache.getReferral(dn(1))).isNull();
+        assertThat(cache.getCount(REALM)).isEqualTo(2);
+        assertThat(cache.getCount(OTHER_REALM)).isEqualTo(1);
+        assertThat(cache.getCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldNotCountReplacedPolicyTwice() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 1000);
+        cache.cache(dn(1), policy(1), REALM);
+
+        // When
+        Privilege replacement = policy(3);
+        cache.cache(dn(1), replacement, REALM);
+
+        // Then
+        assertThat(cache.getPolicy(dn(1))).isSameAs(replacement);
+        assertThat(cache.getCount(REALM)).isEqualTo(1);
+        assertThat(cache.getWeight(REALM)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldStopCountingDecachedPolicy() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 1000);
+        cache.cache(dn(1), policy(1), REALM);
+
+        // When
+        cache.decache(dn(1), REALM);
+
+        // Then
+        assertThat(cache.getPolicy(dn(1))).isNull();
+        assertThat(cache.getCount(REALM)).isEqualTo(0);
+        assertThat(cache.getWeight(REALM)).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldStopCountingEvictedPolicies() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 20);
+
+        // When
+        for (int i = 0; i < 200; i++) {
+            cache.cache(dn(i), policy(1), REALM);
+        }
+
+        // Then
+        int cached = 0;
+        for (int i = 0; i < 200; i++) {
+            if (cache.getPolicy(dn(i)) != null) {
+                cached++;
+            }
+        }
+        assertThat(cached).isLessThanOrEqualTo(20);
+        assertThat(cache.getCount(REALM)).isEqualTo(cached);
+        assertThat(cache.getEvictionCount()).isEqualTo(200 - cached);
+    }
+
+    @Test
+    public void shouldNotCachePoliciesBeyondRealmQuota() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 1000, 1);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            cache.cache(dn(i), policy(2), REALM);
+        }
+        cache.cache(dn(5), policy(2), REALM);
+        cache.cache(dn(6), policy(2), OTHER_REALM);
+
+        // Then
+        assertThat(cache.getPolicy(dn(5))).isNull();
+        assertThat(cache.getPolicy(dn(6))).isNotNull();
+        assertThat(cache.getCount(REALM)).isEqualTo(5);
+        assertThat(cache.getWeight(REALM)).isEqualTo(10);
+        assertThat(cache.getRejectionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldReplacePolicyOfRealmAtQuota() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 1000, 1);
+        for (int i = 0; i < 5; i++) {
+            cache.cache(dn(i), policy(2), REALM);
+        }
+
+        // When
+        Privilege replacement = policy(2);
+        cache.cache(dn(0), replacement, REALM);
+
+        // Then
+        assertThat(cache.getPolicy(dn(0))).isSameAs(replacement);
+        assertThat(cache.getCount(REALM)).isEqualTo(5);
+        assertThat(cache.getWeight(REALM)).isEqualTo(10);
+        assertThat(cache.getRejectionCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldOnlyReplaceCachedPoliciesWhenForced() {
+        // Given
+        PolicyCache cache = new PolicyCache("test", 1000);
+        Privilege cached = policy(1);
+        cache.cache(dn(1), cached, REALM);
+        Map<String, Privilege> policies = new HashMap<String, Privilege>();
+        policies.put(dn(1), policy(1));
+        policies.put(dn(2), policy(1));
+
+        // When
+        cache.cache(policies, REALM, false);
+
+        // Then
+        assertThat(cache.getPolicy(dn(1))).isSameAs(cached);
+        assertThat(cache.getPolicy(dn(2))).isSameAs(policies.get(dn(2)));
+        assertThat(cache.getCount(REALM)).isEqualTo(2);
+
+        // When
+        cache.cache(policies, REALM, true);
+
+        // Then
+        assertThat(cache.getPolicy(dn(1))).isSameAs(policies.get(dn(1)));
+        assertThat(cache.getCount(REALM)).isEqualTo(2);
+    }
+
+    private static String dn(int i) {
+        return "ou=policy" + i + "," + REALM;
+    }
+
+    private static Privilege policy(int numResources) {
+        Set<String> resources = new HashSet<String>();
+        for (int i = 0; i < numResources; i++) {
+            resources.add("http://www.example.com:80/" + i + "/*");
+        }
+        Entitlement entitlement = new Entitlement("iPlanetAMWebAgentService", resources,
+                Collections.singletonMap("GET", true));
+        Privilege policy = mock(Privilege.class);
+        given(policy.getEntitlement()).willReturn(entitlement);
+        return policy;
+    }
+}
@@ -15,9 +15,11 @@
  */
 package com.sun.identity.idm.common;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.openam.utils.TimeTravelUtil;
 import org.testng.Assert;
@@ -88,4 +90,36 @@ public class IdCacheBlockTest {
         Map cachedAttributes = cb.getAttributes(PRINCIPAL_DN, false);
         Assert.assertTrue(cachedAttributes.isEmpty());
     }
+
+    @Test
+    public void volatileAttributeExpiresTest() throws Exception {
+
+        Map<String, Long> expireTimes = Collections.singletonMap("test", TimeUnit.SECONDS.toMillis(60));
+        IdCacheBlock cb = new IdCacheBlock(ENTRY_DN, true, expireTimes);
+
+        cb.putAttributes(PRINCIPAL_DN, attributes, null, true, false);
+
+        Assert.assertFalse(cb.removeExpiredAttributes());
+        Assert.assertTrue(cb.hasCompleteSet(PRINCIPAL_DN));
+
+        // Go past the attribute expiry time, expect the attribute to be removed.
+        TimeTravelUtil.fastForward(TimeUnit.SECONDS.toMillis(61));
+
+        Assert.assertTrue(cb.removeExpiredAttributes());
+        Assert.assertFalse(cb.hasCompleteSet(PRINCIPAL_DN));
+        Assert.assertTrue(cb.getAttributes(PRINCIPAL_DN, false).isEmpty());
+        Assert.assertFalse(cb.removeExpiredAttributes());
+    }
+
+    @Test
+    public void parseAttributeExpireTimesTest() throws Exception {
+
+        Map<String, Long> expireTimes =
+                IdCacheBlock.parseAttributeExpireTimes("isMemberOf=60, inetUserStatus = 300,invalid,bad=x");
+
+        Assert.assertEquals(expireTimes.size(), 2);
+        Assert.assertEquals(expireTimes.get("ismemberof"), Long.valueOf(60000));
+        Assert.assertEquals(expireTimes.get("inetuserstatus"), Long.valueOf(300000));
+        Assert.assertTrue(IdCacheBlock.parseAttributeExpireTimes(null).isEmpty());
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.idm.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IdCacheDNIndexTest {
+
+    private static final String REALM = "o=sub,ou=services,dc=openam,dc=forgerock,dc=org";
+    private static final String DEMO = "id=demo,ou=user," + REALM;
+    private static final String ADMIN = "id=admin,ou=user," + REALM;
+    private static final String STAFF = "id=staff,ou=group," + REALM;
+
+    private IdCacheDNIndex index;
+
+    @BeforeMethod
+    public void setUp() {
+        index = new IdCacheDNIndex();
+    }
+
+    @Test
+    public void shouldFindKeysAtOrBelowDN() {
+        // Given
+        index.add(DEMO);
+        index.add(ADMIN);
+        index.add(STAFF);
+
+        // When / Then
+        assertThat(index.getKeys(DEMO)).containsOnly(DEMO);
+        assertThat(index.getKeys("ou=user," + REALM)).containsOnly(DEMO, ADMIN);
+        assertThat(index.getKeys(REALM)).containsOnly(DEMO, ADMIN, STAFF);
+        assertThat(index.getKeys("ou=services,dc=openam,dc=forgerock,dc=org")).containsOnly(DEMO, ADMIN, STAFF);
+    }
+
+    @Test
+    public void shouldOnlyMatchWholeRDNs() {
+        // Given
+        index.add(DEMO);
+
+        // When / Then
+        assertThat(index.getKeys("mo,ou=user," + REALM)).isEmpty();
+    }
+
+    @Test
+    public void shouldIgnoreCase() {
+        // Given
+        index.add(DEMO);
+
+        // When / Then
+        assertThat(index.getKeys("OU=User," + REALM.toUpperCase())).containsOnly(DEMO);
+    }
+
+    @Test
+    public void shouldMatchNormalisedDNs() {
+        // Given
+        String key = "id=demo, ou=user, " + REALM;
+        index.add(key);
+
+        // When / Then
+        assertThat(index.getKeys("ou=user," + REALM)).containsOnly(key);
+        assertThat(index.getKeys("ou=user,  " + REALM)).containsOnly(key);
+    }
+
+    @Test
+    public void shouldRemoveKeyAndEmptyDNs() {
+        // Given
+        index.add(DEMO);
+        index.add(STAFF);
+
+        // When
+        index.remove(DEMO);
+
+        // Then
+        assertThat(index.getKeys("ou=user," + REALM)).isEmpty();
+        assertThat(index.getKeys(REALM)).containsOnly(STAFF);
+        index.remove(STAFF);
+        assertThat(index.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldNotSplitOnEscapedSeparators() {
+        assertThat(IdCacheDNIndex.getDNs("cn=smith\\, john,ou=people,dc=org"))
+                .containsExactly("cn=smith\\, john,ou=people,dc=org", "ou=people,dc=org", "dc=org");
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.policy.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.identity.policy.ResourceResult;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ResourceResultStoreTest {
+
+    private static final String SERVICE = "iPlanetAMWebAgentService";
+    private static final String OTHER_SERVICE = "otherService";
+    private static final String RESOURCE = "http://www.example.com:80/index.html";
+    private static final String OTHER_RESOURCE = "http://www.example.com:80/other.html";
+    private static final String SCOPE = "self";
+
+    private ResourceResultStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        store = new ResourceResultStore(100, TimeUnit.MINUTES.toMillis(3));
+    }
+
+    @Test
+    public void shouldReturnCachedResults() {
+        // Given
+        ResourceResultStore.Results results = results();
+        store.put("token1", SERVICE, RESOURCE, SCOPE, results);
+
+        // When / Then
+        assertThat(store.get("token1", SERVICE, RESOURCE, SCOPE)).isSameAs(results);
+        assertThat(store.get("token2", SERVICE, RESOURCE, SCOPE)).isNull();
+        assertThat(store.get("token1", SERVICE, RESOURCE, "subtree")).isNull();
+    }
+
+    @Test
+    public void shouldRemoveOnlyResultsOfToken() {
+        // Given
+        store.put("token1", SERVICE, RESOURCE, SCOPE, results());
+        store.put("token1", OTHER_SERVICE, OTHER_RESOURCE, SCOPE, results());
+        store.put("token2", SERVICE, RESOURCE, SCOPE, results());
+
+        // When
+        int removed = store.removeToken("token1");
+
+        // Then
+        assertThat(removed).isEqualTo(2);
+        assertThat(store.get("token1", SERVICE, RESOURCE, SCOPE)).isNull();
+        assertThat(store.get("token1", OTHER_SERVICE, OTHER_RESOURCE, SCOPE)).isNull();
+        assertThat(store.get("token2", SERVICE, RESOURCE, SCOPE)).isNotNull();
+        assertThat(store.removeToken("token1")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRemoveResourcesOfServiceForEverySession() {
+        // Given
+        store.put("token1", SERVICE, RESOURCE, SCOPE, results());
+        store.put("token2", SERVICE, RESOURCE, SCOPE, results());
+        store.put("token1", SERVICE, OTHER_RESOURCE, SCOPE, results());
+        store.put("token1", OTHER_SERVICE, RESOURCE, SCOPE, results());
+
+        // When
+        store.removeResources(SERVICE, Collections.singleton(RESOURCE));
+
+        // Then
+        assertThat(store.getResourceNames(SERVICE)).containsOnly(OTHER_RESOURCE);
+        assertThat(store.getResourceNames(OTHER_SERVICE)).containsOnly(RESOURCE);
+    }
+
+    @Test
+    public void shouldRemoveService() {
+        // Given
+        store.put("token1", SERVICE, RESOURCE, SCOPE, results());
+        store.put("token1", OTHER_SERVICE, RESOURCE, SCOPE, results());
+
+        // When
+        store.removeService(SERVICE);
+
+        // Then
+        assertThat(store.getResourceNames(SERVICE)).isEmpty();
+        assertThat(store.get("token1", OTHER_SERVICE, RESOURCE, SCOPE)).isNotNull();
+    }
+
+    @Test
+    public void shouldEvictWhenFullAndCountEvictions() {
+        // Given
+        store = new ResourceResultStore(10, TimeUnit.MINUTES.toMillis(3));
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            store.put("token" + i, SERVICE, RESOURCE, SCOPE, results());
+        }
+
+        // Then
+        assertThat(store.size()).isLessThanOrEqualTo(10);
+        assertThat(store.getEvictionCount()).isGreaterThanOrEqualTo(40);
+        assertThat(store.removeToken("token0") + store.removeToken("token49")).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotCountReplacedResultsAsEvicted() {
+        // Given
+        store.put("token1", SERVICE, RESOURCE, SCOPE, results());
+
+        // When
+        store.put("token1", SERVICE, RESOURCE, SCOPE, results());
+
+        // Then
+        assertThat(store.getEvictionCount()).isEqualTo(0);
+        assertThat(store.removeToken("token1")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRecordLookupsAndFetches() {
+        // When
+        store.recordLookup(true);
+        store.recordLookup(false);
+        store.recordLookup(false);
+        store.recordFetch(TimeUnit.MILLISECONDS.toNanos(10));
+        store.recordFetch(TimeUnit.MILLISECONDS.toNanos(30));
+
+        // Then
+        assertThat(store.getHitCount()).isEqualTo(1);
+        assertThat(store.getMissCount()).isEqualTo(2);
+        assertThat(store.getFetchCount()).isEqualTo(2);
+        assertThat(store.getAverageFetchTimeMs()).isEqualTo(20.0d);
+    }
+
+    private static ResourceResultStore.Results results() {
+        return new ResourceResultStore.Results(Collections.<ResourceResult>emptySet(), null,
+                Long.MAX_VALUE, Collections.singleton("GET"));
+    }
+}
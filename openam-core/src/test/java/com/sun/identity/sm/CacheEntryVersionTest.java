@@ -0,0 +1,191 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.sm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CacheEntryVersionTest {
+
+    private static final int READERS = 10;
+
+    private CacheEntryVersion version;
+
+    @BeforeMethod
+    public void setUp() {
+        version = new CacheEntryVersion();
+    }
+
+    @Test
+    public void shouldBeCleanAfterRefresh() throws Exception {
+        // Given
+        version.markDirty();
+
+        // When
+        version.refresh(new CacheEntryVersion.Refresh<RuntimeException>() {
+            @Override
+            public boolean refresh() {
+                return true;
+            }
+        });
+
+        // Then
+        assertThat(version.isDirty()).isFalse();
+    }
+
+    @Test
+    public void shouldStayDirtyWhenChangedDuringRefresh() throws Exception {
+        // Given
+        version.markDirty();
+
+        // When
+        version.refresh(new CacheEntryVersion.Refresh<RuntimeException>() {
+            @Override
+            public boolean refresh() {
+                version.markDirty();
+                return true;
+            }
+        });
+
+        // Then
+        assertThat(version.isDirty()).isTrue();
+    }
+
+    @Test
+    public void shouldNotRefreshAgainUntilChangedWhenEntryCouldNotBeRead() throws Exception {
+        // Given
+        version.markDirty();
+
+        // When
+        version.refresh(new CacheEntryVersion.Refresh<RuntimeException>() {
+            @Override
+            public boolean refresh() {
+                version.markDirty();
+                return false;
+            }
+        });
+
+        // Then
+        assertThat(version.isDirty()).isFalse();
+    }
+
+    @Test
+    public void shouldStayDirtyWhenRefreshFails() throws Exception {
+        // Given
+        version.markDirty();
+
+        // When
+        try {
+            version.refresh(new CacheEntryVersion.Refresh<SMSException>() {
+                @Override
+                public boolean refresh() throws SMSException {
+                    throw new SMSException("test");
+                }
+            });
+            fail("Expected SMSException");
+        } catch (SMSException e) {
+            // Then
+            assertThat(version.isDirty()).isTrue();
+        }
+    }
+
+    @Test
+    public void shouldNotExpireEntryWhichIsAlreadyDirty() throws Exception {
+        // Given
+        version.markDirty();
+
+        // When
+        version.expire();
+        version.refresh(new CacheEntryVersion.Refresh<RuntimeException>() {
+            @Override
+            public boolean refresh() {
+                return true;
+            }
+        });
+
+        // Then
+        assertThat(version.isDirty()).isFalse();
+    }
+
+    @Test
+    public void shouldRefreshDirtyEntryOnceForConcurrentReaders() throws Exception {
+        // Given
+        version.markDirty();
+        final AtomicInteger refreshes = new AtomicInteger();
+        final CountDownLatch refreshing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CacheEntryVersion.Refresh<InterruptedException> refresh =
+                new CacheEntryVersion.Refresh<InterruptedException>() {
+                    @Override
+                    public boolean refresh() throws InterruptedException {
+                        refreshes.incrementAndGet();
+                        refreshing.countDown();
+                        release.await();
+                        return true;
+                    }
+                };
+
+        // When
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (version.isDirty()) {
+                            version.refreshIfDirty(refresh);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            readers.add(reader);
+            reader.start();
+            if (i == 0) {
+                assertThat(refreshing.await(10, TimeUnit.SECONDS)).isTrue();
+            }
+        }
+        for (Thread reader : readers.subList(1, READERS)) {
+            awaitBlocked(reader);
+        }
+        release.countDown();
+        for (Thread reader : readers) {
+            reader.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        // Then
+        assertThat(refreshes.get()).isEqualTo(1);
+        assertThat(version.isDirty()).isFalse();
+    }
+
+    private static void awaitBlocked(Thread reader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (reader.getState() != Thread.State.BLOCKED && reader.isAlive()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package com.sun.identity.sm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CachedSMSEntryTest {
+
+    private static final String KEY = "ou=services,dc=openam,dc=forgerock,dc=org";
+    private static final int THREADS = 8;
+
+    private ConcurrentMap<String, Entry> cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    public void shouldCacheEntryWhenNoneCached() {
+        // Given
+        Entry entry = new Entry();
+
+        // When
+        Entry cached = addToCache(entry);
+
+        // Then
+        assertThat(cached).isSameAs(entry);
+        assertThat(cache.get(KEY)).isSameAs(entry);
+        assertThat(entry.registered).isTrue();
+    }
+
+    @Test
+    public void shouldReplaceInvalidCachedEntry() {
+        // Given
+        Entry invalid = new Entry();
+        invalid.valid = false;
+        cache.put(KEY, invalid);
+        Entry entry = new Entry();
+
+        // When
+        Entry cached = addToCache(entry);
+
+        // Then
+        assertThat(cached).isSameAs(entry);
+        assertThat(cache.get(KEY)).isSameAs(entry);
+        assertThat(entry.registered).isTrue();
+    }
+
+    @Test
+    public void shouldRemoveRegistrationOfEntryWhichLosesRaceToBeCached() throws Exception {
+        // Given
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Entry> entries = new ArrayList<>();
+        List<Callable<Entry>> racers = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            final Entry entry = new Entry();
+            entries.add(entry);
+            racers.add(new Callable<Entry>() {
+                @Override
+                public Entry call() throws Exception {
+                    barrier.await(10, TimeUnit.SECONDS);
+                    return addToCache(entry);
+                }
+            });
+        }
+
+        // When
+        List<Entry> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Entry> result : executor.invokeAll(racers)) {
+                results.add(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        Entry winner = cache.get(KEY);
+        assertThat(results).containsOnly(winner);
+        for (Entry entry : entries) {
+            assertThat(entry.registered).isEqualTo(entry == winner);
+        }
+    }
+
+    private Entry addToCache(Entry entry) {
+        return CachedSMSEntry.addToCache(cache, KEY, entry, new CachedSMSEntry.CacheEntries<Entry>() {
+            @Override
+            public boolean isValid(Entry entry) {
+                return entry.valid;
+            }
+
+            @Override
+            public void discard(Entry entry) {
+                entry.registered = false;
+            }
+        });
+    }
+
+    /**
+     * Stands in for a {@link CachedSMSEntry}, which registers for notifications when it is created.
+     */
+    private static final class Entry {
+        private volatile boolean valid = true;
+        private volatile boolean registered = true;
+    }
+}
@@ -20,10 +20,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.willDoNothing;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.nio.file.Files;
+
 import com.iplanet.dpro.session.Session;
-import org.forgerock.bloomfilter.BloomFilter;
+import org.forgerock.util.time.TimeService;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -31,46 +36,46 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 public class BloomFilterBlacklistTest {
-    private static final long PURGE_DELAY = 1000L;
+    private static final long NOW = 1000000L;
+    private static final long WINDOW = 60000L;
 
     @Mock
     private Blacklist<Blacklistable> mockDelegate;
 
     @Mock
-    private BloomFilter<BloomFilterBlacklist.BlacklistEntry> mockBloomFilter;
+    private Session mockSession;
 
     @Mock
-    private Session mockSession;
+    private TimeService mockClock;
+
+    private RollingBloomFilter bloomFilter;
 
     private BloomFilterBlacklist<Blacklistable> testBlacklist;
 
     @BeforeMethod
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        testBlacklist = new BloomFilterBlacklist<>(mockDelegate, PURGE_DELAY, mockBloomFilter);
+        given(mockClock.now()).willReturn(NOW);
+        bloomFilter = new RollingBloomFilter(WINDOW, 100, 0.001d, mockClock);
+        testBlacklist = new BloomFilterBlacklist<>(mockDelegate, bloomFilter, null, mockClock);
     }
 
     @Test
     public void shouldSubscribeForUpdatesFromOtherServers() {
-        verify(mockDelegate).subscribe(any(Blacklist.Listener.class));
+        verify(mockDelegate).subscribe(any(Blacklist.Listener.class), eq(0L));
     }
 
     @Test
     public void shouldAddNotifiedBlacklistedSessionsToTheBloomFilter() {
         // Given
-        ArgumentCaptor<Blacklist.Listener> listenerArgumentCaptor
-                = ArgumentCaptor.forClass(Blacklist.Listener.class);
-        willDoNothing().given(mockDelegate).subscribe(listenerArgumentCaptor.capture());
-        testBlacklist = new BloomFilterBlacklist<>(mockDelegate, PURGE_DELAY, mockBloomFilter);
-        Blacklist.Listener listener = listenerArgumentCaptor.getValue();
+        Blacklist.Listener listener = captureListener();
         String id = "testSession";
-        long expiryTime = 1234l;
 
         // When
-        listener.onBlacklisted(id, expiryTime);
+        listener.onBlacklisted(id, NOW + 1234L);
 
         // Then
-        verify(mockBloomFilter).add(new BloomFilterBlacklist.BlacklistEntry(id, expiryTime));
+        assertThat(bloomFilter.mightContain(id)).isTrue();
     }
 
     @Test
@@ -82,12 +87,7 @@ public class BloomFilterBlacklistTest {
     @Test
     public void shouldNotCheckDelegateIfSessionNotInBloomFilter() throws Exception {
         // Given
-        String id = "testSession";
-        long expiryTime = 1234l;
-        given(mockSession.getStableStorageID()).willReturn(id);
-        given(mockSession.getBlacklistExpiryTime()).willReturn(expiryTime);
-        given(mockBloomFilter.mightContain(new BloomFilterBlacklist.BlacklistEntry(id, expiryTime)))
-                .willReturn(false);
+        given(mockSession.getStableStorageID()).willReturn("testSession");
 
         // When
         boolean result = testBlacklist.isBlacklisted(mockSession);
@@ -95,17 +95,15 @@ public class BloomFilterBlacklistTest {
         // Then
         assertThat(result).isFalse();
         verify(mockDelegate, never()).isBlacklisted(any(Session.class));
+        assertThat(testBlacklist.getLookupCount()).isEqualTo(1);
     }
 
     @Test
     public void shouldCheckDelegateIfSessionIsInBloomFilter() throws Exception {
         // Given
         String id = "testSession";
-        long expiryTime = 1234L;
+        bloomFilter.add(id, NOW + 1234L);
         given(mockSession.getStableStorageID()).willReturn(id);
-        given(mockSession.getBlacklistExpiryTime()).willReturn(expiryTime);
-        given(mockBloomFilter.mightContain(new BloomFilterBlacklist.BlacklistEntry(id, expiryTime + PURGE_DELAY)))
-                .willReturn(true);
         given(mockDelegate.isBlacklisted(mockSession)).willReturn(true);
 
         // When
@@ -114,6 +112,89 @@ public class BloomFilterBlacklistTest {
         // Then
         assertThat(result).isTrue();
         verify(mockDelegate).isBlacklisted(mockSession);
+        assertThat(testBlacklist.getFalsePositiveCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldCountFalsePositivesRejectedByDelegate() throws Exception {
+        // Given
+        String id = "testSession";
+        bloomFilter.add(id, NOW + 1234L);
+        given(mockSession.getStableStorageID()).willReturn(id);
+        given(mockDelegate.isBlacklisted(mockSession)).willReturn(false);
+
+        // When
+        boolean result = testBlacklist.isBlacklisted(mockSession);
+
+        // Then
+        assertThat(result).isFalse();
+        assertThat(testBlacklist.getFalsePositiveCount()).isEqualTo(1);
+        assertThat(testBlacklist.getFalsePositiveRate()).isEqualTo(1.0d);
+    }
+
+    @Test
+    public void shouldNotCheckDelegateOnceEntryHasExpired() throws Exception {
+        // Given
+        String id = "testSession";
+        bloomFilter.add(id, NOW + 1234L);
+        given(mockSession.getStableStorageID()).willReturn(id);
+        given(mockClock.now()).willReturn(NOW + 2 * WINDOW);
+
+        // When
+        boolean result = testBlacklist.isBlacklisted(mockSession);
+
+        // Then
+        assertThat(result).isFalse();
+        verify(mockDelegate, never()).isBlacklisted(any(Session.class));
+    }
+
+    @Test
+    public void shouldRestoreSnapshotAndOnlyReplayLaterEntries() throws Exception {
+        // Given
+        File snapshot = File.createTempFile("blacklist", ".bloom");
+        snapshot.deleteOnExit();
+        bloomFilter.add("testSession", NOW + 1234L);
+        new BloomFilterBlacklist<>(mock(Blacklist.class), bloomFilter, snapshot, mockClock).saveSnapshot();
+        RollingBloomFilter restored = new RollingBloomFilter(WINDOW, 100, 0.001d, mockClock);
+        Blacklist<Blacklistable> delegate = mock(Blacklist.class);
+
+        // When
+        new BloomFilterBlacklist<>(delegate, restored, snapshot, mockClock);
+
+        // Then
+        assertThat(restored.mightContain("testSession")).isTrue();
+        verify(delegate).subscribe(any(Blacklist.Listener.class), eq(NOW - 60000L));
+    }
+
+    @Test
+    public void shouldReplayEverythingIfSnapshotIsUnreadable() throws Exception {
+        // Given
+        File snapshot = File.createTempFile("blacklist", ".bloom");
+        snapshot.deleteOnExit();
+        Blacklist<Blacklistable> delegate = mock(Blacklist.class);
+
+        // When
+        new BloomFilterBlacklist<>(delegate, bloomFilter, snapshot, mockClock);
+
+        // Then
+        verify(delegate).subscribe(any(Blacklist.Listener.class), eq(0L));
+        assertThat(snapshot).doesNotExist();
+    }
+
+    @Test
+    public void shouldNotLeaveTemporaryFilesBehindWhenSavingSnapshot() throws Exception {
+        // Given
+        File directory = Files.createTempDirectory("blacklist").toFile();
+        directory.deleteOnExit();
+        File snapshot = new File(directory, "blacklist.bloom");
+        snapshot.deleteOnExit();
+        bloomFilter.add("testSession", NOW + 1234L);
+
+        // When
+        new BloomFilterBlacklist<>(mock(Blacklist.class), bloomFilter, snapshot, mockClock).saveSnapshot();
+
+        // Then
+        assertThat(directory.list()).containsOnly("blacklist.bloom");
     }
 
     @Test
@@ -123,6 +204,14 @@ public class BloomFilterBlacklistTest {
         // When
         testBlacklist.subscribe(listener);
         // Then
-        mockDelegate.subscribe(listener);
+        verify(mockDelegate).subscribe(listener);
+    }
+
+    private Blacklist.Listener captureListener() {
+        ArgumentCaptor<Blacklist.Listener> listenerArgumentCaptor
+                = ArgumentCaptor.forClass(Blacklist.Listener.class);
+        willDoNothing().given(mockDelegate).subscribe(listenerArgumentCaptor.capture(), anyLong());
+        testBlacklist = new BloomFilterBlacklist<>(mockDelegate, bloomFilter, null, mockClock);
+        return listenerArgumentCaptor.getValue();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,206 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.blacklist;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.forgerock.util.time.TimeService;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RollingBloomFilterTest {
+    private static final long NOW = 1000000L;
+    private static final long WINDOW = 60000L;
+
+    private TimeService mockClock;
+    private RollingBloomFilter filter;
+
+    @BeforeMethod
+    public void setup() {
+        mockClock = mock(TimeService.class);
+        given(mockClock.now()).willReturn(NOW);
+        filter = new RollingBloomFilter(WINDOW, 100, 0.001d, mockClock);
+    }
+
+    @Test
+    public void shouldContainAddedEntries() {
+        // Given
+        for (int i = 0; i < 500; i++) {
+            filter.add("entry" + i, NOW + i * 1000L);
+        }
+
+        // When / Then
+        for (int i = 0; i < 500; i++) {
+            assertThat(filter.mightContain("entry" + i)).isTrue();
+        }
+    }
+
+    @Test
+    public void shouldNotContainEntriesThatWereNeverAdded() {
+        // Given
+        filter.add("entry", NOW + 1000L);
+
+        // When / Then
+        assertThat(filter.mightContain("other")).isFalse();
+        assertThat(filter.mightContain("")).isFalse();
+    }
+
+    @Test
+    public void shouldIgnoreEntriesThatHaveAlreadyExpired() {
+        // When
+        filter.add("entry", NOW);
+
+        // Then
+        assertThat(filter.mightContain("entry")).isFalse();
+        assertThat(filter.getBucketCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldPartitionEntriesIntoBucketsByExpiryTime() {
+        // When
+        filter.add("first", NOW + 1000L);
+        filter.add("second", NOW + WINDOW + 1000L);
+
+        // Then
+        assertThat(filter.getBucketCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldDropBucketsOnceAllEntriesHaveExpired() {
+        // Given
+        filter.add("first", NOW + 1000L);
+        filter.add("second", NOW + 2 * WINDOW);
+
+        // When
+        given(mockClock.now()).willReturn(NOW + WINDOW);
+        filter.removeExpired();
+
+        // Then
+        assertThat(filter.mightContain("first")).isFalse();
+        assertThat(filter.mightContain("second")).isTrue();
+        assertThat(filter.getBucketCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldGrowFullBucketsToKeepFalsePositiveProbabilityLow() {
+        // Given
+        long initialSize;
+        filter.add("entry", NOW + 1000L);
+        initialSize = filter.getMemorySizeInBytes();
+
+        // When
+        for (int i = 0; i < 1000; i++) {
+            filter.add("entry" + i, NOW + 1000L);
+        }
+
+        // Then
+        assertThat(filter.getBucketCount()).isEqualTo(1);
+        assertThat(filter.getMemorySizeInBytes()).isGreaterThan(initialSize);
+        assertThat(filter.getExpectedFalsePositiveProbability()).isLessThan(0.05d);
+    }
+
+    @Test
+    public void shouldRoundTripThroughSnapshot() throws Exception {
+        // Given
+        for (int i = 0; i < 200; i++) {
+            filter.add("entry" + i, NOW + i * 1000L);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        RollingBloomFilter restored = new RollingBloomFilter(WINDOW, 100, 0.001d, mockClock);
+
+        // When
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // Then
+        for (int i = 0; i < 200; i++) {
+            assertThat(restored.mightContain("entry" + i)).isTrue();
+        }
+        assertThat(restored.getEntryCount()).isEqualTo(filter.getEntryCount());
+        assertThat(restored.getBucketCount()).isEqualTo(filter.getBucketCount());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectSnapshotWithDifferentWindow() throws Exception {
+        // Given
+        filter.add("entry", NOW + 1000L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        RollingBloomFilter restored = new RollingBloomFilter(WINDOW * 2, 100, 0.001d, mockClock);
+
+        // When
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectSnapshotWithDifferentFilterDimensions() throws Exception {
+        // Given
+        filter.add("entry", NOW + 1000L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.writeTo(new DataOutputStream(bytes));
+        RollingBloomFilter restored = new RollingBloomFilter(WINDOW, 1000, 0.001d, mockClock);
+
+        // When
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void shouldRejectSnapshotWithTooManyBucketsWithoutChangingFilter() throws Exception {
+        // Given
+        filter.add("entry", NOW + 1000L);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x424c4246);
+        out.writeByte(1);
+        out.writeLong(WINDOW);
+        out.writeInt(Integer.MAX_VALUE);
+
+        // When
+        try {
+            filter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // Then
+            assertThat(filter.mightContain("entry")).isTrue();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectSnapshotWithTooManyFilters() throws Exception {
+        // Given
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x424c4246);
+        out.writeByte(1);
+        out.writeLong(WINDOW);
+        out.writeInt(1);
+        out.writeLong(NOW / WINDOW);
+        out.writeInt(Integer.MAX_VALUE);
+
+        // When
+        filter.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -11,33 +11,49 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts;
 
 import com.sun.identity.shared.debug.Debug;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
+import org.forgerock.openam.cts.api.filter.TokenFilter;
+import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.impl.CoreTokenAdapter;
+import org.forgerock.openam.cts.impl.TokenReadCache;
+import org.forgerock.openam.cts.impl.queue.ResultHandlerFactory;
 import org.forgerock.openam.cts.utils.blob.TokenBlobStrategy;
+import org.forgerock.openam.sm.datalayer.api.ResultHandler;
+import org.forgerock.openam.tokens.TokenType;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class CTSPersistentStoreImplTest {
 
     private CoreTokenAdapter mockAdapter;
+    private TokenReadCache mockCache;
+    private ResultHandlerFactory mockHandlerFactory;
     private CTSPersistentStoreImpl impl;
 
     @BeforeMethod
     public void setup() {
         mockAdapter = mock(CoreTokenAdapter.class);
-        impl = new CTSPersistentStoreImpl(mockAdapter, mock(Debug.class));
+        mockCache = mock(TokenReadCache.class);
+        mockHandlerFactory = mock(ResultHandlerFactory.class);
+        impl = new CTSPersistentStoreImpl(mockAdapter, mockCache, mockHandlerFactory, mock(Debug.class));
     }
 
     @Test
@@ -52,4 +68,107 @@ public class CTSPersistentStoreImplTest {
         given(mockAdapter.read(anyString())).willReturn(null);
         assertThat(impl.read("")).isNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReturnCachedTokenWithoutUsingAdapter() throws CoreTokenException {
+        Token token = mock(Token.class);
+        given(mockCache.isEnabled()).willReturn(true);
+        given(mockCache.get("badger")).willReturn(token);
+
+        assertThat(impl.read("badger")).isSameAs(token);
+        verify(mockAdapter, never()).read(anyString());
+    }
+
+    @Test
+    public void shouldCacheTokenReadFromAdapter() throws CoreTokenException {
+        Token token = mock(Token.class);
+        given(mockCache.isEnabled()).willReturn(true);
+        given(mockCache.getVersion("badger")).willReturn(3L);
+        given(mockAdapter.read("badger")).willReturn(token);
+
+        impl.read("badger");
+
+        verify(mockCache).put(token, 3L);
+    }
+
+    @Test
+    public void shouldRegisterCacheForChangesOnFirstRead() throws CoreTokenException {
+        given(mockCache.isEnabled()).willReturn(true);
+
+        impl.read("badger");
+        impl.read("weasel");
+
+        verify(mockAdapter).continuousQuery(eq(mockCache), any(TokenFilter.class));
+    }
+
+    @Test
+    public void shouldInvalidateCacheOnUpdate() throws CoreTokenException {
+        Token token = new Token("badger", TokenType.SESSION);
+        given(mockCache.isEnabled()).willReturn(true);
+        given(mockAdapter.updateOrCreate(eq(token), any(ResultHandler.class))).willReturn(mock(ResultHandler.class));
+
+        impl.update(token);
+
+        verify(mockCache).invalidate("badger");
+    }
+
+    @Test
+    public void shouldInvalidateCacheAgainWhenUpdateCompletes() throws CoreTokenException {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        ResultHandler<Token, CoreTokenException> updateHandler = mock(ResultHandler.class);
+        given(mockCache.isEnabled()).willReturn(true);
+        given(mockHandlerFactory.getUpdateHandler()).willReturn(updateHandler);
+        impl.updateAsync(token);
+        ResultHandler<Token, CoreTokenException> handler = capturedUpdateHandler(token);
+
+        // When
+        handler.processResults(token);
+
+        // Then
+        InOrder inOrder = inOrder(mockCache, updateHandler);
+        inOrder.verify(mockCache, times(2)).invalidate("badger");
+        inOrder.verify(updateHandler).processResults(token);
+    }
+
+    @Test
+    public void shouldInvalidateCacheAgainWhenDeleteFails() throws CoreTokenException {
+        // Given
+        ResultHandler<String, CoreTokenException> deleteHandler = mock(ResultHandler.class);
+        given(mockCache.isEnabled()).willReturn(true);
+        given(mockHandlerFactory.getDeleteHandler()).willReturn(deleteHandler);
+        impl.deleteAsync("badger");
+        ArgumentCaptor<ResultHandler> captor = ArgumentCaptor.forClass(ResultHandler.class);
+        verify(mockAdapter).delete(eq("badger"), captor.capture());
+        Exception error = new Exception();
+
+        // When
+        captor.getValue().processError(error);
+
+        // Then
+        verify(mockCache, times(2)).invalidate("badger");
+        verify(deleteHandler).processError(error);
+    }
+
+    @Test
+    public void shouldNotWrapHandlerWhenCacheIsDisabled() throws CoreTokenException {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        ResultHandler<Token, CoreTokenException> createHandler = mock(ResultHandler.class);
+        given(mockHandlerFactory.getCreateHandler()).willReturn(createHandler);
+        given(mockAdapter.create(token, createHandler)).willReturn(createHandler);
+
+        // When
+        impl.create(token);
+
+        // Then
+        verify(createHandler).getResults();
+        verify(mockCache, never()).invalidate(anyString());
+    }
+
+    private ResultHandler<Token, CoreTokenException> capturedUpdateHandler(Token token) throws CoreTokenException {
+        ArgumentCaptor<ResultHandler> captor = ArgumentCaptor.forClass(ResultHandler.class);
+        verify(mockAdapter).updateOrCreate(eq(token), captor.capture());
+        return captor.getValue();
+    }
+}
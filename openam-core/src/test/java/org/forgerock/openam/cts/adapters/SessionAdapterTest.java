@@ -56,7 +56,7 @@ public class SessionAdapterTest {
         coreTokenConfig = mock(CoreTokenConfig.class);
         jsonSerialisation = mock(JSONSerialisation.class);
         blobUtils = new TokenBlobUtils();
-        adapter = new SessionAdapter(tokenIdFactory, coreTokenConfig, jsonSerialisation, blobUtils);
+        adapter = new SessionAdapter(tokenIdFactory, coreTokenConfig, jsonSerialisation);
     }
 
     @Test
@@ -87,13 +87,13 @@ public class SessionAdapterTest {
         given(session.getSessionHandle()).willReturn(sessionHandle);
 
         // Avoid serialisation when using mock InternalSessions
-        given(jsonSerialisation.deserialise(anyString(), eq(InternalSession.class))).willReturn(session);
-        given(jsonSerialisation.serialise(any())).willReturn(new String(mockByteData));
+        given(jsonSerialisation.deserialise(any(byte[].class), eq(InternalSession.class))).willReturn(session);
+        given(jsonSerialisation.serialiseToBytes(any())).willReturn(mockByteData);
 
         adapter = new SessionAdapter(
                 tokenIdFactory,
                 coreTokenConfig ,
-                jsonSerialisation, blobUtils);
+                jsonSerialisation);
 
         Token token = new Token(sessionId, TokenType.SESSION);
         token.setUserId(userId);
@@ -129,7 +129,7 @@ public class SessionAdapterTest {
                 .withSetterVisibility(JsonAutoDetect.Visibility.NONE)
                 .withCreatorVisibility(JsonAutoDetect.Visibility.NONE));
         JSONSerialisation serialisation = new JSONSerialisation(mapper);
-        adapter = new SessionAdapter(tokenIdFactory, coreTokenConfig, serialisation, blobUtils);
+        adapter = new SessionAdapter(tokenIdFactory, coreTokenConfig, serialisation);
 
         // When
         InternalSession session = adapter.fromToken(token);
@@ -152,14 +152,14 @@ public class SessionAdapterTest {
         String sessionHandle = SessionID.SHANDLE_SCHEME_PREFIX + "ferret";
 
         given(mockSessionID.toString()).willReturn("badger");
-        given(jsonSerialisation.deserialise(anyString(), any(Class.class))).willReturn(mockSession);
+        given(jsonSerialisation.deserialise(any(byte[].class), any(Class.class))).willReturn(mockSession);
         given(mockSession.getExpirationTime()).willReturn(timestamp);
         given(mockSession.getID()).willReturn(mockSessionID);
         given(mockSession.getSessionHandle()).willReturn(sessionHandle);
 
         // some additional required mocking
         given(tokenIdFactory.toSessionTokenId(eq(mockSession))).willReturn("badger");
-        given(jsonSerialisation.serialise(any())).willReturn("");
+        given(jsonSerialisation.serialiseToBytes(any())).willReturn(new byte[0]);
 
         // When
         Token token = adapter.toToken(mockSession);
@@ -179,14 +179,14 @@ public class SessionAdapterTest {
         String sessionId = "badger";
         String sessionHandle = SessionID.SHANDLE_SCHEME_PREFIX + "ferret";
         given(mockSessionID.toString()).willReturn(sessionId);
-        given(jsonSerialisation.deserialise(anyString(), any(Class.class))).willReturn(mockSession);
+        given(jsonSerialisation.deserialise(any(byte[].class), any(Class.class))).willReturn(mockSession);
         given(mockSession.getExpirationTime()).willReturn(timestamp);
         given(mockSession.getID()).willReturn(mockSessionID);
         given(mockSession.getSessionHandle()).willReturn(sessionHandle);
 
         // some additional required mocking
         given(tokenIdFactory.toSessionTokenId(eq(mockSession))).willReturn(sessionId);
-        given(jsonSerialisation.serialise(any())).willReturn("");
+        given(jsonSerialisation.serialiseToBytes(any())).willReturn(new byte[0]);
 
         // When
         Token token = adapter.toToken(mockSession);
@@ -205,14 +205,14 @@ public class SessionAdapterTest {
         String sessionId = "badger";
         String sessionHandle = SessionID.SHANDLE_SCHEME_PREFIX + "ferret";
         given(mockSessionID.toString()).willReturn(sessionId);
-        given(jsonSerialisation.deserialise(anyString(), any(Class.class))).willReturn(mockSession);
+        given(jsonSerialisation.deserialise(any(byte[].class), any(Class.class))).willReturn(mockSession);
         given(mockSession.getExpirationTime()).willReturn(timestamp);
         given(mockSession.getID()).willReturn(mockSessionID);
         given(mockSession.getSessionHandle()).willReturn(sessionHandle);
 
         // some additional required mocking
         given(tokenIdFactory.toSessionTokenId(eq(mockSession))).willReturn(sessionId);
-        given(jsonSerialisation.serialise(any())).willReturn("");
+        given(jsonSerialisation.serialiseToBytes(any())).willReturn(new byte[0]);
 
         // When
         Token token = adapter.toToken(mockSession);
@@ -271,13 +271,108 @@ public class SessionAdapterTest {
     }
 
     @Test
-    public void shouldLocateValidFieldInJSON() {
-        String json = "{\"clientDomain\":null,\"creationTime\":1376307674,\"isISStored\":true,\"latestAccessTime\":1376308558,\"maxCachingTime\":3}";
-        assertEquals(1, adapter.findIndexOfValidField(json));
+    public void shouldFilterLatestAccessTimeFollowedByWhitespace() {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        token.setBlob("{\"creationTime\":1376307674,\"latestAccessTime\": 1376308558,\"maxCachingTime\":3}"
+                .getBytes());
+
+        // When
+        String result = adapter.filterLatestAccessTime(token);
+
+        // Then
+        assertEquals(result, "1376308558");
+        assertEquals(blobUtils.getBlobAsString(token), "{\"creationTime\":1376307674,\"maxCachingTime\":3}");
+    }
+
+    @Test
+    public void shouldSkipLatestAccessTimeWithoutNumericValue() {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        String json = "{\"latestAccessTime\":null,\"properties\":{\"latestAccessTime\":42}}";
+        token.setBlob(json.getBytes());
+
+        // When
+        String result = adapter.filterLatestAccessTime(token);
+
+        // Then
+        assertEquals(result, "42");
+        assertEquals(blobUtils.getBlobAsString(token), "{\"latestAccessTime\":null,\"properties\":{}}");
+    }
+
+    @Test
+    public void shouldStoreSameBlobAsStringBasedSerialisation() throws Exception {
+        // Given
+        String json = "{\"clientDomain\":null,\"creationTime\":1376307674,\"isISStored\":true,"
+                + "\"latestAccessTime\":1376308558,\"maxCachingTime\":3,\"sessionProperties\":{\"Locale\":\"\u00e9\"}}";
+        InternalSession mockSession = mock(InternalSession.class);
+        SessionID mockSessionID = mock(SessionID.class);
+        given(mockSessionID.toString()).willReturn("badger");
+        given(mockSession.getID()).willReturn(mockSessionID);
+        given(mockSession.getSessionHandle()).willReturn(SessionID.SHANDLE_SCHEME_PREFIX + "ferret");
+        given(tokenIdFactory.toSessionTokenId(eq(mockSession))).willReturn("badger");
+        given(jsonSerialisation.serialiseToBytes(any())).willReturn(json.getBytes(TokenBlobUtils.ENCODING));
+
+        Token legacy = new Token("badger", TokenType.SESSION);
+        blobUtils.setBlobFromString(legacy, json.replaceFirst("\"latestAccessTime\":\\s*([0-9]+),?", ""));
+
+        // When
+        Token token = adapter.toToken(mockSession);
+
+        // Then
+        assertThat(token.getBlob()).isEqualTo(legacy.getBlob());
+        assertThat(token.<String>getValue(SessionTokenField.LATEST_ACCESS_TIME.getField())).isEqualTo("1376308558");
+    }
+
+    @Test
+    public void shouldInsertLatestAccessTimeBeforeDeserialising() throws Exception {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), "12345");
+        token.setBlob("{\"creationTime\":1376307674}".getBytes(TokenBlobUtils.ENCODING));
+        given(jsonSerialisation.deserialise(any(byte[].class), eq(InternalSession.class)))
+                .willReturn(mock(InternalSession.class));
+
+        // When
+        adapter.fromToken(token);
+
+        // Then
+        verify(jsonSerialisation).deserialise(
+                "{\"latestAccessTime\":12345,\"creationTime\":1376307674}".getBytes(TokenBlobUtils.ENCODING),
+                InternalSession.class);
+    }
+
+    @Test
+    public void shouldInsertLatestAccessTimeAfterLeadingWhitespace() throws Exception {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), "12345");
+        token.setBlob(" { \"creationTime\":1376307674}".getBytes(TokenBlobUtils.ENCODING));
+        given(jsonSerialisation.deserialise(any(byte[].class), eq(InternalSession.class)))
+                .willReturn(mock(InternalSession.class));
+
+        // When
+        adapter.fromToken(token);
+
+        // Then
+        verify(jsonSerialisation).deserialise(
+                " { \"latestAccessTime\":12345,\"creationTime\":1376307674}".getBytes(TokenBlobUtils.ENCODING),
+                InternalSession.class);
     }
 
     @Test
-    public void shouldIndicateNoValidFieldsInJSON() {
-        assertEquals(-1, adapter.findIndexOfValidField(""));
+    public void shouldNotInsertLatestAccessTimeWhenJSONHasNoFields() throws Exception {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+        token.setAttribute(SessionTokenField.LATEST_ACCESS_TIME.getField(), "12345");
+        token.setBlob("{}".getBytes(TokenBlobUtils.ENCODING));
+        given(jsonSerialisation.deserialise(any(byte[].class), eq(InternalSession.class)))
+                .willReturn(mock(InternalSession.class));
+
+        // When
+        adapter.fromToken(token);
+
+        // Then
+        verify(jsonSerialisation).deserialise("{}".getBytes(TokenBlobUtils.ENCODING), InternalSession.class);
     }
 }
@@ -18,6 +18,7 @@ package org.forgerock.openam.cts.impl;
 
 import static org.fest.assertions.Assertions.*;
 import static org.forgerock.openam.utils.CollectionUtils.*;
+import static org.forgerock.opendj.ldap.spi.LdapPromises.newSuccessfulLdapPromise;
 import static org.mockito.BDDMockito.*;
 import static org.testng.AssertJUnit.*;
 
@@ -30,6 +31,7 @@ import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.utils.LDAPDataConversion;
 import org.forgerock.openam.cts.utils.LdapTokenAttributeConversion;
 import org.forgerock.openam.ldap.LDAPRequests;
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.LdapOperationFailedException;
 import org.forgerock.openam.sm.datalayer.api.query.PartialToken;
 import org.forgerock.openam.sm.datalayer.api.query.QueryBuilder;
@@ -44,10 +46,13 @@ import org.forgerock.opendj.ldap.Entry;
 import org.forgerock.opendj.ldap.Filter;
 import org.forgerock.opendj.ldap.LdapException;
 import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.ldap.requests.AddRequest;
 import org.forgerock.opendj.ldap.requests.DeleteRequest;
 import org.forgerock.opendj.ldap.requests.ModifyRequest;
 import org.forgerock.opendj.ldap.requests.SearchRequest;
 import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.opendj.ldap.responses.SearchResultEntry;
+import org.forgerock.opendj.ldap.spi.LdapPromises;
 import org.forgerock.util.query.QueryFilter;
 import org.forgerock.util.query.QueryFilterVisitor;
 import org.mockito.ArgumentCaptor;
@@ -225,6 +230,113 @@ public class LdapAdapterTest {
         verify(mockConnection).modify(any(ModifyRequest.class));
     }
 
+    @Test
+    public void shouldUseConnectionForAsyncCreate() throws Exception {
+        // Given
+        Token token = new Token("badger", TokenType.SESSION);
+
+        Result successResult = mockSuccessfulResult();
+        given(mockConnection.addAsync(any(AddRequest.class))).willReturn(newSuccessfulLdapPromise(successResult));
+
+        given(mockConversion.getEntry(any(Token.class))).willReturn(mock(Entry.class));
+
+        // When
+        adapter.createAsync(mockConnection, token).getOrThrow();
+
+        // Then
+        verify(mockConnection).addAsync(any(AddRequest.class));
+        verify(mockConnection, never()).add(any(AddRequest.class));
+    }
+
+    @Test
+    public void shouldReturnNullWhenObjectNotFoundForAsyncRead() throws Exception {
+        // Given
+        DN testDN = DN.rootDN();
+        given(mockConversion.generateTokenDN(anyString())).willReturn(testDN);
+
+        LdapException exception = LdapException.newLdapException(ResultCode.NO_SUCH_OBJECT);
+        given(mockConnection.searchSingleEntryAsync(any(SearchRequest.class)))
+                .willReturn(LdapPromises.<SearchResultEntry>newFailedLdapPromise(exception));
+
+        // When
+        Token result = adapter.readAsync(mockConnection, "badger").getOrThrow();
+
+        // Then
+        assertThat(result).isNull();
+    }
+
+    @Test
+    public void shouldDoNothingIfObjectNotFoundDuringAsyncDelete() throws Exception {
+        // Given
+        given(mockConversion.generateTokenDN(anyString())).willReturn(DN.rootDN());
+
+        LdapException exception = LdapException.newLdapException(ResultCode.NO_SUCH_OBJECT);
+        given(mockConnection.deleteAsync(any(DeleteRequest.class)))
+                .willReturn(LdapPromises.<Result>newFailedLdapPromise(exception));
+
+        // When / Then
+        adapter.deleteAsync(mockConnection, "badger").getOrThrow();
+    }
+
+    @Test
+    public void shouldFailAsyncDeleteForAllOtherExceptions() throws Exception {
+        // Given
+        given(mockConversion.generateTokenDN(anyString())).willReturn(DN.rootDN());
+
+        LdapException exception = LdapException.newLdapException(ResultCode.OTHER);
+        given(mockConnection.deleteAsync(any(DeleteRequest.class)))
+                .willReturn(LdapPromises.<Result>newFailedLdapPromise(exception));
+
+        // When / Then
+        try {
+            adapter.deleteAsync(mockConnection, "badger").getOrThrow();
+            fail();
+        } catch (DataLayerException e) {
+            assertThat(e).isInstanceOf(LdapOperationFailedException.class);
+        }
+    }
+
+    @Test
+    public void shouldNotModifyIfNoModificationsOnAsyncUpdate() throws Exception {
+        // Given
+        Token first = new Token("badger", TokenType.OAUTH);
+        Token second = new Token("badger", TokenType.OAUTH);
+
+        LdapDataLayerConfiguration config = mock(LdapDataLayerConfiguration.class);
+        when(config.getTokenStoreRootSuffix()).thenReturn(DN.valueOf("ou=unit-test"));
+        LdapTokenAttributeConversion conversion = new LdapTokenAttributeConversion(new LDAPDataConversion(), config);
+        adapter = new LdapAdapter(conversion, mockQueryVisitor, mockQueryFactory);
+
+        // When
+        boolean updated = adapter.updateAsync(mockConnection, first, second).getOrThrow();
+
+        // Then
+        assertThat(updated).isFalse();
+        verify(mockConnection, never()).modifyAsync(any(ModifyRequest.class));
+    }
+
+    @Test
+    public void shouldPerformAsyncUpdate() throws Exception {
+        // Given
+        Token first = new Token("weasel", TokenType.OAUTH);
+        Token second = new Token("badger", TokenType.OAUTH);
+
+        Result successResult = mockSuccessfulResult();
+        given(mockConnection.modifyAsync(any(ModifyRequest.class))).willReturn(newSuccessfulLdapPromise(successResult));
+
+        LdapDataLayerConfiguration config = mock(LdapDataLayerConfiguration.class);
+        when(config.getTokenStoreRootSuffix()).thenReturn(DN.valueOf("ou=unit-test"));
+        LdapTokenAttributeConversion conversion = new LdapTokenAttributeConversion(new LDAPDataConversion(), config);
+        adapter = new LdapAdapter(conversion, mockQueryVisitor, mockQueryFactory);
+
+        // When
+        boolean updated = adapter.updateAsync(mockConnection, first, second).getOrThrow();
+
+        // Then
+        assertThat(updated).isTrue();
+        verify(mockConnection).modifyAsync(any(ModifyRequest.class));
+    }
+
     @Test
     public void shouldQuery() throws Exception {
         // Given
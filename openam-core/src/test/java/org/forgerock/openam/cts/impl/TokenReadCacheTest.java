@@ -0,0 +1,151 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.Calendar;
+
+import org.forgerock.openam.cts.api.tokens.Token;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
+import org.forgerock.openam.tokens.CoreTokenField;
+import org.forgerock.openam.tokens.TokenType;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.identity.shared.debug.Debug;
+
+public class TokenReadCacheTest {
+
+    private CTSOperationsMonitoringStore monitoringStore;
+    private TokenReadCache cache;
+
+    @BeforeMethod
+    public void setup() {
+        monitoringStore = mock(CTSOperationsMonitoringStore.class);
+        cache = new TokenReadCache(100, 60000L, monitoringStore, mock(Debug.class));
+    }
+
+    @Test
+    public void shouldBeDisabledWhenSizeIsZero() {
+        TokenReadCache disabled = new TokenReadCache(0, 60000L, monitoringStore, mock(Debug.class));
+        disabled.put(token("badger"), disabled.getVersion("badger"));
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(disabled.get("badger")).isNull();
+    }
+
+    @Test
+    public void shouldReturnCopyOfCachedToken() {
+        Token token = token("badger");
+        cache.put(token, cache.getVersion("badger"));
+
+        Token result = cache.get("badger");
+
+        assertThat(result).isNotSameAs(token);
+        assertThat(result.getTokenId()).isEqualTo("badger");
+        verify(monitoringStore).addTokenCacheRead(true);
+    }
+
+    @Test
+    public void shouldNotShareStateWithTokenPutInCache() {
+        Token token = token("badger");
+        token.setBlob(new byte[] {1, 2, 3});
+        cache.put(token, cache.getVersion("badger"));
+
+        token.setBlob(new byte[] {4});
+        token.setAttribute(CoreTokenField.STRING_ONE, "changed");
+
+        Token result = cache.get("badger");
+        assertThat(result.getBlob()).isEqualTo(new byte[] {1, 2, 3});
+        assertThat(result.<String>getValue(CoreTokenField.STRING_ONE)).isNull();
+    }
+
+    @Test
+    public void shouldNotShareStateWithTokenReturnedFromCache() {
+        Token token = token("badger");
+        token.setBlob(new byte[] {1, 2, 3});
+        Calendar expiry = Calendar.getInstance();
+        expiry.add(Calendar.MINUTE, 1);
+        token.setExpiryTimestamp(expiry);
+        cache.put(token, cache.getVersion("badger"));
+
+        Token first = cache.get("badger");
+        first.getBlob()[0] = 9;
+        first.getExpiryTimestamp().add(Calendar.MINUTE, 5);
+        first.setAttribute(CoreTokenField.STRING_ONE, "changed");
+
+        Token second = cache.get("badger");
+        assertThat(second.getBlob()).isEqualTo(new byte[] {1, 2, 3});
+        assertThat(second.getExpiryTimestamp().getTimeInMillis()).isEqualTo(token.getExpiryTimestamp().getTimeInMillis());
+        assertThat(second.<String>getValue(CoreTokenField.STRING_ONE)).isNull();
+    }
+
+    @Test
+    public void shouldRecordMiss() {
+        assertThat(cache.get("badger")).isNull();
+        verify(monitoringStore).addTokenCacheRead(false);
+    }
+
+    @Test
+    public void shouldRemoveTokenWhenChanged() {
+        cache.put(token("badger"), cache.getVersion("badger"));
+
+        cache.objectChanged("badger");
+
+        assertThat(cache.get("badger")).isNull();
+        verify(monitoringStore).addTokenCacheInvalidation();
+    }
+
+    @Test
+    public void shouldNotCacheTokenInvalidatedWhileBeingRead() {
+        long version = cache.getVersion("badger");
+        cache.invalidate("badger");
+
+        cache.put(token("badger"), version);
+
+        assertThat(cache.get("badger")).isNull();
+    }
+
+    @Test
+    public void shouldClearCacheWhenConnectionLost() {
+        cache.put(token("badger"), cache.getVersion("badger"));
+        cache.put(token("weasel"), cache.getVersion("weasel"));
+
+        cache.connectionLost();
+
+        assertThat(cache.get("badger")).isNull();
+        assertThat(cache.get("weasel")).isNull();
+    }
+
+    @Test
+    public void shouldNotCacheExpiredToken() {
+        Token token = token("badger");
+        Calendar expired = Calendar.getInstance();
+        expired.add(Calendar.MINUTE, -1);
+        token.setExpiryTimestamp(expired);
+
+        cache.put(token, cache.getVersion("badger"));
+
+        assertThat(cache.get("badger")).isNull();
+    }
+
+    private static Token token(String tokenId) {
+        return new Token(tokenId, TokenType.SESSION);
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.query.reaper;
 
@@ -22,6 +22,8 @@ import static org.mockito.BDDMockito.isNull;
 import static org.mockito.BDDMockito.mock;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -30,7 +32,6 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Iterator;
 
-import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.sm.datalayer.api.query.QueryBuilder;
 import org.forgerock.openam.sm.datalayer.api.query.QueryFactory;
@@ -44,7 +45,6 @@ import org.testng.annotations.Test;
 public class ReaperImplTest {
 
     private QueryFactory<Connection, Filter> mockFactory;
-    private CoreTokenConfig mockConfig;
     private ReaperImpl<Connection, Filter> impl;
     private QueryBuilder<Connection, Filter> mockBuilder;
     private Connection mockConnection;
@@ -68,10 +68,29 @@ public class ReaperImplTest {
 
         mockConnection = mock(Connection.class);
 
-        mockConfig = mock(CoreTokenConfig.class);
-        given(mockConfig.getCleanupPageSize()).willReturn(1);
+        impl = new ReaperImpl<Connection, Filter>(mockFactory, null, Calendar.getInstance(), 1);
+    }
+
+    @Test
+    public void shouldQueryOnlyTokensExpiredBeforeTheUpperBound() {
+        verify(mockQueryFilterConverter).visitLessThanFilter((Void) isNull(), eq(CoreTokenField.EXPIRY_DATE),
+                any(Calendar.class));
+        verify(mockQueryFilterConverter, never()).visitGreaterThanOrEqualToFilter((Void) isNull(),
+                any(CoreTokenField.class), any());
+    }
+
+    @Test
+    public void shouldQueryTokensExpiredWithinTheBoundsOfAPartition() {
+        // Given
+        Calendar expiredAfter = Calendar.getInstance();
+        Calendar expiredBefore = Calendar.getInstance();
+        given(mockQueryFilterConverter.visitAndFilter((Void) isNull(), anyList())).willReturn(Filter.alwaysTrue());
 
-        impl = new ReaperImpl<Connection, Filter>(mockFactory, mockConfig);
+        // When
+        new ReaperImpl<Connection, Filter>(mockFactory, expiredAfter, expiredBefore, 1);
+
+        // Then
+        verify(mockQueryFilterConverter).visitAndFilter((Void) isNull(), anyList());
     }
 
     @Test (expectedExceptions = NullPointerException.class)
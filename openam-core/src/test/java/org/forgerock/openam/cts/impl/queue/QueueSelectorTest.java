@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.queue;
 
@@ -51,4 +51,35 @@ public class QueueSelectorTest {
             assertThat(select).isGreaterThanOrEqualTo(0);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldNotReturnNegativeNumberForMinimumHashCode() {
+        // "polygenelubricants".hashCode() == Integer.MIN_VALUE
+        assertThat(QueueSelector.select("polygenelubricants", 7)).isGreaterThanOrEqualTo(0);
+    }
+
+    @Test
+    public void shouldDistributeEvenlyWhenQueuesAreNotPowerOfTwo() {
+        int queues = 12;
+        int[] counts = new int[queues];
+        for (int ii = 0; ii < 12000; ii++) {
+            counts[QueueSelector.select("token-" + ii, queues)]++;
+        }
+        for (int count : counts) {
+            assertThat(count).isGreaterThan(800).isLessThan(1200);
+        }
+    }
+
+    @Test
+    public void shouldOnlyMoveSmallProportionOfTokensWhenQueueIsAdded() {
+        int moved = 0;
+        for (int ii = 0; ii < 10000; ii++) {
+            String id = Integer.toString(ii);
+            if (QueueSelector.select(id, 16) != QueueSelector.select(id, 17)) {
+                moved++;
+            }
+        }
+        // Expected proportion is 1/17, roughly 588 of 10000
+        assertThat(moved).isLessThan(1000);
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.impl.queue.config;
 
@@ -71,16 +71,4 @@ public class CTSQueueConfigurationTest {
         }
         assertThat(result).isNotNull();
     }
-
-    @Test
-    public void shouldFindPowerOfTwo() {
-        int value = 64;
-        assertThat(CTSQueueConfiguration.findPowerOfTwo(value)).isEqualTo(value);
-    }
-
-    @Test
-    public void shouldFindPowerOfTwoLessThanStartingValue() {
-        int value = 20;
-        assertThat(CTSQueueConfiguration.findPowerOfTwo(value)).isEqualTo(16);
-    }
-}
\ No newline at end of file
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2015 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring;
@@ -21,8 +21,10 @@ import org.forgerock.openam.cts.CTSOperation;
 import org.forgerock.openam.tokens.TokenType;
 import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.monitoring.impl.CTSMonitoringStoreImpl;
+import org.forgerock.openam.cts.monitoring.impl.cache.TokenCacheStore;
 import org.forgerock.openam.cts.monitoring.impl.connections.ConnectionStore;
 import org.forgerock.openam.cts.monitoring.impl.operations.TokenOperationsStore;
+import org.forgerock.openam.cts.monitoring.impl.queue.TaskQueueStore;
 import org.forgerock.openam.cts.monitoring.impl.reaper.ReaperMonitor;
 import org.mockito.Matchers;
 import org.mockito.invocation.InvocationOnMock;
@@ -46,6 +48,8 @@ public class CTSMonitoringStoreImplTest {
     private TokenOperationsStore tokenOperationsStore;
     private ReaperMonitor reaperMonitor;
     private ConnectionStore connectionStore;
+    private TaskQueueStore taskQueueStore;
+    private TokenCacheStore tokenCacheStore;
 
     @BeforeMethod
     public void setUp() {
@@ -55,12 +59,16 @@ public class CTSMonitoringStoreImplTest {
         final Debug debug = mock(Debug.class);
         reaperMonitor = mock(ReaperMonitor.class);
         connectionStore = mock(ConnectionStore.class);
+        taskQueueStore = mock(TaskQueueStore.class);
+        tokenCacheStore = mock(TokenCacheStore.class);
 
         ctsOperationsMonitoringStore = new CTSMonitoringStoreImpl(
                 executorService,
                 tokenOperationsStore,
                 reaperMonitor,
                 connectionStore,
+                taskQueueStore,
+                tokenCacheStore,
                 debug);
         ctsReaperMonitoringStore = (CTSReaperMonitoringStore) ctsOperationsMonitoringStore;
 
@@ -283,4 +291,44 @@ public class CTSMonitoringStoreImplTest {
         //Then
         assertEquals(result, 2.0D);
     }
+
+    @Test
+    public void shouldAddQueueOperation() {
+
+        //Given
+        int queue = 3;
+        int depth = 12;
+        long waitTime = 5;
+
+        //When
+        ctsOperationsMonitoringStore.addQueueOperation(queue, depth, waitTime);
+
+        //Then
+        verify(taskQueueStore).addQueueOperation(queue, depth, waitTime);
+    }
+
+    @Test
+    public void shouldGetQueueDepth() {
+
+        //Given
+        given(taskQueueStore.getQueueDepth(2)).willReturn(7);
+
+        //When
+        int result = ctsOperationsMonitoringStore.getQueueDepth(2);
+
+        //Then
+        assertEquals(result, 7);
+    }
+
+    @Test
+    public void shouldAddTokenCacheRead() {
+
+        //Given
+
+        //When
+        ctsOperationsMonitoringStore.addTokenCacheRead(true);
+
+        //Then
+        verify(tokenCacheStore).addRead(true);
+    }
 }
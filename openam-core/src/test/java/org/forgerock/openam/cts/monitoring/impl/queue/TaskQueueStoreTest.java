@@ -0,0 +1,80 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.cts.monitoring.impl.queue;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TaskQueueStoreTest {
+
+    private TaskQueueStore store;
+
+    @BeforeMethod
+    public void setUp() {
+        store = new TaskQueueStore();
+    }
+
+    @Test
+    public void shouldReturnZeroForUnknownQueue() {
+
+        //Given
+
+        //When
+        int depth = store.getQueueDepth(4);
+        double waitTime = store.getAverageQueueWaitTime(4);
+
+        //Then
+        assertEquals(depth, 0);
+        assertEquals(waitTime, 0D);
+    }
+
+    @Test
+    public void shouldTrackLatestAndMaximumDepth() {
+
+        //Given
+        store.addQueueOperation(1, 10, 0);
+        store.addQueueOperation(1, 3, 0);
+
+        //When
+        int depth = store.getQueueDepth(1);
+        int maximumDepth = store.getMaximumQueueDepth(1);
+
+        //Then
+        assertEquals(depth, 3);
+        assertEquals(maximumDepth, 10);
+    }
+
+    @Test
+    public void shouldTrackWaitTimePerQueue() {
+
+        //Given
+        store.addQueueOperation(0, 1, 10);
+        store.addQueueOperation(0, 1, 30);
+        store.addQueueOperation(1, 1, 100);
+
+        //When
+        double averageWaitTime = store.getAverageQueueWaitTime(0);
+        long maximumWaitTime = store.getMaximumQueueWaitTime(0);
+
+        //Then
+        assertEquals(averageWaitTime, 20D);
+        assertEquals(maximumWaitTime, 30L);
+        assertEquals(store.getQueueCount(), 2);
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.cts.monitoring.impl.reaper;
@@ -73,4 +73,31 @@ public class ReaperMonitorTest {
         //Then
         assertEquals(result, 12.5D);
     }
+
+    @Test
+    public void shouldGetThroughputOfReaperRuns() {
+
+        //Given
+        reaperMonitor.add(1000, 2000, 100);
+        reaperMonitor.add(5000, 3000, 400);
+
+        //When
+        double result = reaperMonitor.getThroughput();
+
+        //Then
+        assertEquals(result, 100D);
+    }
+
+    @Test
+    public void shouldTrackBacklog() {
+
+        //Given
+        reaperMonitor.setBacklog(42);
+
+        //When
+        long result = reaperMonitor.getBacklog();
+
+        //Then
+        assertEquals(result, 42L);
+    }
 }
@@ -11,36 +11,53 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2013-2014 ForgeRock AS.
+ * Copyright 2013-2016 ForgeRock AS.
  */
 package org.forgerock.openam.cts.reaper;
 
 import com.sun.identity.shared.debug.Debug;
+import org.forgerock.openam.cts.CoreTokenConfig;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.cts.impl.query.reaper.ReaperQuery;
 import org.forgerock.openam.cts.impl.query.reaper.ReaperQueryFactory;
 import org.forgerock.openam.cts.monitoring.CTSReaperMonitoringStore;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.verify;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 
 public class CTSReaperTest {
+    private static final long WIDTH = 60000L;
+
     private CTSReaper reaper;
     private TokenDeletion mockTokenDeletion;
     private CTSReaperMonitoringStore monitoringStore;
     private ReaperQueryFactory mockQueryFactory;
     private ReaperQuery mockQuery;
+    private CoreTokenConfig mockConfig;
+    private ExecutorService partitionExecutor;
 
     @BeforeMethod
     public void setUp() throws Exception {
@@ -49,15 +66,28 @@ public class CTSReaperTest {
 
         mockQuery = mock(ReaperQuery.class);
         mockQueryFactory = mock(ReaperQueryFactory.class);
-        given(mockQueryFactory.getQuery()).willReturn(mockQuery);
+        given(mockQueryFactory.getQuery(any(Calendar.class), any(Calendar.class), anyInt())).willReturn(mockQuery);
+
+        mockConfig = mock(CoreTokenConfig.class);
+        given(mockConfig.getCleanupPageSize()).willReturn(1000);
+        given(mockConfig.getCleanupMinPageSize()).willReturn(100);
+        given(mockConfig.getCleanupMaxPageSize()).willReturn(10000);
+        given(mockConfig.getCleanupTargetPageLatency()).willReturn(5000);
+        given(mockConfig.getCleanupPartitions()).willReturn(1);
+        given(mockConfig.getCleanupPartitionWidth()).willReturn((int) WIDTH);
+        given(mockConfig.getCleanupMaxPagesInFlight()).willReturn(16);
 
-        reaper = new CTSReaper(mockQueryFactory, mockTokenDeletion, monitoringStore, mock(Debug.class));
+        reaper = new CTSReaper(mockQueryFactory, mockTokenDeletion, monitoringStore, mockConfig, null,
+                mock(Debug.class));
     }
 
     @AfterMethod
     public void tearDown() {
         // Clear the interrupt status.
         Thread.interrupted();
+        if (partitionExecutor != null) {
+            partitionExecutor.shutdownNow();
+        }
     }
 
     @Test
@@ -67,6 +97,18 @@ public class CTSReaperTest {
         verify(mockQuery).nextPage();
     }
 
+    @Test
+    public void shouldQueryAllExpiredTokensWithoutPartitions() throws CoreTokenException {
+        // Given
+        given(mockQuery.nextPage()).willReturn(null);
+
+        // When
+        reaper.run();
+
+        // Then
+        verify(mockQueryFactory).getQuery((Calendar) isNull(), any(Calendar.class), eq(1000));
+    }
+
     @Test
     public void shouldSignalTokensToTokenDeletion() throws CoreTokenException {
         // Given
@@ -82,7 +124,7 @@ public class CTSReaperTest {
     }
 
     @Test
-    public void shouldWaitForAllCountDownLatchesBeforeContinuing() throws CoreTokenException, InterruptedException {
+    public void shouldQueueAllPagesBeforeWaitingForDeletions() throws CoreTokenException, InterruptedException {
         // Given
         CountDownLatch one = mock(CountDownLatch.class);
         CountDownLatch two = mock(CountDownLatch.class);
@@ -97,6 +139,7 @@ public class CTSReaperTest {
         reaper.run();
 
         // Then
+        verify(mockTokenDeletion, times(3)).deleteBatch(tokens);
         verify(one).await();
         verify(two).await();
         verify(three).await();
@@ -116,4 +159,165 @@ public class CTSReaperTest {
         // Then
         verify(mockTokenDeletion, times(0)).deleteBatch(eq(tokens));
     }
+
+    @Test
+    public void shouldReportBacklogWhilePagesArePending() throws CoreTokenException {
+        // Given
+        Collection<String> tokens = Arrays.asList("badger", "weasel", "ferret");
+        given(mockQuery.nextPage()).willReturn(tokens).willReturn(null);
+        given(mockTokenDeletion.deleteBatch(anyCollection())).willReturn(new CountDownLatch(0));
+
+        // When
+        reaper.run();
+
+        // Then
+        verify(monitoringStore).updateReaperBacklog(3L);
+        verify(monitoringStore, times(2)).updateReaperBacklog(0L);
+    }
+
+    @Test
+    public void shouldNotQueueMorePagesThanTheLimitForDeletion() throws Exception {
+        // Given
+        given(mockConfig.getCleanupMaxPagesInFlight()).willReturn(1);
+        reaper = new CTSReaper(mockQueryFactory, mockTokenDeletion, monitoringStore, mockConfig, null,
+                mock(Debug.class));
+        CountDownLatch one = mock(CountDownLatch.class);
+        CountDownLatch two = mock(CountDownLatch.class);
+        Collection<String> first = Arrays.asList("badger", "weasel");
+        Collection<String> second = Arrays.asList("ferret", "stoat");
+        given(mockQuery.nextPage()).willReturn(first, second, (Collection<String>) null);
+        given(mockTokenDeletion.deleteBatch(anyCollection())).willReturn(one).willReturn(two);
+
+        // When
+        reaper.run();
+
+        // Then
+        InOrder inOrder = inOrder(mockTokenDeletion, one, two);
+        inOrder.verify(mockTokenDeletion).deleteBatch(first);
+        inOrder.verify(one).await();
+        inOrder.verify(mockTokenDeletion).deleteBatch(second);
+        inOrder.verify(two).await();
+    }
+
+    @Test
+    public void shouldSearchEachPartitionOfTheExpiredRange() throws Exception {
+        // Given
+        givenPartitions(3);
+        // Tokens expired before now - WIDTH and now - 2 * WIDTH, but not before now - 3 * WIDTH
+        given(mockQueryFactory.hasExpiredTokens(any(Calendar.class))).willReturn(true, true, false, false);
+        ReaperQuery recent = mock(ReaperQuery.class);
+        ReaperQuery older = mock(ReaperQuery.class);
+        ReaperQuery oldest = mock(ReaperQuery.class);
+        given(mockQueryFactory.getQuery(any(Calendar.class), any(Calendar.class), anyInt()))
+                .willReturn(recent).willReturn(older);
+        given(mockQueryFactory.getQuery((Calendar) isNull(), any(Calendar.class), anyInt())).willReturn(oldest);
+        given(recent.nextPage()).willReturn(Arrays.asList("badger"), (Collection<String>) null);
+        given(older.nextPage()).willReturn(Arrays.asList("weasel"), (Collection<String>) null);
+        given(oldest.nextPage()).willReturn(Arrays.asList("ferret", "stoat"), (Collection<String>) null);
+        given(mockTokenDeletion.deleteBatch(anyCollection())).willReturn(new CountDownLatch(0));
+
+        // When
+        reaper.run();
+
+        // Then
+        ArgumentCaptor<Calendar> after = ArgumentCaptor.forClass(Calendar.class);
+        ArgumentCaptor<Calendar> before = ArgumentCaptor.forClass(Calendar.class);
+        verify(mockQueryFactory, times(3)).getQuery(after.capture(), before.capture(), eq(1000));
+        long now = Collections.max(Arrays.asList(millis(before)));
+        assertThat(millis(before)).containsOnly(now, now - WIDTH, now - 2 * WIDTH);
+        assertThat(millis(after)).containsOnly(now - WIDTH, now - 2 * WIDTH, null);
+        verify(monitoringStore).addReaperRun(anyLong(), anyLong(), eq(4L));
+    }
+
+    @Test
+    public void shouldSearchOnePartitionWhenNoTokensExpiredBeforeThePartitionWidth() throws Exception {
+        // Given
+        givenPartitions(3);
+        given(mockQuery.nextPage()).willReturn(null);
+
+        // When
+        reaper.run();
+
+        // Then
+        verify(mockQueryFactory).hasExpiredTokens(any(Calendar.class));
+        verify(mockQueryFactory).getQuery((Calendar) isNull(), any(Calendar.class), anyInt());
+    }
+
+    @Test
+    public void shouldPartitionTheRangeSinceThePreviousRunWithoutProbing() throws Exception {
+        // Given
+        givenPartitions(3);
+        given(mockQuery.nextPage()).willReturn(null);
+        reaper.run();
+        ArgumentCaptor<Calendar> previous = ArgumentCaptor.forClass(Calendar.class);
+        verify(mockQueryFactory).getQuery((Calendar) isNull(), previous.capture(), anyInt());
+        Thread.sleep(10);
+
+        // When
+        reaper.run();
+
+        // Then
+        verify(mockQueryFactory).hasExpiredTokens(any(Calendar.class));
+        ArgumentCaptor<Calendar> after = ArgumentCaptor.forClass(Calendar.class);
+        ArgumentCaptor<Calendar> before = ArgumentCaptor.forClass(Calendar.class);
+        verify(mockQueryFactory, times(2)).getQuery(after.capture(), before.capture(), anyInt());
+        assertThat(millis(after)).containsOnly((Long) null);
+        assertThat(before.getAllValues().get(1).getTimeInMillis())
+                .isGreaterThan(previous.getValue().getTimeInMillis());
+    }
+
+    @Test
+    public void shouldProbeForOldestExpiredTokenAgainAfterFailedRun() throws Exception {
+        // Given
+        given(mockQuery.nextPage()).willThrow(new CoreTokenException("test")).willReturn(null);
+        reaper.run();
+
+        // When
+        reaper.run();
+
+        // Then
+        verify(mockQueryFactory, times(2)).hasExpiredTokens(any(Calendar.class));
+    }
+
+    @Test
+    public void shouldNotAdaptPageSizeWhenLessThanOnePageWasFound() throws CoreTokenException {
+        // Given
+        given(mockQuery.nextPage()).willReturn(Arrays.asList("badger"), (Collection<String>) null);
+        given(mockTokenDeletion.deleteBatch(anyCollection())).willReturn(new CountDownLatch(0));
+
+        // When
+        reaper.run();
+
+        // Then
+        assertThat(reaper.getPageSize()).isEqualTo(1000);
+    }
+
+    @Test
+    public void shouldGrowPageSizeWhenTokensAreDeletedQuickly() throws CoreTokenException {
+        // Given
+        given(mockQuery.nextPage()).willReturn(Collections.nCopies(1000, "badger"), (Collection<String>) null);
+        given(mockTokenDeletion.deleteBatch(anyCollection())).willReturn(new CountDownLatch(0));
+
+        // When
+        reaper.run();
+
+        // Then
+        assertThat(reaper.getPageSize()).isEqualTo(10000);
+    }
+
+    private void givenPartitions(int partitions) {
+        given(mockConfig.getCleanupPartitions()).willReturn(partitions);
+        partitionExecutor = Executors.newFixedThreadPool(partitions - 1);
+        reaper = new CTSReaper(mockQueryFactory, mockTokenDeletion, monitoringStore, mockConfig, partitionExecutor,
+                mock(Debug.class));
+    }
+
+    private static Long[] millis(ArgumentCaptor<Calendar> captor) {
+        Long[] times = new Long[captor.getAllValues().size()];
+        for (int i = 0; i < times.length; i++) {
+            Calendar calendar = captor.getAllValues().get(i);
+            times[i] = calendar == null ? null : calendar.getTimeInMillis();
+        }
+        return times;
+    }
 }
@@ -46,6 +46,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -166,6 +167,30 @@ public class JSONSerialisationTest extends GuiceTestCase {
         assertThat(is.getID()).isEqualTo(is2.getID());
     }
 
+    @Test(dataProvider = "complex")
+    public void byteSerialisationMatchesStringSerialisation(String path) throws Exception {
+        InternalSession is = serialization.deserialise(getJSON(path), InternalSession.class);
+        byte[] serialised = serialization.serialiseToBytes(is);
+        assertThat(serialised).isEqualTo(serialization.serialise(is).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void basicSessionByteSerializationWorks() throws Exception {
+        byte[] serialised = serialization.serialiseToBytes(new InternalSession());
+        assertThat(serialised).isEqualTo(getJSON("/json/basic-session.json").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(dataProvider = "complex")
+    public void internalSessionByteDeserialisationWorks(String path) throws Exception {
+        InternalSession is = serialization.deserialise(getJSON(path).getBytes(StandardCharsets.UTF_8),
+                InternalSession.class);
+        InternalSession expected = serialization.deserialise(getJSON(path), InternalSession.class);
+        assertThat(is.getID()).isEqualTo(expected.getID());
+        assertThat(is.getSessionHandle()).isEqualTo(expected.getSessionHandle());
+        assertThat(Collections.list(is.getPropertyNames())).hasSize(23);
+        assertThat(serialization.serialise(is)).isEqualTo(serialization.serialise(expected));
+    }
+
     @Test
     public void shouldChangeAttributeName() {
         String name = "badger";
@@ -18,6 +18,9 @@ package org.forgerock.openam.cts.utils.blob.strategies;
 import org.HdrHistogram.AbstractHistogram;
 import org.HdrHistogram.AtomicHistogram;
 import org.forgerock.openam.cts.utils.blob.TokenStrategyFailedException;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.CompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.DeflateCompressionCodec;
+import org.forgerock.openam.cts.utils.blob.strategies.compression.LZ4CompressionCodec;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -98,32 +101,146 @@ public class CompressionStrategyTest {
         assertThat(compression.reverse(compression.perform(data))).isEqualTo(data);
     }
 
+    @DataProvider
+    public Object[][] codecs() {
+        return new Object[][]{
+                { new DeflateCompressionCodec() },
+                { new LZ4CompressionCodec() }
+        };
+    }
+
+    @Test(dataProvider = "codecs")
+    public void shouldCompressContentsWithCodec(CompressionCodec codec) throws TokenStrategyFailedException {
+        // Given
+        compression = new CompressionStrategy(codec);
+
+        // When
+        byte[] result = compression.perform(data);
+
+        // Then
+        assertThat(result.length).isLessThan(data.length);
+        assertThat(result[0]).isEqualTo(CompressionStrategy.HEADER_MARKER);
+        assertThat(result[1]).isEqualTo(CompressionStrategy.FORMAT_VERSION);
+        assertThat(result[2]).isEqualTo(codec.getId());
+    }
+
+    @Test(dataProvider = "codecs")
+    public void shouldDecompressContentsCompressedWithCodec(CompressionCodec codec)
+            throws TokenStrategyFailedException {
+        // Given
+        compression = new CompressionStrategy(codec);
+
+        // When
+        byte[] result = compression.reverse(compression.perform(data));
+
+        // Then
+        assertThat(result).isEqualTo(data);
+    }
+
+    @Test(dataProvider = "codecs")
+    public void shouldDecompressLegacyGZipContentsWhenCodecConfigured(CompressionCodec codec)
+            throws TokenStrategyFailedException {
+        // Given
+        byte[] legacy = new CompressionStrategy().perform(data);
+        compression = new CompressionStrategy(codec);
+
+        // When
+        byte[] result = compression.reverse(legacy);
+
+        // Then
+        assertThat(result).isEqualTo(data);
+    }
+
+    @Test(dataProvider = "codecs")
+    public void shouldDecompressCodecContentsWhenLegacyGZipConfigured(CompressionCodec codec)
+            throws TokenStrategyFailedException {
+        // Given
+        byte[] compressed = new CompressionStrategy(codec).perform(data);
+
+        // When
+        byte[] result = compression.reverse(compressed);
+
+        // Then
+        assertThat(result).isEqualTo(data);
+    }
+
+    @Test(expectedExceptions = TokenStrategyFailedException.class)
+    public void shouldRejectUnsupportedFormatVersion() throws TokenStrategyFailedException {
+        // Given
+        byte[] compressed = new CompressionStrategy(new LZ4CompressionCodec()).perform(data);
+        compressed[1] = CompressionStrategy.FORMAT_VERSION + 1;
+
+        // When
+        compression.reverse(compressed);
+    }
+
+    @Test(expectedExceptions = TokenStrategyFailedException.class)
+    public void shouldRejectUnknownCodec() throws TokenStrategyFailedException {
+        // Given
+        byte[] compressed = new CompressionStrategy(new LZ4CompressionCodec()).perform(data);
+        compressed[2] = 0x7F;
+
+        // When
+        compression.reverse(compressed);
+    }
+
+    @Test(dataProvider = "codecs", expectedExceptions = TokenStrategyFailedException.class)
+    public void shouldRejectLengthBeyondMaximumCompressionRatio(CompressionCodec codec)
+            throws TokenStrategyFailedException {
+        // Given
+        byte[] compressed = new CompressionStrategy(codec).perform(data);
+        int claimedLength = (compressed.length - CompressionStrategy.HEADER_LENGTH)
+                * CompressionStrategy.MAX_COMPRESSION_RATIO + 1;
+        compressed[3] = (byte) (claimedLength >>> 24);
+        compressed[4] = (byte) (claimedLength >>> 16);
+        compressed[5] = (byte) (claimedLength >>> 8);
+        compressed[6] = (byte) claimedLength;
+
+        // When
+        compression.reverse(compressed);
+    }
+
+    @Test
+    public void shouldSelectCodecByName() {
+        assertThat(CompressionStrategy.getCodec("lz4")).isInstanceOf(LZ4CompressionCodec.class);
+        assertThat(CompressionStrategy.getCodec("DEFLATE")).isInstanceOf(DeflateCompressionCodec.class);
+        assertThat(CompressionStrategy.getCodec("gzip")).isNull();
+        assertThat(CompressionStrategy.getCodec(null)).isNull();
+    }
+
     @DataProvider
     public Object[][] numThreads() {
         return new Object[][]{
-                { 1 },
-                { 2 },
-                { 5 },
-                { 10 },
-                { 25 },
-                { 50 },
-                { 100 }
+                { 1, null },
+                { 2, null },
+                { 5, null },
+                { 10, null },
+                { 25, null },
+                { 50, null },
+                { 100, null },
+                { 1, new DeflateCompressionCodec() },
+                { 10, new DeflateCompressionCodec() },
+                { 100, new DeflateCompressionCodec() },
+                { 1, new LZ4CompressionCodec() },
+                { 10, new LZ4CompressionCodec() },
+                { 100, new LZ4CompressionCodec() }
         };
     }
 
     /**
-     * Tests performance of CompressionStrategy as a factor of the number of threads.
+     * Tests performance of CompressionStrategy as a factor of the number of threads and the codec in use.
      * Disabled by default to avoid slowing down the build.
      *
      * @param numThreads the number of threads to concurrently hammer the CompressionStrategy.
+     * @param codec the codec to compress with, or null for the legacy GZip format.
      */
     @Test(dataProvider = "numThreads", enabled = false)
-    public void testThroughPut(int numThreads) throws Exception {
+    public void testThroughPut(int numThreads, CompressionCodec codec) throws Exception {
         final int TOTAL_ROUNDS = 100000;
         final int roundsPerThread = TOTAL_ROUNDS / numThreads;
         // Given
         final Set<Throwable> errors = Collections.newSetFromMap(new ConcurrentHashMap<Throwable, Boolean>());
-        final MonitoredCompressionStrategy strategy = new MonitoredCompressionStrategy();
+        final MonitoredCompressionStrategy strategy = new MonitoredCompressionStrategy(codec);
         final Executor executor = Executors.newFixedThreadPool(numThreads);
 
         final byte[] dataToCompress = JSON_SAMPLE.getBytes(Charset.forName("UTF-8"));
@@ -215,6 +332,10 @@ public class CompressionStrategyTest {
         private final AtomicHistogram performSamples = new AtomicHistogram(10000, 5);
         private final AtomicHistogram reverseSamples = new AtomicHistogram(10000, 5);
 
+        MonitoredCompressionStrategy(CompressionCodec codec) {
+            super(codec);
+        }
+
         @Override
         public byte[] perform(final byte[] data) throws TokenStrategyFailedException {
             // Cannot use System.nanoTime() as it gives invalid results if thread gets scheduled to
@@ -0,0 +1,69 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DeflateCompressionCodecTest {
+
+    private static final byte[] DATA =
+            "{\"maxIdleTime\":30,\"maxSessionTime\":120,\"maxCachingTime\":3,\"sessionState\":1}"
+                    .getBytes(StandardCharsets.UTF_8);
+
+    private DeflateCompressionCodec codec;
+
+    @BeforeMethod
+    public void setUp() {
+        codec = new DeflateCompressionCodec();
+    }
+
+    @Test
+    public void shouldRoundTripDataRepeatedly() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            // Given
+            byte[] compressed = codec.compress(DATA);
+
+            // When
+            byte[] result = codec.decompress(compressed, 0, compressed.length, DATA.length);
+
+            // Then
+            assertThat(result).isEqualTo(DATA);
+        }
+    }
+
+    @Test
+    public void shouldRoundTripEmptyData() throws IOException {
+        // Given
+        byte[] compressed = codec.compress(new byte[0]);
+
+        // When
+        byte[] result = codec.decompress(compressed, 0, compressed.length, 0);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectMalformedData() throws IOException {
+        codec.decompress(new byte[] { 1, 2, 3, 4 }, 0, 4, DATA.length);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.cts.utils.blob.strategies.compression;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class LZ4CompressionCodecTest {
+
+    private LZ4CompressionCodec codec;
+
+    @BeforeMethod
+    public void setUp() {
+        codec = new LZ4CompressionCodec();
+    }
+
+    @DataProvider
+    public Object[][] inputs() {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            json.append("{\"sessionProperty").append(i % 17).append("\":\"value\"},");
+        }
+        byte[] random = new byte[4096];
+        new Random(42).nextBytes(random);
+        byte[] longRun = new byte[70000];
+        Arrays.fill(longRun, (byte) 'a');
+        return new Object[][]{
+                { new byte[0] },
+                { "a".getBytes(StandardCharsets.UTF_8) },
+                { "abcdefghijklm".getBytes(StandardCharsets.UTF_8) },
+                { json.toString().getBytes(StandardCharsets.UTF_8) },
+                { random },
+                { longRun }
+        };
+    }
+
+    @Test(dataProvider = "inputs")
+    public void shouldRoundTripData(byte[] data) throws IOException {
+        // Given
+        byte[] compressed = codec.compress(data);
+
+        // When
+        byte[] result = codec.decompress(compressed, 0, compressed.length, data.length);
+
+        // Then
+        assertThat(result).isEqualTo(data);
+    }
+
+    @Test
+    public void shouldDecompressFromOffset() throws IOException {
+        // Given
+        byte[] data = "abcabcabcabcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = codec.compress(data);
+        byte[] padded = new byte[compressed.length + 5];
+        System.arraycopy(compressed, 0, padded, 3, compressed.length);
+
+        // When
+        byte[] result = codec.decompress(padded, 3, compressed.length, data.length);
+
+        // Then
+        assertThat(result).isEqualTo(data);
+    }
+
+    @Test
+    public void shouldCompressRepetitiveData() {
+        // Given
+        byte[] data = new byte[10000];
+
+        // When
+        byte[] result = codec.compress(data);
+
+        // Then
+        assertThat(result.length).isLessThan(100);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectTruncatedData() throws IOException {
+        // Given
+        byte[] data = new byte[10000];
+        new Random(42).nextBytes(data);
+        byte[] compressed = codec.compress(data);
+
+        // When
+        codec.decompress(compressed, 0, compressed.length / 2, data.length);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void shouldRejectIncorrectOriginalLength() throws IOException {
+        // Given
+        byte[] data = "abcabcabcabcabcabcabcabcabcabc".getBytes(StandardCharsets.UTF_8);
+        byte[] compressed = codec.compress(data);
+
+        // When
+        codec.decompress(compressed, 0, compressed.length, data.length + 1);
+    }
+}
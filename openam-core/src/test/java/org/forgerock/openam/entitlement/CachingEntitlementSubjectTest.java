@@ -0,0 +1,180 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.entitlement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.identity.entitlement.EntitlementException;
+import com.sun.identity.entitlement.EntitlementSubject;
+import com.sun.identity.entitlement.SubjectAttributesManager;
+import com.sun.identity.entitlement.SubjectDecision;
+
+public class CachingEntitlementSubjectTest {
+
+    private static final String REALM = "/";
+    private static final String RESOURCE = "http://www.example.com:80/index.html";
+    private static final String STAFF = "id=staff,ou=group,dc=openam,dc=forgerock,dc=org";
+
+    private EntitlementSubject backingSubject;
+    private Subject subject;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        backingSubject = mock(EntitlementSubject.class);
+        given(backingSubject.getState()).willReturn("{\"subjectValues\":[\"" + STAFF + "\"]}");
+        given(backingSubject.evaluate(anyString(), any(SubjectAttributesManager.class), any(Subject.class),
+                anyString(), anyMapOf(String.class, Set.class)))
+                .willReturn(new SubjectDecision(true, Collections.<String, Set<String>>emptyMap()));
+        subject = new Subject();
+        PrivilegeEvaluatorContext.setCurrent(new PrivilegeEvaluatorContext(REALM, RESOURCE, "app"));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        PrivilegeEvaluatorContext.setCurrent(null);
+    }
+
+    @Test
+    public void shouldEvaluateEqualSubjectsOnceWithinAnEvaluation() throws Exception {
+        // When
+        for (int i = 0; i < 3; i++) {
+            SubjectDecision decision = new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject,
+                    RESOURCE, null);
+            assertThat(decision.isSatisfied()).isTrue();
+        }
+
+        // Then
+        verify(backingSubject, times(1)).evaluate(REALM, null, subject, RESOURCE, null);
+    }
+
+    @Test
+    public void shouldEvaluateSubjectAgainInANewEvaluation() throws Exception {
+        // Given
+        new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject, RESOURCE, null);
+
+        // When
+        PrivilegeEvaluatorContext.setCurrent(new PrivilegeEvaluatorContext(REALM, RESOURCE, "app"));
+        new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject, RESOURCE, null);
+
+        // Then
+        verify(backingSubject, times(2)).evaluate(REALM, null, subject, RESOURCE, null);
+    }
+
+    @Test
+    public void shouldEvaluateSubjectEveryTimeWithoutContext() throws Exception {
+        // Given
+        PrivilegeEvaluatorContext.setCurrent(null);
+
+        // When
+        new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject, RESOURCE, null);
+        new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject, RESOURCE, null);
+
+        // Then
+        verify(backingSubject, times(2)).evaluate(REALM, null, subject, RESOURCE, null);
+    }
+
+    @Test(expectedExceptions = EntitlementException.class)
+    public void shouldPropagateEvaluationFailure() throws Exception {
+        // Given
+        given(backingSubject.evaluate(REALM, null, subject, RESOURCE, null))
+                .willThrow(new EntitlementException(EntitlementException.UNABLE_TO_RETRIEVE_SUBJECT_ATTRIBUTE));
+
+        // When
+        new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject, RESOURCE, null);
+    }
+
+    @Test
+    public void shouldEvaluateOnceWhenThreadsShareTheContext() throws Exception {
+        // Given
+        final PrivilegeEvaluatorContext context = PrivilegeEvaluatorContext.getCurrent();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger evaluations = new AtomicInteger();
+        given(backingSubject.evaluate(REALM, null, subject, RESOURCE, null)).willAnswer(
+                new Answer<SubjectDecision>() {
+                    @Override
+                    public SubjectDecision answer(InvocationOnMock invocation) throws Throwable {
+                        evaluations.incrementAndGet();
+                        release.await(10, TimeUnit.SECONDS);
+                        return new SubjectDecision(true, Collections.<String, Set<String>>emptyMap());
+                    }
+                });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            // When
+            Future<?>[] results = new Future<?>[4];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = executor.submit(new Callable<SubjectDecision>() {
+                    @Override
+                    public SubjectDecision call() throws Exception {
+                        PrivilegeEvaluatorContext.setCurrent(context);
+                        return new CachingEntitlementSubject(backingSubject).evaluate(REALM, null, subject,
+                                RESOURCE, null);
+                    }
+                });
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            // Then
+            for (Future<?> result : results) {
+                assertThat(((SubjectDecision) result.get(10, TimeUnit.SECONDS)).isSatisfied()).isTrue();
+            }
+            assertThat(evaluations.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldOnlyKnowMembershipsReadForTheEvaluation() {
+        // Given
+        PrivilegeEvaluatorContext context = PrivilegeEvaluatorContext.getCurrent();
+
+        // When
+        context.setSubjectMemberships(Collections.singleton(STAFF.toUpperCase()));
+
+        // Then
+        assertThat(context.isKnownSubjectMembership(STAFF)).isTrue();
+        assertThat(context.isKnownSubjectMembership("id=admins,ou=group,dc=openam,dc=forgerock,dc=org")).isFalse();
+        assertThat(context.isKnownSubjectMembership(null)).isFalse();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.ldap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LDAPAuthStatisticsTest {
+
+    private LDAPAuthStatistics statistics;
+
+    @BeforeMethod
+    public void setUp() {
+        statistics = new LDAPAuthStatistics();
+    }
+
+    @Test
+    public void shouldReportZeroBeforeAnythingIsRecorded() {
+        assertThat(statistics.getConnectionWaitCount()).isEqualTo(0);
+        assertThat(statistics.getAverageConnectionWaitMs()).isEqualTo(0.0d);
+        assertThat(statistics.getBindCount()).isEqualTo(0);
+        assertThat(statistics.getAverageBindTimeMs()).isEqualTo(0.0d);
+        assertThat(statistics.getMaxBindTimeMs()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRecordConnectionWaits() {
+        // When
+        statistics.recordConnectionWait(TimeUnit.MILLISECONDS.toNanos(2));
+        statistics.recordConnectionWait(TimeUnit.MILLISECONDS.toNanos(8));
+
+        // Then
+        assertThat(statistics.getConnectionWaitCount()).isEqualTo(2);
+        assertThat(statistics.getAverageConnectionWaitMs()).isEqualTo(5.0d);
+        assertThat(statistics.getMaxConnectionWaitMs()).isEqualTo(8);
+        assertThat(statistics.getBindCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRecordBinds() {
+        // When
+        statistics.recordBind(TimeUnit.MILLISECONDS.toNanos(30));
+        statistics.recordBind(TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.recordBind(TimeUnit.MILLISECONDS.toNanos(20));
+
+        // Then
+        assertThat(statistics.getBindCount()).isEqualTo(3);
+        assertThat(statistics.getAverageBindTimeMs()).isEqualTo(20.0d);
+        assertThat(statistics.getMaxBindTimeMs()).isEqualTo(30);
+        assertThat(statistics.getConnectionWaitCount()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.ldap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+
+import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.opendj.ldap.ConnectionFactory;
+import org.forgerock.opendj.ldap.LdapException;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.controls.PasswordPolicyErrorType;
+import org.forgerock.opendj.ldap.controls.PasswordPolicyResponseControl;
+import org.forgerock.opendj.ldap.controls.PasswordPolicyWarningType;
+import org.forgerock.opendj.ldap.requests.BindRequest;
+import org.forgerock.opendj.ldap.requests.SearchRequest;
+import org.forgerock.opendj.ldap.responses.Responses;
+import org.forgerock.opendj.ldap.responses.Result;
+import org.forgerock.opendj.ldif.ConnectionEntryReader;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.identity.shared.debug.Debug;
+
+public class LDAPAuthUtilsTest {
+
+    private static final String BASE_DN = "dc=example,dc=com";
+    private static final String USER = "demo";
+    private static final String USER_DN = "uid=demo," + BASE_DN;
+
+    private Connection connection;
+    private Connection adminConnection;
+    private LDAPAuthUtils ldapAuthUtils;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        connection = mock(Connection.class);
+        adminConnection = mock(Connection.class);
+        ConnectionFactory connectionPool = mock(ConnectionFactory.class);
+        ConnectionFactory adminConnectionPool = mock(ConnectionFactory.class);
+        given(connectionPool.getConnection()).willReturn(connection);
+        given(adminConnectionPool.getConnection()).willReturn(adminConnection);
+        given(adminConnection.search(any(SearchRequest.class))).willAnswer(new Answer<ConnectionEntryReader>() {
+            @Override
+            public ConnectionEntryReader answer(InvocationOnMock invocation) throws Throwable {
+                ConnectionEntryReader reader = mock(ConnectionEntryReader.class);
+                given(reader.hasNext()).willReturn(true).willReturn(false);
+                given(reader.isEntry()).willReturn(true);
+                given(reader.readEntry())
+                        .willReturn(Responses.newSearchResultEntry(USER_DN).addAttribute("uid", USER));
+                return reader;
+            }
+        });
+
+        ldapAuthUtils = new LDAPAuthUtils(Collections.singleton("localhost:389"), Collections.<String>emptySet(),
+                null, BASE_DN, mock(Debug.class), connectionPool, adminConnectionPool);
+        ldapAuthUtils.setUserNamingAttribute("uid");
+        ldapAuthUtils.setUserSearchAttribute(Collections.singleton("uid"));
+        ldapAuthUtils.setScope(SearchScope.WHOLE_SUBTREE);
+    }
+
+    @Test
+    public void shouldAuthenticateUser() throws Exception {
+        // Given
+        given(connection.bind(any(BindRequest.class)))
+                .willReturn(Responses.newBindResult(ResultCode.SUCCESS));
+
+        // When
+        ldapAuthUtils.authenticateUser(USER, "password");
+
+        // Then
+        assertThat(ldapAuthUtils.getState()).isEqualTo(ModuleState.SUCCESS);
+        verify(connection).close();
+        verify(adminConnection).close();
+    }
+
+    @Test
+    public void shouldRetryOnceWhenServerIsUnwillingToPerform() throws Exception {
+        // Given
+        given(connection.bind(any(BindRequest.class)))
+                .willThrow(bindFailure(Responses.newResult(ResultCode.UNWILLING_TO_PERFORM)))
+                .willReturn(Responses.newBindResult(ResultCode.SUCCESS));
+
+        // When
+        ldapAuthUtils.authenticateUser(USER, "password");
+
+        // Then
+        assertThat(ldapAuthUtils.getState()).isEqualTo(ModuleState.SUCCESS);
+        verify(adminConnection, times(2)).search(any(SearchRequest.class));
+        verify(connection, times(2)).bind(any(BindRequest.class));
+        verify(connection, times(2)).close();
+    }
+
+    @Test
+    public void shouldNotRetryMoreThanOnceWhenServerIsUnwillingToPerform() throws Exception {
+        // Given
+        given(connection.bind(any(BindRequest.class)))
+                .willThrow(bindFailure(Responses.newResult(ResultCode.UNWILLING_TO_PERFORM)));
+
+        // When
+        try {
+            ldapAuthUtils.authenticateUser(USER, "password");
+            fail("Expected LDAPUtilException");
+        } catch (LDAPUtilException e) {
+            // Then
+            assertThat(e.getResultCode()).isEqualTo(ResultCode.UNWILLING_TO_PERFORM);
+        }
+        verify(connection, times(2)).bind(any(BindRequest.class));
+    }
+
+    @Test
+    public void shouldSetGraceLoginsFromPasswordPolicyControlOfSuccessfulBind() throws Exception {
+        // Given
+        given(connection.bind(any(BindRequest.class))).willReturn(
+                Responses.newBindResult(ResultCode.SUCCESS).addControl(
+                        PasswordPolicyResponseControl.newControl(PasswordPolicyWarningType.GRACE_LOGINS_REMAINING, 2)));
+
+        // When
+        ldapAuthUtils.authenticateUser(USER, "password");
+
+        // Then
+        assertThat(ldapAuthUtils.getState()).isEqualTo(ModuleState.GRACE_LOGINS);
+        assertThat(ldapAuthUtils.getGraceLogins()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldSetAccountLockedFromPasswordPolicyControlOfFailedBind() throws Exception {
+        // Given
+        given(connection.bind(any(BindRequest.class))).willThrow(bindFailure(
+                Responses.newResult(ResultCode.INVALID_CREDENTIALS).addControl(
+                        PasswordPolicyResponseControl.newControl(PasswordPolicyErrorType.ACCOUNT_LOCKED))));
+
+        // When
+        ldapAuthUtils.authenticateUser(USER, "password");
+
+        // Then
+        assertThat(ldapAuthUtils.getState()).isEqualTo(ModuleState.ACCOUNT_LOCKED);
+        verify(connection).bind(any(BindRequest.class));
+    }
+
+    @Test
+    public void shouldRejectInvalidCredentialsWithoutPasswordPolicyControl() throws Exception {
+        // Given
+        given(connection.bind(any(BindRequest.class)))
+                .willThrow(bindFailure(Responses.newResult(ResultCode.INVALID_CREDENTIALS)));
+
+        // When
+        try {
+            ldapAuthUtils.authenticateUser(USER, "password");
+            fail("Expected LDAPUtilException");
+        } catch (LDAPUtilException e) {
+            // Then
+            assertThat(e.getResultCode()).isEqualTo(ResultCode.INVALID_CREDENTIALS);
+        }
+        verify(connection).bind(any(BindRequest.class));
+    }
+
+    private static LdapException bindFailure(Result result) {
+        return LdapException.newLdapException(result);
+    }
+}
@@ -22,12 +22,19 @@ import static org.mockito.BDDMockito.mock;
 import static org.mockito.Mockito.*;
 import static org.forgerock.openam.session.SessionConstants.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.iplanet.dpro.session.Session;
 import com.iplanet.dpro.session.SessionException;
 import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.SessionListener;
 import com.iplanet.dpro.session.share.SessionInfo;
+import com.sun.identity.shared.debug.Debug;
+import org.forgerock.util.time.TimeService;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -108,4 +115,99 @@ public class SessionCacheTest {
         assertThat(session.getIdleTime()).isEqualTo(10);
     }
 
+    @Test
+    public void shouldEvictSessionsIdleForLongerThanTheirMaxIdleTime() {
+        // Given
+        TimeService clock = mock(TimeService.class);
+        given(clock.now()).willReturn(0L);
+        SessionCache boundedCache = newBoundedCache(10, clock);
+        Session idle = mockSession(5);
+        Session active = mockSession(60);
+        boundedCache.writeSession(idle);
+        boundedCache.writeSession(active);
+
+        // When
+        given(clock.now()).willReturn(TimeUnit.MINUTES.toMillis(10));
+        boundedCache.writeSession(mockSession(60));
+
+        // Then
+        assertThat(boundedCache.hasSession(idle.getID())).isFalse();
+        assertThat(boundedCache.hasSession(active.getID())).isTrue();
+        assertThat(boundedCache.getExpiredEvictionCount()).isEqualTo(1);
+        verify(idle).cancel();
+    }
+
+    @Test
+    public void shouldNotEvictSessionsWhichHaveBeenReadRecently() {
+        // Given
+        TimeService clock = mock(TimeService.class);
+        given(clock.now()).willReturn(0L);
+        SessionCache boundedCache = newBoundedCache(10, clock);
+        Session session = mockSession(5);
+        boundedCache.writeSession(session);
+
+        // When
+        given(clock.now()).willReturn(TimeUnit.MINUTES.toMillis(4));
+        boundedCache.readSession(session.getID());
+        given(clock.now()).willReturn(TimeUnit.MINUTES.toMillis(8));
+        boundedCache.writeSession(mockSession(60));
+
+        // Then
+        assertThat(boundedCache.hasSession(session.getID())).isTrue();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyReadSessionsWhenFull() {
+        // Given
+        TimeService clock = mock(TimeService.class);
+        SessionCache boundedCache = newBoundedCache(10, clock);
+        List<Session> sessions = new ArrayList<Session>();
+        for (int i = 0; i < 10; i++) {
+            given(clock.now()).willReturn((long) i);
+            Session s = mockSession(60);
+            sessions.add(s);
+            boundedCache.writeSession(s);
+        }
+
+        // When
+        given(clock.now()).willReturn(10L);
+        boundedCache.writeSession(mockSession(60));
+
+        // Then
+        assertThat(boundedCache.size()).isLessThanOrEqualTo(10);
+        assertThat(boundedCache.getSizeEvictionCount()).isGreaterThan(0);
+        assertThat(boundedCache.hasSession(sessions.get(0).getID())).isFalse();
+        assertThat(boundedCache.hasSession(sessions.get(9).getID())).isTrue();
+    }
+
+    @Test
+    public void shouldNotEvictSessionsWithLocalListeners() {
+        // Given
+        TimeService clock = mock(TimeService.class);
+        given(clock.now()).willReturn(0L);
+        SessionCache boundedCache = newBoundedCache(10, clock);
+        Session listened = mockSession(5);
+        given(listened.getLocalSessionEventListeners())
+                .willReturn(Collections.singleton(mock(SessionListener.class)));
+        boundedCache.writeSession(listened);
+
+        // When
+        given(clock.now()).willReturn(TimeUnit.MINUTES.toMillis(10));
+        boundedCache.writeSession(mockSession(60));
+
+        // Then
+        assertThat(boundedCache.hasSession(listened.getID())).isTrue();
+    }
+
+    private SessionCache newBoundedCache(int maxSize, TimeService clock) {
+        return new SessionCache(mock(SessionPollerPool.class), mock(Debug.class), maxSize,
+                TimeUnit.MINUTES.toMillis(30), TimeUnit.MINUTES.toMillis(1), clock);
+    }
+
+    private Session mockSession(long maxIdleMinutes) {
+        Session s = mock(Session.class);
+        given(s.getID()).willReturn(mock(SessionID.class));
+        given(s.getMaxIdleTime()).willReturn(maxIdleMinutes);
+        return s;
+    }
 }
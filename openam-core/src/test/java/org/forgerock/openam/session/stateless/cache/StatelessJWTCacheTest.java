@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.forgerock.openam.session.stateless.StatelessConfig;
+import org.forgerock.util.time.TimeService;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
@@ -144,4 +145,76 @@ public class StatelessJWTCacheTest {
         // Then
         assertThat(cache.contains(mockSessionInfo)).isFalse();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldNotReturnExpiredSessionInfo() {
+        // Given
+        given(mockConfig.getJWTCacheSize()).willReturn(10);
+        TimeService mockTimeService = mock(TimeService.class);
+        cache = new StatelessJWTCache(mockConfig, mockListeners, mockTimeService);
+        SessionInfo mockInfo = mock(SessionInfo.class);
+        given(mockInfo.getExpiryTime()).willReturn(1000L);
+        cache.cache(mockInfo, "badger");
+
+        // When
+        given(mockTimeService.now()).willReturn(999L);
+        SessionInfo beforeExpiry = cache.getSessionInfo("badger");
+        given(mockTimeService.now()).willReturn(1000L);
+        SessionInfo afterExpiry = cache.getSessionInfo("badger");
+
+        // Then
+        assertThat(beforeExpiry).isEqualTo(mockInfo);
+        assertThat(afterExpiry).isNull();
+        assertThat(cache.contains("badger")).isFalse();
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldKeepSessionInfoWithoutExpiryTime() {
+        // Given
+        given(mockConfig.getJWTCacheSize()).willReturn(10);
+        TimeService mockTimeService = mock(TimeService.class);
+        given(mockTimeService.now()).willReturn(Long.MAX_VALUE - 1);
+        cache = new StatelessJWTCache(mockConfig, mockListeners, mockTimeService);
+        SessionInfo mockInfo = mock(SessionInfo.class);
+
+        // When
+        cache.cache(mockInfo, "badger");
+
+        // Then
+        assertThat(cache.getSessionInfo("badger")).isEqualTo(mockInfo);
+    }
+
+    @Test
+    public void shouldDistinguishDifferentJWTs() {
+        // Given
+        given(mockConfig.getJWTCacheSize()).willReturn(10);
+        cache = new StatelessJWTCache(mockConfig, mockListeners);
+        SessionInfo first = mock(SessionInfo.class);
+        SessionInfo second = mock(SessionInfo.class);
+
+        // When
+        cache.cache(first, "badger");
+        cache.cache(second, "badgers");
+
+        // Then
+        assertThat(cache.getSessionInfo("badger")).isSameAs(first);
+        assertThat(cache.getSessionInfo("badgers")).isSameAs(second);
+        assertThat(cache.getSessionInfo("weasel")).isNull();
+    }
+
+    @Test
+    public void shouldBoundCacheToConfiguredSize() {
+        // Given
+        given(mockConfig.getJWTCacheSize()).willReturn(10);
+        cache = new StatelessJWTCache(mockConfig, mockListeners);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            cache.cache(mock(SessionInfo.class), "badger" + i);
+        }
+
+        // Then
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+}
@@ -27,6 +27,7 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 
 import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
+import org.forgerock.openam.cts.monitoring.CTSOperationsMonitoringStore;
 import org.forgerock.openam.shared.concurrency.ThreadMonitor;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
 import org.forgerock.openam.sm.datalayer.api.Task;
@@ -44,6 +45,7 @@ public class SeriesTaskExecutorTest {
     private SeriesTaskExecutorThreadFactory processorFactory;
     private ThreadMonitor monitor;
     private CTSQueueConfiguration configuration;
+    private CTSOperationsMonitoringStore monitoringStore;
 
     @BeforeMethod
     public void setup() throws Exception {
@@ -52,8 +54,10 @@ public class SeriesTaskExecutorTest {
         monitor = mock(ThreadMonitor.class);
         configuration = mock(CTSQueueConfiguration.class);
         given(configuration.getQueueSize()).willReturn(10);
+        monitoringStore = mock(CTSOperationsMonitoringStore.class);
 
-        executor = new SeriesTaskExecutor(executorService, processorFactory, monitor, configuration, mock(Debug.class));
+        executor = new SeriesTaskExecutor(executorService, processorFactory, monitor, configuration, monitoringStore,
+                mock(Debug.class));
     }
 
     @Test
@@ -94,6 +98,20 @@ public class SeriesTaskExecutorTest {
         assertThat(captor.getValue().size()).isEqualTo(1);
     }
 
+    @Test
+    public void shouldReportQueueDepthToMonitoringStore() throws Exception {
+        // Given
+        given(processorFactory.create(any(BlockingQueue.class))).willReturn(mock(SeriesTaskExecutorThread.class));
+        given(configuration.getProcessors()).willReturn(1);
+        executor.start();
+
+        // When
+        executor.execute("123", mock(Task.class));
+
+        // Then
+        verify(monitoringStore).addQueueOperation(eq(0), eq(1), anyLong());
+    }
+
 
     @Test
     public void shouldCatchTimeoutWhenOfferingTaskToQueue() throws Exception {
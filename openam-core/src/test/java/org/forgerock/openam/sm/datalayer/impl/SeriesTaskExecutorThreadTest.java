@@ -11,15 +11,19 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.sm.datalayer.impl;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.*;
 
+import java.util.Collection;
 import java.util.concurrent.BlockingQueue;
 
+import org.forgerock.openam.sm.datalayer.api.QueueConfiguration;
 import org.forgerock.openam.sm.datalayer.api.Task;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.testng.annotations.AfterMethod;
@@ -32,12 +36,15 @@ public class SeriesTaskExecutorThreadTest {
 
     private SeriesTaskExecutorThread processor;
     private SimpleTaskExecutor mockExecutor;
+    private QueueConfiguration mockConfiguration;
 
     @BeforeMethod
     public void setup() {
         Thread.interrupted();
         mockExecutor = mock(SimpleTaskExecutor.class);
-        processor = new SeriesTaskExecutorThread(mock(Debug.class), mockExecutor);
+        mockConfiguration = mock(QueueConfiguration.class);
+        given(mockConfiguration.getBatchSize()).willReturn(10);
+        processor = new SeriesTaskExecutorThread(mock(Debug.class), mockExecutor, mockConfiguration);
     }
 
     // NB: TaskProcessor has a threading policy around interrupted. This tear down clears the interrupted state.
@@ -73,7 +80,36 @@ public class SeriesTaskExecutorThreadTest {
         processor.run();
 
         // Then
-        verify(mockExecutor).execute(null, mockTask);
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(mockExecutor).execute(captor.capture());
+        assertThat(captor.getValue()).containsExactly(mockTask);
+    }
+
+    @Test
+    public void shouldExecuteQueuedTasksAsSingleBatchInOrder() throws Exception {
+        // Given
+        Task first = mock(Task.class);
+        final Task second = mock(Task.class);
+        final Task third = mock(Task.class);
+        BlockingQueue<Task> queue = generateTestQueue(first);
+        given(queue.drainTo(anyCollection(), eq(9))).willAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(InvocationOnMock invocationOnMock) throws Throwable {
+                Collection<Task> batch = (Collection<Task>) invocationOnMock.getArguments()[0];
+                batch.add(second);
+                batch.add(third);
+                return 2;
+            }
+        });
+        processor.setQueue(queue);
+
+        // When
+        processor.run();
+
+        // Then
+        ArgumentCaptor<Collection> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(mockExecutor).execute(captor.capture());
+        assertThat(captor.getValue()).containsExactly(first, second, third);
     }
 
     private BlockingQueue<Task> generateTestQueue(final Task first) throws InterruptedException {
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.sm.datalayer.impl;
@@ -23,10 +23,14 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.Closeable;
+import java.util.Arrays;
 
 import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
+import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
 import org.forgerock.openam.sm.datalayer.api.Task;
 import org.forgerock.openam.sm.datalayer.api.TokenStorageAdapter;
+import org.mockito.InOrder;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -93,4 +97,91 @@ public class SimpleTaskExecutorTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldValidateConnectionOnceForBatch() throws Exception {
+        // Given
+        Task first = mock(Task.class);
+        Task second = mock(Task.class);
+        Closeable connection = mock(Closeable.class);
+        given(connectionFactory.create()).willReturn(connection);
+        given(connectionFactory.isValid(connection)).willReturn(true);
+        executor.start();
+
+        // When
+        executor.execute(Arrays.asList(first, second));
+
+        // Then
+        verify(connectionFactory, times(1)).isValid(connection);
+        verify(first).execute(connection, adapter);
+        verify(second).execute(connection, adapter);
+    }
+
+    @Test
+    public void shouldRevalidateConnectionAfterTaskInBatchFails() throws Exception {
+        // Given
+        Task first = mock(Task.class);
+        Task second = mock(Task.class);
+        Closeable connection = mock(Closeable.class);
+        given(connectionFactory.create()).willReturn(connection);
+        given(connectionFactory.isValid(connection)).willReturn(true);
+        willThrow(new DataLayerException("failed")).given(first).execute(connection, adapter);
+        executor.start();
+
+        // When
+        executor.execute(Arrays.asList(first, second));
+
+        // Then
+        verify(connectionFactory, times(2)).isValid(connection);
+        verify(second).execute(connection, adapter);
+    }
+
+    @Test
+    public void shouldStartPipelinedTasksBeforeCompletingAny() throws Exception {
+        // Given
+        PipelinedTask first = mockPipelinedTask("badger");
+        PipelinedTask second = mockPipelinedTask("weasel");
+        Closeable connection = mock(Closeable.class);
+        given(connectionFactory.create()).willReturn(connection);
+        given(connectionFactory.isValid(connection)).willReturn(true);
+        executor.start();
+
+        // When
+        executor.execute(Arrays.<Task>asList(first, second));
+
+        // Then
+        InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).start(connection, adapter);
+        inOrder.verify(second).start(connection, adapter);
+        inOrder.verify(first).complete();
+        inOrder.verify(second).complete();
+        verify(first, never()).execute(connection, adapter);
+        verify(second, never()).execute(connection, adapter);
+    }
+
+    @Test
+    public void shouldCompleteTaskBeforeStartingNextTaskForSameToken() throws Exception {
+        // Given
+        PipelinedTask first = mockPipelinedTask("badger");
+        PipelinedTask second = mockPipelinedTask("badger");
+        Closeable connection = mock(Closeable.class);
+        given(connectionFactory.create()).willReturn(connection);
+        given(connectionFactory.isValid(connection)).willReturn(true);
+        executor.start();
+
+        // When
+        executor.execute(Arrays.<Task>asList(first, second));
+
+        // Then
+        InOrder inOrder = inOrder(first, second);
+        inOrder.verify(first).start(connection, adapter);
+        inOrder.verify(first).complete();
+        inOrder.verify(second).start(connection, adapter);
+        inOrder.verify(second).complete();
+    }
+
+    private static PipelinedTask mockPipelinedTask(String tokenId) {
+        PipelinedTask task = mock(PipelinedTask.class);
+        given(task.getTokenId()).willReturn(tokenId);
+        return task;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.sm.datalayer.impl.tasks;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.forgerock.openam.sm.datalayer.api.PipelinedTask;
+import org.forgerock.openam.sm.datalayer.api.Task;
+import org.testng.annotations.Test;
+
+public class TaskPipelineTest {
+
+    @Test
+    public void shouldPipelineTasksForDifferentTokensInOneRound() {
+        // Given
+        Task first = pipelinedTask("badger");
+        Task second = pipelinedTask("weasel");
+        Task third = pipelinedTask("ferret");
+
+        // When
+        List<List<Task>> rounds = TaskPipeline.rounds(asList(first, second, third));
+
+        // Then
+        assertThat(rounds).hasSize(1);
+        assertThat(rounds.get(0)).containsExactly(first, second, third);
+        assertThat(TaskPipeline.isPipelined(rounds.get(0))).isTrue();
+    }
+
+    @Test
+    public void shouldStartNewRoundForRepeatedToken() {
+        // Given
+        Task first = pipelinedTask("badger");
+        Task second = pipelinedTask("weasel");
+        Task third = pipelinedTask("badger");
+
+        // When
+        List<List<Task>> rounds = TaskPipeline.rounds(asList(first, second, third));
+
+        // Then
+        assertThat(rounds).hasSize(2);
+        assertThat(rounds.get(0)).containsExactly(first, second);
+        assertThat(rounds.get(1)).containsExactly(third);
+    }
+
+    @Test
+    public void shouldExecuteTaskWhichCannotBePipelinedInItsOwnRound() {
+        // Given
+        Task first = pipelinedTask("badger");
+        Task query = mock(Task.class);
+        Task third = pipelinedTask("weasel");
+
+        // When
+        List<List<Task>> rounds = TaskPipeline.rounds(asList(first, query, third));
+
+        // Then
+        assertThat(rounds).hasSize(3);
+        assertThat(rounds.get(0)).containsExactly(first);
+        assertThat(rounds.get(1)).containsExactly(query);
+        assertThat(TaskPipeline.isPipelined(rounds.get(1))).isFalse();
+        assertThat(rounds.get(2)).containsExactly(third);
+    }
+
+    private static Task pipelinedTask(String tokenId) {
+        PipelinedTask task = mock(PipelinedTask.class);
+        given(task.getTokenId()).willReturn(tokenId);
+        return task;
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 package org.forgerock.openam.sm.datalayer.impl.tasks;
 
@@ -21,14 +21,17 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
 import org.forgerock.openam.cts.api.tokens.Token;
 import org.forgerock.openam.cts.exceptions.CoreTokenException;
 import org.forgerock.openam.cts.impl.LdapAdapter;
 import org.forgerock.openam.sm.datalayer.api.DataLayerException;
+import org.forgerock.openam.sm.datalayer.api.LdapOperationFailedException;
 import org.forgerock.openam.sm.datalayer.api.ResultHandler;
 import org.forgerock.opendj.ldap.Connection;
+import org.forgerock.util.promise.Promises;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -75,4 +78,50 @@ public class UpdateTaskTest {
         task.execute(mockConnection, mockAdapter);
         verify(mockHandler).processResults(eq(mockToken));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldUpdateWhenTokenPresentOnceStartedAndCompleted() throws Exception {
+        given(mockAdapter.readAsync(any(Connection.class), anyString()))
+                .willReturn(Promises.<Token, DataLayerException>newResultPromise(mockToken));
+        given(mockAdapter.updateAsync(any(Connection.class), any(Token.class), eq(mockToken)))
+                .willReturn(Promises.<Boolean, DataLayerException>newResultPromise(true));
+
+        task.start(mockConnection, mockAdapter);
+        verify(mockHandler, never()).processResults(any(Token.class));
+        task.complete();
+
+        verify(mockAdapter).updateAsync(any(Connection.class), any(Token.class), eq(mockToken));
+        verify(mockHandler).processResults(eq(mockToken));
+    }
+
+    @Test
+    public void shouldCreateWhenNotPresentOnceStartedAndCompleted() throws Exception {
+        given(mockAdapter.readAsync(any(Connection.class), anyString()))
+                .willReturn(Promises.<Token, DataLayerException>newResultPromise(null));
+        given(mockAdapter.createAsync(any(Connection.class), eq(mockToken)))
+                .willReturn(Promises.<Void, DataLayerException>newResultPromise(null));
+
+        task.start(mockConnection, mockAdapter);
+        task.complete();
+
+        verify(mockAdapter).createAsync(any(Connection.class), eq(mockToken));
+        verify(mockHandler).processResults(eq(mockToken));
+    }
+
+    @Test
+    public void shouldNotifyHandlerWhenStartedTaskFails() throws Exception {
+        LdapOperationFailedException error = new LdapOperationFailedException("failed");
+        given(mockAdapter.readAsync(any(Connection.class), anyString()))
+                .willReturn(Promises.<Token, DataLayerException>newExceptionPromise(error));
+
+        task.start(mockConnection, mockAdapter);
+        try {
+            task.complete();
+        } catch (DataLayerException e) {
+            // expected
+        }
+
+        verify(mockHandler).processError(error);
+        verify(mockHandler, never()).processResults(any(Token.class));
+    }
+}
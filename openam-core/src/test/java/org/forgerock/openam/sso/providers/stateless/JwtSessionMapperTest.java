@@ -15,6 +15,10 @@
  */
 package org.forgerock.openam.sso.providers.stateless;
 
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.testng.Assert.assertEquals;
 
 import java.io.IOException;
@@ -33,6 +37,8 @@ import org.forgerock.json.jose.jws.SigningManager;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.iplanet.dpro.session.monitoring.SessionMonitorType;
+import com.iplanet.dpro.session.monitoring.SessionMonitoringStore;
 import com.iplanet.dpro.session.share.SessionInfo;
 
 /**
@@ -170,6 +176,24 @@ public class JwtSessionMapperTest {
         new JwtSessionMapperBuilder().encryptedUsingKeyPair(null).build();
     }
 
+    @Test
+    public void shouldRecordVerifyAndDecryptTimes() {
+        // Given
+        JwtSessionMapper jwtSessionMapper = new JwtSessionMapperBuilder()
+                .signedUsingHS256("SHARED_SECRET")
+                .encryptedUsingDirectKey(new SecretKeySpec(new byte[32], "AES"))
+                .build();
+        String jwtString = jwtSessionMapper.asJwt(newExampleSessionInfo());
+        SessionMonitoringStore monitoringStore = mock(SessionMonitoringStore.class);
+
+        // When
+        jwtSessionMapper.fromJwt(jwtString, monitoringStore);
+
+        // Then
+        verify(monitoringStore).storeVerifyTime(anyLong(), eq(SessionMonitorType.STATELESS));
+        verify(monitoringStore).storeDecryptTime(anyLong(), eq(SessionMonitorType.STATELESS));
+    }
+
     @DataProvider
     public Object[][] encryptionAlgorithms() {
         // Only test algorithms that do not require JCE Unlimited Strength
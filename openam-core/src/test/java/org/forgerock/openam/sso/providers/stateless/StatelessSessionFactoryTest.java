@@ -11,11 +11,12 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 package org.forgerock.openam.sso.providers.stateless;
 
 import com.iplanet.dpro.session.SessionID;
+import com.iplanet.dpro.session.monitoring.SessionMonitoringStore;
 import com.iplanet.dpro.session.service.SessionServerConfig;
 import com.iplanet.dpro.session.service.SessionServiceConfig;
 import org.forgerock.openam.session.stateless.cache.StatelessJWTCache;
@@ -39,7 +40,8 @@ public class StatelessSessionFactoryTest {
         mockCache = mock(StatelessJWTCache.class);
         SessionServerConfig mockServerConfig = mock(SessionServerConfig.class);
         SessionServiceConfig mockServiceConfig = mock(SessionServiceConfig.class);
-        factory = new StatelessSessionFactory(mockCache, mockServerConfig, mockServiceConfig);
+        factory = new StatelessSessionFactory(mockCache, mockServerConfig, mockServiceConfig,
+                mock(SessionMonitoringStore.class));
     }
 
     @Test
@@ -22,11 +22,13 @@ import static org.forgerock.opendj.ldap.LDAPConnectionFactory.*;
 
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -35,7 +37,6 @@ import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.NameCallback;
 import javax.security.auth.callback.PasswordCallback;
 
-import com.iplanet.am.util.Cache;
 import com.iplanet.services.naming.ServerEntryNotFoundException;
 import com.iplanet.services.naming.WebtopNaming;
 import com.iplanet.sso.SSOToken;
@@ -61,6 +62,8 @@ import com.sun.identity.shared.debug.Debug;
 import com.sun.identity.shared.jaxrpc.SOAPClient;
 import com.sun.identity.sm.SchemaType;
 
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
 import org.forgerock.openam.idrepo.ldap.helpers.ADAMHelper;
 import org.forgerock.openam.idrepo.ldap.helpers.ADHelper;
 import org.forgerock.openam.idrepo.ldap.helpers.DirectoryHelper;
@@ -119,6 +122,10 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
     private static final Map<String, DJLDAPv3PersistentSearch> pSearchMap =
             new HashMap<>();
     private static final String AM_AUTH = "amAuth";
+    /**
+     * The largest number of identities looked up by a single search when reading many identities at once.
+     */
+    private static final int BULK_SEARCH_BATCH_SIZE = 100;
     private static final Filter DEFAULT_ROLE_SEARCH_FILTER =
             Filter.valueOf("(&(objectclass=ldapsubentry)(objectclass=nsmanagedroledefinition))");
     private static final Filter DEFAULT_FILTERED_ROLE_SEARCH_FILTER =
@@ -175,7 +182,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
     //holds the directory schema
     private volatile Schema schema;
     //provides a cache for DNs (if enabled), because an entry tends to be requested in bursts.
-    private Cache dnCache;
+    private Cache<String, String> dnCache;
     // provides a switch to enable/disable the dnCache
     private boolean dnCacheEnabled = false;
 
@@ -211,7 +218,9 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         }
         dnCacheEnabled = CollectionHelper.getBooleanMapAttr(configMap, LDAP_DNCACHE_ENABLED, true);
         if (dnCacheEnabled) {
-            dnCache = new Cache(CollectionHelper.getIntMapAttr(configParams, LDAP_DNCACHE_SIZE, 1500, DEBUG));
+            dnCache = CacheBuilder.newBuilder()
+                    .maximumSize(CollectionHelper.getIntMapAttr(configParams, LDAP_DNCACHE_SIZE, 1500, DEBUG))
+                    .build();
         }
         ldapServers = LDAPUtils.prioritizeServers(configParams.get(LDAP_SERVER_LIST), hostServerId, hostSiteId);
 
@@ -771,23 +780,99 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
      */
     private <T> Map<String, T> getAttributes(IdType type, String name, Set<String> attrNames,
             Function<Attribute, T, IdRepoException> function) throws IdRepoException {
-        Set<String> attrs = attrNames == null
-                ? new CaseInsensitiveHashSet(0) : new CaseInsensitiveHashSet(attrNames);
+        if (isRealmObjectClassRequested(type, attrNames)) {
+            return new HashMap(0);
+        }
+        String dn = getDN(type, name);
+        Set<String> definedAttributes = getDefinedAttributes(type);
+        Set<String> attrs = getRequestedAttributes(type, attrNames, definedAttributes);
+        if (attrs.isEmpty()) {
+            //there were only non-defined attributes requested, so we shouldn't return anything here.
+            return new HashMap<String, T>(0);
+        }
+        Map<String, T> result = null;
+        Connection conn = null;
+        try {
+            conn = connectionFactory.getConnection();
+            SearchResultEntry entry = conn.searchSingleEntry(
+                    LDAPRequests.newSingleEntrySearchRequest(dn, attrs.toArray(new String[attrs.size()])));
+            result = getAttributes(entry, dn, attrs, definedAttributes, function);
+        } catch (LdapException ere) {
+            DEBUG.error("An error occurred while getting user attributes", ere);
+            handleErrorResult(ere);
+        } finally {
+            IOUtils.closeIfNotNull(conn);
+        }
+
+        if (DEBUG.messageEnabled()) {
+            DEBUG.message("getAttributes returning attrMap: "
+                    + IdRepoUtils.getAttrMapWithoutPasswordAttrs(result, null));
+        }
+        return result;
+    }
 
-        if (type.equals(IdType.REALM)) {
-            if (attrs.contains(OBJECT_CLASS_ATTR)) {
-                return new HashMap(0);
+    /**
+     * Returns the requested attributes of several identities of the same type, looking the identities up with as
+     * few searches as possible rather than one identity at a time. The attributes are selected and converted as for
+     * {@link #getAttributes(SSOToken, IdType, String, Set)}.
+     *
+     * @param token Not used.
+     * @param type The type of the identities.
+     * @param names The names of the identities.
+     * @param attrNames The names of the requested attributes or <code>null</code> to retrieve all the attributes.
+     * @return The requested attributes of each identity found, keyed by identity name.
+     * @throws IdRepoException If there is an error while retrieving the identity attributes.
+     */
+    @Override
+    public Map<String, Map<String, Set<String>>> getAttributes(SSOToken token, IdType type, Set<String> names,
+            Set<String> attrNames) throws IdRepoException {
+        if (DEBUG.messageEnabled()) {
+            DEBUG.message("bulk getAttributes invoked for " + names.size() + " identities");
+        }
+        Map<String, Map<String, Set<String>>> results = new HashMap<>(names.size());
+        if (names.isEmpty() || isRealmObjectClassRequested(type, attrNames)) {
+            return results;
+        }
+        Set<String> definedAttributes = getDefinedAttributes(type);
+        Set<String> attrs = getRequestedAttributes(type, attrNames, definedAttributes);
+        //the search attribute is always read to map the entries back to the names, but only returned if requested
+        String searchAttr = getSearchAttribute(type);
+        boolean removeSearchAttr = !attrs.contains(searchAttr) && !attrs.contains("*");
+
+        StringAttributeExtractor function = new StringAttributeExtractor();
+        for (Map.Entry<String, SearchResultEntry> found : searchByNames(type, names, attrs).entrySet()) {
+            SearchResultEntry entry = found.getValue();
+            String dn = entry.getName().toString();
+            Map<String, Set<String>> result = attrs.isEmpty()
+                    ? new HashMap<String, Set<String>>(0)
+                    : getAttributes(entry, dn, attrs, definedAttributes, function);
+            if (removeSearchAttr) {
+                result.remove(entry.getAttribute(searchAttr).getAttributeDescriptionAsString());
             }
+            results.put(found.getKey(), result);
         }
-        Map<String, T> result = new HashMap<String, T>();
-        String dn = getDN(type, name);
+        return results;
+    }
+
+    private boolean isRealmObjectClassRequested(IdType type, Set<String> attrNames) {
+        return type.equals(IdType.REALM) && attrNames != null
+                && new CaseInsensitiveHashSet(attrNames).contains(OBJECT_CLASS_ATTR);
+    }
+
+    /**
+     * Returns the attributes to read for the requested attribute names, limited to the attributes defined in the
+     * configuration. Requesting the default "inetUserStatus" attribute reads the configured status attribute.
+     *
+     * @return The attributes to read, or an empty set if none of the requested attributes are defined.
+     */
+    private Set<String> getRequestedAttributes(IdType type, Set<String> attrNames, Set<String> definedAttributes) {
+        Set<String> attrs = attrNames == null
+                ? new CaseInsensitiveHashSet(0) : new CaseInsensitiveHashSet(attrNames);
         if (type.equals(IdType.USER)) {
             if (attrs.contains(DEFAULT_USER_STATUS_ATTR)) {
                 attrs.add(userStatusAttr);
             }
         }
-        Connection conn = null;
-        Set<String> definedAttributes = getDefinedAttributes(type);
         if (attrs.isEmpty() || attrs.contains("*")) {
             attrs.clear();
             if (definedAttributes.isEmpty()) {
@@ -799,41 +884,31 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
             if (!definedAttributes.isEmpty()) {
                 attrs.retainAll(definedAttributes);
             }
-            if (attrs.isEmpty()) {
-                //there were only non-defined attributes requested, so we shouldn't return anything here.
-                return new HashMap<String, T>(0);
-            }
         }
-        try {
-            conn = connectionFactory.getConnection();
-            SearchResultEntry entry = conn.searchSingleEntry(
-                    LDAPRequests.newSingleEntrySearchRequest(dn, attrs.toArray(new String[attrs.size()])));
-            for (Attribute attribute : entry.getAllAttributes()) {
-                String attrName = attribute.getAttributeDescriptionAsString();
-                if (!definedAttributes.isEmpty() && !definedAttributes.contains(attrName)) {
-                    continue;
-                }
-                result.put(attribute.getAttributeDescriptionAsString(), function.apply(attribute));
-                if (attrName.equalsIgnoreCase(userStatusAttr) && attrs.contains(DEFAULT_USER_STATUS_ATTR)) {
-                    String converted = helper.convertToInetUserStatus(attribute.firstValueAsString(), activeValue);
-                    result.put(DEFAULT_USER_STATUS_ATTR,
-                            function.apply(new LinkedAttribute(DEFAULT_USER_STATUS_ATTR, converted)));
-                }
+        return attrs;
+    }
+
+    /**
+     * Converts the attributes of an entry read from the directory to the attribute map returned for an identity.
+     */
+    private <T> Map<String, T> getAttributes(Entry entry, String dn, Set<String> attrs, Set<String> definedAttributes,
+            Function<Attribute, T, IdRepoException> function) throws IdRepoException {
+        Map<String, T> result = new HashMap<String, T>();
+        for (Attribute attribute : entry.getAllAttributes()) {
+            String attrName = attribute.getAttributeDescriptionAsString();
+            if (!definedAttributes.isEmpty() && !definedAttributes.contains(attrName)) {
+                continue;
+            }
+            result.put(attribute.getAttributeDescriptionAsString(), function.apply(attribute));
+            if (attrName.equalsIgnoreCase(userStatusAttr) && attrs.contains(DEFAULT_USER_STATUS_ATTR)) {
+                String converted = helper.convertToInetUserStatus(attribute.firstValueAsString(), activeValue);
+                result.put(DEFAULT_USER_STATUS_ATTR,
+                        function.apply(new LinkedAttribute(DEFAULT_USER_STATUS_ATTR, converted)));
             }
-        } catch (LdapException ere) {
-            DEBUG.error("An error occurred while getting user attributes", ere);
-            handleErrorResult(ere);
-        } finally {
-            IOUtils.closeIfNotNull(conn);
         }
         if (attrs.contains(DN_ATTR)) {
             result.put(DN_ATTR, function.apply(new LinkedAttribute(DN_ATTR, dn)));
         }
-
-        if (DEBUG.messageEnabled()) {
-            DEBUG.message("getAttributes returning attrMap: "
-                    + IdRepoUtils.getAttrMapWithoutPasswordAttrs(result, null));
-        }
         return result;
     }
 
@@ -1249,7 +1324,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
             IOUtils.closeIfNotNull(conn);
         }
         if (dnCacheEnabled) {
-            dnCache.remove(generateDNCacheKey(name, type));
+            dnCache.invalidate(generateDNCacheKey(name, type));
         }
     }
 
@@ -1281,14 +1356,12 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         if (!membersType.equals(IdType.USER)) {
             throw newIdRepoException(IdRepoErrorCode.MEMBERSHIP_NOT_SUPPORTED, CLASS_NAME, membersType.getName(), type.getName());
         }
-        String dn = getDN(type, name);
-
         if (type.equals(IdType.GROUP)) {
-            return getGroupMembers(dn);
+            return getGroupMembers(name);
         } else if (type.equals(IdType.ROLE)) {
-            return getRoleMembers(dn);
+            return getRoleMembers(getDN(type, name));
         } else if (type.equals(IdType.FILTEREDROLE)) {
-            return getFilteredRoleMembers(dn);
+            return getFilteredRoleMembers(name);
         }
         throw new IdRepoUnsupportedOpException(IdRepoBundle.BUNDLE_NAME, IdRepoErrorCode.PLUGIN_OPERATION_NOT_SUPPORTED,
                 new Object[]{CLASS_NAME, IdOperation.READ.getName(), type.getName()});
@@ -1298,28 +1371,32 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
      * Returns the DNs of the members of this group. If the MemberURL attribute has been configured, then this
      * will also try to retrieve dynamic group members using the memberURL.
      *
-     * @param dn The DN of the group to query.
+     * @param name The name of the group to query.
      * @return The DNs of the members.
      * @throws IdRepoException If there is an error while trying to retrieve the members.
      */
-    private Set<String> getGroupMembers(String dn) throws IdRepoException {
+    private Set<String> getGroupMembers(String name) throws IdRepoException {
         Set<String> results = new HashSet<String>();
-        Connection conn = null;
         String[] attrs;
         if (memberURLAttr != null) {
             attrs = new String[]{uniqueMemberAttr, memberURLAttr};
         } else {
             attrs = new String[]{uniqueMemberAttr};
         }
+        SearchResultEntry entry = getEntry(IdType.GROUP, name, attrs);
+        if (entry == null) {
+            return results;
+        }
+        String dn = entry.getName().toString();
+        Connection conn = null;
         try {
-            conn = connectionFactory.getConnection();
-            SearchResultEntry entry = conn.searchSingleEntry(LDAPRequests.newSingleEntrySearchRequest(dn, attrs));
             Attribute attr = entry.getAttribute(uniqueMemberAttr);
             if (attr != null) {
                 results.addAll(LDAPUtils.getAttributeValuesAsStringSet(attr));
             } else if (memberURLAttr != null) {
                 attr = entry.getAttribute(memberURLAttr);
                 if (attr != null) {
+                    conn = connectionFactory.getConnection();
                     for (ByteString byteString : attr) {
                         LDAPUrl url = LDAPUrl.valueOf(byteString.toString());
                         SearchRequest searchRequest = LDAPRequests.newSearchRequest(
@@ -1396,19 +1473,22 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
      * entry to get the values of the nsRoleFilter attribute, and then it will perform searches using the retrieved
      * filters.
      *
-     * @param dn The DN of the filtered role to query.
+     * @param name The name of the filtered role to query.
      * @return The DNs of the members.
      * @throws IdRepoException If there is an error while trying to retrieve the filtered role members.
      */
-    private Set<String> getFilteredRoleMembers(String dn) throws IdRepoException {
+    private Set<String> getFilteredRoleMembers(String name) throws IdRepoException {
         Set<String> results = new HashSet<String>();
+        SearchResultEntry entry = getEntry(IdType.FILTEREDROLE, name, roleFilterAttr);
+        if (entry == null) {
+            return results;
+        }
+        String dn = entry.getName().toString();
         Connection conn = null;
         try {
-            conn = connectionFactory.getConnection();
-            SearchResultEntry entry = conn.searchSingleEntry(LDAPRequests.newSingleEntrySearchRequest(dn,
-                    roleFilterAttr));
             Attribute filterAttr = entry.getAttribute(roleFilterAttr);
             if (filterAttr != null) {
+                conn = connectionFactory.getConnection();
                 for (ByteString byteString : filterAttr) {
                     Filter filter = Filter.valueOf(byteString.toString());
                     //TODO: would it make sense to OR these filters and run a single search?
@@ -1460,13 +1540,12 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         if (!type.equals(IdType.USER)) {
             throw newIdRepoException(IdRepoErrorCode.MEMBERSHIPS_FOR_NOT_USERS_NOT_ALLOWED, CLASS_NAME);
         }
-        String dn = getDN(IdType.USER, name);
         if (membershipType.equals(IdType.GROUP)) {
-            return getGroupMemberships(dn);
+            return getGroupMemberships(name);
         } else if (membershipType.equals(IdType.ROLE)) {
-            return getRoleMemberships(dn);
+            return getRoleMemberships(name);
         } else if (membershipType.equals(IdType.FILTEREDROLE)) {
-            return getFilteredRoleMemberships(dn);
+            return getFilteredRoleMemberships(name);
         }
         throw newIdRepoException(IdRepoErrorCode.MEMBERSHIP_NOT_SUPPORTED, CLASS_NAME, type.getName(), membershipType.getName());
     }
@@ -1476,13 +1555,14 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
      * this will try to query the user entry and return the group DNs found in the memberOf attribute. Otherwise a
      * search request will be issued using the uniqueMember attribute looking for matches with the user DN.
      *
-     * @param dn The DN of the user identity.
+     * @param name The name of the user identity.
      * @return The DNs of the groups that the provided user is member of.
      * @throws IdRepoException If there was an error while retrieving the group membership information.
      */
-    private Set<String> getGroupMemberships(String dn) throws IdRepoException {
+    private Set<String> getGroupMemberships(String name) throws IdRepoException {
         Set<String> results = new HashSet<String>();
         if (memberOfAttr == null) {
+            String dn = getDN(IdType.USER, name);
             Filter filter = Filter.and(groupSearchFilter, Filter.equality(uniqueMemberAttr, dn));
             SearchRequest searchRequest =
                     LDAPRequests.newSearchRequest(getBaseDN(IdType.GROUP), defaultScope, filter, DN_ATTR);
@@ -1512,22 +1592,8 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
                 IOUtils.closeIfNotNull(conn);
             }
         } else {
-            Connection conn = null;
-            try {
-                conn = connectionFactory.getConnection();
-                SearchResultEntry entry = conn.searchSingleEntry(LDAPRequests.newSingleEntrySearchRequest(dn,
-                        memberOfAttr));
-                Attribute attr = entry.getAttribute(memberOfAttr);
-                if (attr != null) {
-                    results.addAll(LDAPUtils.getAttributeValuesAsStringSet(attr));
-                }
-            } catch (LdapException ere) {
-                DEBUG.error("An error occurred while trying to retrieve group memberships for " + dn
-                        + " using " + memberOfAttr + " attribute", ere);
-                handleErrorResult(ere);
-            } finally {
-                IOUtils.closeIfNotNull(conn);
-            }
+            SearchResultEntry entry = getEntry(IdType.USER, name, memberOfAttr);
+            addAttributeValues(entry, memberOfAttr, results);
         }
         return results;
     }
@@ -1536,60 +1602,42 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
      * Return the role membership informations for this given user. This will execute a read on the user entry to
      * retrieve the nsRoleDN attribute. The values of the attribute will be returned.
      *
-     * @param dn The DN of the user identity.
+     * @param name The name of the user identity.
      * @return The DNs of the roles this user is member of.
      * @throws IdRepoException If there was an error while retrieving the role membership information.
      */
-    private Set<String> getRoleMemberships(String dn) throws IdRepoException {
+    private Set<String> getRoleMemberships(String name) throws IdRepoException {
         Set<String> results = new HashSet<String>();
-        Connection conn = null;
-        try {
-            conn = connectionFactory.getConnection();
-            SearchResultEntry entry = conn.searchSingleEntry(LDAPRequests.newSingleEntrySearchRequest(dn, roleDNAttr));
-            Attribute attr = entry.getAttribute(roleDNAttr);
-            if (attr != null) {
-                results.addAll(LDAPUtils.getAttributeValuesAsStringSet(attr));
-            }
-        } catch (LdapException ere) {
-            DEBUG.error("An error occurred while trying to retrieve role memberships for " + dn
-                    + " using " + roleDNAttr + " attribute", ere);
-            handleErrorResult(ere);
-        } finally {
-            IOUtils.closeIfNotNull(conn);
-        }
+        SearchResultEntry entry = getEntry(IdType.USER, name, roleDNAttr);
+        addAttributeValues(entry, roleDNAttr, results);
         return results;
     }
 
     /**
-     * Returns the filtered and non-filtered role memberships for this given user. This will execute a read on the user
-     * entry to retrieve the nsRole attribute. The values of the attribute will be returned along with the non-filtered
-     * role memberships.
+     * Returns the filtered and non-filtered role memberships for this given user. This will execute a single read on
+     * the user entry to retrieve both the nsRole and the nsRoleDN attributes. The values of the attributes will be
+     * returned.
      *
-     * @param dn The DN of the user identity.
+     * @param name The name of the user identity.
      * @return The DNs of the filtered roles this user is member of.
      * @throws IdRepoException If there was an error while retrieving the filtered or non-filtered role membership
      * information.
      */
-    private Set<String> getFilteredRoleMemberships(String dn) throws IdRepoException {
+    private Set<String> getFilteredRoleMemberships(String name) throws IdRepoException {
         Set<String> results = new CaseInsensitiveHashSet();
-        Connection conn = null;
-        try {
-            conn = connectionFactory.getConnection();
-            SearchResultEntry entry = conn.searchSingleEntry(LDAPRequests.newSingleEntrySearchRequest(dn, roleAttr));
-            Attribute attr = entry.getAttribute(roleAttr);
+        SearchResultEntry entry = getEntry(IdType.USER, name, roleAttr, roleDNAttr);
+        addAttributeValues(entry, roleAttr, results);
+        addAttributeValues(entry, roleDNAttr, results);
+        return results;
+    }
+
+    private void addAttributeValues(SearchResultEntry entry, String attrName, Set<String> results) {
+        if (entry != null) {
+            Attribute attr = entry.getAttribute(attrName);
             if (attr != null) {
                 results.addAll(LDAPUtils.getAttributeValuesAsStringSet(attr));
             }
-        } catch (LdapException ere) {
-            DEBUG.error("An error occurred while trying to retrieve filtered role memberships for " + dn
-                    + " using " + roleAttr + " attribute", ere);
-            handleErrorResult(ere);
-        } finally {
-            IOUtils.closeIfNotNull(conn);
         }
-        results.addAll(getRoleMemberships(dn));
-
-        return results;
     }
 
     /**
@@ -1627,10 +1675,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
             throw newIdRepoException(IdRepoErrorCode.MEMBERSHIPS_FOR_NOT_USERS_NOT_ALLOWED, CLASS_NAME);
         }
         String dn = getDN(type, name);
-        Set<String> memberDNs = new HashSet<String>(members.size());
-        for (String member : members) {
-            memberDNs.add(getDN(membersType, member));
-        }
+        Set<String> memberDNs = new HashSet<String>(getDNs(membersType, members).values());
         if (type.equals(IdType.GROUP)) {
             modifyGroupMembership(dn, memberDNs, operation);
         } else if (type.equals(IdType.ROLE)) {
@@ -2166,7 +2211,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
             String name = LDAPUtils.getName(previousDN);
             for (IdType idType : getSupportedTypes()) {
                 String previousId =  generateDNCacheKey(name, idType);
-                Object previousDn = dnCache.remove(previousId);
+                String previousDn = dnCache.asMap().remove(previousId);
                 if (DEBUG.messageEnabled() && previousDn != null) {
                     DEBUG.message("Removed " + previousId + " from DN Cache");
                 }
@@ -2322,7 +2367,7 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
 
         Object cachedDn = null;
         if (dnCacheEnabled) {
-            cachedDn = dnCache.get(generateDNCacheKey(name, type));
+            cachedDn = dnCache.getIfPresent(generateDNCacheKey(name, type));
         }
         if (cachedDn != null) {
             return cachedDn.toString();
@@ -2383,6 +2428,179 @@ public class DJLDAPv3Repo extends IdRepo implements IdentityMovedOrRenamedListen
         return dn;
     }
 
+    /**
+     * Reads the given attributes of an identity. Unless the DN of the identity is cached, the identity is looked up
+     * and its attributes are read with the same single search as the bulk
+     * {@link #getAttributes(SSOToken, IdType, Set, Set)}, rather than searching for its DN and then reading its entry.
+     *
+     * @param type The type of the identity.
+     * @param name The name of the identity.
+     * @param attrs The attributes to read.
+     * @return The entry of the identity, or <code>null</code> if the read exceeded the time or size limit.
+     * @throws IdRepoException If the identity cannot be found, or there was an error while reading its entry.
+     */
+    private SearchResultEntry getEntry(IdType type, String name, String... attrs) throws IdRepoException {
+        String cachedDn = dnCacheEnabled ? dnCache.getIfPresent(generateDNCacheKey(name, type)) : null;
+        if (cachedDn == null) {
+            SearchResultEntry entry = searchByNames(type, asSet(name), asSet(attrs)).get(name);
+            if (entry == null) {
+                DEBUG.message("Unable to find entry with name: " + name + " under searchbase: " + getBaseDN(type)
+                        + " with scope: " + defaultScope);
+                throw new IdentityNotFoundException(IdRepoBundle.BUNDLE_NAME, IdRepoErrorCode.TYPE_NOT_FOUND,
+                        ResultCode.CLIENT_SIDE_NO_RESULTS_RETURNED,
+                        new Object[]{name, type.getName()});
+            }
+            return entry;
+        }
+        Connection conn = null;
+        try {
+            conn = connectionFactory.getConnection();
+            return conn.searchSingleEntry(LDAPRequests.newSingleEntrySearchRequest(cachedDn, attrs));
+        } catch (LdapException ere) {
+            DEBUG.error("An error occurred while reading the entry " + cachedDn, ere);
+            handleErrorResult(ere);
+        } finally {
+            IOUtils.closeIfNotNull(conn);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the DNs of several identities of the same type, searching for all the identities that are not in the
+     * DN cache at once.
+     *
+     * @param type The type of the identities.
+     * @param names The names of the identities.
+     * @return The DNs keyed by identity name.
+     * @throws IdRepoException If any of the identities cannot be found, or the search fails.
+     */
+    private Map<String, String> getDNs(IdType type, Set<String> names) throws IdRepoException {
+        Map<String, String> dns = new HashMap<>(names.size());
+        Set<String> uncachedNames = new HashSet<>(names.size());
+        for (String name : names) {
+            String cachedDn = dnCacheEnabled ? dnCache.getIfPresent(generateDNCacheKey(name, type)) : null;
+            if (cachedDn != null) {
+                dns.put(name, cachedDn);
+            } else {
+                uncachedNames.add(name);
+            }
+        }
+        if (uncachedNames.isEmpty()) {
+            return dns;
+        }
+        Map<String, SearchResultEntry> entries = searchByNames(type, uncachedNames, asSet(DN_ATTR));
+        for (String name : uncachedNames) {
+            SearchResultEntry entry = entries.get(name);
+            if (entry == null) {
+                DEBUG.message("Unable to find entry with name: " + name + " under searchbase: " + getBaseDN(type)
+                        + " with scope: " + defaultScope);
+                throw new IdentityNotFoundException(IdRepoBundle.BUNDLE_NAME, IdRepoErrorCode.TYPE_NOT_FOUND,
+                        ResultCode.CLIENT_SIDE_NO_RESULTS_RETURNED,
+                        new Object[]{name, type.getName()});
+            }
+            dns.put(name, entry.getName().toString());
+        }
+        return dns;
+    }
+
+    /**
+     * Searches for the identities with any of the given names, combining up to {@link #BULK_SEARCH_BATCH_SIZE}
+     * names into each search with an OR filter. The DNs of the entries found are added to the DN cache.
+     *
+     * @param type The type of the identities.
+     * @param names The names of the identities.
+     * @param attrs The attributes to return, which must include the search attribute of the identity type.
+     * @return The entries found, keyed by identity name. Identities that do not exist are not included.
+     * @throws IdRepoException If the search fails.
+     */
+    private Map<String, SearchResultEntry> searchByNames(IdType type, Set<String> names, Set<String> attrs)
+            throws IdRepoException {
+        String searchAttr = getSearchAttribute(type);
+        Set<String> returnAttrs = new CaseInsensitiveHashSet(attrs);
+        returnAttrs.add(searchAttr);
+        String[] returnAttrArray = returnAttrs.toArray(new String[returnAttrs.size()]);
+        //names that only differ by case are the same identity, so each of them is mapped to the entry found
+        Map<String, Set<String>> namesByLowerCase = new HashMap<>(names.size());
+        for (String name : names) {
+            String lowerCaseName = name.toLowerCase();
+            Set<String> sameNames = namesByLowerCase.get(lowerCaseName);
+            if (sameNames == null) {
+                sameNames = new HashSet<>(1);
+                namesByLowerCase.put(lowerCaseName, sameNames);
+            }
+            sameNames.add(name);
+        }
+
+        Map<String, SearchResultEntry> entries = new HashMap<>(names.size());
+        List<Filter> nameFilters = new ArrayList<>(BULK_SEARCH_BATCH_SIZE);
+        Connection conn = null;
+        try {
+            conn = connectionFactory.getConnection();
+            for (String name : names) {
+                nameFilters.add(Filter.equality(searchAttr, name));
+                if (nameFilters.size() == BULK_SEARCH_BATCH_SIZE) {
+                    searchByNames(conn, type, nameFilters, returnAttrArray, namesByLowerCase, entries);
+                    nameFilters.clear();
+                }
+            }
+            if (!nameFilters.isEmpty()) {
+                searchByNames(conn, type, nameFilters, returnAttrArray, namesByLowerCase, entries);
+            }
+        } catch (LdapException ere) {
+            DEBUG.error("An error occurred while searching for entries by name", ere);
+            handleErrorResult(ere);
+        } catch (SearchResultReferenceIOException srrioe) {
+            //should never ever happen...
+            DEBUG.error("Got reference instead of entry", srrioe);
+            throw newIdRepoException(IdRepoErrorCode.SEARCH_FAILED, CLASS_NAME);
+        } finally {
+            IOUtils.closeIfNotNull(conn);
+        }
+
+        if (dnCacheEnabled) {
+            for (Map.Entry<String, SearchResultEntry> entry : entries.entrySet()) {
+                dnCache.put(generateDNCacheKey(entry.getKey(), type), entry.getValue().getName().toString());
+            }
+        }
+        return entries;
+    }
+
+    private void searchByNames(Connection conn, IdType type, List<Filter> nameFilters, String[] returnAttrs,
+            Map<String, Set<String>> namesByLowerCase, Map<String, SearchResultEntry> entries)
+            throws IdRepoException, LdapException, SearchResultReferenceIOException {
+        String searchAttr = getSearchAttribute(type);
+        Filter filter = Filter.and(Filter.or(nameFilters), getObjectClassFilter(type));
+        SearchRequest searchRequest = LDAPRequests.newSearchRequest(getBaseDN(type), defaultScope, filter,
+                returnAttrs);
+        ConnectionEntryReader reader = conn.search(searchRequest);
+        while (reader.hasNext()) {
+            if (reader.isEntry()) {
+                SearchResultEntry entry = reader.readEntry();
+                Attribute nameAttr = entry.getAttribute(searchAttr);
+                if (nameAttr != null) {
+                    for (ByteString value : nameAttr) {
+                        Set<String> sameNames = namesByLowerCase.get(value.toString().toLowerCase());
+                        if (sameNames == null) {
+                            continue;
+                        }
+                        for (String name : sameNames) {
+                            SearchResultEntry previous = entries.put(name, entry);
+                            //the same entry may match twice through different values, but not two entries
+                            if (previous != null && !previous.getName().equals(entry.getName())) {
+                                throw newIdRepoException(ResultCode.CLIENT_SIDE_UNEXPECTED_RESULTS_RETURNED,
+                                        IdRepoErrorCode.LDAP_EXCEPTION_OCCURRED, CLASS_NAME,
+                                        ResultCode.CLIENT_SIDE_UNEXPECTED_RESULTS_RETURNED.intValue());
+                            }
+                        }
+                    }
+                }
+            } else {
+                //ignore references
+                reader.readReference();
+            }
+        }
+    }
+
     private Filter getObjectClassFilter(IdType type) {
         if (type.equals(IdType.USER)) {
             return userSearchFilter;
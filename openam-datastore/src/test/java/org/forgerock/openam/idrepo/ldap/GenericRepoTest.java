@@ -192,6 +192,26 @@ public class GenericRepoTest extends IdRepoTestBase {
         assertThat(attrs.get("dn")).isNotNull().contains(DEMO_DN);
     }
 
+    @Test
+    public void getAttributesOfManyUsersSkipsNonExistentUsers() throws Exception {
+        Map<String, Map<String, Set<String>>> attrs =
+                idrepo.getAttributes(null, IdType.USER, asSet(DEMO, USER0, "invalid"), asSet("sn", "dn"));
+        assertThat(attrs.keySet()).hasSize(2).contains(DEMO, USER0);
+        assertThat(attrs.get(DEMO).keySet()).hasSize(2).contains("sn", "dn");
+        assertThat(attrs.get(DEMO).get("dn")).contains(DEMO_DN);
+        assertThat(attrs.get(USER0).get("dn")).contains(USER0_DN);
+    }
+
+    @Test
+    public void getAttributesOfManyUsersReturnsEachNameThatDiffersOnlyByCase() throws Exception {
+        String upperCaseDemo = DEMO.toUpperCase();
+        Map<String, Map<String, Set<String>>> attrs =
+                idrepo.getAttributes(null, IdType.USER, asSet(DEMO, upperCaseDemo), asSet("dn"));
+        assertThat(attrs.keySet()).hasSize(2).contains(DEMO, upperCaseDemo);
+        assertThat(attrs.get(DEMO).get("dn")).contains(DEMO_DN);
+        assertThat(attrs.get(upperCaseDemo).get("dn")).contains(DEMO_DN);
+    }
+
     @Test
     public void getBinaryAttributesReturnsByteArrays() throws Exception {
         Map<String, byte[][]> binAttrs = idrepo.getBinaryAttributes(null, IdType.USER, DEMO, asSet("sn"));
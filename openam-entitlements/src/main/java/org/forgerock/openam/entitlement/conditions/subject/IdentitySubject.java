@@ -51,6 +51,7 @@ import com.sun.identity.policy.PolicyEvaluator;
 import com.sun.identity.policy.PolicyManager;
 import com.sun.identity.policy.SubjectEvaluationCache;
 import com.sun.identity.shared.debug.Debug;
+import org.forgerock.openam.entitlement.PrivilegeEvaluatorContext;
 import org.forgerock.openam.entitlement.utils.EntitlementUtils;
 import org.forgerock.openam.utils.CollectionUtils;
 import org.json.JSONArray;
@@ -172,6 +173,8 @@ public class IdentitySubject implements EntitlementSubject {
         }
 
         boolean subjectMatch = false;
+        // Memberships of the subject already read for this evaluation, if any.
+        PrivilegeEvaluatorContext context = PrivilegeEvaluatorContext.getCurrent();
 
         if (debug.messageEnabled()) {
             debug.message("AMIndentitySubject.isMember(): "
@@ -194,6 +197,16 @@ public class IdentitySubject implements EntitlementSubject {
                             + ", subjectValue = " + subjectValue);
                 }
 
+                if (context != null && context.isKnownSubjectMembership(subjectValue)) {
+                    if (debug.messageEnabled()) {
+                        debug.message("IdentitySubject.isMember():"
+                                + "got membership from PrivilegeEvaluatorContext "
+                                + " for userDN = " + userDN
+                                + ", subjectValue = " + subjectValue);
+                    }
+                    return new SubjectDecision(true, Collections.EMPTY_MAP);
+                }
+
                 if ((matchFound = SubjectEvaluationCache.isMember(
                         tokenID, "IdentitySubject", subjectValue)) != null) {
                     if (debug.messageEnabled()) {
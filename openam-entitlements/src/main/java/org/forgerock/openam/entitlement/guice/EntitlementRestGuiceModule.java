@@ -22,7 +22,10 @@ import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
+import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.forgerock.guice.core.GuiceModule;
@@ -42,14 +45,18 @@ import org.forgerock.openam.entitlement.rest.query.QueryAttribute;
 import org.forgerock.openam.entitlement.service.DefaultPrivilegeManagerFactory;
 import org.forgerock.openam.entitlement.service.PrivilegeManagerFactory;
 import org.forgerock.openam.errors.ExceptionMappingHandler;
+import org.forgerock.util.thread.ExecutorServiceFactory;
 import org.restlet.routing.Router;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Key;
 import com.google.inject.Provider;
+import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
+import com.iplanet.am.util.SystemProperties;
 import com.sun.identity.entitlement.EntitlementException;
+import com.sun.identity.entitlement.Evaluator;
 import com.sun.identity.entitlement.Privilege;
 import com.sun.identity.entitlement.PrivilegeManager;
 import com.sun.identity.entitlement.opensso.PolicyPrivilegeManager;
@@ -63,6 +70,11 @@ import com.sun.identity.shared.debug.Debug;
 @GuiceModule
 public class EntitlementRestGuiceModule extends AbstractModule {
 
+    /**
+     * System property for the number of threads evaluating the resources of parallel policy requests.
+     */
+    public static final String PARALLEL_EVALUATION_THREADS = "org.forgerock.openam.entitlement.rest.parallel.threads";
+
     @Override
     protected void configure() {
 
@@ -105,6 +117,20 @@ public class EntitlementRestGuiceModule extends AbstractModule {
         bind(CollectionResourceProvider.class).annotatedWith(Names.named("PolicyResource")).to(PolicyResource.class);
     }
 
+    /**
+     * Provides the executor shared by all parallel policy requests, so that the number of resources evaluated at once
+     * is bounded however many requests are in progress.
+     *
+     * @param esf Factory for generating an appropriate ExecutorService.
+     * @return the executor for parallel policy evaluation.
+     */
+    @Provides @Inject @Singleton @Named(EntitlementEvaluatorFactory.PARALLEL_EVALUATION_EXECUTOR)
+    ExecutorService getParallelEvaluationExecutorService(ExecutorServiceFactory esf) {
+        int size = SystemProperties.getAsInt(PARALLEL_EVALUATION_THREADS, Evaluator.DEFAULT_POLICY_EVAL_THREAD);
+        return esf.createFixedThreadPool(Math.max(1, size),
+                EntitlementEvaluatorFactory.PARALLEL_EVALUATION_EXECUTOR);
+    }
+
     /**
      * Provides the mapping between entitlements exceptions and CREST resource exceptions, based on the entitlements
      * error code. Anything not explicitly mapped here will be treated as an internal server error.
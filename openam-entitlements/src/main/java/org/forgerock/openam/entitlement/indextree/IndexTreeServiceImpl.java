@@ -30,6 +30,8 @@ import org.forgerock.openam.entitlement.indextree.events.ModificationEvent;
 import org.forgerock.openam.entitlement.indextree.events.ModificationEventType;
 import org.forgerock.openam.entitlement.utils.indextree.IndexRuleTree;
 import org.forgerock.openam.entitlement.utils.indextree.SimpleReferenceTree;
+import org.forgerock.util.annotations.VisibleForTesting;
+import org.forgerock.util.thread.ExecutorServiceFactory;
 import org.forgerock.util.thread.listener.ShutdownListener;
 import org.forgerock.util.thread.listener.ShutdownManager;
 
@@ -37,15 +39,20 @@ import javax.inject.Inject;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Provides a search implementation that takes on a lazy approach to policy rule retrieval. Policy rules for a given
  * realm are only loaded into a index rule tree instance as search requests are made against that realm. This avoids
  * there being a potentially large memory consumption earlier on and instead builds up the data as it is required.
+ * <p/>
+ * When {@link IndexTreeSnapshot snapshots} are enabled, the realms of the trees cached on shutdown are saved, and the
+ * trees for those realms are read from the configuration store in the background on start up.
  *
  * @author apforrest
  */
@@ -64,16 +71,30 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
     private final PrivilegedAction<SSOToken> adminAction;
     private final ServiceManagementDAO smDAO;
     private final DNWrapper dnMapper;
+    private final IndexTreeSnapshot snapshot;
+    private final ExecutorService preloadExecutor;
 
     @Inject
     public IndexTreeServiceImpl(IndexChangeManager manager, PrivilegedAction<SSOToken> adminTokenAction,
                                 ServiceManagementDAO smDAO, DNWrapper dnMapper,
-                                ShutdownManager shutdownManager) {
+                                ShutdownManager shutdownManager, IndexTreeSnapshot snapshot,
+                                ExecutorServiceFactory executorServiceFactory) {
+        this(manager, adminTokenAction, smDAO, dnMapper, shutdownManager, snapshot,
+                snapshot.isEnabled() ? executorServiceFactory.createFixedThreadPool(1, "IndexTreePreload") : null);
+    }
+
+    @VisibleForTesting
+    IndexTreeServiceImpl(IndexChangeManager manager, PrivilegedAction<SSOToken> adminTokenAction,
+                         ServiceManagementDAO smDAO, DNWrapper dnMapper,
+                         ShutdownManager shutdownManager, IndexTreeSnapshot snapshot,
+                         ExecutorService preloadExecutor) {
 
         this.manager = manager;
         this.adminAction = adminTokenAction;
         this.smDAO = smDAO;
         this.dnMapper = dnMapper;
+        this.snapshot = snapshot;
+        this.preloadExecutor = preloadExecutor;
 
         indexTreeCache = new ConcurrentHashMap<String, IndexRuleTree>();
 
@@ -81,6 +102,45 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
         shutdownManager.addShutdownListener(this);
         // Register interest with the change manager so that this service is notified of changes.
         manager.registerObserver(this);
+
+        if (snapshot.isEnabled()) {
+            Set<String> realms = snapshot.load(smDAO.getRootSuffix());
+
+            if (!realms.isEmpty()) {
+                preloadTrees(realms);
+            }
+        }
+    }
+
+    /**
+     * Reads the trees of the given realms from the configuration store in the background. Requests for a realm
+     * that has not been read yet read the tree themselves, as they would without a snapshot.
+     *
+     * @param realms
+     *         The realms whose trees were cached on the last shutdown.
+     */
+    private void preloadTrees(final Set<String> realms) {
+        preloadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String realm : realms) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+
+                    try {
+                        getIndexTree(realm);
+                    } catch (EntitlementException eE) {
+                        // The tree will be read again by the first request for the realm.
+                        DEBUG.warning("Unable to preload index rule tree for " + realm, eE);
+                    }
+                }
+
+                if (DEBUG.messageEnabled()) {
+                    DEBUG.message(String.format("Index rule trees preloaded for realms %s.", realms));
+                }
+            }
+        });
     }
 
     /**
@@ -233,6 +293,12 @@ public class IndexTreeServiceImpl implements IndexTreeService, IndexChangeObserv
     public void shutdown() {
         manager.removeObserver(this);
         manager.shutdown();
+
+        if (snapshot.isEnabled()) {
+            preloadExecutor.shutdownNow();
+            // Only the realms are saved, as the trees are always read again from the configuration store.
+            snapshot.save(smDAO.getRootSuffix(), new HashSet<String>(indexTreeCache.keySet()));
+        }
     }
 
-}
\ No newline at end of file
+}
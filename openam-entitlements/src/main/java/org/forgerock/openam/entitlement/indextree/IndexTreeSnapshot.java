@@ -0,0 +1,200 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.entitlement.indextree;
+
+import static org.forgerock.openam.utils.Time.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.forgerock.util.annotations.VisibleForTesting;
+
+import com.iplanet.am.util.SystemProperties;
+import com.sun.identity.shared.debug.Debug;
+
+/**
+ * Saves the realms of the cached index trees to a local file on shutdown, so that the trees for those realms can be
+ * read from the configuration store in the background on the next start, instead of by the first requests for each
+ * realm.
+ * <p/>
+ * Only the realms are saved, not the index rules. The configuration store has no change marker that would show
+ * whether rules were changed while the server was down, so the trees are always read from the store.
+ * <p/>
+ * The file records a format version, the time it was written and the root suffix of the configuration store. A
+ * snapshot written by another version, for another configuration store or longer ago than the configured maximum age
+ * is discarded.
+ * <p/>
+ * Snapshots are disabled unless {@value #ENABLED_PROPERTY} is set to true.
+ */
+public class IndexTreeSnapshot {
+
+    /**
+     * System property to enable index tree snapshots.
+     */
+    public static final String ENABLED_PROPERTY = "org.forgerock.openam.entitlement.indextree.snapshot.enabled";
+    /**
+     * System property for the snapshot file. Defaults to a file in the configuration directory.
+     */
+    public static final String FILE_PROPERTY = "org.forgerock.openam.entitlement.indextree.snapshot.file";
+    /**
+     * System property for the oldest snapshot, in seconds, that is used on start up.
+     */
+    public static final String MAX_AGE_PROPERTY = "org.forgerock.openam.entitlement.indextree.snapshot.maxage";
+
+    private static final Debug DEBUG = Debug.getInstance("amEntitlements");
+
+    private static final String DEFAULT_FILE_NAME = "indextree.snapshot";
+    private static final long DEFAULT_MAX_AGE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    private static final int MAGIC = 0x4f414958;
+    private static final int FORMAT_VERSION = 2;
+
+    private final boolean enabled;
+    private final File file;
+    private final long maxAgeMs;
+
+    @Inject
+    public IndexTreeSnapshot() {
+        this(SystemProperties.getAsBoolean(ENABLED_PROPERTY, false), getSnapshotFile(),
+                TimeUnit.SECONDS.toMillis(SystemProperties.getAsLong(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_SECONDS)));
+    }
+
+    @VisibleForTesting
+    IndexTreeSnapshot(boolean enabled, File file, long maxAgeMs) {
+        this.enabled = enabled && file != null;
+        this.file = file;
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    private static File getSnapshotFile() {
+        String path = SystemProperties.get(FILE_PROPERTY);
+        if (path != null) {
+            return new File(path);
+        }
+        String configPath = SystemProperties.get(SystemProperties.CONFIG_PATH);
+        return configPath == null ? null : new File(configPath, DEFAULT_FILE_NAME);
+    }
+
+    /**
+     * @return Whether snapshots are taken and used.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reads the realms from the snapshot file. The file is deleted once read, so that a snapshot is never used by
+     * more than one start.
+     *
+     * @param rootSuffix
+     *         The root suffix of the configuration store.
+     * @return The realms, or an empty set if there is no usable snapshot.
+     */
+    public Set<String> load(String rootSuffix) {
+        if (!enabled || !file.isFile()) {
+            return Collections.emptySet();
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                DEBUG.message("Index tree snapshot {} has an unknown format, discarded.", file);
+                return Collections.emptySet();
+            }
+            long age = currentTimeMillis() - in.readLong();
+            if (age < 0 || age > maxAgeMs) {
+                DEBUG.message("Index tree snapshot {} is {} ms old, discarded.", file, age);
+                return Collections.emptySet();
+            }
+            if (!in.readUTF().equals(rootSuffix)) {
+                DEBUG.message("Index tree snapshot {} is for another configuration store, discarded.", file);
+                return Collections.emptySet();
+            }
+
+            int realmCount = in.readInt();
+            Set<String> realms = new HashSet<String>(realmCount);
+            for (int i = 0; i < realmCount; i++) {
+                realms.add(in.readUTF());
+            }
+
+            if (DEBUG.messageEnabled()) {
+                DEBUG.message(String.format("Index tree snapshot read for realms %s.", realms));
+            }
+            return realms;
+        } catch (IOException | RuntimeException e) {
+            DEBUG.warning("Unable to read index tree snapshot {}, discarded.", file, e);
+            return Collections.emptySet();
+        } finally {
+            if (!file.delete()) {
+                DEBUG.warning("Unable to delete index tree snapshot {}.", file);
+            }
+        }
+    }
+
+    /**
+     * Writes the realms to the snapshot file, replacing any previous snapshot.
+     *
+     * @param rootSuffix
+     *         The root suffix of the configuration store.
+     * @param realms
+     *         The realms of the cached index trees.
+     */
+    public void save(String rootSuffix, Set<String> realms) {
+        if (!enabled) {
+            return;
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(currentTimeMillis());
+            out.writeUTF(rootSuffix);
+            out.writeInt(realms.size());
+            for (String realm : realms) {
+                out.writeUTF(realm);
+            }
+        } catch (IOException e) {
+            DEBUG.warning("Unable to write index tree snapshot {}.", tempFile, e);
+            tempFile.delete();
+            return;
+        }
+
+        // Only a complete snapshot replaces the previous one.
+        if (!tempFile.renameTo(file)) {
+            file.delete();
+            if (!tempFile.renameTo(file)) {
+                DEBUG.warning("Unable to replace index tree snapshot {}.", file);
+                tempFile.delete();
+                return;
+            }
+        }
+
+        if (DEBUG.messageEnabled()) {
+            DEBUG.message(String.format("Index tree snapshot written for realms %s.", realms));
+        }
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.rest;
@@ -24,11 +24,14 @@ import org.forgerock.openam.entitlement.rest.model.json.BatchPolicyRequest;
 import org.forgerock.openam.entitlement.rest.model.json.PolicyRequest;
 import org.forgerock.openam.entitlement.rest.model.json.TreePolicyRequest;
 
+import javax.inject.Inject;
+import javax.inject.Named;
 import javax.security.auth.Subject;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import static com.sun.identity.policy.PolicyEvaluator.REALM_DN;
 import static org.forgerock.openam.utils.CollectionUtils.asSet;
@@ -40,9 +43,28 @@ import static org.forgerock.openam.utils.CollectionUtils.asSet;
  */
 public class EntitlementEvaluatorFactory implements PolicyEvaluatorFactory {
 
+    /**
+     * Name of the executor that evaluates the resources of parallel policy requests.
+     */
+    public static final String PARALLEL_EVALUATION_EXECUTOR = "PolicyParallelEvaluation";
+
+    private final ExecutorService parallelEvaluationExecutor;
+
+    /**
+     * Constructs a new factory.
+     *
+     * @param parallelEvaluationExecutor
+     *         the executor that evaluates the resources of parallel policy requests
+     */
+    @Inject
+    public EntitlementEvaluatorFactory(
+            @Named(PARALLEL_EVALUATION_EXECUTOR) final ExecutorService parallelEvaluationExecutor) {
+        this.parallelEvaluationExecutor = parallelEvaluationExecutor;
+    }
+
     @Override
     public PolicyEvaluator getEvaluator(final Subject subject, final String application) throws EntitlementException {
-        return new EntitlementEvaluatorWrapper(new Evaluator(subject, application));
+        return new EntitlementEvaluatorWrapper(new Evaluator(subject, application), parallelEvaluationExecutor);
     }
 
     /**
@@ -56,9 +78,12 @@ public class EntitlementEvaluatorFactory implements PolicyEvaluatorFactory {
         private static final boolean TREE_EVALUATION = true;
 
         private final Evaluator evaluator;
+        private final ExecutorService parallelEvaluationExecutor;
 
-        public EntitlementEvaluatorWrapper(final Evaluator evaluator) {
+        public EntitlementEvaluatorWrapper(final Evaluator evaluator,
+                final ExecutorService parallelEvaluationExecutor) {
             this.evaluator = evaluator;
+            this.parallelEvaluationExecutor = parallelEvaluationExecutor;
         }
 
         @Override
@@ -67,6 +92,13 @@ public class EntitlementEvaluatorFactory implements PolicyEvaluatorFactory {
                     request.getResources(), environmentWithRealmDn(request));
         }
 
+        @Override
+        public List<Entitlement> evaluateBatchInParallel(final BatchPolicyRequest request)
+                throws EntitlementException {
+            return evaluator.evaluate(request.getRealm(), request.getPolicySubject(), request.getResources(),
+                    environmentWithRealmDn(request), parallelEvaluationExecutor);
+        }
+
         @Override
         public List<Entitlement> evaluateTree(final TreePolicyRequest request) throws EntitlementException {
             return evaluator.evaluate(request.getRealm(), request.getPolicySubject(),
@@ -79,6 +111,12 @@ public class EntitlementEvaluatorFactory implements PolicyEvaluatorFactory {
             return request.dispatch(this);
         }
 
+        @Override
+        public List<Entitlement> routePolicyRequestInParallel(final PolicyRequest request)
+                throws EntitlementException {
+            return request.dispatchInParallel(this);
+        }
+
         private Map<String, Set<String>> environmentWithRealmDn(PolicyRequest request) {
             Map<String, Set<String>> extendedEnvironment = new HashMap<String, Set<String>>();
             extendedEnvironment.putAll(request.getEnvironment());
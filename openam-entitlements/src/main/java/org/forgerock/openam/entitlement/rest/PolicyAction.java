@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.rest;
@@ -25,9 +25,11 @@ import java.util.EnumSet;
  */
 public enum PolicyAction {
 
-    EVALUATE("evaluate"), TREE_EVALUATE("evaluateTree"), UNKNOWN("unknown"), COPY("copy"), MOVE("move");
+    EVALUATE("evaluate"), TREE_EVALUATE("evaluateTree"), PARALLEL_EVALUATE("parallelEvaluate"), UNKNOWN("unknown"),
+    COPY("copy"), MOVE("move");
 
-    private static final EnumSet<PolicyAction> EVALUATE_ACTIONS = EnumSet.of(EVALUATE, TREE_EVALUATE);
+    private static final EnumSet<PolicyAction> EVALUATE_ACTIONS =
+            EnumSet.of(EVALUATE, TREE_EVALUATE, PARALLEL_EVALUATE);
 
     private final String actionName;
 
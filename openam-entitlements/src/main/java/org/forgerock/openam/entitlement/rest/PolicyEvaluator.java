@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.rest;
@@ -45,6 +45,20 @@ public interface PolicyEvaluator {
      */
     public List<Entitlement> evaluateBatch(final BatchPolicyRequest request) throws EntitlementException;
 
+    /**
+     * Given a batch policy request, evaluates the resources in parallel and provides a set of policy
+     * decisions that correspond to each resource definition, in the order of the requested resources.
+     *
+     * @param request
+     *         a non-null batch request
+     *
+     * @return list of corresponding policy decisions
+     *
+     * @throws EntitlementException
+     *         should an error occur during the evaluation process
+     */
+    public List<Entitlement> evaluateBatchInParallel(final BatchPolicyRequest request) throws EntitlementException;
+
     /**
      * Given a tree policy request, provides a set of policy decisions for each
      * defined policy that matches the single resource definition and below.
@@ -72,4 +86,18 @@ public interface PolicyEvaluator {
      */
     public List<Entitlement> routePolicyRequest(final PolicyRequest request) throws EntitlementException;
 
+    /**
+     * Given a generic policy request, routes the request to the appropriate parallel evaluation method.
+     *
+     * @param request
+     *         a non-null policy request
+     *
+     * @return list of policy decisions appropriate for the request type
+     *
+     * @throws EntitlementException
+     *         should an error occur during the evaluation process, or the request type not support
+     *         parallel evaluation
+     */
+    public List<Entitlement> routePolicyRequestInParallel(final PolicyRequest request) throws EntitlementException;
+
 }
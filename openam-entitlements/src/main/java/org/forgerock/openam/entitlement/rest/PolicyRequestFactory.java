@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.rest;
@@ -52,6 +52,8 @@ public class PolicyRequestFactory {
             }
 
         });
+        // Add parallel policy request builder, which evaluates a batch of resources in parallel.
+        builders.put(PolicyAction.PARALLEL_EVALUATE, builders.get(PolicyAction.EVALUATE));
         // Add tree policy request builder.
         builders.put(PolicyAction.TREE_EVALUATE, new RequestBuilder<TreePolicyRequest>() {
 
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.rest;
@@ -126,7 +126,8 @@ public final class PolicyResource implements CollectionResourceProvider {
                 DEBUG.message(builder.toString());
             }
 
-            final List<Entitlement> entitlements = evaluator.routePolicyRequest(request);
+            final List<Entitlement> entitlements = action == PolicyAction.PARALLEL_EVALUATE
+                    ? evaluator.routePolicyRequestInParallel(request) : evaluator.routePolicyRequest(request);
             return newResultPromise(newActionResponse(policyParser.printEntitlements(entitlements)));
 
         } catch (final EntitlementException eE) {
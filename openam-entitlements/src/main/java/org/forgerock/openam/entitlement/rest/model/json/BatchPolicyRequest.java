@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2014-2015 ForgeRock AS.
+ * Copyright 2014-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.entitlement.rest.model.json;
@@ -25,7 +25,7 @@ import org.forgerock.services.context.Context;
 import org.forgerock.openam.entitlement.rest.PolicyEvaluator;
 import org.forgerock.util.Reject;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -54,6 +54,11 @@ public final class BatchPolicyRequest extends PolicyRequest {
         return evaluator.evaluateBatch(this);
     }
 
+    @Override
+    public List<Entitlement> dispatchInParallel(final PolicyEvaluator evaluator) throws EntitlementException {
+        return evaluator.evaluateBatchInParallel(this);
+    }
+
     /**
      * Builder used to build batch policy requests.
      */
@@ -77,7 +82,8 @@ public final class BatchPolicyRequest extends PolicyRequest {
                 throw new EntitlementException(EntitlementException.INVALID_VALUE, new Object[]{RESOURCES});
             }
 
-            return new HashSet<String>(resources);
+            // Keep the order of the request, which the decisions are returned in.
+            return new LinkedHashSet<String>(resources);
         }
 
         @Override
@@ -110,6 +110,22 @@ public abstract class PolicyRequest {
      */
     public abstract List<Entitlement> dispatch(PolicyEvaluator evaluator) throws EntitlementException;
 
+    /**
+     * Given the policy evaluator dispatch oneself, evaluating the resources of the request in parallel.
+     * Only requests for more than one resource support this.
+     *
+     * @param evaluator
+     *         the non-null policy evaluator
+     *
+     * @return list of policy decisions, in the order of the requested resources
+     *
+     * @throws EntitlementException
+     *         should dispatch and evaluation fail, or the request not support parallel evaluation
+     */
+    public List<Entitlement> dispatchInParallel(PolicyEvaluator evaluator) throws EntitlementException {
+        throw new EntitlementException(EntitlementException.UNSUPPORTED_OPERATION);
+    }
+
     /**
      * Policy request builder used to assist with the construction of policy requests and to bring some separation.
      *
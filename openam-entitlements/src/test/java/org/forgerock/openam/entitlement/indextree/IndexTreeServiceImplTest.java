@@ -16,6 +16,7 @@
 
 package org.forgerock.openam.entitlement.indextree;
 
+import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 import static org.testng.Assert.*;
 
@@ -28,9 +29,11 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import org.forgerock.openam.core.DNWrapper;
 import org.forgerock.opendj.ldap.LdapException;
 import org.forgerock.util.thread.listener.ShutdownManager;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -60,6 +63,7 @@ public class IndexTreeServiceImplTest {
     private ShutdownManager shutdownManager;
     private DNWrapper dnMapper;
     private SSOToken ssoToken;
+    private IndexTreeSnapshot snapshot;
 
     private Set<String> excludes;
 
@@ -72,10 +76,11 @@ public class IndexTreeServiceImplTest {
         dnMapper = mock(DNWrapper.class);
         shutdownManager = mock(ShutdownManager.class);
         ssoToken = mock(SSOToken.class);
+        snapshot = mock(IndexTreeSnapshot.class);
         excludes = Collections.emptySet();
 
         treeService = new IndexTreeServiceImpl(
-                manager, privilegedAction, serviceManagementDAO, dnMapper, shutdownManager);
+                manager, privilegedAction, serviceManagementDAO, dnMapper, shutdownManager, snapshot, null);
 
         verify(shutdownManager).addShutdownListener(treeService);
         verify(manager).registerObserver(treeService);
@@ -256,6 +261,70 @@ public class IndexTreeServiceImplTest {
     }
 
 
+    /**
+     * Verifies that the trees of the realms in the snapshot are read from the data store in the background, and that
+     * a request made before then reads the tree itself rather than using anything from the snapshot.
+     */
+    @Test
+    public void snapshotRealmsPreloadedFromDataStore() throws Exception {
+        // Given
+        given(snapshot.isEnabled()).willReturn(true);
+        given(serviceManagementDAO.getRootSuffix()).willReturn(ROOT_SUFFIX);
+        given(snapshot.load(ROOT_SUFFIX)).willReturn(Collections.singleton(REALM));
+        ExecutorService preloadExecutor = mock(ExecutorService.class);
+        treeService = new IndexTreeServiceImpl(manager, privilegedAction, serviceManagementDAO, dnMapper,
+                shutdownManager, snapshot, preloadExecutor);
+
+        List<SMSDataEntry> pathIndexes = new ArrayList<SMSDataEntry>();
+        pathIndexes.add(new SMSDataEntry("{dn:somedn,attributeValues:{pathindex:[\"http://*.test.com\"]}}"));
+        when(dnMapper.orgNameToDN(REALM)).thenReturn(REALM_DN);
+        when(privilegedAction.run()).thenReturn(ssoToken);
+        when(serviceManagementDAO.checkIfEntryExists(SERVICE_DN, ssoToken)).thenReturn(true);
+        when(serviceManagementDAO.search(ssoToken, SERVICE_DN, FILTER, 0, 0, false, false, excludes))
+                .thenReturn(pathIndexes.iterator());
+        ArgumentCaptor<Runnable> preload = ArgumentCaptor.forClass(Runnable.class);
+        verify(preloadExecutor).execute(preload.capture());
+
+        // When
+        preload.getValue().run();
+        Set<String> results = treeService.searchTree("http://www.test.com", REALM);
+
+        // Then
+        assertEquals(results, Collections.singleton("http://*.test.com"));
+        verify(serviceManagementDAO).search(ssoToken, SERVICE_DN, FILTER, 0, 0, false, false, excludes);
+    }
+
+    /**
+     * Verifies that the realms of the cached trees are saved to the snapshot on shutdown.
+     */
+    @Test
+    public void snapshotSavedOnShutdown() throws Exception {
+        // Given
+        given(snapshot.isEnabled()).willReturn(true);
+        given(serviceManagementDAO.getRootSuffix()).willReturn(ROOT_SUFFIX);
+        given(snapshot.load(ROOT_SUFFIX)).willReturn(Collections.<String>emptySet());
+        ExecutorService preloadExecutor = mock(ExecutorService.class);
+        treeService = new IndexTreeServiceImpl(manager, privilegedAction, serviceManagementDAO, dnMapper,
+                shutdownManager, snapshot, preloadExecutor);
+
+        List<SMSDataEntry> pathIndexes = new ArrayList<SMSDataEntry>();
+        pathIndexes.add(new SMSDataEntry("{dn:somedn,attributeValues:{pathindex:[\"*\"]}}"));
+        when(dnMapper.orgNameToDN(REALM)).thenReturn(REALM_DN);
+        when(privilegedAction.run()).thenReturn(ssoToken);
+        when(serviceManagementDAO.checkIfEntryExists(SERVICE_DN, ssoToken)).thenReturn(true);
+        when(serviceManagementDAO.search(ssoToken, SERVICE_DN, FILTER, 0, 0, false, false, excludes))
+                .thenReturn(pathIndexes.iterator());
+        treeService.searchTree("http://www.test.com", REALM);
+
+        // When
+        treeService.shutdown();
+
+        // Then
+        verify(preloadExecutor, never()).execute(any(Runnable.class));
+        verify(preloadExecutor).shutdownNow();
+        verify(snapshot).save(ROOT_SUFFIX, Collections.singleton(REALM));
+    }
+
     /**
      * Verify that shutdown causes any clean up, including the connection being closed.
      */
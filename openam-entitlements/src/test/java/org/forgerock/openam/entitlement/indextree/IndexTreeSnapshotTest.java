@@ -0,0 +1,131 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+package org.forgerock.openam.entitlement.indextree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IndexTreeSnapshotTest {
+
+    private static final String ROOT_SUFFIX = "dc=openam,dc=forgerock,dc=org";
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private File file;
+    private IndexTreeSnapshot snapshot;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = File.createTempFile("indextree", ".snapshot");
+        file.delete();
+        snapshot = new IndexTreeSnapshot(true, file, MAX_AGE);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void shouldReadSavedRealms() {
+        // Given
+        Set<String> realms = new HashSet<String>();
+        realms.add("/");
+        realms.add("/sub");
+        snapshot.save(ROOT_SUFFIX, realms);
+
+        // When
+        Set<String> result = snapshot.load(ROOT_SUFFIX);
+
+        // Then
+        assertThat(result).isEqualTo(realms);
+    }
+
+    @Test
+    public void shouldOnlyUseSnapshotOnce() {
+        // Given
+        snapshot.save(ROOT_SUFFIX, Collections.singleton("/"));
+        snapshot.load(ROOT_SUFFIX);
+
+        // When
+        Set<String> result = snapshot.load(ROOT_SUFFIX);
+
+        // Then
+        assertThat(result).isEmpty();
+        assertThat(file.exists()).isFalse();
+    }
+
+    @Test
+    public void shouldDiscardSnapshotOfAnotherStore() {
+        // Given
+        snapshot.save(ROOT_SUFFIX, Collections.singleton("/"));
+
+        // When
+        Set<String> result = snapshot.load("dc=example,dc=com");
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void shouldDiscardExpiredSnapshot() {
+        // Given
+        new IndexTreeSnapshot(true, file, -1).save(ROOT_SUFFIX, Collections.singleton("/"));
+
+        // When
+        Set<String> result = new IndexTreeSnapshot(true, file, -1).load(ROOT_SUFFIX);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void shouldDiscardCorruptSnapshot() throws IOException {
+        // Given
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        // When
+        Set<String> result = snapshot.load(ROOT_SUFFIX);
+
+        // Then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void shouldDoNothingWhenDisabled() {
+        // Given
+        IndexTreeSnapshot disabled = new IndexTreeSnapshot(false, file, MAX_AGE);
+
+        // When
+        disabled.save(ROOT_SUFFIX, Collections.singleton("/"));
+
+        // Then
+        assertThat(file.exists()).isFalse();
+        assertThat(disabled.load(ROOT_SUFFIX)).isEmpty();
+    }
+}
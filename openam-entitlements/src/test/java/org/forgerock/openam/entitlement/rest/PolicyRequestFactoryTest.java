@@ -104,6 +104,26 @@ public class PolicyRequestFactoryTest {
         verifyNoMoreInteractions(subjectContext, actionRequest);
     }
 
+    @Test
+    public void shouldRetrieveBatchRequestForParallelEvaluation() throws EntitlementException {
+        // Given...
+        given(subjectContext.getCallerSubject()).willReturn(restSubject);
+        given(subjectContext.getCallerSSOToken()).willReturn(mock(SSOToken.class));
+
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("resources", Arrays.asList("/resource/a", "/resource/b"));
+        given(actionRequest.getContent()).willReturn(JsonValue.json(properties));
+        Realm realm = realmTestHelper.mockRealm("abc");
+
+        // When...
+        Context context = buildContextStructure(realm);
+        PolicyRequest request = factory.buildRequest(PolicyAction.PARALLEL_EVALUATE, context, actionRequest);
+
+        // Then...
+        assertThat(request).isInstanceOfAny(BatchPolicyRequest.class);
+        assertThat(((BatchPolicyRequest) request).getResources()).containsOnly("/resource/a", "/resource/b");
+    }
+
     @Test
     public void shouldRetrieveTreeRequest() throws EntitlementException {
         // When...
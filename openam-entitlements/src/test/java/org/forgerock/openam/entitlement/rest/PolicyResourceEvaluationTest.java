@@ -11,12 +11,15 @@
 * Header, with the fields enclosed by brackets [] replaced by your own identifying
 * information: "Portions copyright [year] [name of copyright owner]".
 *
-* Copyright 2014-2015 ForgeRock AS.
+* Copyright 2014-2016 ForgeRock AS.
 */
 
 package org.forgerock.openam.entitlement.rest;
 
 import static org.forgerock.json.JsonValue.array;
+import static org.forgerock.json.JsonValue.field;
+import static org.forgerock.json.JsonValue.json;
+import static org.forgerock.json.JsonValue.object;
 import static org.forgerock.json.resource.test.assertj.AssertJActionResponseAssert.assertThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
@@ -174,6 +177,67 @@ public class PolicyResourceEvaluationTest {
                 policyRequest, factory, evaluator, parser);
     }
 
+    @Test
+    public void shouldMakeParallelEvaluation() throws EntitlementException {
+        // Given...
+        given(request.getAction()).willReturn("parallelEvaluate");
+        Realm realm = realmTestHelper.mockRealm("abc");
+
+        Context context = buildContextStructure(realm);
+        given(requestFactory.buildRequest(PolicyAction.PARALLEL_EVALUATE, context, request)).willReturn(policyRequest);
+        given(policyRequest.getRestSubject()).willReturn(restSubject);
+        given(policyRequest.getApplication()).willReturn("some-application");
+        given(factory.getEvaluator(restSubject, "some-application")).willReturn(evaluator);
+        given(policyRequest.getRealm()).willReturn("/abc");
+
+        List<Entitlement> decisions = Arrays.asList(new Entitlement(), new Entitlement());
+        given(evaluator.routePolicyRequestInParallel(policyRequest)).willReturn(decisions);
+
+        JsonValue jsonDecision = json(array(
+                object(field("resource", "/resource/a")), object(field("resource", "/resource/b"))));
+        given(parser.printEntitlements(decisions)).willReturn(jsonDecision);
+
+        // When...
+        Promise<ActionResponse, ResourceException> promise = policyResource.actionCollection(context, request);
+
+        // Then...
+        verify(request).getAction();
+        verify(requestFactory).buildRequest(PolicyAction.PARALLEL_EVALUATE, context, request);
+        verify(policyRequest).getRestSubject();
+        verify(policyRequest, times(2)).getApplication();
+        verify(policyRequest).getRealm();
+        verify(factory).getEvaluator(restSubject, "some-application");
+        verify(evaluator).routePolicyRequestInParallel(policyRequest);
+        verify(parser).printEntitlements(decisions);
+
+        assertThat(promise).succeeded().withContent().isEqualTo(jsonDecision);
+        verifyNoMoreInteractions(request, requestFactory,
+                policyRequest, factory, evaluator, parser);
+    }
+
+    @Test
+    public void shouldHandleEntitlementExceptionsDuringParallelEvaluation() throws EntitlementException {
+        // Given...
+        given(request.getAction()).willReturn("parallelEvaluate");
+        Realm realm = realmTestHelper.mockRealm("abc");
+
+        Context context = buildContextStructure(realm);
+        given(requestFactory.buildRequest(PolicyAction.PARALLEL_EVALUATE, context, request)).willReturn(policyRequest);
+        given(policyRequest.getRestSubject()).willReturn(restSubject);
+        given(policyRequest.getApplication()).willReturn("some-application");
+        given(factory.getEvaluator(restSubject, "some-application")).willReturn(evaluator);
+        given(request.getRequestType()).willReturn(RequestType.ACTION);
+        given(evaluator.routePolicyRequestInParallel(policyRequest))
+                .willThrow(new EntitlementException(EntitlementException.INVALID_VALUE));
+
+        // When...
+        Promise<ActionResponse, ResourceException> promise = policyResource.actionCollection(context, request);
+
+        // Then...
+        assertThat(promise).failedWithException().isInstanceOf(BadRequestException.class);
+        verifyZeroInteractions(parser);
+    }
+
     @Test
     public void shouldHandleEntitlementExceptions() throws EntitlementException {
         // Given...
@@ -421,7 +421,8 @@ public class OAuth2GuiceModule extends AbstractModule {
 
     @Provides @Singleton @Inject
     public static Blacklist<Blacklistable> getStatelessTokenBlacklist(CTSBlacklist<Blacklistable> ctsBlacklist,
-            OAuth2GlobalSettings globalSettings) {
+            OAuth2GlobalSettings globalSettings,
+            @Named(CoreTokenConstants.CTS_SCHEDULED_SERVICE) ScheduledExecutorService scheduler) {
 
         if (!globalSettings.isSessionBlacklistingEnabled()) {
             return new NoOpBlacklist<>();
@@ -437,7 +438,7 @@ public class OAuth2GuiceModule extends AbstractModule {
         }
 
         if (pollIntervalMs > 0) {
-            blacklist = new BloomFilterBlacklist<>(blacklist, purgeDelayMs);
+            blacklist = new BloomFilterBlacklist<>(blacklist, purgeDelayMs, "oauth2-blacklist", scheduler);
         }
 
         return blacklist;
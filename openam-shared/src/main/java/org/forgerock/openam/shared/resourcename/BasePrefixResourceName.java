@@ -12,7 +12,7 @@
  * information: "Portions copyright [year] [name of copyright owner]".
  *
  * Copyright 2006-2009 Sun Microsystems Inc.
- * Portions Copyrighted 2011-2015 ForgeRock AS.
+ * Portions Copyrighted 2011-2016 ForgeRock AS.
  */
 
 package org.forgerock.openam.shared.resourcename;
@@ -25,6 +25,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 
+import org.forgerock.guava.common.cache.Cache;
+import org.forgerock.guava.common.cache.CacheBuilder;
+
 /**
  * A generic 'prefix' implementation of BaseResourceName.
  * @param <T> The type that the compare method is going to return instances of.
@@ -111,6 +114,14 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
     private static final String CURRENT_PATH = ".";
     private static final String PARENT_PATH = "..";
 
+    /**
+     * Largest number of compiled wildcard resources kept by each instance. The least recently used are discarded
+     * first.
+     */
+    private static final int MAX_COMPILED_RESOURCES = 10000;
+
+    private volatile CompiledResources compiledResources;
+
     /**
      * Constructs a new BasePrefixResourceName instance.
      *
@@ -212,50 +223,20 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
          */
         if (!caseSensitive) {
             requestResource = requestResource.toLowerCase();
-            targetResource = targetResource.toLowerCase();
         }
 
         requestResource = normalizeRequestResource(requestResource);
-        targetResource = normalizeTargetResource(targetResource);
+        CompiledResource compiledTarget = getCompiledResource(targetResource);
+        targetResource = compiledTarget.resource;
 
-        /**
-         * checks if one level wild card pattern is embedded in wildcard pattern
-         * and wild card pattern is not in the resource, then implies that
-         * resource contains only one level wild card and hence call the
-         * oneLevelWildcardCompare() method.
-         */
-        if (oneLevelWildcardEmbedded && targetResource.indexOf(wildcard) == -1) {
-            if (targetResource.indexOf(oneLevelWildcard) != -1 && wildcardCompare) {
-                debug.message("PrefixResourceName:compare():invoking one level compare");
-                return oneLevelWildcardCompare(requestResource, targetResource, wildcardCompare);
-            }
+        if (compiledTarget.oneLevelTokens != null && wildcardCompare) {
+            debug.message("PrefixResourceName:compare():invoking one level compare");
+            return oneLevelWildcardCompare(requestResource, compiledTarget.oneLevelTokens);
         }
-        /** if wild card is embedded or
-         * neither of the wild card patterns are embedded in each other,
-         * different patterns like "abc" and "def".
-         * Then checks if one level wild card pattern exists in resource
-         * if yes, call oneLevelWildcardCompare() method.
-         */
-        if (wildcardEmbedded || !(wildcardEmbedded || oneLevelWildcardEmbedded)) {
-            if (targetResource.indexOf(oneLevelWildcard) != -1 && wildcardCompare) {
-                debug.message("PrefixResourceName:compare():invoking one level compare");
-                return oneLevelWildcardCompare(requestResource, targetResource, wildcardCompare);
-            }
-        }
-
-        int reqBegin = 0; // index pointer for requestResource
-        int reqEnd = 0;   // index pointer for requestResource
-        int tarBegin = 0; // index pointer for targetResource
-        int tarEnd = 0;   // index pointer for targetResource
-        int reqLen = 0;
-        int tarLen = 0;
-        String subString = null;
 
-        reqLen = requestResource.length();
-        tarLen = targetResource.length();
-        tarEnd = targetResource.indexOf(wildcard, tarBegin);
+        int[] wildcards = compiledTarget.wildcardIndexes;
 
-        if (!wildcardCompare || tarEnd == -1) {
+        if (!wildcardCompare || wildcards == null) {
             // non-wildcard comparison
             // Compare for equality
             if (requestResource.equals(targetResource)) {
@@ -276,79 +257,134 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
         }
 
         // now we have to do wildcard comparison
-        // get the sub string prior to the first wildcard char
-        subString = targetResource.substring(tarBegin, tarEnd);
-
-        // checks if the first char in targetResource is the wildcard, i.e.
-        // the substr is null
-        if (tarEnd > tarBegin) {
-            // check if requestResource starts with the substr
-            if (!(requestResource.startsWith(subString))) {
-                if (subString.startsWith(
-                        (requestResource.endsWith(delimiter)) ? requestResource : requestResource + delimiter)) {
-                    return subResourceMatch;
-                }
-                return noMatch;
+        String[] literals = compiledTarget.literals;
+        int reqLen = requestResource.length();
+        int tarLen = targetResource.length();
+
+        // the literal prior to the first wildcard, if any, must begin the request
+        String literal = literals[0];
+        if (!literal.isEmpty() && !requestResource.startsWith(literal)) {
+            if (literal.startsWith(
+                    (requestResource.endsWith(delimiter)) ? requestResource : requestResource + delimiter)) {
+                return subResourceMatch;
             }
+            return noMatch;
         }
 
-        // yes, requestResource does start with substr
-        // move the pointers to the next char after the substring
+        // yes, requestResource does start with the literal
+        // move the pointer to the next char after the literal
         // which is already matched
-        reqBegin = tarEnd;
+        int reqBegin = wildcards[0];
 
-        if (tarEnd >= tarLen - 1) {
+        if (wildcards[0] >= tarLen - 1) {
             return wildcardMatch;
         }
 
-        tarBegin = tarEnd + 1;
-
         // if there are more wildcards in the targetResource
-        while ((tarEnd = targetResource.indexOf(wildcard, tarBegin)) != -1) {
+        for (int i = 1; i < wildcards.length; i++) {
+            literal = literals[i];
 
-            subString = targetResource.substring(tarBegin, tarEnd);
-
-            if (tarEnd > tarBegin) {
-                if ((reqBegin = requestResource.indexOf(subString, reqBegin)) == -1) {
+            if (!literal.isEmpty()) {
+                if ((reqBegin = requestResource.indexOf(literal, reqBegin)) == -1) {
                     return subResourceMatch;
                 }
             }
 
-            if (tarEnd >= tarLen - 1) {
+            if (wildcards[i] >= tarLen - 1) {
                 return wildcardMatch;
             }
 
-            reqBegin = reqBegin + (tarEnd - tarBegin);
-            tarBegin = tarEnd + 1;
+            reqBegin = reqBegin + literal.length();
         }
 
         // we just pass the last wildcard in targetResource
-        subString = targetResource.substring(tarBegin, tarLen);
-
-        if ((reqEnd = requestResource.lastIndexOf(subString, reqLen - 1)) == -1) {
-            return subResourceMatch;
-        }
+        literal = literals[wildcards.length];
+        int reqEnd = requestResource.lastIndexOf(literal, reqLen - 1);
 
-        if (reqBegin > reqEnd) {
+        if (reqEnd == -1 || reqBegin > reqEnd) {
             return subResourceMatch;
         }
 
         reqBegin = reqEnd;
 
-        if ((reqLen - reqBegin) == (tarLen - tarBegin)) {
+        if ((reqLen - reqBegin) == literal.length()) {
             return wildcardMatch;
         }
 
-        reqBegin = reqBegin + (tarLen - tarBegin);
-        subString = requestResource.substring(reqBegin, reqBegin + 1);
+        reqBegin = reqBegin + literal.length();
 
-        if (subString.equals(delimiter)) {
+        if (requestResource.substring(reqBegin, reqBegin + 1).equals(delimiter)) {
             return superResourceMatch;
         }
 
         return subResourceMatch;
     }
 
+    /**
+     * Returns the compiled form of the target resource, compiling it if necessary. Targets containing wildcards are
+     * typically policy resources compared against many requests, so their compiled form is kept; other targets are
+     * compiled on every comparison.
+     */
+    private CompiledResource getCompiledResource(String targetResource) {
+        CompiledResources compiled = compiledResources;
+        if (compiled == null || !compiled.isCompiledFor(this)) {
+            // First use, or the configuration changed since the resources were compiled.
+            compiled = new CompiledResources(this);
+            compiledResources = compiled;
+        }
+
+        CompiledResource resource = compiled.resources.getIfPresent(targetResource);
+        if (resource == null) {
+            resource = compile(targetResource);
+            if (resource.wildcardIndexes != null || resource.oneLevelTokens != null) {
+                compiled.resources.put(targetResource, resource);
+            }
+        }
+        return resource;
+    }
+
+    private CompiledResource compile(String targetResource) {
+        String resource = caseSensitive ? targetResource : targetResource.toLowerCase();
+        resource = normalizeTargetResource(resource);
+
+        boolean hasWildcard = resource.contains(wildcard);
+        boolean hasOneLevelWildcard = resource.contains(oneLevelWildcard);
+
+        /**
+         * if one level wild card pattern is embedded in wildcard pattern
+         * and wild card pattern is not in the resource, then the
+         * resource contains only one level wild card.
+         * if wild card is embedded or neither of the wild card patterns
+         * are embedded in each other, different patterns like "abc" and "def",
+         * then a one level wild card pattern in the resource is a one level wild card.
+         */
+        boolean oneLevel = hasOneLevelWildcard
+                && ((oneLevelWildcardEmbedded && !hasWildcard)
+                || wildcardEmbedded || !(wildcardEmbedded || oneLevelWildcardEmbedded));
+
+        int[] wildcardIndexes = null;
+        String[] literals = null;
+        if (hasWildcard) {
+            int count = 0;
+            for (int i = resource.indexOf(wildcard); i != -1; i = resource.indexOf(wildcard, i + 1)) {
+                count++;
+            }
+            wildcardIndexes = new int[count];
+            literals = new String[count + 1];
+            int begin = 0;
+            int end = resource.indexOf(wildcard);
+            for (int i = 0; i < count; i++) {
+                wildcardIndexes[i] = end;
+                literals[i] = resource.substring(begin, end);
+                begin = end + 1;
+                end = resource.indexOf(wildcard, begin);
+            }
+            literals[count] = resource.substring(begin);
+        }
+
+        return new CompiledResource(resource, wildcardIndexes, literals, oneLevel ? oneLevelTokens(resource) : null);
+    }
+
     /**
      * If further normalization of {@code targetResource} is required during comparison, it can be added here.
      * @param targetResource The target resource from the compare method.
@@ -401,21 +437,33 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
     public T oneLevelWildcardCompare(String requestResource,
             String targetResource,
             boolean wildcardCompare) {
-        // requestResource & targetResource are not null,
+        return oneLevelWildcardCompare(requestResource, oneLevelTokens(targetResource));
+    }
+
+    /**
+     * Splits the target resource into tokens between delimiters, aggregating repeated one level wildcards in each.
+     */
+    private String[] oneLevelTokens(String targetResource) {
+        StringTokenizer st = new StringTokenizer(targetResource, delimiter);
+        String[] targetTokens = new String[st.countTokens()];
+        int i = 0;
+        while (st.hasMoreTokens()) {
+            targetTokens[i++] = aggregateWildcard(st.nextToken());
+        }
+        return targetTokens;
+    }
+
+    private T oneLevelWildcardCompare(String requestResource, String[] targetTokens) {
+        // requestResource & targetTokens are not null,
         // have no ending delimiters and if case insensitive
         // compare is defined, are already lowercase.
 
         StringTokenizer st1 = new StringTokenizer(requestResource, delimiter);
-        StringTokenizer st2 = new StringTokenizer(targetResource, delimiter);
         String[] requestTokens = new String[st1.countTokens()];
-        String[] targetTokens = new String[st2.countTokens()];
         int i = 0;
         int j = 0;
         while (st1.hasMoreTokens()) {
-            requestTokens[i++] = (String) st1.nextToken();
-        }
-        while (st2.hasMoreTokens()) {
-            targetTokens[j++] = (String) st2.nextToken();
+            requestTokens[i++] = st1.nextToken();
         }
         boolean wildcardMatch = false;
         j = 0;
@@ -423,8 +471,7 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
             String requestToken = requestTokens[i++];
             if (j < targetTokens.length) {
                 T matchTokensResult = null;
-                String targetToken = aggregateWildcard(targetTokens[j++]);
-                matchTokensResult = matchTokens(targetToken, requestToken);
+                matchTokensResult = matchTokens(targetTokens[j++], requestToken);
                 if (matchTokensResult.equals(noMatch)) {
                     return matchTokensResult;
                 }
@@ -442,7 +489,7 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
         // request tokens are over
         // check if target tokens still remain
         if (j < targetTokens.length) {
-            if (j == targetTokens.length - 1  && aggregateWildcard(targetTokens[j]).equals(oneLevelWildcard)) {
+            if (j == targetTokens.length - 1  && targetTokens[j].equals(oneLevelWildcard)) {
                 // last token is a wildcard
                 return this.wildcardMatch;
             }
@@ -809,6 +856,60 @@ public abstract class BasePrefixResourceName<T, E extends Exception> implements
         return result.toString();
     }
 
+    /**
+     * A target resource prepared for comparison: case folded and normalized, with its wildcards located and the
+     * literals between them extracted, and split into tokens if it contains one level wildcards.
+     */
+    private static final class CompiledResource {
+        private final String resource;
+        /** Indexes of each wildcard in the resource, or null if there are none. */
+        private final int[] wildcardIndexes;
+        /** The literals before each wildcard, followed by the literal after the last one. */
+        private final String[] literals;
+        /** The tokens of the resource if it is compared one level at a time, otherwise null. */
+        private final String[] oneLevelTokens;
+
+        private CompiledResource(String resource, int[] wildcardIndexes, String[] literals, String[] oneLevelTokens) {
+            this.resource = resource;
+            this.wildcardIndexes = wildcardIndexes;
+            this.literals = literals;
+            this.oneLevelTokens = oneLevelTokens;
+        }
+    }
+
+    /**
+     * The compiled resources of an instance, together with the configuration they were compiled with, as
+     * subclasses may change the configuration when they are initialized.
+     */
+    private static final class CompiledResources {
+        private final String delimiter;
+        private final boolean caseSensitive;
+        private final String wildcard;
+        private final String oneLevelWildcard;
+        private final boolean wildcardEmbedded;
+        private final boolean oneLevelWildcardEmbedded;
+        private final Cache<String, CompiledResource> resources =
+                CacheBuilder.newBuilder().maximumSize(MAX_COMPILED_RESOURCES).build();
+
+        private CompiledResources(BasePrefixResourceName<?, ?> resourceName) {
+            this.delimiter = resourceName.delimiter;
+            this.caseSensitive = resourceName.caseSensitive;
+            this.wildcard = resourceName.wildcard;
+            this.oneLevelWildcard = resourceName.oneLevelWildcard;
+            this.wildcardEmbedded = resourceName.wildcardEmbedded;
+            this.oneLevelWildcardEmbedded = resourceName.oneLevelWildcardEmbedded;
+        }
+
+        private boolean isCompiledFor(BasePrefixResourceName<?, ?> resourceName) {
+            return delimiter.equals(resourceName.delimiter)
+                    && caseSensitive == resourceName.caseSensitive
+                    && wildcard.equals(resourceName.wildcard)
+                    && oneLevelWildcard.equals(resourceName.oneLevelWildcard)
+                    && wildcardEmbedded == resourceName.wildcardEmbedded
+                    && oneLevelWildcardEmbedded == resourceName.oneLevelWildcardEmbedded;
+        }
+    }
+
     /**
      * Construct the exception that will be thrown if the resource is invalid during canonicalize.
      * @param args The exception arguments.
@@ -0,0 +1,145 @@
+/*
+ * The contents of this file are subject to the terms of the Common Development and
+ * Distribution License (the License). You may not use this file except in compliance with the
+ * License.
+ *
+ * You can obtain a copy of the License at legal/CDDLv1.0.txt. See the License for the
+ * specific language governing permission and limitations under the License.
+ *
+ * When distributing Covered Software, include this CDDL Header Notice in each file and include
+ * the License file at legal/CDDLv1.0.txt. If applicable, add the following below the CDDL
+ * Header, with the fields enclosed by brackets [] replaced by your own identifying
+ * information: "Portions copyright [year] [name of copyright owner]".
+ *
+ * Copyright 2016 ForgeRock AS.
+ */
+
+package org.forgerock.openam.shared.resourcename;
+
+import static org.forgerock.openam.shared.resourcename.BaseURLResourceNameTest.ResourceMatch.*;
+import static org.testng.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sun.identity.shared.debug.Debug;
+import org.forgerock.openam.shared.resourcename.BaseURLResourceNameTest.ResourceMatch;
+import org.testng.Reporter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BasePrefixResourceNameTest {
+
+    private static final String[] AGENT_URLS = {
+        "http://www.example.com:80/app/v1/resources/main.js",
+        "http://shop.example.com:8080/app/cart/index.html",
+        "http://www.example.com:80/app/search?lang=en&q=shoes",
+        "https://www.example.com:443/app/account/orders/12345?page=2&sort=date",
+    };
+    private static final String[] POLICY_RESOURCES = {
+        "http://www.example.com:80/app/*/resources/*.js",
+        "http://*.example.com:*/app/-*-/index.html",
+        "http://www.example.com:80/app/*?lang=*",
+        "https://www.example.com:443/app/account/-*-/-*-?*",
+        "http://www.example.com:80/*",
+    };
+
+    private TestPrefixResourceName resourceName;
+    private TestURLResourceName urlResourceName;
+
+    @BeforeMethod
+    public void setUp() {
+        resourceName = new TestPrefixResourceName();
+        urlResourceName = new TestURLResourceName();
+    }
+
+    @Test
+    public void shouldGiveSameResultEachTimeTargetIsCompared() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(resourceName.compare("/a/b/c/d", "/a/*/d", true), WILDCARD_MATCH);
+            assertEquals(resourceName.compare("/a/b/c/d/e", "/a/*/d", true), SUPER_RESOURCE_MATCH);
+            assertEquals(resourceName.compare("/a", "/a/*/d", true), SUB_RESOURCE_MATCH);
+            assertEquals(resourceName.compare("/x/b/c/d", "/a/*/d", true), NO_MATCH);
+            assertEquals(resourceName.compare("/a/*/d", "/a/*/d", false), EXACT_MATCH);
+        }
+    }
+
+    @Test
+    public void shouldCompareOneLevelWildcardTokens() {
+        assertEquals(resourceName.compare("/a/b/d", "/a/-*--*-/d", true), WILDCARD_MATCH);
+        assertEquals(resourceName.compare("/a/b/c/d", "/a/-*-/d", true), NO_MATCH);
+        assertEquals(resourceName.compare("/a/b", "/a/-*-", true), WILDCARD_MATCH);
+        assertEquals(resourceName.compare("/a", "/a/b/-*-", true), SUB_RESOURCE_MATCH);
+        assertEquals(resourceName.oneLevelWildcardCompare("/a/b/d", "/a/-*--*-/d", true), WILDCARD_MATCH);
+    }
+
+    @Test
+    public void shouldRecompileTargetsWhenConfigurationChanges() {
+        // Given
+        assertEquals(resourceName.compare("/A/B", "/a/*", true), WILDCARD_MATCH);
+
+        // When
+        resourceName.setCaseSensitive(true);
+
+        // Then
+        assertEquals(resourceName.compare("/A/B", "/a/*", true), NO_MATCH);
+    }
+
+    /**
+     * Compares typical agent URLs against wildcard policy resources, to measure the cost of a comparison.
+     */
+    @Test(enabled = false)
+    public void testThroughPut() {
+        final int rounds = 200000;
+        // Warmup
+        for (int i = 0; i < rounds; i++) {
+            compareAll();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            compareAll();
+        }
+        long elapsed = System.nanoTime() - start;
+        Reporter.log(String.format("%.1f ns/comparison",
+                (double) elapsed / rounds / (AGENT_URLS.length * POLICY_RESOURCES.length * 2)), true);
+        Reporter.log(TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms total", true);
+    }
+
+    private void compareAll() {
+        for (String policyResource : POLICY_RESOURCES) {
+            for (String agentUrl : AGENT_URLS) {
+                urlResourceName.compare(agentUrl, policyResource, true);
+                urlResourceName.compare(policyResource, agentUrl, false);
+            }
+        }
+    }
+
+    private static class TestPrefixResourceName extends BasePrefixResourceName<ResourceMatch, Exception> {
+
+        TestPrefixResourceName() {
+            super(Debug.getInstance("test"), EXACT_MATCH, NO_MATCH, SUB_RESOURCE_MATCH, SUPER_RESOURCE_MATCH,
+                    WILDCARD_MATCH);
+        }
+
+        void setCaseSensitive(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+        }
+
+        @Override
+        protected Exception constructResourceInvalidException(Object[] args) {
+            return new Exception();
+        }
+    }
+
+    private static class TestURLResourceName extends BaseURLResourceName<ResourceMatch, Exception> {
+
+        TestURLResourceName() {
+            super(Debug.getInstance("test"), EXACT_MATCH, NO_MATCH, SUB_RESOURCE_MATCH, SUPER_RESOURCE_MATCH,
+                    WILDCARD_MATCH);
+        }
+
+        @Override
+        protected Exception constructResourceInvalidException(Object[] args) {
+            return new Exception();
+        }
+    }
+}
@@ -11,7 +11,7 @@
  * Header, with the fields enclosed by brackets [] replaced by your own identifying
  * information: "Portions copyright [year] [name of copyright owner]".
  *
- * Copyright 2015 ForgeRock AS.
+ * Copyright 2015-2016 ForgeRock AS.
  */
 package org.forgerock.openam.upgrade.steps;
 
@@ -37,7 +37,6 @@ import com.sun.identity.common.configuration.ServerConfigXML;
 import com.sun.identity.common.configuration.ServerConfiguration;
 import com.sun.identity.sm.SMSException;
 import org.forgerock.openam.cts.api.CoreTokenConstants;
-import org.forgerock.openam.cts.impl.queue.config.CTSQueueConfiguration;
 import org.forgerock.openam.sm.datalayer.api.ConnectionFactory;
 import org.forgerock.openam.sm.datalayer.api.ConnectionType;
 import org.forgerock.openam.sm.datalayer.api.DataLayer;
@@ -340,12 +339,12 @@ public class UpgradeCTSMaxConnectionsConfigurationStep extends AbstractUpgradeSt
             Reject.ifTrue(max < MINIMUM_CONNECTIONS);
             switch (type) {
                 case CTS_ASYNC:
+                    // The CTS queue processors no longer need to be a power of two
                     if (dataLayerConfiguration.get(type).getStoreMode() == StoreMode.DEFAULT) {
-                        max = max / 2;
+                        return max / 2;
                     } else {
-                        max = max - 2;
+                        return max - 2;
                     }
-                    return CTSQueueConfiguration.findPowerOfTwo(max);
                 default:
                     throw new IllegalStateException();
             }